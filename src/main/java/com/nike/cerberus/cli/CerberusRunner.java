@@ -51,12 +51,18 @@ import com.nike.cerberus.logging.LoggingConfigurer;
 import com.nike.cerberus.module.CerberusModule;
 import com.nike.cerberus.module.PropsModule;
 import com.nike.cerberus.operation.Operation;
+import com.nike.cerberus.service.AwsApiRateLimiter;
+import com.nike.cerberus.service.CloudFormationService;
+import com.nike.cerberus.service.CloudFormationTemplateRegistry;
 import com.nike.cerberus.service.ConsoleService;
+import com.nike.cerberus.service.StackEventMetricsListener;
 import com.nike.cerberus.store.ConfigStore;
 import com.nike.cerberus.util.LocalEnvironmentValidator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
 
 import static com.nike.cerberus.service.ConsoleService.DefaultAction.NO;
@@ -132,8 +138,26 @@ public class CerberusRunner {
 
                 if (operation.isRunnable(command)) {
                     log.info("Running command: {}", commandName);
-                    operation.run(command);
+                    try {
+                        operation.run(command);
+                    } finally {
+                        logAwsApiCallStats(log);
+                    }
                     log.info("Finished command: {}", commandName);
+                    log.debug("Environment data cache hits: {}, misses: {}",
+                            configStore.getEnvironmentDataCacheHits(), configStore.getEnvironmentDataCacheMisses());
+                    CloudFormationService cloudFormationService = injector.getInstance(CloudFormationService.class);
+                    log.debug("Stack description cache hits: {}, misses: {}",
+                            cloudFormationService.getStackDescriptionCacheHits(),
+                            cloudFormationService.getStackDescriptionCacheMisses());
+                    StackEventMetricsListener stackEventMetrics = cloudFormationService.getStackEventMetrics();
+                    if (!stackEventMetrics.getEventCountsByStatus().isEmpty()) {
+                        log.info("Stack events by status: {}, failed: {}",
+                                stackEventMetrics.getEventCountsByStatus(), stackEventMetrics.getFailedEventCount());
+                    }
+                    CloudFormationTemplateRegistry templateRegistry = injector.getInstance(CloudFormationTemplateRegistry.class);
+                    log.debug("Templates uploaded: {}, already staged: {}",
+                            templateRegistry.getTemplatesUploaded(), templateRegistry.getTemplatesAlreadyStaged());
                 } else {
                     throw new RuntimeException("Command not runnable");
                 }
@@ -153,6 +177,24 @@ public class CerberusRunner {
         System.exit(0);
     }
 
+    /**
+     * Logs the totals for the AWS API calls made by the command, and the breakdown by service and region when any
+     * calls were throttled, retried or held back by the rate limiter
+     */
+    private void logAwsApiCallStats(Logger log) {
+        List<AwsApiRateLimiter> limiters = AwsApiRateLimiter.getAll();
+        long throttles = limiters.stream().mapToLong(AwsApiRateLimiter::getThrottles).sum();
+        long retries = limiters.stream().mapToLong(AwsApiRateLimiter::getRetries).sum();
+        long delayMillis = limiters.stream().mapToLong(AwsApiRateLimiter::getDelayMillis).sum();
+
+        log.info("AWS API attempts: {}, retries: {}, throttles: {}, added latency: {} ms",
+                limiters.stream().mapToLong(AwsApiRateLimiter::getAttempts).sum(), retries, throttles, delayMillis);
+        limiters.stream()
+                .filter(limiter -> limiter.getThrottles() > 0 || limiter.getRetries() > 0 || limiter.getDelayMillis() > 0)
+                .sorted(Comparator.comparing(AwsApiRateLimiter::getServiceName).thenComparing(AwsApiRateLimiter::getRegion))
+                .forEach(limiter -> log.info("  {}", limiter));
+    }
+
     /**
      * If --file, -f was passed in we will map the dsl params to args.
      * <p>
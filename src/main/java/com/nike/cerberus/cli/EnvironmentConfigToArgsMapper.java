@@ -42,6 +42,7 @@ import org.apache.commons.lang3.StringUtils;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.stream.Stream;
 
 import static com.nike.cerberus.domain.cloudformation.CloudFormationParametersDelegate.STACK_REGION;
 
@@ -171,7 +172,7 @@ public class EnvironmentConfigToArgsMapper {
                 args = getCreateAuditLoggingStackCommandArgs(environmentConfig);
                 break;
             case UpdateAllStackTagsCommand.COMMAND_NAME:
-                args = getUpdateAllStackTagsCommandArgs(environmentConfig, stackRegion);
+                args = getUpdateAllStackTagsCommandArgs(environmentConfig, stackRegion, passedArgs);
                 break;
             case CreateAlbLogAthenaDbAndTableCommand.COMMAND_NAME:
                 args = getCreateAlbLogAthenaDbAndTableCommandArg(environmentConfig, stackRegion);
@@ -393,9 +394,17 @@ public class EnvironmentConfigToArgsMapper {
         return args.build();
     }
 
-    private static List<String> getUpdateAllStackTagsCommandArgs(EnvironmentConfig config, String region) {
-        return ArgsBuilder.create()
+    private static List<String> getUpdateAllStackTagsCommandArgs(EnvironmentConfig config, String region, String[] passedArgs) {
+        ArgsBuilder args = ArgsBuilder.create()
             .addOption(STACK_REGION, region)
-            .addAll(getGlobalTags(config)).build();
+            .addAll(getGlobalTags(config));
+
+        Stream.of(UpdateAllStackTagsCommand.USE_CHANGE_SETS_LONG_ARG,
+                UpdateAllStackTagsCommand.PREVIEW_ONLY_LONG_ARG,
+                UpdateAllStackTagsCommand.ALLOW_REPLACEMENTS_LONG_ARG)
+                .filter(flag -> Arrays.asList(passedArgs).contains(flag))
+                .forEach(args::addFlag);
+
+        return args.build();
     }
 }
@@ -62,18 +62,24 @@ public class CerberusAdminClient {
 
     public void restoreMetadata(String baseUrl, String jsonPayload) {
         HttpUrl url = buildUrl(baseUrl, "v1/", "restore-sdb");
-        Response response = execute(url, HttpMethod.PUT, jsonPayload);
-        if (!response.isSuccessful()) {
-            String body;
-            try {
-                body = response.body().string();
-            } catch (IOException e) {
-                body = e.getMessage();
+        // closing the response hands the connection back to the pool for the next request
+        try (Response response = execute(url, HttpMethod.PUT, jsonPayload)) {
+            if (!response.isSuccessful()) {
+                String body;
+                try {
+                    body = response.body().string();
+                } catch (IOException e) {
+                    body = e.getMessage();
+                }
+                throw new RuntimeException("Failed to restore metadata with cms body: " + response + '\n' + body);
             }
-            throw new RuntimeException("Failed to restore metadata with cms body: " + response + '\n' + body);
         }
     }
 
+    /**
+     * Executes a request with the shared http client, so connections and TLS sessions are reused between requests.
+     * The caller must close the response.
+     */
     protected Response execute(final HttpUrl url, final String method, final String json) {
         try {
             Request.Builder requestBuilder = new Request.Builder()
@@ -16,10 +16,18 @@
 
 package com.nike.cerberus.client;
 
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Inject;
+import com.google.inject.Singleton;
 import com.nike.cerberus.ConfigConstants;
 import com.nike.cerberus.domain.environment.CertificateInformation;
 import com.nike.cerberus.store.ConfigStore;
+import com.nike.cerberus.util.EnvUtils;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
 import okhttp3.OkHttpClient;
 import okio.Buffer;
 import org.apache.http.conn.ssl.NoopHostnameVerifier;
@@ -29,16 +37,26 @@ import org.slf4j.LoggerFactory;
 import javax.net.ssl.*;
 import java.io.InputStream;
 import java.net.Proxy;
+import java.nio.charset.StandardCharsets;
 import java.security.GeneralSecurityException;
 import java.security.KeyStore;
 import java.security.cert.Certificate;
 import java.security.cert.CertificateFactory;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
+/**
+ * Creates the OkHttp clients for calling Cerberus. The clients are created once and share one connection pool and
+ * dispatcher, so repeated calls to the same host reuse an open connection instead of doing a new TLS handshake.
+ * Idle connections are kept for CERBERUS_HTTP_KEEP_ALIVE_SECONDS, up to CERBERUS_HTTP_MAX_IDLE_CONNECTIONS of them.
+ */
+@Singleton
 public class HttpClientFactory {
 
     private final Logger log = LoggerFactory.getLogger(getClass());
@@ -46,9 +64,27 @@ public class HttpClientFactory {
     public static final int DEFAULT_TIMEOUT = 60;
     public static final TimeUnit DEFAULT_TIMEOUT_UNIT = TimeUnit.SECONDS;
 
+    public static final String CERBERUS_HTTP_MAX_IDLE_CONNECTIONS = "CERBERUS_HTTP_MAX_IDLE_CONNECTIONS";
+    public static final String CERBERUS_HTTP_KEEP_ALIVE_SECONDS = "CERBERUS_HTTP_KEEP_ALIVE_SECONDS";
+
+    private static final int DEFAULT_MAX_IDLE_CONNECTIONS = 10;
+    private static final int DEFAULT_KEEP_ALIVE_SECONDS = (int) TimeUnit.MINUTES.toSeconds(5);
+
     private final ConfigStore configStore;
     private final Proxy proxy;
 
+    private final Supplier<OkHttpClient> genericClient = Suppliers.memoize(this::createGenericClient);
+
+    /**
+     * The decrypted CA chain of each certificate, by certificate name
+     */
+    private final Map<String, String> caChains = new ConcurrentHashMap<>();
+
+    /**
+     * Clients that trust a set of CA chains, by the fingerprint of the chains
+     */
+    private final Map<String, OkHttpClient> customTruststoreClients = new ConcurrentHashMap<>();
+
     @Inject
     public HttpClientFactory(ConfigStore configStore,
                              Proxy proxy) {
@@ -62,7 +98,41 @@ public class HttpClientFactory {
      * @return Generic default client with timeouts for making manual http calls
      */
     public OkHttpClient getGenericClient() {
+        return genericClient.get();
+    }
+
+    /**
+     * Downloads the CA Chains from S3 for the Cerberus certs and creates a client that can talk to the
+     * individual CMS instances without going through the alb, or manually having to add the chain to the trust store.
+     * The chains are only downloaded once per certificate, and the client is reused for as long as the certificates
+     * stay the same.
+     */
+    public OkHttpClient getGenericClientWithCustomTruststore() {
+        StringBuilder caChainText = new StringBuilder();
+        for (CertificateInformation certInfo : configStore.getCertificationInformationList()) {
+            String certificateName = certInfo.getCertificateName();
+            caChainText.append(caChains.computeIfAbsent(certificateName, name ->
+                    configStore.getCertPart(name, ConfigConstants.CERT_PART_CA)
+                            .orElseThrow(() -> new RuntimeException("Failed to download ca chain"))));
+        }
+
+        String fingerprint = Hashing.sha256().hashString(caChainText, StandardCharsets.UTF_8).toString();
+        return customTruststoreClients.computeIfAbsent(fingerprint, key -> {
+            log.debug("Creating http client that trusts the ca chains with fingerprint: {}", fingerprint);
+            return createClientWithCustomTruststore(caChainText.toString());
+        });
+    }
+
+    private OkHttpClient createGenericClient() {
+        ExecutorService dispatcherExecutor = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), new ThreadFactoryBuilder().setNameFormat("okhttp-dispatcher-%d").setDaemon(true).build());
+
         return new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(
+                        EnvUtils.getIntEnv(CERBERUS_HTTP_MAX_IDLE_CONNECTIONS, DEFAULT_MAX_IDLE_CONNECTIONS),
+                        EnvUtils.getIntEnv(CERBERUS_HTTP_KEEP_ALIVE_SECONDS, DEFAULT_KEEP_ALIVE_SECONDS),
+                        TimeUnit.SECONDS))
+                .dispatcher(new Dispatcher(dispatcherExecutor))
                 .hostnameVerifier(new NoopHostnameVerifier())
                 .proxy(proxy)
                 .connectTimeout(DEFAULT_TIMEOUT, DEFAULT_TIMEOUT_UNIT)
@@ -72,33 +142,21 @@ public class HttpClientFactory {
     }
 
     /**
-     * Downloads the CA Chains from S3 for the Cerberus certs and creates a client that can talk to the
-     * individual CMS instances without going through the alb, or manually having to add the chain to the trust store.
+     * The client shares the connection pool and dispatcher of the generic client, and keeps its ssl context so that
+     * TLS sessions can be resumed
      */
-    public OkHttpClient getGenericClientWithCustomTruststore() {
+    private OkHttpClient createClientWithCustomTruststore(String caChainText) {
         try {
-            List<String> caChains = new LinkedList<>();
-            for (CertificateInformation certInfo : configStore.getCertificationInformationList()) {
-                String certificateName = certInfo.getCertificateName();
-                caChains.add(configStore.getCertPart(certificateName, ConfigConstants.CERT_PART_CA)
-                        .orElseThrow(() -> new RuntimeException("Failed to download ca chain")));
-            }
-
             Buffer buffer = new Buffer();
-            caChains.forEach(buffer::writeUtf8);
+            buffer.writeUtf8(caChainText);
 
             X509TrustManager trustManager = trustManagerForCertificates(buffer.inputStream());
             SSLContext sslContext = SSLContext.getInstance("TLS");
             sslContext.init(null, new TrustManager[] { trustManager }, null);
             SSLSocketFactory sslSocketFactory = sslContext.getSocketFactory();
 
-            return new OkHttpClient.Builder()
-                    .hostnameVerifier(new NoopHostnameVerifier())
-                    .proxy(proxy)
+            return getGenericClient().newBuilder()
                     .sslSocketFactory(sslSocketFactory, trustManager)
-                    .connectTimeout(DEFAULT_TIMEOUT, DEFAULT_TIMEOUT_UNIT)
-                    .writeTimeout(DEFAULT_TIMEOUT, DEFAULT_TIMEOUT_UNIT)
-                    .readTimeout(DEFAULT_TIMEOUT, DEFAULT_TIMEOUT_UNIT)
                     .build();
         } catch (GeneralSecurityException e) {
             throw new RuntimeException("Failed to create ok http client with custom trust manager from ca certs downloaded from S3");
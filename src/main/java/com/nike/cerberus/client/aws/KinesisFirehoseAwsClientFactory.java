@@ -24,17 +24,12 @@ import com.nike.cerberus.service.AwsClientFactory;
 public class KinesisFirehoseAwsClientFactory extends AwsClientFactory<AmazonKinesisFirehoseClient> {
 
     @Override
-    public AmazonKinesisFirehoseClient getClient(Regions region) {
-        if (!clients.containsKey(region)) {
-            clients.put(region, createClient(region));
-        }
-        return clients.get(region);
-    }
-
-    private AmazonKinesisFirehoseClient createClient(Regions region) {
+    protected AmazonKinesisFirehoseClient createClient(Regions region) {
         return (AmazonKinesisFirehoseClient) AmazonKinesisFirehoseClientBuilder.standard()
                 .withRegion(region)
                 .withCredentials(getAWSCredentialsProviderChain())
+                .withClientConfiguration(getClientConfiguration())
+                .withRequestHandlers(getRateLimitingRequestHandler(region))
                 .build();
     }
 
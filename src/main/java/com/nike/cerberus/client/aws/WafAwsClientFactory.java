@@ -24,17 +24,12 @@ import com.nike.cerberus.service.AwsClientFactory;
 public class WafAwsClientFactory extends AwsClientFactory<AWSWAFRegionalClient> {
 
     @Override
-    public AWSWAFRegionalClient getClient(Regions region) {
-        if (!clients.containsKey(region)) {
-            clients.put(region, createClient(region));
-        }
-        return clients.get(region);
-    }
-
-    private AWSWAFRegionalClient createClient(Regions region) {
+    protected AWSWAFRegionalClient createClient(Regions region) {
         return (AWSWAFRegionalClient) AWSWAFRegionalClientBuilder.standard()
                 .withRegion(region)
                 .withCredentials(getAWSCredentialsProviderChain())
+                .withClientConfiguration(getClientConfiguration())
+                .withRequestHandlers(getRateLimitingRequestHandler(region))
                 .build();
     }
 
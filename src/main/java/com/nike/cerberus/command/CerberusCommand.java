@@ -44,6 +44,8 @@ public class CerberusCommand {
 
     public static final String COMMAND_NAME = "cerberus";
 
+    public static final int DEFAULT_MAX_PARALLEL_COMMANDS = 4;
+
     private final Logger log = LoggerFactory.getLogger(getClass());
 
     private EnvironmentConfig environmentConfig;
@@ -92,6 +94,10 @@ public class CerberusCommand {
     @Parameter(names = {"--no-tty"}, description = "Flag to set when no tty is availible, ex: running on a Continuous Integration (CI) server")
     boolean noTty = false;
 
+    @Parameter(names = {"--max-parallel-commands"}, description = "The maximum number of independent commands that " +
+            "composite commands will run at the same time, set to 1 to run the chained commands one at a time")
+    private int maxParallelCommands = DEFAULT_MAX_PARALLEL_COMMANDS;
+
     @ParametersDelegate
     private ProxyDelegate proxyDelegate = new ProxyDelegate();
 
@@ -196,4 +202,8 @@ public class CerberusCommand {
     }
 
     public boolean isSkipDataCheck() { return skipDataCheck; }
+
+    public int getMaxParallelCommands() {
+        return maxParallelCommands;
+    }
 }
@@ -22,25 +22,29 @@ import com.nike.cerberus.command.Command;
 import com.nike.cerberus.operation.Operation;
 import com.nike.cerberus.operation.composite.CreateCmsResourcesForRegionOperation;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import static com.nike.cerberus.command.composite.CreateEnvironmentCommand.COMMAND_NAME;
 import static com.nike.cerberus.domain.cloudformation.CloudFormationParametersDelegate.STACK_REGION;
-import static com.nike.cerberus.domain.cloudformation.CloudFormationParametersDelegate.STACK_REGION_DESCRIPTION;
 
 @Parameters(
     commandNames = {
         COMMAND_NAME
     },
-    commandDescription = "Stands up the resources needed to have CMS running in a given region"
+    commandDescription = "Stands up the resources needed to have CMS running in the given regions, " +
+        "the regions are created concurrently"
 )
 public class CreateCmsResourcesForRegionCommand implements Command {
 
   public static final String COMMAND_NAME = "create-resources-for-secondary-region";
 
-  @Parameter(names = STACK_REGION, description = STACK_REGION_DESCRIPTION, required = true)
-  private String stackRegion;
+  @Parameter(names = STACK_REGION, description = "The region to create the CMS resources in, ex: us-west-2, " +
+      "can be repeated or comma separated to create several regions at once", required = true)
+  private List<String> stackRegions = new ArrayList<>();
 
-  public String getStackRegion() {
-    return stackRegion;
+  public List<String> getStackRegions() {
+    return stackRegions;
   }
 
   @Override
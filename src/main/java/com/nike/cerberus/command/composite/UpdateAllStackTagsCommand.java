@@ -16,6 +16,7 @@
 
 package com.nike.cerberus.command.composite;
 
+import com.beust.jcommander.Parameter;
 import com.beust.jcommander.Parameters;
 import com.beust.jcommander.ParametersDelegate;
 import com.nike.cerberus.command.Command;
@@ -32,6 +33,9 @@ import static com.nike.cerberus.command.composite.UpdateAllStackTagsCommand.COMM
 @Parameters(commandNames = COMMAND_NAME, commandDescription = "Updates all CloudFormation stacks with tags.")
 public class UpdateAllStackTagsCommand implements Command {
     public static final String COMMAND_NAME = "update-all-stack-tags";
+    public static final String USE_CHANGE_SETS_LONG_ARG = "--use-change-sets";
+    public static final String PREVIEW_ONLY_LONG_ARG = "--preview-only";
+    public static final String ALLOW_REPLACEMENTS_LONG_ARG = "--allow-replacements";
 
     @ParametersDelegate
     private CloudFormationParametersDelegate cloudFormationParametersDelegate = new CloudFormationParametersDelegate();
@@ -40,6 +44,30 @@ public class UpdateAllStackTagsCommand implements Command {
         return cloudFormationParametersDelegate;
     }
 
+    @Parameter(names = USE_CHANGE_SETS_LONG_ARG,
+            description = "Create change sets for all the stacks concurrently and preview the changes before executing them")
+    private boolean useChangeSets;
+
+    @Parameter(names = PREVIEW_ONLY_LONG_ARG,
+            description = "Create change sets and print the preview, but delete them instead of executing them")
+    private boolean previewOnly;
+
+    @Parameter(names = ALLOW_REPLACEMENTS_LONG_ARG,
+            description = "Execute the change sets without asking for confirmation when resources would be replaced")
+    private boolean allowReplacements;
+
+    public boolean isUseChangeSets() {
+        return useChangeSets || previewOnly;
+    }
+
+    public boolean isPreviewOnly() {
+        return previewOnly;
+    }
+
+    public boolean isAllowReplacements() {
+        return allowReplacements;
+    }
+
     @Override
     public String getCommandName() {
         return COMMAND_NAME;
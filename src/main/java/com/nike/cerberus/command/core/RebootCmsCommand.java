@@ -16,6 +16,7 @@
 
 package com.nike.cerberus.command.core;
 
+import com.beust.jcommander.Parameter;
 import com.beust.jcommander.Parameters;
 import com.nike.cerberus.command.Command;
 import com.nike.cerberus.operation.Operation;
@@ -28,13 +29,87 @@ import static com.nike.cerberus.command.core.RebootCmsCommand.COMMAND_NAME;
  */
 @Parameters(
         commandNames = COMMAND_NAME,
-        commandDescription = "Performs a safe rolling reboot on instances in the cms ASG, checking that " +
-                "the previous instance is healthy before rebooting the next one."
+        commandDescription = "Performs a safe rolling reboot on instances in the cms ASG in waves, checking that " +
+                "the previous wave is healthy before rebooting the next one."
 )
 public class RebootCmsCommand implements Command {
 
     public static final String COMMAND_NAME = "reboot-cms";
 
+    public static final String MAX_UNAVAILABLE_LONG_ARG = "--max-unavailable";
+
+    public static final String MIN_HEALTHY_PERCENT_LONG_ARG = "--min-healthy-percent";
+
+    public static final String HEALTH_CHECK_INTERVAL_SECONDS_LONG_ARG = "--health-check-interval-seconds";
+
+    public static final String SUCCESSES_BEFORE_REBOOT_LONG_ARG = "--successes-before-reboot";
+
+    public static final String FAILURES_AFTER_REBOOT_LONG_ARG = "--failures-after-reboot";
+
+    public static final String SUCCESSES_AFTER_REBOOT_LONG_ARG = "--successes-after-reboot";
+
+    @Parameter(
+            names = MAX_UNAVAILABLE_LONG_ARG,
+            description = "How many instances to reboot at once, as a count such as 2 or as a percentage of the "
+                    + "stack's minInstances such as 33%"
+    )
+    private String maxUnavailable = "1";
+
+    @Parameter(
+            names = MIN_HEALTHY_PERCENT_LONG_ARG,
+            description = "The percentage of the instances that must stay healthy while a wave reboots, the reboot "
+                    + "is aborted if fewer are healthy"
+    )
+    private int minHealthyPercent = 50;
+
+    @Parameter(
+            names = HEALTH_CHECK_INTERVAL_SECONDS_LONG_ARG,
+            description = "How many seconds to wait between health checks"
+    )
+    private int healthCheckIntervalSeconds = 5;
+
+    @Parameter(
+            names = SUCCESSES_BEFORE_REBOOT_LONG_ARG,
+            description = "How many health checks in a row an instance must pass before it is rebooted"
+    )
+    private int successesBeforeReboot = 1;
+
+    @Parameter(
+            names = FAILURES_AFTER_REBOOT_LONG_ARG,
+            description = "How many health checks in a row an instance must fail to confirm that it is rebooting"
+    )
+    private int failuresAfterReboot = 3;
+
+    @Parameter(
+            names = SUCCESSES_AFTER_REBOOT_LONG_ARG,
+            description = "How many health checks in a row an instance must pass after rebooting to be put back in service"
+    )
+    private int successesAfterReboot = 10;
+
+    public String getMaxUnavailable() {
+        return maxUnavailable;
+    }
+
+    public int getMinHealthyPercent() {
+        return minHealthyPercent;
+    }
+
+    public int getHealthCheckIntervalSeconds() {
+        return healthCheckIntervalSeconds;
+    }
+
+    public int getSuccessesBeforeReboot() {
+        return successesBeforeReboot;
+    }
+
+    public int getFailuresAfterReboot() {
+        return failuresAfterReboot;
+    }
+
+    public int getSuccessesAfterReboot() {
+        return successesAfterReboot;
+    }
+
     @Override
     public String getCommandName() {
         return COMMAND_NAME;
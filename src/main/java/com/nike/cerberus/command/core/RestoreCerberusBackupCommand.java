@@ -60,6 +60,28 @@ public class RestoreCerberusBackupCommand implements Command {
     )
     private String cerberusUrl;
 
+    @Parameter(names = "-fetch-threads",
+            description = "How many backups to download and decrypt at once"
+    )
+    private int fetchThreads = 8;
+
+    @Parameter(names = "-restore-threads",
+            description = "How many backups to send to the cerberus api at once"
+    )
+    private int restoreThreads = 4;
+
+    @Parameter(names = "-max-attempts",
+            description = "How many times to try downloading or restoring each backup before giving up on it"
+    )
+    private int maxAttempts = 5;
+
+    @Parameter(names = "-checkpoint-file",
+            description = "The file that records which backups have been restored, so that an interrupted restore can be "
+                    + "run again and carry on where it stopped. Defaults to a file in the working directory named after "
+                    + "the backup and the url, it is removed once everything is restored"
+    )
+    private String checkpointFile;
+
     public String getS3Region() {
         return s3Region;
     }
@@ -76,6 +98,22 @@ public class RestoreCerberusBackupCommand implements Command {
         return cerberusUrl;
     }
 
+    public int getFetchThreads() {
+        return fetchThreads;
+    }
+
+    public int getRestoreThreads() {
+        return restoreThreads;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public String getCheckpointFile() {
+        return checkpointFile;
+    }
+
     @Override
     public String getCommandName() {
         return COMMAND_NAME;
@@ -28,13 +28,14 @@ import static com.nike.cerberus.command.core.UpdateStackCommand.COMMAND_NAME;
 /**
  * Command for syncing configs between regions.
  */
-@Parameters(commandNames = COMMAND_NAME, commandDescription = "Syncs configs between regions. Recursively copies all files from the source region's config bucket (as defined in --region) to the destination region's config bucket.")
+@Parameters(commandNames = COMMAND_NAME, commandDescription = "Syncs configs between regions. Copies the files that are missing or changed from the source region's config bucket (as defined in --region) to the destination region's config bucket.")
 public class SyncConfigCommand implements Command {
 
     public static final String COMMAND_NAME = "sync-config";
     public static final String DESTINATION_REGION_LONG_ARG = "--destination-region";
     public static final String DRY_LONG_ARG = "--dry";
     public static final String ALL_LONG_ARG = "--all";
+    public static final String DELETE_ORPHANS_LONG_ARG = "--delete-orphans";
 
     @Parameter(names = {DESTINATION_REGION_LONG_ARG}, description = "The destination region")
     private String destinationRegionName;
@@ -45,6 +46,9 @@ public class SyncConfigCommand implements Command {
     @Parameter(names = {ALL_LONG_ARG}, description = "Sync up all regions as defines in the environment data")
     private boolean all;
 
+    @Parameter(names = {DELETE_ORPHANS_LONG_ARG}, description = "Deletes files in the destination buckets that do not exist in the source bucket")
+    private boolean deleteOrphans;
+
     public String getDestinationRegionName() {
         return destinationRegionName;
     }
@@ -57,6 +61,10 @@ public class SyncConfigCommand implements Command {
         return all;
     }
 
+    public boolean isDeleteOrphans() {
+        return deleteOrphans;
+    }
+
     @Override
     public String getCommandName() {
         return COMMAND_NAME;
@@ -45,6 +45,7 @@ public class UpdateStackCommand implements Command {
     public static final String CF_TEMPLATE_FILE_NAME = "--cf-template-file-name";
     public static final String OVERWRITE_TEMPLATE_LONG_ARG = "--overwrite-template";
     public static final String PARAMETER_SHORT_ARG = "-P";
+    public static final String FORCE_LONG_ARG = "--force";
 
     @Parameter(names = {STACK_NAME_LONG_ARG}, required = true, description = "The stack name to update.", converter = StackConverter.class)
     private Stack stack;
@@ -63,6 +64,10 @@ public class UpdateStackCommand implements Command {
             description = "Flag for overwriting existing CloudFormation template")
     private boolean overwriteTemplate;
 
+    @Parameter(names = FORCE_LONG_ARG,
+            description = "Flag for sending the update even if no changes to the template, parameters or tags are detected")
+    private boolean force;
+
     @DynamicParameter(names = PARAMETER_SHORT_ARG, description = "Dynamic parameters for overriding the values for specific parameters in the CloudFormation.")
     private Map<String, String> dynamicParameters = new HashMap<>();
 
@@ -76,6 +81,10 @@ public class UpdateStackCommand implements Command {
         return overwriteTemplate;
     }
 
+    public boolean isForce() {
+        return force;
+    }
+
     public Map<String, String> getDynamicParameters() {
         return dynamicParameters;
     }
@@ -36,9 +36,22 @@ public class CleanUpRdsSnapshotsCommand implements Command {
 
     public static final String DRY_LONG_ARG = "--dry";
 
+    public static final String KEEP_LAST_LONG_ARG = "--keep-last";
+
+    public static final String KEEP_DAILY_LONG_ARG = "--keep-daily";
+
+    public static final String KEEP_WEEKLY_LONG_ARG = "--keep-weekly";
+
+    public static final String KEEP_MONTHLY_LONG_ARG = "--keep-monthly";
+
+    public static final String MIN_PER_REGION_LONG_ARG = "--min-per-region";
+
+    public static final String MAX_DELETES_PER_SECOND_LONG_ARG = "--max-deletes-per-second";
+
     @Parameter(
             names = DAYS_LONG_ARG,
-            description = "How old cross region snapshot copies can be before they are deleted"
+            description = "How old cross region snapshot copies can be before they are deleted, unless another "
+                    + "retention rule keeps them"
     )
     private int days = 14;
 
@@ -56,6 +69,66 @@ public class CleanUpRdsSnapshotsCommand implements Command {
         return dryRun;
     }
 
+    @Parameter(
+            names = KEEP_LAST_LONG_ARG,
+            description = "Always keep this many of the newest snapshot copies in each region"
+    )
+    private int keepLast = 0;
+
+    public int getKeepLast() {
+        return keepLast;
+    }
+
+    @Parameter(
+            names = KEEP_DAILY_LONG_ARG,
+            description = "Keep the newest snapshot copy of each of this many of the most recent days that have one"
+    )
+    private int keepDaily = 0;
+
+    public int getKeepDaily() {
+        return keepDaily;
+    }
+
+    @Parameter(
+            names = KEEP_WEEKLY_LONG_ARG,
+            description = "Keep the newest snapshot copy of each of this many of the most recent weeks that have one"
+    )
+    private int keepWeekly = 0;
+
+    public int getKeepWeekly() {
+        return keepWeekly;
+    }
+
+    @Parameter(
+            names = KEEP_MONTHLY_LONG_ARG,
+            description = "Keep the newest snapshot copy of each of this many of the most recent months that have one"
+    )
+    private int keepMonthly = 0;
+
+    public int getKeepMonthly() {
+        return keepMonthly;
+    }
+
+    @Parameter(
+            names = MIN_PER_REGION_LONG_ARG,
+            description = "Never leave fewer than this many snapshot copies in a region"
+    )
+    private int minPerRegion = 0;
+
+    public int getMinPerRegion() {
+        return minPerRegion;
+    }
+
+    @Parameter(
+            names = MAX_DELETES_PER_SECOND_LONG_ARG,
+            description = "The most snapshot copies to delete per second in each region, regions are cleaned up in parallel"
+    )
+    private double maxDeletesPerSecond = 2;
+
+    public double getMaxDeletesPerSecond() {
+        return maxDeletesPerSecond;
+    }
+
     @Override
     public String getCommandName() {
         return COMMAND_NAME;
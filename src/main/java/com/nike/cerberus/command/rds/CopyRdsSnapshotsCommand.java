@@ -21,6 +21,7 @@ import com.beust.jcommander.Parameters;
 import com.nike.cerberus.command.Command;
 import com.nike.cerberus.operation.Operation;
 import com.nike.cerberus.operation.rds.CopyRdsSnapshotsOperation;
+import com.nike.cerberus.service.RdsSnapshotCopyPlanner;
 
 import static com.nike.cerberus.command.rds.CopyRdsSnapshotsCommand.COMMAND_NAME;
 
@@ -36,6 +37,8 @@ public class CopyRdsSnapshotsCommand implements Command {
 
     public static final String SYNC_LONG_ARG = "--sync";
 
+    public static final String MAX_CONCURRENT_COPIES_LONG_ARG = "--max-concurrent-copies";
+
     @Parameter(
             names = DAYS_LONG_ARG,
             description = "How old a RDS cluster snapshot can be and still be considered for copying, defaults to 1 day"
@@ -56,6 +59,18 @@ public class CopyRdsSnapshotsCommand implements Command {
         return synchronous;
     }
 
+    @Parameter(
+            names = MAX_CONCURRENT_COPIES_LONG_ARG,
+            description = "The most copies to have in progress to each region at once, more copies are started as "
+                    + "earlier ones finish. Defaults to the RDS limit of "
+                    + RdsSnapshotCopyPlanner.DEFAULT_MAX_CONCURRENT_COPIES_PER_REGION
+    )
+    private int maxConcurrentCopies = RdsSnapshotCopyPlanner.DEFAULT_MAX_CONCURRENT_COPIES_PER_REGION;
+
+    public int getMaxConcurrentCopies() {
+        return maxConcurrentCopies;
+    }
+
     @Override
     public String getCommandName() {
         return COMMAND_NAME;
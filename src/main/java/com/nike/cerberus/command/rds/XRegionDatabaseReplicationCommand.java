@@ -27,7 +27,7 @@ import static com.nike.cerberus.command.rds.CopyRdsSnapshotsCommand.COMMAND_NAME
 @Parameters(
         commandNames = COMMAND_NAME,
         commandDescription = "Restores RDS cluster in the target region for this environment from " +
-                "a fresh RDS cluster snapshot created in the source region"
+                "a fresh RDS cluster snapshot created in the source region, or from the latest existing snapshot"
 )
 public class XRegionDatabaseReplicationCommand implements Command {
 
@@ -37,6 +37,10 @@ public class XRegionDatabaseReplicationCommand implements Command {
 
     public static final String SOURCE_REGION_LONG_ARG = "--source-region";
 
+    public static final String USE_LATEST_SNAPSHOT_LONG_ARG = "--use-latest-snapshot";
+
+    public static final String MAX_SNAPSHOT_AGE_HOURS_LONG_ARG = "--max-snapshot-age-hours";
+
     @Parameter(
             names = TARGET_REGION_LONG_ARG,
             description = "The AWS Region to restore RDS cluster snapshot in",
@@ -59,6 +63,28 @@ public class XRegionDatabaseReplicationCommand implements Command {
         return sourceRegion;
     }
 
+    @Parameter(
+            names = USE_LATEST_SNAPSHOT_LONG_ARG,
+            description = "Skip creating a snapshot. An existing copy in the target region is restored if there is one, "
+                    + "otherwise the latest automated snapshot in the source region is copied and restored"
+    )
+    private boolean useLatestSnapshot = false;
+
+    public boolean isUseLatestSnapshot() {
+        return useLatestSnapshot;
+    }
+
+    @Parameter(
+            names = MAX_SNAPSHOT_AGE_HOURS_LONG_ARG,
+            description = "How old an existing snapshot can be and still be used with " + USE_LATEST_SNAPSHOT_LONG_ARG
+                    + ", a fresh snapshot is created if there is no newer one. Defaults to 24 hours"
+    )
+    private int maxSnapshotAgeHours = 24;
+
+    public int getMaxSnapshotAgeHours() {
+        return maxSnapshotAgeHours;
+    }
+
     @Override
     public String getCommandName() {
         return COMMAND_NAME;
@@ -25,6 +25,8 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import static org.apache.commons.lang3.StringUtils.isEmpty;
@@ -66,6 +68,11 @@ public class Stack implements Comparable<Stack> {
 
     private static final String TEMPLATE_PATH_ROOT = "/cloudformation/";
 
+    /**
+     * The templates are classpath resources that do not change while the cli is running, keyed by template path
+     */
+    private static final Map<String, String> TEMPLATE_TEXT_CACHE = new ConcurrentHashMap<>();
+
     private final Logger logger = LoggerFactory.getLogger(Stack.class);
 
 
@@ -96,11 +103,15 @@ public class Stack implements Comparable<Stack> {
     }
 
     /**
-     * Gets the template contents from the file on the classpath.
+     * Gets the template contents from the file on the classpath, each template is only read once.
      *
      * @return Template contents
      */
     public String getTemplateText() {
+        return TEMPLATE_TEXT_CACHE.computeIfAbsent(templatePath, path -> readTemplateText());
+    }
+
+    private String readTemplateText() {
         final InputStream templateStream = getClass().getResourceAsStream(templatePath);
 
         if (templateStream == null) {
@@ -124,8 +135,16 @@ public class Stack implements Comparable<Stack> {
      * @return The generated CloudFormation stack name
      */
     public String getFullName(String environmentName) {
+        return getFullNamePrefix(environmentName) + name;
+    }
+
+    /**
+     * @param environmentName The name of the environment
+     * @return The prefix that the CloudFormation stack names of all the stacks in the environment start with
+     */
+    public static String getFullNamePrefix(String environmentName) {
         String tokenizedEnvName = StringUtils.replaceAll(environmentName, "_", "-");
-        return String.format("%s-cerberus-%s", tokenizedEnvName, name);
+        return String.format("%s-cerberus-", tokenizedEnvName);
     }
 
     public static Stack fromNameAndCfTemplateFilePathStack(final String name, final String cfTemplateFilePath) {
@@ -31,6 +31,12 @@ import java.util.Iterator;
  */
 public final class LoggingConfigurer {
 
+    /**
+     * MDC key for text that is prepended to every log message logged by the current thread, for example the region
+     * that a chained command is running against
+     */
+    public static final String LOG_PREFIX_MDC_KEY = "logPrefix";
+
     private LoggingConfigurer() {
     }
 
@@ -46,7 +52,7 @@ public final class LoggingConfigurer {
 
         PatternLayoutEncoder encoder = new PatternLayoutEncoder();
         encoder.setContext(root.getLoggerContext());
-        encoder.setPattern("%msg%n");
+        encoder.setPattern("%X{" + LOG_PREFIX_MDC_KEY + "}%msg%n");
         encoder.start();
 
         Iterator<Appender<ILoggingEvent>> iterator = root.iteratorForAppenders();
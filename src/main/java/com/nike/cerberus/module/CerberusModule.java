@@ -77,6 +77,7 @@ public class CerberusModule extends AbstractModule {
     public static final String ENV_NAME = "environmentName";
     public static final String CONFIG_REGION = "configRegionName";
     public static final String IS_TTY = "isTty";
+    public static final String MAX_PARALLEL_COMMANDS = "maxParallelCommands";
 
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
@@ -90,12 +91,15 @@ public class CerberusModule extends AbstractModule {
 
     private final boolean isTty;
 
+    private final int maxParallelCommands;
+
     public CerberusModule(CerberusCommand cerberusCommand) {
         proxyDelegate = cerberusCommand.getProxyDelegate();
         environmentName = cerberusCommand.getEnvironmentName();
         configRegionName = cerberusCommand.getConfigRegion();
         environmentConfig = cerberusCommand.getEnvironmentConfig();
         isTty = cerberusCommand.isTty();
+        maxParallelCommands = cerberusCommand.getMaxParallelCommands();
     }
 
     /**
@@ -110,6 +114,7 @@ public class CerberusModule extends AbstractModule {
         bindConstant().annotatedWith(Names.named(IS_TTY)).to(isTty);
         bindConstant().annotatedWith(Names.named(ENV_NAME)).to(environmentName);
         bindConstant().annotatedWith(Names.named(CONFIG_REGION)).to(configRegionName);
+        bindConstant().annotatedWith(Names.named(MAX_PARALLEL_COMMANDS)).to(maxParallelCommands);
 
         // bind the aws client factories
         bindAwsClientFactories();
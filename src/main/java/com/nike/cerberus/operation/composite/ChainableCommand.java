@@ -20,9 +20,12 @@ import com.nike.cerberus.command.Command;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 @SuppressFBWarnings(
         value = "EI_EXPOSE_REP",
@@ -30,6 +33,9 @@ import java.util.Optional;
 )
 /**
  * Wrapper object to represent a chainable command.
+ * <p>
+ * A chainable command that doesn't declare its dependencies depends on the command before it in the chain, so chains
+ * run in order unless commands opt in to running concurrently by declaring exactly what they depend on.
  *
  * @See CompositeOperation
  */
@@ -38,6 +44,8 @@ public class ChainableCommand {
     private Command command;
     private String[] additionalArgs = new String[]{};
     private String stackRegion;
+    private String id;
+    private Set<String> dependencies;
 
 
     public ChainableCommand() {
@@ -69,10 +77,34 @@ public class ChainableCommand {
         return Optional.ofNullable(stackRegion);
     }
 
+    /**
+     * @return The id other commands in the chain use to depend on this command, defaults to the command name
+     */
+    public String getId() {
+        return id != null ? id : command.getCommandName();
+    }
+
+    /**
+     * @return The ids of the commands that must complete before this one can run, or empty if this command depends on
+     * the command before it in the chain
+     */
+    public Optional<Set<String>> getDependencies() {
+        return Optional.ofNullable(dependencies).map(Collections::unmodifiableSet);
+    }
+
+    /**
+     * @return The id to use for a command that is one of several copies of the same chain, one per region
+     */
+    public static String regionalId(String region, String id) {
+        return region + "/" + id;
+    }
+
     public static final class Builder {
         private Command command;
         private List<String> additionalArgs = new LinkedList<>();
         private String stackRegion;
+        private String id;
+        private Set<String> dependencies;
 
         private Builder() {
         }
@@ -107,11 +139,30 @@ public class ChainableCommand {
             return this;
         }
 
+        public Builder withId(String id) {
+            this.id = id;
+            return this;
+        }
+
+        /**
+         * Declares the commands that must complete before this one, calling this with no ids means the command can
+         * run as soon as the chain starts
+         */
+        public Builder withDependencies(String ...ids) {
+            if (dependencies == null) {
+                dependencies = new LinkedHashSet<>();
+            }
+            dependencies.addAll(Arrays.asList(ids));
+            return this;
+        }
+
         public ChainableCommand build() {
             ChainableCommand chainableCommand = new ChainableCommand();
             chainableCommand.command = this.command;
             chainableCommand.additionalArgs = this.additionalArgs.toArray(new String[additionalArgs.size()]);
             chainableCommand.stackRegion = this.stackRegion;
+            chainableCommand.id = this.id;
+            chainableCommand.dependencies = this.dependencies;
             return chainableCommand;
         }
     }
@@ -0,0 +1,331 @@
+/*
+ * Copyright (c) 2019 Nike, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nike.cerberus.operation.composite;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.MDC;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static com.nike.cerberus.logging.LoggingConfigurer.LOG_PREFIX_MDC_KEY;
+
+/**
+ * Runs the commands of a composite operation as a dependency graph, a command is started as soon as everything it
+ * depends on has completed, with at most maxParallelism commands running at once.
+ * <p>
+ * When a command fails the commands that depend on it (directly or transitively) are not run, commands on independent
+ * branches of the graph still run to completion.
+ * <p>
+ * Commands with a stack region have everything they log prefixed with the region, so that chains fanned out across
+ * regions can be told apart.
+ */
+public class ChainableCommandScheduler {
+
+    public enum Status {
+        /** The command ran and completed */
+        SUCCEEDED,
+        /** The command reported that it was not runnable and was skipped */
+        SKIPPED,
+        /** The command threw an exception */
+        FAILED,
+        /** The command was not run because a command it depends on failed */
+        BLOCKED
+    }
+
+    /**
+     * Runs a single command of the chain
+     */
+    @FunctionalInterface
+    public interface StepRunner {
+
+        /**
+         * @return SUCCEEDED if the command ran, or SKIPPED if it was not runnable and could be skipped
+         */
+        Status run(ChainableCommand chainableCommand);
+    }
+
+    private final int maxParallelism;
+
+    public ChainableCommandScheduler(int maxParallelism) {
+        if (maxParallelism < 1) {
+            throw new IllegalArgumentException("The max parallelism must be at least 1 but was: " + maxParallelism);
+        }
+        this.maxParallelism = maxParallelism;
+    }
+
+    /**
+     * Runs the chain and waits for every command that can run to complete
+     *
+     * @return The result of each command, in chain order
+     */
+    public List<StepResult> run(List<ChainableCommand> chain, StepRunner stepRunner) {
+        Map<String, ChainableCommand> commandsById = new LinkedHashMap<>();
+        Map<String, Set<String>> dependenciesById = resolveDependencies(chain, commandsById);
+
+        Map<String, Set<String>> dependentsById = new HashMap<>();
+        Map<String, Integer> pendingDependencyCounts = new HashMap<>();
+        dependenciesById.forEach((id, dependencies) -> {
+            pendingDependencyCounts.put(id, dependencies.size());
+            dependencies.forEach(dependency ->
+                    dependentsById.computeIfAbsent(dependency, key -> new LinkedHashSet<>()).add(id));
+        });
+
+        if (chain.isEmpty()) {
+            return new LinkedList<>();
+        }
+
+        Map<String, StepResult> results = new HashMap<>();
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(maxParallelism, chain.size()),
+                new ThreadFactoryBuilder().setNameFormat("composite-command-%d").setDaemon(true).build());
+        CompletionService<StepResult> completionService = new ExecutorCompletionService<>(executor);
+
+        try {
+            int running = 0;
+            for (String id : commandsById.keySet()) {
+                if (pendingDependencyCounts.get(id) == 0) {
+                    submit(completionService, id, commandsById.get(id), stepRunner);
+                    running++;
+                }
+            }
+
+            while (running > 0) {
+                StepResult result = completionService.take().get();
+                running--;
+                results.put(result.getId(), result);
+
+                if (result.getStatus() == Status.FAILED) {
+                    blockDependents(result.getId(), commandsById, dependentsById, results);
+                    continue;
+                }
+
+                for (String dependent : dependentsById.getOrDefault(result.getId(), new LinkedHashSet<>())) {
+                    int remaining = pendingDependencyCounts.merge(dependent, -1, Integer::sum);
+                    if (remaining == 0 && !results.containsKey(dependent)) {
+                        submit(completionService, dependent, commandsById.get(dependent), stepRunner);
+                        running++;
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for chained commands to complete", e);
+        } catch (ExecutionException e) {
+            // the step tasks catch everything, so this should never happen
+            throw new RuntimeException("Unexpected failure while running chained commands", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        List<StepResult> orderedResults = new LinkedList<>();
+        commandsById.keySet().forEach(id -> orderedResults.add(results.get(id)));
+        return orderedResults;
+    }
+
+    /**
+     * Works out what each command depends on and validates that the graph can be run.
+     * <p>
+     * Chains often run the same command more than once, so repeated ids are numbered (delete-stack, delete-stack#2),
+     * but an id that is repeated can not be depended on because it would be ambiguous.
+     */
+    private Map<String, Set<String>> resolveDependencies(List<ChainableCommand> chain,
+                                                         Map<String, ChainableCommand> commandsById) {
+
+        Map<String, Integer> idCounts = new HashMap<>();
+        Map<String, Set<String>> dependenciesById = new LinkedHashMap<>();
+        String previousId = null;
+        for (ChainableCommand chainableCommand : chain) {
+            int occurrence = idCounts.merge(chainableCommand.getId(), 1, Integer::sum);
+            String id = occurrence == 1 ? chainableCommand.getId() : chainableCommand.getId() + "#" + occurrence;
+            commandsById.put(id, chainableCommand);
+
+            Set<String> dependencies = new LinkedHashSet<>();
+            if (chainableCommand.getDependencies().isPresent()) {
+                dependencies.addAll(chainableCommand.getDependencies().get());
+            } else if (previousId != null) {
+                dependencies.add(previousId);
+            }
+            dependenciesById.put(id, dependencies);
+            previousId = id;
+        }
+
+        for (ChainableCommand chainableCommand : chain) {
+            for (String dependency : chainableCommand.getDependencies().orElse(Collections.emptySet())) {
+                if (!commandsById.containsKey(dependency)) {
+                    throw new IllegalArgumentException(String.format(
+                            "The chained command: %s depends on: %s which is not in the chain",
+                            chainableCommand.getId(), dependency));
+                }
+                if (idCounts.getOrDefault(dependency, 1) > 1) {
+                    throw new IllegalArgumentException(String.format("The chained command: %s depends on: %s " +
+                                    "which is used by more than one command, give the commands unique ids",
+                            chainableCommand.getId(), dependency));
+                }
+            }
+        }
+
+        verifyNoCycles(dependenciesById);
+        return dependenciesById;
+    }
+
+    private void verifyNoCycles(Map<String, Set<String>> dependenciesById) {
+        Map<String, Integer> pendingDependencyCounts = new HashMap<>();
+        Map<String, Set<String>> dependentsById = new HashMap<>();
+        Deque<String> ready = new ArrayDeque<>();
+        dependenciesById.forEach((id, dependencies) -> {
+            pendingDependencyCounts.put(id, dependencies.size());
+            dependencies.forEach(dependency ->
+                    dependentsById.computeIfAbsent(dependency, key -> new LinkedHashSet<>()).add(id));
+            if (dependencies.isEmpty()) {
+                ready.add(id);
+            }
+        });
+
+        int visited = 0;
+        while (!ready.isEmpty()) {
+            String id = ready.poll();
+            visited++;
+            for (String dependent : dependentsById.getOrDefault(id, new LinkedHashSet<>())) {
+                if (pendingDependencyCounts.merge(dependent, -1, Integer::sum) == 0) {
+                    ready.add(dependent);
+                }
+            }
+        }
+
+        if (visited != dependenciesById.size()) {
+            Set<String> cycle = new LinkedHashSet<>();
+            pendingDependencyCounts.forEach((id, count) -> {
+                if (count > 0) {
+                    cycle.add(id);
+                }
+            });
+            throw new IllegalArgumentException("The chained commands have a dependency cycle between: " + cycle);
+        }
+    }
+
+    private void blockDependents(String failedId,
+                                 Map<String, ChainableCommand> commandsById,
+                                 Map<String, Set<String>> dependentsById,
+                                 Map<String, StepResult> results) {
+
+        Deque<String> toBlock = new ArrayDeque<>(dependentsById.getOrDefault(failedId, new LinkedHashSet<>()));
+        while (!toBlock.isEmpty()) {
+            String id = toBlock.poll();
+            if (!results.containsKey(id)) {
+                String region = commandsById.get(id).getStackRegion().orElse(null);
+                results.put(id, new StepResult(id, region, Status.BLOCKED, 0, 0, null));
+                toBlock.addAll(dependentsById.getOrDefault(id, new LinkedHashSet<>()));
+            }
+        }
+    }
+
+    private void submit(CompletionService<StepResult> completionService,
+                        String id,
+                        ChainableCommand chainableCommand,
+                        StepRunner stepRunner) {
+
+        completionService.submit(() -> {
+            String region = chainableCommand.getStackRegion().orElse(null);
+            if (region != null) {
+                MDC.put(LOG_PREFIX_MDC_KEY, "[" + region + "] ");
+            }
+
+            long startedAtMillis = System.currentTimeMillis();
+            long start = System.nanoTime();
+            Status status;
+            Throwable failure = null;
+            try {
+                status = stepRunner.run(chainableCommand);
+            } catch (Throwable t) {
+                status = Status.FAILED;
+                failure = t;
+            } finally {
+                MDC.remove(LOG_PREFIX_MDC_KEY);
+            }
+            long durationInMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            return new StepResult(id, region, status, startedAtMillis, durationInMillis, failure);
+        });
+    }
+
+    /**
+     * The outcome of a single command in the chain
+     */
+    public static class StepResult {
+
+        private final String id;
+        private final String region;
+        private final Status status;
+        private final long startedAtMillis;
+        private final long durationInMillis;
+        private final Throwable failure;
+
+        StepResult(String id, String region, Status status, long startedAtMillis, long durationInMillis, Throwable failure) {
+            this.id = id;
+            this.region = region;
+            this.status = status;
+            this.startedAtMillis = startedAtMillis;
+            this.durationInMillis = durationInMillis;
+            this.failure = failure;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        /**
+         * @return The stack region of the command, if it had one
+         */
+        public Optional<String> getRegion() {
+            return Optional.ofNullable(region);
+        }
+
+        /**
+         * @return When the command started, or 0 if it never ran
+         */
+        public long getStartedAtMillis() {
+            return startedAtMillis;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        public long getDurationInMillis() {
+            return durationInMillis;
+        }
+
+        public Throwable getFailure() {
+            return failure;
+        }
+    }
+}
@@ -20,6 +20,7 @@ import com.beust.jcommander.JCommander;
 import com.google.inject.Inject;
 import com.google.inject.Injector;
 import com.nike.cerberus.cli.EnvironmentConfigToArgsMapper;
+import com.nike.cerberus.command.CerberusCommand;
 import com.nike.cerberus.command.Command;
 import com.nike.cerberus.domain.input.EnvironmentConfig;
 import com.nike.cerberus.operation.Operation;
@@ -27,11 +28,19 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nullable;
+import javax.inject.Named;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import static com.nike.cerberus.module.CerberusModule.MAX_PARALLEL_COMMANDS;
 
 /**
  * This abstract class can be extended by any composite operation to enable chaining of commands
- * together to perform complex operations.
+ * together to perform complex operations. Commands that declare their dependencies can run concurrently,
+ * up to the --max-parallel-commands global option.
  *
  * @param <T> The command that this operation implements
  */
@@ -43,6 +52,8 @@ public abstract class CompositeOperation<T extends Command> implements Operation
 
     protected EnvironmentConfig environmentConfig;
 
+    private int maxParallelCommands = CerberusCommand.DEFAULT_MAX_PARALLEL_COMMANDS;
+
     @Inject
     public void setInjector(Injector injector) {
         this.injector = injector;
@@ -53,6 +64,15 @@ public abstract class CompositeOperation<T extends Command> implements Operation
         this.environmentConfig = environmentConfig;
     }
 
+    @Inject
+    public void setMaxParallelCommands(@Named(MAX_PARALLEL_COMMANDS) int maxParallelCommands) {
+        this.maxParallelCommands = maxParallelCommands;
+    }
+
+    protected int getMaxParallelCommands() {
+        return maxParallelCommands;
+    }
+
     private Operation getOperationInstance(Command command) {
         return injector.getInstance(command.getOperationClass());
     }
@@ -60,59 +80,115 @@ public abstract class CompositeOperation<T extends Command> implements Operation
     /**
      * {@inheritDoc}
      * <p>
-     * Runs all the chained commands in order that are defined in the runnable chained command list,
-     * which gets populated when isRunnable is executed
+     * Runs all the chained commands defined in the chain, each command starts as soon as the commands it depends on
+     * have completed, see {@link ChainableCommandScheduler}
      */
-    @SuppressWarnings("unchecked")
     public void run(T compositeCommand) {
         if (isEnvironmentConfigRequired() && environmentConfig == null) {
             throw new RuntimeException(String.format("The %s command requires that -f or --file must be supplied as a global option with " +
                     "a path to a valid environment yaml", compositeCommand.getCommandName()));
         }
 
-        for (ChainableCommand chainableCommand : getCompositeCommandChain(compositeCommand)) {
-            Command chainedCommand = chainableCommand.getCommand();
-            String[] additionalArgs = chainableCommand.getAdditionalArgs();
+        List<ChainableCommandScheduler.StepResult> results = new ChainableCommandScheduler(maxParallelCommands)
+                .run(getCompositeCommandChain(compositeCommand), this::runChainedCommand);
 
-            // Parse the yaml and additional args to get args to pass to jcommander
-            List<String> argsList = EnvironmentConfigToArgsMapper.getArgsForCommand(
-                    environmentConfig, chainedCommand.getCommandName(), additionalArgs, chainableCommand.getStackRegion());
+        logTimingSummary(results);
 
-            // If the mapper doesn't have a mapping for a given command it will return an empty list
-            // in this case we will just use the args manually provided by the chainable command
-            String[] args;
-            if (argsList.size() > 0) {
-                args = argsList.toArray(new String[argsList.size()]);
+        RuntimeException failure = null;
+        for (ChainableCommandScheduler.StepResult result : results) {
+            if (result.getFailure() == null) {
+                continue;
+            }
+            RuntimeException stepFailure = result.getFailure() instanceof RuntimeException ?
+                    (RuntimeException) result.getFailure() :
+                    new RuntimeException("Failed to execute chained command: " + result.getId(), result.getFailure());
+            if (failure == null) {
+                failure = stepFailure;
             } else {
-                args = additionalArgs;
+                failure.addSuppressed(stepFailure);
             }
+        }
 
-            // Use jcommander to bind the resolved args to the command object
-            new JCommander(chainedCommand).parse(args);
-
-            // Get the instance of the operation from guice
-            Operation operation = getOperationInstance(chainedCommand);
-
-            // If the given command is not runnable return false for the whole chain
-            //noinspection unchecked
-            boolean isRunnable = operation.isRunnable(chainedCommand);
-            if (!isRunnable) {
-                if (!skipOnNotRunnable()) {
-                    throw new RuntimeException("The command: " + chainedCommand.getCommandName() + " is not runnable, stopping...");
-                } else {
-                    log.info("The command {} reports that it is not runnable, skipping...", chainedCommand.getCommandName());
-                    continue;
-                }
-            }
+        if (failure != null) {
+            throw failure;
+        }
+    }
 
-            log.info("Attempting to run command: {}, with args: {}", chainedCommand.getCommandName(), args);
-            try {
-                operation.run(chainedCommand);
-            } catch (Throwable e) {
-                throw new RuntimeException("Failed to execute chained command: " + chainedCommand.getCommandName(), e);
+    @SuppressWarnings("unchecked")
+    private ChainableCommandScheduler.Status runChainedCommand(ChainableCommand chainableCommand) {
+        Command chainedCommand = chainableCommand.getCommand();
+        String[] additionalArgs = chainableCommand.getAdditionalArgs();
+
+        // Parse the yaml and additional args to get args to pass to jcommander
+        List<String> argsList = EnvironmentConfigToArgsMapper.getArgsForCommand(
+                environmentConfig, chainedCommand.getCommandName(), additionalArgs, chainableCommand.getStackRegion());
+
+        // If the mapper doesn't have a mapping for a given command it will return an empty list
+        // in this case we will just use the args manually provided by the chainable command
+        String[] args;
+        if (argsList.size() > 0) {
+            args = argsList.toArray(new String[argsList.size()]);
+        } else {
+            args = additionalArgs;
+        }
+
+        // Use jcommander to bind the resolved args to the command object
+        new JCommander(chainedCommand).parse(args);
+
+        // Get the instance of the operation from guice
+        Operation operation = getOperationInstance(chainedCommand);
+
+        // If the given command is not runnable fail the command, which stops everything that depends on it
+        //noinspection unchecked
+        boolean isRunnable = operation.isRunnable(chainedCommand);
+        if (!isRunnable) {
+            if (!skipOnNotRunnable()) {
+                throw new RuntimeException("The command: " + chainedCommand.getCommandName() + " is not runnable, stopping...");
+            } else {
+                log.info("The command {} reports that it is not runnable, skipping...", chainedCommand.getCommandName());
+                return ChainableCommandScheduler.Status.SKIPPED;
             }
-            log.info("Finished command: {}\n", chainedCommand.getCommandName());
         }
+
+        log.info("Attempting to run command: {}, with args: {}", chainedCommand.getCommandName(), args);
+        try {
+            operation.run(chainedCommand);
+        } catch (Throwable e) {
+            throw new RuntimeException("Failed to execute chained command: " + chainedCommand.getCommandName(), e);
+        }
+        log.info("Finished command: {}\n", chainedCommand.getCommandName());
+        return ChainableCommandScheduler.Status.SUCCEEDED;
+    }
+
+    private void logTimingSummary(List<ChainableCommandScheduler.StepResult> results) {
+        if (results.size() < 2) {
+            return;
+        }
+
+        int idWidth = results.stream().mapToInt(result -> result.getId().length()).max().orElse(0);
+        StringBuilder summary = new StringBuilder("Chained command summary:");
+        results.forEach(result -> summary.append(String.format("%n  %-" + idWidth + "s  %-9s  %6.1fs",
+                result.getId(), result.getStatus(), result.getDurationInMillis() / 1000.0)));
+
+        // when the chain was fanned out across regions also report how each region did as a whole
+        Map<String, List<ChainableCommandScheduler.StepResult>> resultsByRegion = results.stream()
+                .filter(result -> result.getRegion().isPresent())
+                .collect(Collectors.groupingBy(result -> result.getRegion().get(), TreeMap::new, Collectors.toList()));
+        if (resultsByRegion.size() > 1) {
+            summary.append(String.format("%nRegion summary:"));
+            resultsByRegion.forEach((region, regionResults) -> {
+                Map<ChainableCommandScheduler.Status, Long> counts = regionResults.stream()
+                        .collect(Collectors.groupingBy(ChainableCommandScheduler.StepResult::getStatus,
+                                () -> new EnumMap<>(ChainableCommandScheduler.Status.class), Collectors.counting()));
+                long start = regionResults.stream().filter(result -> result.getStartedAtMillis() > 0)
+                        .mapToLong(ChainableCommandScheduler.StepResult::getStartedAtMillis).min().orElse(0);
+                long end = regionResults.stream().filter(result -> result.getStartedAtMillis() > 0)
+                        .mapToLong(result -> result.getStartedAtMillis() + result.getDurationInMillis()).max().orElse(0);
+                summary.append(String.format("%n  %-15s  %6.1fs  %s", region, (end - start) / 1000.0, counts));
+            });
+        }
+
+        log.info(summary.toString());
     }
 
     /**
@@ -16,31 +16,79 @@
 
 package com.nike.cerberus.operation.composite;
 
-import com.google.common.collect.Lists;
+import com.nike.cerberus.command.Command;
 import com.nike.cerberus.command.cms.CreateCmsAsgCommand;
 import com.nike.cerberus.command.cms.UpdateCmsConfigCommand;
 import com.nike.cerberus.command.composite.CreateCmsResourcesForRegionCommand;
 import com.nike.cerberus.command.core.*;
 import com.nike.cerberus.command.rds.CreateDatabaseCommand;
 
+import java.util.LinkedList;
 import java.util.List;
 
+import static com.nike.cerberus.operation.composite.ChainableCommand.regionalId;
+
+/**
+ * Creates the CMS resources for each of the requested regions, the regions are isolated from each other so each
+ * region's chain runs concurrently. The CMS config is shared, so it is updated once all the regional databases exist.
+ */
 public class CreateCmsResourcesForRegionOperation extends CompositeOperation<CreateCmsResourcesForRegionCommand> {
 
   @Override
   protected List<ChainableCommand> getCompositeCommandChain(CreateCmsResourcesForRegionCommand compositeCommand) {
-    return Lists.newArrayList(
-      new ChainableCommand(new CreateVpcCommand(), compositeCommand.getStackRegion()),
-      new ChainableCommand(new CreateSecurityGroupsCommand(), compositeCommand.getStackRegion()),
-      new ChainableCommand(new WhitelistCidrForVpcAccessCommand(), compositeCommand.getStackRegion()),
-      new ChainableCommand(new CreateDatabaseCommand(), compositeCommand.getStackRegion()),
-      new ChainableCommand(new CreateLoadBalancerCommand(), compositeCommand.getStackRegion()),
-      new ChainableCommand(new UpdateCmsConfigCommand(), compositeCommand.getStackRegion()),
-      new ChainableCommand(new CreateInstanceProfileCommand(), compositeCommand.getStackRegion()),
-      new ChainableCommand(new CreateCmsAsgCommand(), compositeCommand.getStackRegion()),
-      new ChainableCommand(new CreateAlbLogAthenaDbAndTableCommand(), compositeCommand.getStackRegion()),
-      new ChainableCommand(new CreateRoute53Command(), compositeCommand.getStackRegion())
-    );
+    List<ChainableCommand> chain = new LinkedList<>();
+    List<String> databases = new LinkedList<>();
+
+    for (String region : compositeCommand.getStackRegions()) {
+      chain.add(regional(new CreateVpcCommand(), region));
+      chain.add(regional(new CreateSecurityGroupsCommand(), region, CreateVpcCommand.COMMAND_NAME));
+      chain.add(regional(new WhitelistCidrForVpcAccessCommand(), region, CreateSecurityGroupsCommand.COMMAND_NAME));
+      chain.add(regional(new CreateDatabaseCommand(), region, CreateSecurityGroupsCommand.COMMAND_NAME));
+      chain.add(regional(new CreateLoadBalancerCommand(), region, CreateSecurityGroupsCommand.COMMAND_NAME));
+      chain.add(regional(new CreateInstanceProfileCommand(), region));
+      databases.add(regionalId(region, CreateDatabaseCommand.COMMAND_NAME));
+    }
+
+    // the CMS config lists the database for every region, so it is written once after all of them have been created
+    chain.add(ChainableCommand.Builder.create()
+            .withCommand(new UpdateCmsConfigCommand())
+            .withStackRegion(compositeCommand.getStackRegions().get(0))
+            .withDependencies(databases.toArray(new String[0]))
+            .build());
+
+    for (String region : compositeCommand.getStackRegions()) {
+      chain.add(ChainableCommand.Builder.create()
+              .withCommand(new CreateCmsAsgCommand())
+              .withStackRegion(region)
+              .withId(regionalId(region, CreateCmsAsgCommand.COMMAND_NAME))
+              .withDependencies(
+                      UpdateCmsConfigCommand.COMMAND_NAME,
+                      regionalId(region, CreateInstanceProfileCommand.COMMAND_NAME),
+                      regionalId(region, CreateLoadBalancerCommand.COMMAND_NAME),
+                      regionalId(region, WhitelistCidrForVpcAccessCommand.COMMAND_NAME))
+              .build());
+      chain.add(regional(new CreateAlbLogAthenaDbAndTableCommand(), region, CreateCmsAsgCommand.COMMAND_NAME));
+      chain.add(regional(new CreateRoute53Command(), region, CreateCmsAsgCommand.COMMAND_NAME));
+    }
+
+    return chain;
+  }
+
+  /**
+   * Creates a chained command for the region that depends on the given commands in the same region
+   */
+  private ChainableCommand regional(Command command, String region, String... sameRegionDependencies) {
+    String[] dependencies = new String[sameRegionDependencies.length];
+    for (int i = 0; i < sameRegionDependencies.length; i++) {
+      dependencies[i] = regionalId(region, sameRegionDependencies[i]);
+    }
+
+    return ChainableCommand.Builder.create()
+            .withCommand(command)
+            .withStackRegion(region)
+            .withId(regionalId(region, command.getCommandName()))
+            .withDependencies(dependencies)
+            .build();
   }
 
   /**
@@ -42,57 +42,84 @@ public class CreateEnvironmentOperation extends CompositeOperation<CreateEnviron
     protected List<ChainableCommand> getCompositeCommandChain(CreateEnvironmentCommand compositeCommand) {
         List<ChainableCommand> list = Lists.newArrayList(
             // Create the Base Cloud Formation Stack that creates S3 Buckets, Iam Roles and KMS keys needed for config
-            new ChainableCommand(new InitializeEnvironmentCommand()),
+            ChainableCommand.Builder.create().withCommand(new InitializeEnvironmentCommand())
+                    .withDependencies().build(),
 
             // Create the VPC Cloud Formation Stack that Cerberus will use
-            new ChainableCommand(new CreateVpcCommand()),
+            ChainableCommand.Builder.create().withCommand(new CreateVpcCommand())
+                    .withDependencies(InitializeEnvironmentCommand.COMMAND_NAME).build(),
 
             // Create the Security Group Cloud Formation Stack
-            new ChainableCommand(new CreateSecurityGroupsCommand()),
+            ChainableCommand.Builder.create().withCommand(new CreateSecurityGroupsCommand())
+                    .withDependencies(CreateVpcCommand.COMMAND_NAME).build(),
 
             // Add the vpc whitelist CIDRs
-            new ChainableCommand(new WhitelistCidrForVpcAccessCommand()),
+            ChainableCommand.Builder.create().withCommand(new WhitelistCidrForVpcAccessCommand())
+                    .withDependencies(CreateSecurityGroupsCommand.COMMAND_NAME).build(),
 
             // Create the RDS Database Cloud Formation Stack
-            new ChainableCommand(new CreateDatabaseCommand())
+            ChainableCommand.Builder.create().withCommand(new CreateDatabaseCommand())
+                    .withDependencies(CreateSecurityGroupsCommand.COMMAND_NAME).build()
         );
 
         // Generate the PKCS private and public keys as well as the x509 certificates needed to enable https
+        String certificateFilesReady = InitializeEnvironmentCommand.COMMAND_NAME;
         if (environmentConfig.isGenerateKeysAndCerts()) {
-            list.add(new ChainableCommand(new GenerateCertificateFilesCommand()));
+            list.add(ChainableCommand.Builder.create().withCommand(new GenerateCertificateFilesCommand())
+                    .withDependencies(InitializeEnvironmentCommand.COMMAND_NAME).build());
+            certificateFilesReady = GenerateCertificateFilesCommand.COMMAND_NAME;
         }
 
+        // The audit logging stack, athena table and flag only depend on the base stack and each other
+        List<String> cmsConfigDependencies = Lists.newArrayList(
+                CreateDatabaseCommand.COMMAND_NAME, UploadCertificateFilesCommand.COMMAND_NAME);
         if (environmentConfig.isEnableAuditLogs()) {
-            list.add(new ChainableCommand(new CreateAuditLoggingStackCommand()));
-            list.add(new ChainableCommand(new CreateAuditAthenaDbAndTableCommand()));
-            list.add(new ChainableCommand(new EnableAuditLoggingCommand()));
+            list.add(ChainableCommand.Builder.create().withCommand(new CreateAuditLoggingStackCommand())
+                    .withDependencies(InitializeEnvironmentCommand.COMMAND_NAME).build());
+            list.add(ChainableCommand.Builder.create().withCommand(new CreateAuditAthenaDbAndTableCommand())
+                    .withDependencies(CreateAuditLoggingStackCommand.COMMAND_NAME).build());
+            list.add(ChainableCommand.Builder.create().withCommand(new EnableAuditLoggingCommand())
+                    .withDependencies(CreateAuditAthenaDbAndTableCommand.COMMAND_NAME).build());
+            cmsConfigDependencies.add(EnableAuditLoggingCommand.COMMAND_NAME);
         }
 
         list.addAll(Lists.newArrayList(
             // Upload the certs and keys to S3 and the IAM Cert Management service so that the ALB and CMS can use the certs
-            new ChainableCommand(new UploadCertificateFilesCommand()),
+            ChainableCommand.Builder.create().withCommand(new UploadCertificateFilesCommand())
+                    .withDependencies(certificateFilesReady).build(),
 
             // Create the Application Load Balancer Cloud Formation Stack
-            new ChainableCommand(new CreateLoadBalancerCommand()),
+            ChainableCommand.Builder.create().withCommand(new CreateLoadBalancerCommand())
+                    .withDependencies(CreateSecurityGroupsCommand.COMMAND_NAME, UploadCertificateFilesCommand.COMMAND_NAME)
+                    .build(),
 
             // Generate the CMS config with org specific setting and first secrets encrypt,
             // Upload to S3 for CMS to download at service start
-            new ChainableCommand(new CreateCmsConfigCommand()),
+            ChainableCommand.Builder.create().withCommand(new CreateCmsConfigCommand())
+                    .withDependencies(cmsConfigDependencies.toArray(new String[0])).build(),
 
             // Generate the instance profile to use when creating the CMS Cluster
-            new ChainableCommand(new CreateInstanceProfileCommand()),
+            ChainableCommand.Builder.create().withCommand(new CreateInstanceProfileCommand())
+                    .withDependencies(InitializeEnvironmentCommand.COMMAND_NAME).build(),
 
             // Create the CMS Cluster Stack
-            new ChainableCommand(new CreateCmsAsgCommand()),
+            ChainableCommand.Builder.create().withCommand(new CreateCmsAsgCommand())
+                    .withDependencies(CreateInstanceProfileCommand.COMMAND_NAME,
+                            CreateLoadBalancerCommand.COMMAND_NAME,
+                            CreateCmsConfigCommand.COMMAND_NAME)
+                    .build(),
 
             // Create the Web Application Fire wall stack
-            new ChainableCommand(new CreateWafCommand()),
+            ChainableCommand.Builder.create().withCommand(new CreateWafCommand())
+                    .withDependencies(CreateLoadBalancerCommand.COMMAND_NAME).build(),
 
             // Create the Route 53 DNS Record Stack for origin and the load balancer
-            new ChainableCommand(new CreateRoute53Command()),
+            ChainableCommand.Builder.create().withCommand(new CreateRoute53Command())
+                    .withDependencies(CreateLoadBalancerCommand.COMMAND_NAME).build(),
 
             // Create the outer most domain name record that will point to the origin record
-            new ChainableCommand(new CreateEdgeDomainRecordCommand())
+            ChainableCommand.Builder.create().withCommand(new CreateEdgeDomainRecordCommand())
+                    .withDependencies(CreateRoute53Command.COMMAND_NAME).build()
         ));
 
         return list;
@@ -16,14 +16,15 @@
 
 package com.nike.cerberus.operation.composite;
 
-import com.google.common.collect.ImmutableList;
 import com.nike.cerberus.command.composite.DeleteEnvironmentCommand;
 import com.nike.cerberus.command.core.DeleteStackCommand;
+import com.nike.cerberus.domain.environment.Stack;
 import com.nike.cerberus.service.ConsoleService;
 import com.nike.cerberus.store.ConfigStore;
 
 import javax.inject.Inject;
 import javax.inject.Named;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -54,38 +55,44 @@ public class DeleteEnvironmentOperation extends CompositeOperation<DeleteEnviron
         List<ChainableCommand> chainableCommandList = new LinkedList<>();
 
         // todo delete the kms keys generated by cms
-        ImmutableList.of(
-                ROUTE53,
-                WAF,
-                CMS,
-                LOAD_BALANCER,
-                DATABASE,
-                SECURITY_GROUPS,
-                VPC
-        ).forEach(stack ->
-                chainableCommandList.add(ChainableCommand.Builder.create()
-                        .withCommand(new DeleteStackCommand())
-                        .withOption(DeleteStackCommand.STACK_NAME_LONG_ARG, stack.getName())
-                        .build())
-        );
-
-        chainableCommandList.add(ChainableCommand.Builder.create()
-                .withCommand(new DeleteStackCommand())
-                .withAdditionalArg(DeleteStackCommand.STACK_NAME_LONG_ARG)
-                .withAdditionalArg(IAM_ROLES.getName())
-                .build());
-
+        // each stack is deleted once the stacks that use its resources are gone
+        chainableCommandList.add(deleteStack(ROUTE53));
+        chainableCommandList.add(deleteStack(WAF));
+        chainableCommandList.add(deleteStack(CMS));
+        chainableCommandList.add(deleteStack(LOAD_BALANCER, ROUTE53, WAF, CMS));
+        chainableCommandList.add(deleteStack(DATABASE, CMS));
+        chainableCommandList.add(deleteStack(SECURITY_GROUPS, LOAD_BALANCER, DATABASE));
+        chainableCommandList.add(deleteStack(VPC, SECURITY_GROUPS));
+        chainableCommandList.add(deleteStack(IAM_ROLES, CMS));
+
+        // the config stacks hold the environment data so they go last, the regions are independent of each other
         configStore.getConfigEnabledRegions().forEach(region -> {
             chainableCommandList.add(ChainableCommand.Builder.create()
                     .withCommand(new DeleteStackCommand())
                     .withOption(DeleteStackCommand.STACK_NAME_LONG_ARG, CONFIG.getName())
                     .withOption(STACK_REGION, region.getName())
+                    .withStackRegion(region.getName())
+                    .withId(ChainableCommand.regionalId(region.getName(), getDeleteStackId(CONFIG)))
+                    .withDependencies(getDeleteStackId(VPC), getDeleteStackId(IAM_ROLES))
                     .build());
         });
 
         return chainableCommandList;
     }
 
+    private ChainableCommand deleteStack(Stack stack, Stack... dependsOn) {
+        return ChainableCommand.Builder.create()
+                .withCommand(new DeleteStackCommand())
+                .withOption(DeleteStackCommand.STACK_NAME_LONG_ARG, stack.getName())
+                .withId(getDeleteStackId(stack))
+                .withDependencies(Arrays.stream(dependsOn).map(this::getDeleteStackId).toArray(String[]::new))
+                .build();
+    }
+
+    private String getDeleteStackId(Stack stack) {
+        return DeleteStackCommand.COMMAND_NAME + " " + stack.getName();
+    }
+
     @Override
     public boolean isRunnable(DeleteEnvironmentCommand command) {
         try {
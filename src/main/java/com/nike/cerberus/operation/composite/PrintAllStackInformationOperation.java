@@ -36,6 +36,8 @@ public class PrintAllStackInformationOperation extends CompositeOperation<PrintA
             commandList.add(
                     ChainableCommand.Builder.create()
                             .withCommand(new PrintStackInfoCommand())
+                            .withId(PrintStackInfoCommand.COMMAND_NAME + " " + stack.getName())
+                            .withDependencies()
                             .withAdditionalArg(PrintStackInfoCommand.STACK_NAME_LONG_ARG)
                             .withAdditionalArg(stack.toString())
                             .build()
@@ -16,18 +16,117 @@
 
 package com.nike.cerberus.operation.composite;
 
+import com.amazonaws.regions.Regions;
 import com.nike.cerberus.command.composite.UpdateAllStackTagsCommand;
 import com.nike.cerberus.command.core.UpdateStackTagsCommand;
+import com.nike.cerberus.domain.cloudformation.CloudFormationParametersDelegate;
 import com.nike.cerberus.domain.environment.Stack;
+import com.nike.cerberus.operation.core.UpdateStackTagsOperation;
+import com.nike.cerberus.service.CloudFormationService;
+import com.nike.cerberus.service.ConsoleService;
+import com.nike.cerberus.service.StackChangeSet;
+import com.nike.cerberus.service.StackChangeSetPipeline;
+import com.nike.cerberus.store.ConfigStore;
 
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.stream.Collectors;
+
+import static com.nike.cerberus.module.CerberusModule.ENV_NAME;
 
 /**
  * Operation class for UpdateAllStackTagsCommand
  */
 public class UpdateAllStackTagsOperation extends CompositeOperation<UpdateAllStackTagsCommand> {
 
+    private final CloudFormationService cloudFormationService;
+
+    private final UpdateStackTagsOperation updateStackTagsOperation;
+
+    private final ConsoleService consoleService;
+
+    private final ConfigStore configStore;
+
+    private final String environmentName;
+
+    @Inject
+    public UpdateAllStackTagsOperation(CloudFormationService cloudFormationService,
+                                       UpdateStackTagsOperation updateStackTagsOperation,
+                                       ConsoleService consoleService,
+                                       ConfigStore configStore,
+                                       @Named(ENV_NAME) String environmentName) {
+
+        this.cloudFormationService = cloudFormationService;
+        this.updateStackTagsOperation = updateStackTagsOperation;
+        this.consoleService = consoleService;
+        this.configStore = configStore;
+        this.environmentName = environmentName;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * With --use-change-sets the stacks are updated through change sets instead of the chained update-stack-tags
+     * commands, so that all the changes can be previewed, and replacements confirmed, before any stack is updated.
+     */
+    @Override
+    public void run(UpdateAllStackTagsCommand command) {
+        if (!command.isUseChangeSets()) {
+            super.run(command);
+            return;
+        }
+
+        CloudFormationParametersDelegate cloudFormationParameters = command.getCloudFormationParametersDelegate();
+        Regions region = cloudFormationParameters.getStackRegion().orElse(configStore.getPrimaryRegion());
+
+        List<StackChangeSetPipeline.Request> requests = new LinkedList<>();
+        for (Stack stack : Stack.ALL_STACKS) {
+            if (!cloudFormationService.isStackPresent(region, stack.getFullName(environmentName))) {
+                log.info("Skipping {}, the stack does not exist in {}", stack.getName(), region.getName());
+                continue;
+            }
+            // same as update-stack-tags, the deployed template and parameters are reused and only the tags change
+            requests.add(new StackChangeSetPipeline.Request(
+                    region,
+                    stack,
+                    updateStackTagsOperation.getStackParameters(region, stack),
+                    true,
+                    false,
+                    updateStackTagsOperation.getStackTags(region, stack,
+                            new HashMap<>(cloudFormationParameters.getTags()), false)));
+        }
+
+        StackChangeSetPipeline pipeline = new StackChangeSetPipeline(cloudFormationService, getMaxParallelCommands());
+        List<StackChangeSet> changeSets = pipeline.createChangeSets(requests);
+        log.info(StackChangeSetPipeline.summarize(changeSets));
+
+        if (command.isPreviewOnly() || changeSets.stream().noneMatch(StackChangeSet::hasChanges)) {
+            pipeline.deleteChangeSets(changeSets);
+            return;
+        }
+
+        int replacements = StackChangeSetPipeline.getReplacements(changeSets).values().stream().mapToInt(List::size).sum();
+        if (replacements > 0 && !command.isAllowReplacements()) {
+            try {
+                consoleService.askUserToProceed(String.format(
+                        "The change sets would replace %d resource(s), see the preview above.", replacements),
+                        ConsoleService.DefaultAction.NO);
+            } catch (RuntimeException e) {
+                pipeline.deleteChangeSets(changeSets);
+                throw e;
+            }
+        }
+
+        // change sets without changes can not be executed
+        pipeline.deleteChangeSets(changeSets.stream()
+                .filter(changeSet -> !changeSet.hasChanges())
+                .collect(Collectors.toList()));
+        pipeline.executeChangeSets(changeSets);
+    }
+
     /**
      * {@inheritDoc}
      * @param compositeCommand
@@ -40,6 +139,8 @@ public class UpdateAllStackTagsOperation extends CompositeOperation<UpdateAllSta
             commandList.add(
                     ChainableCommand.Builder.create()
                             .withCommand(new UpdateStackTagsCommand())
+                            .withId(UpdateStackTagsCommand.COMMAND_NAME + " " + stack.getName())
+                            .withDependencies()
                             .withAdditionalArg(UpdateStackTagsCommand.STACK_NAME_LONG_ARG)
                             .withAdditionalArg(stack.toString())
                             .withAdditionalArg(compositeCommand.getCloudFormationParametersDelegate().getArgs())
@@ -20,6 +20,8 @@ import com.amazonaws.services.ec2.AmazonEC2;
 import com.amazonaws.services.ec2.AmazonEC2Client;
 import com.amazonaws.services.ec2.model.*;
 import com.github.tomaslanger.chalk.Chalk;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Inject;
 import com.nike.cerberus.client.HttpClientFactory;
 import com.nike.cerberus.command.core.RebootCmsCommand;
@@ -29,10 +31,11 @@ import com.nike.cerberus.service.AutoScalingService;
 import com.nike.cerberus.service.AwsClientFactory;
 import com.nike.cerberus.service.CloudFormationService;
 import com.nike.cerberus.service.Ec2Service;
+import com.nike.cerberus.service.HealthProbe;
+import com.nike.cerberus.service.HealthProbeService;
 import com.nike.cerberus.store.ConfigStore;
+import com.nike.cerberus.util.ReadinessProbe;
 import com.nike.vault.client.http.HttpStatus;
-import okhttp3.Call;
-import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
 import org.apache.commons.lang3.StringUtils;
@@ -42,8 +45,17 @@ import org.slf4j.LoggerFactory;
 
 import javax.inject.Named;
 import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 import static com.nike.cerberus.module.CerberusModule.ENV_NAME;
 import static com.nike.cerberus.service.CloudFormationService.MIN_INSTANCES_STACK_PARAMETER_KEY;
@@ -52,7 +64,7 @@ import static com.nike.cerberus.service.Ec2Service.INSTANCE_STATE_FILTER_NAME;
 import static com.nike.cerberus.service.Ec2Service.INSTANCE_STATE_RUNNING_FILTER_VALUE;
 
 /**
- * Reboots all EC2 instances in the given cluster.
+ * Reboots all EC2 instances in the given cluster, a wave of instances at a time.
  */
 public class RebootCmsOperation implements Operation<RebootCmsCommand> {
 
@@ -62,15 +74,12 @@ public class RebootCmsOperation implements Operation<RebootCmsCommand> {
 
     private final static Integer CMS_HEALTH_CHECK_PORT = 8443;
 
-    private final static int NUM_SECS_BETWEEN_HEALTH_CHECKS = 5;
-
-    private final static int EXPECTED_NUM_SUCCESSES_AFTER_REBOOT = 10;
-
-    private final static int EXPECTED_NUM_FAILURES_AFTER_REBOOT = 3;
-
-    private final static int EXPECTED_NUM_SUCCESSES_BEFORE_REBOOT = 1;
+    /**
+     * How long to wait for an instance to pass or fail its health checks before giving up on the reboot
+     */
+    private final static Duration HEALTH_CHECK_TIMEOUT = Duration.ofMinutes(30);
 
-    private final static int HEALTH_CHECK_FAILED_CODE = -1;
+    private final static Duration CONNECT_TIMEOUT = Duration.ofSeconds(1);
 
     private final ConfigStore configStore;
 
@@ -86,6 +95,8 @@ public class RebootCmsOperation implements Operation<RebootCmsCommand> {
 
     private final HttpClientFactory httpClientFactory;
 
+    private final HealthProbeService healthProbeService;
+
     @Inject
     public RebootCmsOperation(ConfigStore configStore,
                               CloudFormationService cloudFormationService,
@@ -93,7 +104,8 @@ public class RebootCmsOperation implements Operation<RebootCmsCommand> {
                               AutoScalingService autoScalingService,
                               @Named(ENV_NAME) String environmentName,
                               AwsClientFactory<AmazonEC2Client> amazonS3ClientFactory,
-                              HttpClientFactory httpClientFactory) {
+                              HttpClientFactory httpClientFactory,
+                              HealthProbeService healthProbeService) {
 
         this.configStore = configStore;
         this.cloudFormationService = cloudFormationService;
@@ -102,6 +114,7 @@ public class RebootCmsOperation implements Operation<RebootCmsCommand> {
         this.environmentName = environmentName;
         this.ec2Client = amazonS3ClientFactory.getClient(configStore.getPrimaryRegion());
         this.httpClientFactory = httpClientFactory;
+        this.healthProbeService = healthProbeService;
     }
 
     @Override
@@ -133,11 +146,16 @@ public class RebootCmsOperation implements Operation<RebootCmsCommand> {
             final Filter isRunningFilter = new Filter(INSTANCE_STATE_FILTER_NAME).withValues(INSTANCE_STATE_RUNNING_FILTER_VALUE);
             final List<Instance> instances = ec2Service.getInstancesByTag(EC2_ASG_GROUP_NAME_TAG_KEY, autoScalingGroupId, isRunningFilter);
             log.debug("Found {} instances by tag: '{}:{}'", instances.size(), EC2_ASG_GROUP_NAME_TAG_KEY, autoScalingGroupId);
+            tempCidrToWhitelist.ifPresent(cidr -> awaitWhitelistPropagation(instances));
+
+            final int waveSize = getWaveSize(command.getMaxUnavailable(), minInstances, instances.size(),
+                    command.getMinHealthyPercent());
+            log.info("Rebooting {} instances in waves of {}", instances.size(), waveSize);
 
             log.info("Temporarily decreasing min instances for ASG: {}", autoScalingGroupId);
-            autoScalingService.updateMinInstancesForAutoScalingGroup(autoScalingGroupId, minInstances - 1);
+            autoScalingService.updateMinInstancesForAutoScalingGroup(autoScalingGroupId, Math.max(0, minInstances - waveSize));
 
-            instances.forEach(instance -> rebootInstance(autoScalingGroupId, instance));
+            rebootInWaves(autoScalingGroupId, instances, waveSize, command);
 
             log.info("Increasing min instances for ASG: {}", autoScalingGroupId);
             autoScalingService.updateMinInstancesForAutoScalingGroup(autoScalingGroupId, minInstances);
@@ -150,107 +168,189 @@ public class RebootCmsOperation implements Operation<RebootCmsCommand> {
     }
 
     /**
-     * Reboot an instance and make sure it comes back healthy
+     * Works out how many instances to reboot at once
+     *
+     * @param maxUnavailable A count, or a percentage of minInstances ending in %
+     * @param minInstances The min instances of the cms stack
+     * @param instanceCount How many instances there are to reboot
+     * @param minHealthyPercent The percentage of the instances that must stay healthy during a wave
+     * @return The wave size, at least 1 and small enough to leave the healthy floor when there is more than one instance
      */
-    private void rebootInstance(String autoScalingGroupId, Instance instance) {
-
-        final String healthCheckUrl = String.format(CMS_HEALTH_CHECK_URL, instance.getPublicIpAddress(), CMS_HEALTH_CHECK_PORT);
-
-        log.info("Checking that instance health check is reachable...");
-        waitForHealthCheckStatusCode(healthCheckUrl, HttpStatus.OK, EXPECTED_NUM_SUCCESSES_BEFORE_REBOOT);
-
-        final String instanceId = instance.getInstanceId();
-        log.info("Setting instance state to standby: {}", instanceId);
-        autoScalingService.setInstanceStateToStandby(autoScalingGroupId, instanceId);
-
-        log.info("Rebooting instance: {}", instanceId);
-        ec2Service.rebootEc2Instance(instanceId);
-
-        // wait for health check fail to confirm box reboot
-        log.info("Waiting for health check failure to confirm reboot...");
-        waitForHealthCheckStatusCode(healthCheckUrl, HEALTH_CHECK_FAILED_CODE, EXPECTED_NUM_FAILURES_AFTER_REBOOT);
+    protected static int getWaveSize(String maxUnavailable, int minInstances, int instanceCount, int minHealthyPercent) {
+        String value = StringUtils.trim(maxUnavailable);
+        int requested;
+        try {
+            requested = StringUtils.endsWith(value, "%") ?
+                    (int) Math.floor(minInstances * Integer.parseInt(StringUtils.removeEnd(value, "%").trim()) / 100.0) :
+                    Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Max unavailable must be a count or a percentage but was: " + maxUnavailable, e);
+        }
 
-        log.info("Waiting for health check to pass again to confirm instance is healthy...");
-        waitForHealthCheckStatusCode(healthCheckUrl, HttpStatus.OK, EXPECTED_NUM_SUCCESSES_AFTER_REBOOT);
+        int minHealthy = getMinHealthy(instanceCount, minHealthyPercent);
+        return Math.max(1, Math.min(requested, instanceCount - minHealthy));
+    }
 
-        log.info("Setting instance state to in-service: {}", instanceId);
-        autoScalingService.setInstanceStateToInService(autoScalingGroupId, instanceId);
+    private static int getMinHealthy(int instanceCount, int minHealthyPercent) {
+        return (int) Math.ceil(instanceCount * minHealthyPercent / 100.0);
     }
 
     /**
-     * Poll the health check 'n' times, looking for the given response
-     *
-     * @param healthCheckUrl                  - The health check URL
-     * @param numConsecutiveResponsesExpected - The number of times to poll health check
+     * Reboots the instances a wave at a time. The instances in a wave are rebooted at the same time, while one health
+     * probe watches the whole cluster to confirm each reboot and to make sure that enough of the rest stays up.
      */
-    private void waitForHealthCheckStatusCode(final String healthCheckUrl,
-                                              final long expectedStatusCode,
-                                              final int numConsecutiveResponsesExpected) {
+    private void rebootInWaves(String autoScalingGroupId, List<Instance> instances, int waveSize, RebootCmsCommand command) {
+        final int minHealthy = Math.min(getMinHealthy(instances.size(), command.getMinHealthyPercent()),
+                instances.size() - waveSize);
+        log.info("At least {} of {} instances must stay healthy while a wave reboots", minHealthy, instances.size());
+        final List<List<Instance>> waves = Lists.partition(instances, waveSize);
+        final List<String> healthCheckUrls = instances.stream().map(this::getHealthCheckUrl).collect(Collectors.toList());
+
+        ExecutorService executor = Executors.newCachedThreadPool(
+                new ThreadFactoryBuilder().setNameFormat("cms-reboot-%d").setDaemon(true).build());
+        try (HealthProbe probe = healthProbeService.watch(healthCheckUrls, HttpStatus.OK,
+                Duration.ofSeconds(command.getHealthCheckIntervalSeconds()))) {
+
+            awaitHealthCheck(probe, healthCheckUrls, HealthProbe.allChecked(), "every instance to be health checked");
+
+            for (int i = 0; i < waves.size(); i++) {
+                final List<Instance> wave = waves.get(i);
+                final List<String> rest = instances.stream()
+                        .filter(instance -> !wave.contains(instance))
+                        .map(this::getHealthCheckUrl)
+                        .collect(Collectors.toList());
+
+                int healthy = probe.countHealthy(rest);
+                if (healthy < minHealthy) {
+                    throw new RuntimeException(String.format("Aborting before wave %d of %d, only %d of %d instances are " +
+                            "healthy and at least %d must be", i + 1, waves.size(), healthy, instances.size(), minHealthy));
+                }
 
-        int responseCode;
-        int consecutiveResponses = 0;
+                log.info("Rebooting wave {} of {}: {}", i + 1, waves.size(),
+                        wave.stream().map(Instance::getInstanceId).collect(Collectors.joining(", ")));
+                List<Future<?>> reboots = wave.stream()
+                        .map(instance -> executor.submit(() -> rebootInstance(autoScalingGroupId, instance, probe, command)))
+                        .collect(Collectors.toList());
 
-        OkHttpClient healthCheckClient = httpClientFactory.getGenericClientWithCustomTruststore();
+                watchWave(reboots, rest, minHealthy, instances.size(), probe, command);
+                log.info("Wave {} of {} is healthy", i + 1, waves.size());
+            }
 
-        while (consecutiveResponses < numConsecutiveResponsesExpected) {
+            probe.getTargets().forEach(target -> log.info("Health check {}", target));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
 
-            responseCode = executeHealthCheck(healthCheckUrl, healthCheckClient);
+    /**
+     * Waits for the reboots in a wave to finish, checking the health of the rest of the cluster every health check
+     * interval and aborting the wave if too few of the instances are healthy
+     */
+    private void watchWave(List<Future<?>> reboots,
+                           List<String> rest,
+                           int minHealthy,
+                           int instanceCount,
+                           HealthProbe probe,
+                           RebootCmsCommand command) {
 
-            if (responseCode == expectedStatusCode) {
-                consecutiveResponses++;
-            } else if (consecutiveResponses > 0) {
-                final String message = Chalk.on("Instance health check did not repeat response code ({}), {} times").red().bold().toString();
-                log.debug(message, expectedStatusCode, numConsecutiveResponsesExpected);
-                consecutiveResponses = 0;
+        try {
+            while (!reboots.stream().allMatch(Future::isDone)) {
+                TimeUnit.SECONDS.sleep(command.getHealthCheckIntervalSeconds());
+                int healthy = probe.countHealthy(rest);
+                if (healthy < minHealthy) {
+                    reboots.forEach(reboot -> reboot.cancel(true));
+                    throw new RuntimeException(String.format("Aborting wave, only %d of the %d instances that are not " +
+                            "rebooting are healthy and at least %d of all %d must be, the instances in this wave may need " +
+                            "to be set to 'in-service' on the auto scaling group", healthy, rest.size(), minHealthy, instanceCount));
+                }
             }
 
-            try {
-                TimeUnit.SECONDS.sleep(NUM_SECS_BETWEEN_HEALTH_CHECKS);
-            } catch (InterruptedException ie) {
-                log.error(Chalk.on("Timeout between health checks has been interrupted").red().bold().toString());
-                return;
+            for (Future<?> reboot : reboots) {
+                reboot.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while rebooting instances", e);
+        } catch (ExecutionException e) {
+            reboots.forEach(reboot -> reboot.cancel(true));
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
             }
+            throw new RuntimeException(e.getCause());
         }
     }
 
+    private String getHealthCheckUrl(Instance instance) {
+        return String.format(CMS_HEALTH_CHECK_URL, instance.getPublicIpAddress(), CMS_HEALTH_CHECK_PORT);
+    }
+
     /**
-     * Execute the given health check
-     *
-     * @param healthCheckUrl - Name of that EC2 instance belongs to
-     * @return - Response code of the health check
+     * Reboot an instance and make sure it comes back healthy
      */
-    private int executeHealthCheck(String healthCheckUrl, OkHttpClient okHttpClient) {
+    private void rebootInstance(String autoScalingGroupId,
+                                Instance instance,
+                                HealthProbe probe,
+                                RebootCmsCommand command) {
 
-        final Request request = new Request.Builder()
-                .url(healthCheckUrl)
-                .get()
-                .build();
+        final String healthCheckUrl = getHealthCheckUrl(instance);
+        final String instanceId = instance.getInstanceId();
 
-        log.debug("Performing to the following request: {}", request);
+        log.info("Checking that instance health check is reachable: {}", instanceId);
+        awaitHealthCheck(probe, Collections.singleton(healthCheckUrl),
+                HealthProbe.healthy(healthCheckUrl, command.getSuccessesBeforeReboot()),
+                "instance to be healthy before reboot: " + instanceId);
 
-        final Call healthCheckCall = okHttpClient.newCall(request);
+        log.info("Setting instance state to standby: {}", instanceId);
+        autoScalingService.setInstanceStateToStandby(autoScalingGroupId, instanceId);
 
-        try {
-            final Response response = healthCheckCall.execute();
-            log.debug("Health check returned status: {}, URL: {}", response.code(), healthCheckUrl);
-            return response.code();
-        } catch (Exception e) {
-            if (StringUtils.contains(e.getMessage(), "PKIX path building failed")) {
-                throw new RuntimeException("Failed to validate certificate, this shouldn't happen because we use a" +
-                        " custom trust store for this call using the ca chain you uploaded, so you ca chain might be malformed");
-            }
-            final String message = Chalk.on("Health check failed, Cause: \"{}\", URL: {}").red().toString();
-            log.debug(message, e.getMessage(), healthCheckUrl);
-        }
+        log.info("Rebooting instance: {}", instanceId);
+        ec2Service.rebootEc2Instance(instanceId);
+
+        // wait for health check fail to confirm box reboot
+        log.info("Waiting for health check failure to confirm reboot: {}", instanceId);
+        awaitHealthCheck(probe, Collections.singleton(healthCheckUrl),
+                HealthProbe.unhealthy(healthCheckUrl, command.getFailuresAfterReboot()),
+                "health check to fail after reboot: " + instanceId);
 
-        return HEALTH_CHECK_FAILED_CODE;
+        log.info("Waiting for health check to pass again to confirm instance is healthy: {}", instanceId);
+        awaitHealthCheck(probe, Collections.singleton(healthCheckUrl),
+                HealthProbe.healthy(healthCheckUrl, command.getSuccessesAfterReboot()),
+                "instance to be healthy after reboot: " + instanceId);
+
+        log.info("Setting instance state to in-service: {}", instanceId);
+        autoScalingService.setInstanceStateToInService(autoScalingGroupId, instanceId);
+    }
+
+    /**
+     * Waits for the health checks to meet the condition, failing fast if the certificate of one of the urls being
+     * waited on could not be validated since retrying will not fix that. Other urls are left to their own waits, so
+     * one bad instance does not abort the reboots of the rest of its wave.
+     */
+    private void awaitHealthCheck(HealthProbe probe,
+                                  Collection<String> urls,
+                                  Predicate<HealthProbe> condition,
+                                  String description) {
+
+        boolean met = probe.await(p -> {
+            urls.stream().map(p::getTarget).forEach(target -> {
+                if (StringUtils.contains(target.getLastError(), "PKIX path building failed")) {
+                    throw new RuntimeException("Failed to validate certificate, this shouldn't happen because we use a" +
+                            " custom trust store for this call using the ca chain you uploaded, so you ca chain might be malformed");
+                }
+            });
+            return condition.test(p);
+        }, HEALTH_CHECK_TIMEOUT);
+
+        if (!met) {
+            throw new RuntimeException(String.format("Timed out after %d minutes waiting for %s",
+                    HEALTH_CHECK_TIMEOUT.toMinutes(), description));
+        }
     }
 
     private String getCurrentPublicIpAddress() {
         String whatIsMyIp = "http://checkip.amazonaws.com";
-        try {
-            Response response = httpClientFactory.getGenericClient()
-                    .newCall(new Request.Builder().url(whatIsMyIp).get().build()).execute();
+        try (Response response = httpClientFactory.getGenericClient()
+                .newCall(new Request.Builder().url(whatIsMyIp).get().build()).execute()) {
             return StringUtils.trim(response.body().string());
         } catch (IOException e) {
             throw new RuntimeException("Failed to lookup current ip", e);
@@ -267,9 +367,28 @@ public class RebootCmsOperation implements Operation<RebootCmsCommand> {
         if (!stackParameters.containsKey(MIN_INSTANCES_STACK_PARAMETER_KEY)) {
             log.error("Could not find parameter 'minInstances' on stack: {}", stackId);
             return false;
-        } else {
-            return true;
         }
+
+        boolean isRunnable = true;
+        try {
+            getWaveSize(command.getMaxUnavailable(), 1, 1, 0);
+        } catch (IllegalArgumentException e) {
+            log.error(e.getMessage());
+            isRunnable = false;
+        }
+
+        if (command.getMinHealthyPercent() < 0 || command.getMinHealthyPercent() > 100) {
+            log.error("The min healthy percent must be between 0 and 100");
+            isRunnable = false;
+        }
+
+        if (command.getHealthCheckIntervalSeconds() < 1 || command.getSuccessesBeforeReboot() < 1
+                || command.getFailuresAfterReboot() < 1 || command.getSuccessesAfterReboot() < 1) {
+            log.error("The health check interval and thresholds must be at least 1");
+            isRunnable = false;
+        }
+
+        return isRunnable;
     }
 
     /**
@@ -321,12 +440,26 @@ public class RebootCmsOperation implements Operation<RebootCmsCommand> {
                 .withGroupId(vpcIngressWhitelistSecurityGroup)
                 .withIpPermissions(getIpPermissionForCidr(cidr));
         ec2Client.authorizeSecurityGroupIngress(ingressRequest);
+    }
 
-        try {
-            log.info("Sleeping for 1 minute to let sg changes be eventually consistent");
-            Thread.sleep(TimeUnit.MINUTES.toMillis(1));
-        } catch (InterruptedException e) {
-            log.error("Failed to wait for sg to be eventually consistent");
+    /**
+     * Waits for the sg change that whitelisted the current ip to be eventually consistent, by waiting until the health
+     * check port of one of the instances accepts a connection. Carries on if it does not, since the health checks will
+     * still wait for the instances to be reachable.
+     */
+    private void awaitWhitelistPropagation(List<Instance> instances) {
+        ReadinessProbe.waitFor("sg changes to be eventually consistent", () -> instances.stream()
+                .anyMatch(instance -> canConnect(instance.getPublicIpAddress(), CMS_HEALTH_CHECK_PORT)))
+                .await();
+    }
+
+    private boolean canConnect(String host, int port) {
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(host, port), (int) CONNECT_TIMEOUT.toMillis());
+            return true;
+        } catch (IOException e) {
+            log.debug("Could not connect to {}:{}, cause: {}", host, port, e.getMessage());
+            return false;
         }
     }
 
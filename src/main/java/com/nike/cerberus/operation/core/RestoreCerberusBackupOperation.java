@@ -27,20 +27,25 @@ import com.amazonaws.services.s3.model.KMSEncryptionMaterialsProvider;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.tomaslanger.chalk.Chalk;
+import com.google.common.hash.Hashing;
 import com.google.inject.Inject;
 import com.nike.cerberus.client.CerberusAdminClient;
 import com.nike.cerberus.client.CerberusAdminClientFactory;
 import com.nike.cerberus.command.core.RestoreCerberusBackupCommand;
 import com.nike.cerberus.module.CerberusModule;
 import com.nike.cerberus.operation.Operation;
+import com.nike.cerberus.service.BackupRestorePipeline;
 import com.nike.cerberus.service.ConsoleService;
+import com.nike.cerberus.service.RestoreCheckpoint;
 import com.nike.cerberus.service.S3StoreService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.inject.Named;
 import java.io.IOException;
-import java.text.DecimalFormat;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
@@ -56,6 +61,8 @@ public class RestoreCerberusBackupOperation implements Operation<RestoreCerberus
 
     private static final String CERBERUS_BACKUP_METADATA_JSON_FILE_KEY = "cerberus-backup-metadata.json";
 
+    private static final long INITIAL_RETRY_BACKOFF_MILLIS = 500;
+
     private static final String CERBERUS_BACKUP_API_URL = "cerberusUrl";
     private static final String CERBERUS_BACKUP_DATE = "backupDate";
     private static final String CERBERUS_BACKUP_SDB_COUNT = "numberOfSdbs";
@@ -111,21 +118,42 @@ public class RestoreCerberusBackupOperation implements Operation<RestoreCerberus
         validateRestore(s3EncryptionStoreService, command);
 
         keys.remove(CERBERUS_BACKUP_METADATA_JSON_FILE_KEY);
-        Double i = 0d;
-        DecimalFormat df = new DecimalFormat("#.##");
-        for (String sdbBackupKey : keys) {
-            try {
-                Double percent = i / keys.size() * 100;
-                System.out.print(String.format("Restoring backups %s%% complete\r", df.format(percent)));
-                String sdbBackupJson = getDecryptedJson(sdbBackupKey, s3EncryptionStoreService);
-                cerberusAdminClient.restoreMetadata(command.getCerberusUrl(), sdbBackupJson);
-            } catch (Throwable t) {
-                logger.error("Failed to process backup json for {}", Chalk.on(sdbBackupKey).red().toString(), t);
-            }
-            i++;
+        BackupRestorePipeline pipeline = new BackupRestorePipeline(command.getFetchThreads(),
+                command.getRestoreThreads(), command.getMaxAttempts(), INITIAL_RETRY_BACKOFF_MILLIS);
+        RestoreCheckpoint checkpoint = RestoreCheckpoint.open(getCheckpointPath(command));
+        BackupRestorePipeline.Result result;
+        try {
+            result = pipeline.run(keys,
+                    sdbBackupKey -> getDecryptedJson(sdbBackupKey, s3EncryptionStoreService),
+                    sdbBackupJson -> cerberusAdminClient.restoreMetadata(command.getCerberusUrl(), sdbBackupJson),
+                    checkpoint);
+        } finally {
+            checkpoint.close();
+        }
+
+        if (result.getFailures().isEmpty()) {
+            checkpoint.delete();
+            logger.info("Restore complete, restored {} SDBs, {} were already restored", result.getRestored(), result.getSkipped());
+        } else {
+            result.getFailures().keySet().stream().sorted().forEach(sdbBackupKey ->
+                    logger.error("Failed to process backup json for {}", Chalk.on(sdbBackupKey).red().toString()));
+            logger.error("Restore finished with {} failures, run the command again to retry them, progress is saved in {}",
+                    result.getFailures().size(), checkpoint.getPath());
+        }
+    }
+
+    /**
+     * @return The checkpoint file from the command, or one in the working directory that is named after the backup
+     * and the url, so that running the same restore again finds it
+     */
+    private Path getCheckpointPath(RestoreCerberusBackupCommand command) {
+        if (command.getCheckpointFile() != null) {
+            return Paths.get(command.getCheckpointFile());
         }
-        System.out.print("Restoring backups 100% complete\n");
-        logger.info("Restore complete");
+        String restoreId = Hashing.sha256().hashString(String.join("\n",
+                command.getS3Bucket(), command.getS3Prefix(), command.getCerberusUrl()), StandardCharsets.UTF_8)
+                .toString().substring(0, 12);
+        return Paths.get("cerberus-restore-" + restoreId + ".checkpoint");
     }
 
     /**
@@ -227,14 +255,21 @@ public class RestoreCerberusBackupOperation implements Operation<RestoreCerberus
     private String getDecryptedJson(String sdbBackupKey, S3StoreService s3StoreService) {
         Optional<String> json = s3StoreService.get(sdbBackupKey);
         if (!json.isPresent()) {
-            logger.error("Failed to get json from S3 for {}", sdbBackupKey);
+            throw new RuntimeException("Failed to get json from S3 for " + sdbBackupKey);
         }
         return json.get();
     }
 
     @Override
     public boolean isRunnable(RestoreCerberusBackupCommand command) {
-        return true;
+        boolean isRunnable = true;
+
+        if (command.getFetchThreads() < 1 || command.getRestoreThreads() < 1 || command.getMaxAttempts() < 1) {
+            logger.error("The fetch threads, restore threads and max attempts must be at least 1");
+            isRunnable = false;
+        }
+
+        return isRunnable;
     }
 
 }
@@ -20,6 +20,7 @@ import com.amazonaws.regions.Regions;
 import com.nike.cerberus.command.core.SyncConfigCommand;
 import com.nike.cerberus.operation.Operation;
 import com.nike.cerberus.store.ConfigStore;
+import com.nike.cerberus.store.ConfigSyncPlan;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -28,7 +29,6 @@ import javax.inject.Named;
 
 import java.util.Arrays;
 import java.util.List;
-import java.util.stream.Collectors;
 
 import static com.nike.cerberus.module.CerberusModule.CONFIG_REGION;
 
@@ -54,20 +54,28 @@ public class SyncConfigOperation implements Operation<SyncConfigCommand> {
     public void run(SyncConfigCommand command) {
         List<Regions> destinationRegions = command.isAll() ? configStore.getSyncDestinationRegions() : Arrays.asList(Regions.fromName(command.getDestinationRegionName()));
 
-        if (command.isDryrun()){
-            logger.info("Destination buckets: {}", destinationRegions.stream()
-                    .map(region -> configStore.getConfigBucketForRegion(region)).collect(Collectors.joining(", ")));
-            logger.info("Files to be copied over:");
-            configStore.listKeys().forEach(key -> logger.info(key));
-        } else {
-            for (Regions region: destinationRegions) {
-                logger.info("Destination bucket: {}", configStore.getConfigBucketForRegion(region));
-                configStore.sync(region);
+        for (Regions region: destinationRegions) {
+            logger.info("Destination bucket: {}", configStore.getConfigBucketForRegion(region));
+            ConfigSyncPlan plan = configStore.planSync(region);
+            logPlan(plan, command.isDeleteOrphans());
+
+            if (plan.isInSync()) {
+                logger.info("Config bucket in region: {} is already in sync", region);
+            } else if (!command.isDryrun()) {
+                configStore.sync(plan, command.isDeleteOrphans());
             }
         }
 
     }
 
+    private void logPlan(ConfigSyncPlan plan, boolean deleteOrphans) {
+        logger.info("Sync plan for region: {}, {} to copy, {} unchanged, {} orphaned",
+                plan.getDestinationRegion(), plan.getKeysToCopy().size(), plan.getUnchangedKeyCount(), plan.getOrphanedKeys().size());
+        plan.getMissingKeys().forEach(key -> logger.info("  + {}", key));
+        plan.getChangedKeys().forEach(key -> logger.info("  ~ {}", key));
+        plan.getOrphanedKeys().forEach(key -> logger.info("  {} {}", deleteOrphans ? "-" : "?", key));
+    }
+
     @Override
     public boolean isRunnable(SyncConfigCommand command) {
         boolean isRunnable = true;
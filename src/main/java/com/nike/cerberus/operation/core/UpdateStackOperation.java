@@ -23,6 +23,7 @@ import com.nike.cerberus.domain.environment.Stack;
 import com.nike.cerberus.operation.Operation;
 import com.nike.cerberus.service.CloudFormationService;
 import com.nike.cerberus.service.Ec2UserDataService;
+import com.nike.cerberus.service.StackUpdatePlan;
 import com.nike.cerberus.store.ConfigStore;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
@@ -71,6 +72,7 @@ public class UpdateStackOperation implements Operation<UpdateStackCommand> {
 
         Map<String, String> parameters = cloudFormationService.getStackParameters(region, stackId);
         Map<String, String> tags = command.getCloudFormationParametersDelegate().getTags();
+        boolean force = command.isForce();
 
         // only some stacks need user data
         if (workingStack.isNeedsUserData()) {
@@ -85,6 +87,8 @@ public class UpdateStackOperation implements Operation<UpdateStackCommand> {
                     .findFirst();
 
             dbPasswordOverwrite.ifPresent(configStore::storeCmsDatabasePassword);
+            // the password is a NoEcho parameter, so a new one can not be detected by the plan
+            force = force || dbPasswordOverwrite.isPresent();
 
             parameters.put("cmsDbMasterPassword", dbPasswordOverwrite.orElseGet(() ->
                     configStore.getCmsDatabasePassword().orElseThrow(() ->
@@ -97,6 +101,15 @@ public class UpdateStackOperation implements Operation<UpdateStackCommand> {
         }
         parameters.putAll(command.getDynamicParameters());
 
+        StackUpdatePlan plan = cloudFormationService.planStackUpdate(region, workingStack, parameters,
+                command.isOverwriteTemplate(), tags);
+        logger.info("Plan: {}", plan);
+        if (!plan.hasChanges() && !force) {
+            logger.info("No changes detected for '{}', skipping the update. Use {} to update anyway.",
+                    stackId, UpdateStackCommand.FORCE_LONG_ARG);
+            return;
+        }
+
         try {
             logger.info("Starting the update for '{}' overwrite:{}.", stackId, command.isOverwriteTemplate());
 
@@ -22,6 +22,7 @@ import com.nike.cerberus.command.core.UpdateStackTagsCommand;
 import com.nike.cerberus.domain.environment.Stack;
 import com.nike.cerberus.operation.Operation;
 import com.nike.cerberus.service.CloudFormationService;
+import com.nike.cerberus.service.StackUpdatePlan;
 import com.nike.cerberus.store.ConfigStore;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
@@ -61,16 +62,16 @@ public class UpdateStackTagsOperation implements Operation<UpdateStackTagsComman
                 .orElse(configStore.getPrimaryRegion());
 
         String stackId = command.getStack().getFullName(environmentName);
-        Map<String, String> parameters = cloudFormationService.getStackParameters(region, stackId);
-        Map<String, String> tags = command.getCloudFormationParametersDelegate().getTags();
-        if (!command.isOverwriteTags()){
-            Map<String, String> existingTags = cloudFormationService.getStackTags(region, stackId);
-            existingTags.forEach((k, v) -> tags.merge(k, v, (o, n)->o));
-        }
-        if (Stack.DATABASE.equals(command.getStack())) {
-            parameters.put("cmsDbMasterPassword", configStore.getCmsDatabasePassword().orElseThrow(() ->
-                            new RuntimeException("Unable to find current database password, add new one " +
-                                    "with -PcmsDbMasterPassword=xxxxxxx")));
+        Map<String, String> parameters = getStackParameters(region, command.getStack());
+        Map<String, String> tags = getStackTags(region, command.getStack(),
+                command.getCloudFormationParametersDelegate().getTags(), command.isOverwriteTags());
+
+        StackUpdatePlan plan = cloudFormationService.planStackUpdate(region, command.getStack(), parameters,
+                false, tags);
+        logger.info("Plan: {}", plan);
+        if (!plan.hasChanges()) {
+            logger.info("Tags for '{}' are already up to date, skipping the update.", stackId);
+            return;
         }
 
         try {
@@ -96,6 +97,30 @@ public class UpdateStackTagsOperation implements Operation<UpdateStackTagsComman
         }
     }
 
+    /**
+     * @return the deployed parameters of the stack, which are sent back unchanged when only updating the tags
+     */
+    public Map<String, String> getStackParameters(Regions region, Stack stack) {
+        Map<String, String> parameters = cloudFormationService.getStackParameters(region, stack.getFullName(environmentName));
+        if (Stack.DATABASE.equals(stack)) {
+            parameters.put("cmsDbMasterPassword", configStore.getCmsDatabasePassword().orElseThrow(() ->
+                            new RuntimeException("Unable to find current database password, add new one " +
+                                    "with -PcmsDbMasterPassword=xxxxxxx")));
+        }
+        return parameters;
+    }
+
+    /**
+     * @return the given tags, merged with the deployed tags of the stack unless they are being overwritten
+     */
+    public Map<String, String> getStackTags(Regions region, Stack stack, Map<String, String> tags, boolean overwriteTags) {
+        if (!overwriteTags){
+            Map<String, String> existingTags = cloudFormationService.getStackTags(region, stack.getFullName(environmentName));
+            existingTags.forEach((k, v) -> tags.merge(k, v, (o, n)->o));
+        }
+        return tags;
+    }
+
     @Override
     public boolean isRunnable(UpdateStackTagsCommand command) {
         boolean isRunnable = true;
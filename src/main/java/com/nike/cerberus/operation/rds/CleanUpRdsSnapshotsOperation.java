@@ -17,11 +17,14 @@
 package com.nike.cerberus.operation.rds;
 
 import com.amazonaws.regions.Regions;
+import com.amazonaws.services.rds.model.DBClusterSnapshot;
 import com.nike.cerberus.command.rds.CleanUpRdsSnapshotsCommand;
 import com.nike.cerberus.domain.environment.Stack;
 import com.nike.cerberus.operation.Operation;
 import com.nike.cerberus.service.CloudFormationService;
 import com.nike.cerberus.service.RdsService;
+import com.nike.cerberus.service.RdsSnapshotQuery;
+import com.nike.cerberus.service.RdsSnapshotRetentionPolicy;
 import com.nike.cerberus.store.ConfigStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -30,8 +33,13 @@ import javax.inject.Inject;
 import javax.inject.Named;
 
 import java.time.Instant;
+import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 import static com.nike.cerberus.module.CerberusModule.ENV_NAME;
 
@@ -59,29 +67,92 @@ public class CleanUpRdsSnapshotsOperation implements Operation<CleanUpRdsSnapsho
     @Override
     public void run(CleanUpRdsSnapshotsCommand command) {
         Regions primaryRegion = configStore.getPrimaryRegion();
-        Date oldestAcceptableSnapshotCreationDate = Date.from(Instant.now().minus(command.getDays(), ChronoUnit.DAYS));
+        RdsSnapshotRetentionPolicy policy = RdsSnapshotRetentionPolicy.keepNewerThanDays(command.getDays())
+                .withKeepLast(command.getKeepLast())
+                .withKeepDaily(command.getKeepDaily())
+                .withKeepWeekly(command.getKeepWeekly())
+                .withKeepMonthly(command.getKeepMonthly())
+                .withMinimumToKeep(command.getMinPerRegion());
+        log.info("Retention policy: {}", policy);
 
+        // Copies keep the identifier of the cluster they were taken of, so copies of a cluster that has since been
+        // restored or replaced would be missed by a cluster filter. Let rds filter by manual snapshots only, copies
+        // made by this cli are manual snapshots, and match the environment by the snapshot name.
+        String cmsDbClusterIdentifier = cloudFormationService.getPhysicalResourceId(primaryRegion,
+                Stack.DATABASE.getFullName(environmentName), RdsService.CMS_DB_CLUSTER_LOGICAL_ID).orElse(null);
+
+        Instant now = Instant.now();
+        Map<Regions, RdsSnapshotRetentionPolicy.Decision> decisions = new LinkedHashMap<>();
         // Go through each config region
         configStore.getConfigEnabledRegions().stream()
                 // and filter out the primary region, because rds cleans those snapshots automatically
                 .filter(region -> ! region.equals(primaryRegion))
-                .forEach(region ->
-                        // in each region list all the snapshots
-                        rdsService.getDbSnapshots(region).stream()
-                        // filter out snapshots that are not from the cluster / environment under question
-                        // and are older than the number of acceptable days
-                        .filter(snapshot ->
-                                rdsService.wasSnapshotGeneratedFromCmsCluster(snapshot) &&
-                                snapshot.getSnapshotCreateTime().before(oldestAcceptableSnapshotCreationDate))
-                        // delete the snapshots
-                        .forEach(snapshot -> {
-                            if (command.isDryRun()) {
-                                log.info("snapshot: {} with creation date: {} in region: {}",
-                                        snapshot.getDBClusterSnapshotIdentifier(), snapshot.getSnapshotCreateTime(), region);
-                            } else {
-                                rdsService.deleteSnapshot(snapshot, region);
-                            }
-                        }));
+                .forEach(region -> {
+                    // in each region list the snapshots that are from the cluster / environment under question
+                    List<DBClusterSnapshot> snapshots = rdsService.streamDbSnapshots(RdsSnapshotQuery.forRegion(region)
+                            .withSnapshotType(RdsSnapshotQuery.SNAPSHOT_TYPE_MANUAL))
+                            .filter(rdsService::wasSnapshotGeneratedFromCmsCluster)
+                            .collect(Collectors.toList());
+                    long fromEarlierClusters = snapshots.stream()
+                            .filter(snapshot -> cmsDbClusterIdentifier != null &&
+                                    !cmsDbClusterIdentifier.equals(snapshot.getDBClusterIdentifier()))
+                            .count();
+                    if (fromEarlierClusters > 0) {
+                        log.info("Found {} snapshots in region: {} from earlier cms clusters than: {}",
+                                fromEarlierClusters, region, cmsDbClusterIdentifier);
+                    }
+                    // and decide which of them the retention policy keeps
+                    decisions.put(region, policy.apply(snapshots, now));
+                });
+
+        decisions.forEach((region, decision) -> {
+            decision.getKept().forEach((snapshot, reason) ->
+                    log.debug("keeping snapshot: {} with creation date: {} in region: {}, {}",
+                            snapshot.getDBClusterSnapshotIdentifier(), snapshot.getSnapshotCreateTime(), region, reason));
+            if (command.isDryRun()) {
+                decision.getToDelete().forEach(snapshot ->
+                        log.info("snapshot: {} with creation date: {} in region: {}",
+                                snapshot.getDBClusterSnapshotIdentifier(), snapshot.getSnapshotCreateTime(), region));
+            }
+        });
+        log.info(getSummaryTable(decisions));
+
+        if (! command.isDryRun()) {
+            Map<Regions, List<DBClusterSnapshot>> toDelete = new LinkedHashMap<>();
+            decisions.forEach((region, decision) -> {
+                if (! decision.getToDelete().isEmpty()) {
+                    toDelete.put(region, decision.getToDelete());
+                }
+            });
+            rdsService.deleteSnapshots(toDelete, command.getMaxDeletesPerSecond());
+        }
+    }
+
+    /**
+     * @return A table of how many snapshots are kept and deleted in each region
+     */
+    protected String getSummaryTable(Map<Regions, RdsSnapshotRetentionPolicy.Decision> decisions) {
+        String format = "%-16s %10s %10s %10s  %-20s  %-20s%n";
+        StringBuilder table = new StringBuilder("Snapshot retention summary:\n");
+        table.append(String.format(format, "REGION", "SNAPSHOTS", "KEEP", "DELETE", "OLDEST KEPT", "NEWEST DELETED"));
+        decisions.forEach((region, decision) -> table.append(String.format(format,
+                region.getName(),
+                decision.getKept().size() + decision.getToDelete().size(),
+                decision.getKept().size(),
+                decision.getToDelete().size(),
+                decision.getKept().keySet().stream()
+                        .reduce((newer, older) -> older)
+                        .map(snapshot -> formatCreateTime(snapshot.getSnapshotCreateTime()))
+                        .orElse("-"),
+                decision.getToDelete().stream()
+                        .findFirst()
+                        .map(snapshot -> formatCreateTime(snapshot.getSnapshotCreateTime()))
+                        .orElse("-"))));
+        return table.toString();
+    }
+
+    private String formatCreateTime(Date createTime) {
+        return DateTimeFormatter.ISO_INSTANT.format(createTime.toInstant().truncatedTo(ChronoUnit.SECONDS));
     }
 
     @Override
@@ -94,6 +165,11 @@ public class CleanUpRdsSnapshotsOperation implements Operation<CleanUpRdsSnapsho
             isRunnable = false;
         }
 
+        if (command.getMaxDeletesPerSecond() <= 0) {
+            log.error("The max deletes per second must be more than 0");
+            isRunnable = false;
+        }
+
         return isRunnable;
     }
 }
@@ -23,15 +23,17 @@ import com.nike.cerberus.domain.environment.Stack;
 import com.nike.cerberus.operation.Operation;
 import com.nike.cerberus.service.CloudFormationService;
 import com.nike.cerberus.service.RdsService;
+import com.nike.cerberus.service.RdsSnapshotCopyPlanner;
+import com.nike.cerberus.service.RdsSnapshotQuery;
 import com.nike.cerberus.store.ConfigStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
 import javax.inject.Named;
-import java.util.Deque;
-import java.util.LinkedList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 import static com.nike.cerberus.module.CerberusModule.ENV_NAME;
@@ -65,46 +67,41 @@ public class CopyRdsSnapshotsOperation implements Operation<CopyRdsSnapshotsComm
     @Override
     public void run(CopyRdsSnapshotsCommand command) {
         Regions primaryRegion = configStore.getPrimaryRegion();
-        List<DBClusterSnapshot> snapshotsInPrimaryRegion = rdsService.getDbSnapshots(primaryRegion).stream()
+        // Let rds filter the source snapshots by the current cms cluster, only its snapshots are copied
+        String cmsDbClusterIdentifier = cloudFormationService.getPhysicalResourceId(primaryRegion,
+                Stack.DATABASE.getFullName(environmentName), RdsService.CMS_DB_CLUSTER_LOGICAL_ID).orElse(null);
+        log.info("Copying the snapshots of cms cluster: {}, snapshots of earlier clusters are not copied",
+                cmsDbClusterIdentifier == null ? "any" : cmsDbClusterIdentifier);
+
+        List<DBClusterSnapshot> snapshotsInPrimaryRegion = rdsService.getDbSnapshots(
+                RdsSnapshotQuery.forRegion(primaryRegion).withDbClusterIdentifier(cmsDbClusterIdentifier)).stream()
                 .filter(dbSnapshot ->
                         rdsService.wasSnapshotGeneratedFromCmsCluster(dbSnapshot) && rdsService.isSnapshotNewerThanGivenDays(dbSnapshot, command.getDays())
                 ).collect(Collectors.toList());
 
-        Deque<DBClusterSnapshot> copiedSnapshots = new LinkedList<>();
-        Deque<Regions> snapshotRegions = new LinkedList<>();
-
-        configStore.getConfigEnabledRegions().forEach(region -> {
-            if (region.equals(primaryRegion)) {
-                return;
-            }
-
-            List<DBClusterSnapshot> toRegionSnapshots = rdsService.getDbSnapshots(region).stream()
-                    .filter(rdsService::wasSnapshotGeneratedFromCmsCluster)
-                    .collect(Collectors.toList());
-
-            snapshotsInPrimaryRegion.forEach(fromSnapshot -> {
-                boolean needsCopying = toRegionSnapshots.stream().noneMatch(toSnapshot ->
-                        rdsService.getIdentifier(fromSnapshot).equals(rdsService.getIdentifier(toSnapshot)));
-                if (needsCopying) {
-                    log.info("Preparing to initiate copy of RDS DB Snapshot: {} located in region: {} to region: {}",
-                            fromSnapshot.getDBClusterSnapshotIdentifier(), primaryRegion, region);
-
-                    copiedSnapshots.offer(rdsService.copySnapshot(fromSnapshot, primaryRegion, region));
-                    snapshotRegions.offer(region);
-                } else {
-                    log.info("Snapshot: {} already copied to region: {}, skipping...", rdsService.getIdentifier(fromSnapshot), region);
-                }
-            });
-        });
-        if (command.isSynchronous()){
-            rdsService.waitForSnapshotsToBecomeAvailable(copiedSnapshots, snapshotRegions);
+        // Copies keep the identifier of the cluster they were taken of, so the copies in the other regions are not
+        // filtered by cluster, that way copies of a cluster that has since been restored or replaced are still seen
+        Map<Regions, List<DBClusterSnapshot>> destinationSnapshots = new LinkedHashMap<>();
+        configStore.getConfigEnabledRegions().stream()
+                .filter(region -> !region.equals(primaryRegion))
+                .forEach(region -> destinationSnapshots.put(region, rdsService.getDbSnapshots(
+                        RdsSnapshotQuery.forRegion(region).withSnapshotType(RdsSnapshotQuery.SNAPSHOT_TYPE_MANUAL)).stream()
+                        .filter(rdsService::wasSnapshotGeneratedFromCmsCluster)
+                        .collect(Collectors.toList())));
+
+        RdsSnapshotCopyPlanner planner = new RdsSnapshotCopyPlanner(rdsService, command.getMaxConcurrentCopies());
+        Map<Regions, RdsSnapshotCopyPlanner.RegionPlan> plans = planner.plan(snapshotsInPrimaryRegion, destinationSnapshots);
+        plans.values().forEach(plan -> log.info("Copy plan for region {}", plan));
+
+        List<DBClusterSnapshot> copiedSnapshots = planner.execute(primaryRegion, plans, command.isSynchronous());
+        if (command.isSynchronous()) {
+            log.info("All {} RDS snapshot copies are available.", copiedSnapshots.size());
         } else {
-            log.info("Finished issuing copy api calls to aws, it can take a long time for copies to finish.");
+            log.info("Finished issuing {} copy api calls to aws, it can take a long time for copies to finish.",
+                    copiedSnapshots.size());
         }
     }
 
-
-
     @Override
     public boolean isRunnable(CopyRdsSnapshotsCommand command) {
         boolean isRunnable = true;
@@ -115,6 +112,11 @@ public class CopyRdsSnapshotsOperation implements Operation<CopyRdsSnapshotsComm
             isRunnable = false;
         }
 
+        if (command.getMaxConcurrentCopies() < 1) {
+            log.error("The max concurrent copies must be at least 1");
+            isRunnable = false;
+        }
+
         return isRunnable;
     }
 }
@@ -18,14 +18,15 @@ package com.nike.cerberus.operation.rds;
 
 import com.amazonaws.AmazonServiceException;
 import com.amazonaws.regions.Regions;
-import com.amazonaws.services.cloudformation.model.StackResourceSummary;
 import com.amazonaws.services.rds.model.DBClusterSnapshot;
+import com.amazonaws.services.rds.model.DBClusterSnapshotAlreadyExistsException;
 import com.google.common.collect.ImmutableList;
 import com.nike.cerberus.command.rds.XRegionDatabaseReplicationCommand;
 import com.nike.cerberus.domain.environment.Stack;
 import com.nike.cerberus.operation.Operation;
 import com.nike.cerberus.service.CloudFormationService;
 import com.nike.cerberus.service.RdsService;
+import com.nike.cerberus.service.RdsSnapshotQuery;
 import com.nike.cerberus.store.ConfigStore;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
@@ -33,16 +34,19 @@ import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
 import javax.inject.Named;
-import java.util.List;
+import java.time.Duration;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import static com.nike.cerberus.module.CerberusModule.ENV_NAME;
-import static com.google.common.collect.MoreCollectors.onlyElement;
 
 /**
  * Operation for XRegionDatabaseReplicationCommand
  *
- * Restores rds cluster in the target region for this environment from a fresh RDS cluster snapshot created in the source region
+ * Restores rds cluster in the target region for this environment from a fresh RDS cluster snapshot created in the source region,
+ * or with --use-latest-snapshot from an existing copy in the target region or the latest automated snapshot in the source region
  */
 public class XRegionDatabaseReplicationOperation implements Operation<XRegionDatabaseReplicationCommand> {
 
@@ -71,32 +75,42 @@ public class XRegionDatabaseReplicationOperation implements Operation<XRegionDat
         Regions targetRegion = Regions.fromName(command.getTargetRegion());
 
         String stackName = Stack.DATABASE.getFullName(environmentName);
-        List<StackResourceSummary> stackResources = cloudFormationService.getStackResources(sourceRegion, stackName);
-        StackResourceSummary sourceDbCluster = stackResources
-                .stream()
-                .filter(resource -> "CmsDatabaseCluster".equals(resource.getLogicalResourceId()))
-                .collect(onlyElement());
-        String sourceDbClusterId = sourceDbCluster.getPhysicalResourceId();
-
-        log.info("Preparing to create snapshot of RDS cluster in region: {}", sourceRegion);
-        DBClusterSnapshot sourceSnapshot = rdsService.createSnapshot(sourceDbClusterId, sourceRegion);
-        rdsService.waitForSnapshotsToBecomeAvailable(sourceSnapshot, sourceRegion);
-
-        log.info("Preparing to initiate copy of RDS DB snapshot: {} located in region: {} to region: {}",
-                    sourceSnapshot.getDBClusterSnapshotIdentifier(), sourceRegion.getName(), targetRegion.getName());
+        String sourceDbClusterId = cloudFormationService.getPhysicalResourceId(sourceRegion, stackName,
+                RdsService.CMS_DB_CLUSTER_LOGICAL_ID)
+                .orElseThrow(() -> new RuntimeException("Expected the database stack in region: " + sourceRegion
+                        + " to have a " + RdsService.CMS_DB_CLUSTER_LOGICAL_ID));
+
+        // work out the restore parameters for the target region while the snapshot is being prepared
+        CompletableFuture<Map<String, String>> parametersFuture = CompletableFuture.supplyAsync(() ->
+                getRestoreParameters(targetRegion, stackName));
+
+        Duration maxSnapshotAge = Duration.ofHours(command.getMaxSnapshotAgeHours());
+        Optional<DBClusterSnapshot> existingCopy = command.isUseLatestSnapshot() ?
+                rdsService.getLatestAvailableSnapshot(
+                        RdsSnapshotQuery.forRegion(targetRegion).withDbClusterIdentifier(sourceDbClusterId), maxSnapshotAge) :
+                Optional.empty();
+
         DBClusterSnapshot copiedSnapshot;
-        try {
-            copiedSnapshot = rdsService.copySnapshot(sourceSnapshot, sourceRegion, targetRegion);
-            rdsService.waitForSnapshotsToBecomeAvailable(copiedSnapshot, targetRegion);
-        } finally {
-            rdsService.deleteSnapshot(sourceSnapshot, sourceRegion);
+        boolean deleteCopiedSnapshot;
+        if (existingCopy.isPresent()) {
+            copiedSnapshot = existingCopy.get();
+            deleteCopiedSnapshot = false;
+            log.info("Using existing RDS DB snapshot: {} created: {} in region: {}",
+                    copiedSnapshot.getDBClusterSnapshotIdentifier(), copiedSnapshot.getSnapshotCreateTime(), targetRegion);
+        } else {
+            Optional<DBClusterSnapshot> latestAutomatedSnapshot = command.isUseLatestSnapshot() ?
+                    rdsService.getLatestAvailableSnapshot(RdsSnapshotQuery.forRegion(sourceRegion)
+                            .withDbClusterIdentifier(sourceDbClusterId)
+                            .withSnapshotType(RdsSnapshotQuery.SNAPSHOT_TYPE_AUTOMATED), maxSnapshotAge) :
+                    Optional.empty();
+
+            CopyResult copy = copySnapshotToTargetRegion(sourceDbClusterId, latestAutomatedSnapshot, sourceRegion, targetRegion);
+            copiedSnapshot = copy.snapshot;
+            deleteCopiedSnapshot = copy.createdByThisOperation;
         }
 
-        String databasePassword = configStore.getCmsDatabasePassword()
-                .orElseThrow(() -> new RuntimeException("Expected the database password to exist"));
-        Map<String, String> parameters = cloudFormationService.getStackParameters(targetRegion, stackName);
+        Map<String, String> parameters = join(parametersFuture);
         parameters.put("snapshotIdentifier", copiedSnapshot.getDBClusterSnapshotIdentifier());
-        parameters.put("cmsDbMasterPassword", databasePassword);
 
         try {
             log.info("Preparing to initiate restore of RDS DB snapshot {} in region {}",
@@ -121,11 +135,92 @@ public class XRegionDatabaseReplicationOperation implements Operation<XRegionDat
                 throw ase;
             }
         } finally {
-            rdsService.deleteSnapshot(copiedSnapshot, targetRegion);
+            if (deleteCopiedSnapshot) {
+                rdsService.deleteSnapshot(copiedSnapshot, targetRegion);
+            }
+        }
+    }
+
+    /**
+     * Copies a snapshot of the source cluster to the target region and waits for the copy to become available.
+     * The copy's progress is logged as it is polled, see {@link RdsService#whenSnapshotAvailable}.
+     *
+     * @param sourceDbClusterId The cluster to create a snapshot of, if there is no snapshot to reuse
+     * @param snapshotToReuse An existing snapshot in the source region to copy instead of creating one
+     * @return The available copy in the target region
+     */
+    private CopyResult copySnapshotToTargetRegion(String sourceDbClusterId,
+                                                  Optional<DBClusterSnapshot> snapshotToReuse,
+                                                  Regions sourceRegion,
+                                                  Regions targetRegion) {
+
+        DBClusterSnapshot sourceSnapshot;
+        if (snapshotToReuse.isPresent()) {
+            sourceSnapshot = snapshotToReuse.get();
+            log.info("Using automated RDS DB snapshot: {} created: {} in region: {}",
+                    sourceSnapshot.getDBClusterSnapshotIdentifier(), sourceSnapshot.getSnapshotCreateTime(), sourceRegion);
+        } else {
+            log.info("Preparing to create snapshot of RDS cluster in region: {}", sourceRegion);
+            sourceSnapshot = rdsService.createSnapshot(sourceDbClusterId, sourceRegion);
+        }
+
+        try {
+            if (!snapshotToReuse.isPresent()) {
+                join(rdsService.whenSnapshotAvailable(sourceSnapshot, sourceRegion));
+            }
+
+            log.info("Preparing to initiate copy of RDS DB snapshot: {} located in region: {} to region: {}",
+                    sourceSnapshot.getDBClusterSnapshotIdentifier(), sourceRegion.getName(), targetRegion.getName());
+            DBClusterSnapshot copiedSnapshot;
+            boolean createdByThisOperation = true;
+            try {
+                copiedSnapshot = rdsService.copySnapshot(sourceSnapshot, sourceRegion, targetRegion);
+            } catch (DBClusterSnapshotAlreadyExistsException e) {
+                // another command is already copying this snapshot, wait for that copy instead
+                log.info("RDS DB snapshot: {} is already being copied to region: {}",
+                        rdsService.getIdentifier(sourceSnapshot), targetRegion);
+                copiedSnapshot = new DBClusterSnapshot().withDBClusterSnapshotIdentifier(rdsService.getIdentifier(sourceSnapshot));
+                createdByThisOperation = false;
+            }
+
+            return new CopyResult(join(rdsService.whenSnapshotAvailable(copiedSnapshot, targetRegion)), createdByThisOperation);
+        } finally {
+            if (!snapshotToReuse.isPresent()) {
+                rdsService.deleteSnapshot(sourceSnapshot, sourceRegion);
+            }
         }
     }
 
+    private Map<String, String> getRestoreParameters(Regions targetRegion, String stackName) {
+        String databasePassword = configStore.getCmsDatabasePassword()
+                .orElseThrow(() -> new RuntimeException("Expected the database password to exist"));
+        Map<String, String> parameters = cloudFormationService.getStackParameters(targetRegion, stackName);
+        parameters.put("cmsDbMasterPassword", databasePassword);
+        return parameters;
+    }
 
+    private <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static class CopyResult {
+
+        private final DBClusterSnapshot snapshot;
+
+        private final boolean createdByThisOperation;
+
+        private CopyResult(DBClusterSnapshot snapshot, boolean createdByThisOperation) {
+            this.snapshot = snapshot;
+            this.createdByThisOperation = createdByThisOperation;
+        }
+    }
 
     @Override
     public boolean isRunnable(XRegionDatabaseReplicationCommand command) {
@@ -144,6 +239,11 @@ public class XRegionDatabaseReplicationOperation implements Operation<XRegionDat
             isRunnable = false;
         }
 
+        if (command.getMaxSnapshotAgeHours() < 1) {
+            log.error("The max snapshot age must be at least 1 hour");
+            isRunnable = false;
+        }
+
         return isRunnable;
     }
 }
@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 2019 Nike, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nike.cerberus.service;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.Request;
+import com.amazonaws.handlers.HandlerAfterAttemptContext;
+import com.amazonaws.handlers.HandlerBeforeAttemptContext;
+import com.amazonaws.handlers.HandlerContextKey;
+import com.amazonaws.handlers.RequestHandler2;
+import com.amazonaws.regions.Regions;
+import com.amazonaws.retry.RetryUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket that limits the rate of calls to one AWS service in one region, shared by every client for that
+ * service and region in the process. The rate adapts to throttling: it is halved when AWS responds with a throttling
+ * error and recovers a little with each successful call, up to the configured maximum.
+ * <p>
+ * The limiter is installed on the clients by {@link AwsClientFactory} as a request handler, which also counts the
+ * attempts, retries and throttling errors, and how long calls were held back.
+ */
+public class AwsApiRateLimiter {
+
+    /**
+     * The rate never drops below this many calls per second, no matter how much throttling there is
+     */
+    private static final double MIN_CALLS_PER_SECOND = 0.5;
+
+    /**
+     * The fraction of the maximum rate that each successful call adds back after throttling
+     */
+    private static final double RECOVERY_FRACTION = 0.02;
+
+    /**
+     * Throttling errors within this long of the rate being lowered come from calls that were already in flight,
+     * so they do not lower the rate again
+     */
+    private static final long THROTTLE_COOL_DOWN_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private static final HandlerContextKey<Boolean> ATTEMPTED = new HandlerContextKey<>("cerberus.rateLimiter.attempted");
+
+    private static final Map<String, AwsApiRateLimiter> LIMITERS = new ConcurrentHashMap<>();
+
+    private final String serviceName;
+
+    private final Regions region;
+
+    private final double maxCallsPerSecond;
+
+    private final AtomicLong attempts = new AtomicLong();
+
+    private final AtomicLong retries = new AtomicLong();
+
+    private final AtomicLong throttles = new AtomicLong();
+
+    private final AtomicLong delayNanos = new AtomicLong();
+
+    private double callsPerSecond;
+
+    private double tokens;
+
+    private long lastRefillNanos;
+
+    private long lastThrottleNanos;
+
+    /**
+     * Creates a limiter that is not shared or included in {@link #getAll()}, use {@link #forService} for the
+     * limiters installed on clients
+     */
+    AwsApiRateLimiter(String serviceName, Regions region, double maxCallsPerSecond) {
+        this.serviceName = serviceName;
+        this.region = region;
+        this.maxCallsPerSecond = maxCallsPerSecond;
+        this.callsPerSecond = maxCallsPerSecond;
+        this.tokens = Math.max(1, maxCallsPerSecond);
+        this.lastRefillNanos = System.nanoTime();
+        this.lastThrottleNanos = lastRefillNanos - THROTTLE_COOL_DOWN_NANOS;
+    }
+
+    /**
+     * @param serviceName The service, such as AmazonCloudFormation
+     * @param region The region of the clients
+     * @param maxCallsPerSecond The most calls per second to allow, 0 or less to only count calls
+     * @return the shared limiter for the service in the region
+     */
+    public static AwsApiRateLimiter forService(String serviceName, Regions region, double maxCallsPerSecond) {
+        return LIMITERS.computeIfAbsent(serviceName + "/" + region.getName(), key ->
+                new AwsApiRateLimiter(serviceName, region, maxCallsPerSecond));
+    }
+
+    /**
+     * @return the limiters that have been created in this process
+     */
+    public static List<AwsApiRateLimiter> getAll() {
+        return new ArrayList<>(LIMITERS.values());
+    }
+
+    /**
+     * @return A request handler that applies this limiter to every attempt a client makes, including retries
+     */
+    public RequestHandler2 createRequestHandler() {
+        return new RequestHandler2() {
+            @Override
+            public void beforeAttempt(HandlerBeforeAttemptContext context) {
+                Request<?> request = context.getRequest();
+                if (request.getHandlerContext(ATTEMPTED) != null) {
+                    retries.incrementAndGet();
+                }
+                request.addHandlerContext(ATTEMPTED, Boolean.TRUE);
+                acquire();
+            }
+
+            @Override
+            public void afterAttempt(HandlerAfterAttemptContext context) {
+                if (context.getException() instanceof AmazonServiceException &&
+                        RetryUtils.isThrottlingException((AmazonServiceException) context.getException())) {
+                    onThrottle();
+                } else if (context.getException() == null) {
+                    onSuccess();
+                }
+            }
+        };
+    }
+
+    /**
+     * Blocks until the call is allowed by the current rate
+     */
+    void acquire() {
+        attempts.incrementAndGet();
+        if (maxCallsPerSecond <= 0) {
+            return;
+        }
+
+        long waitNanos;
+        synchronized (this) {
+            refill();
+            // take the token now, even if it has to be waited for, so that callers are let through in order
+            tokens -= 1;
+            waitNanos = tokens >= 0 ? 0 : (long) (-tokens / callsPerSecond * TimeUnit.SECONDS.toNanos(1));
+        }
+
+        if (waitNanos > 0) {
+            delayNanos.addAndGet(waitNanos);
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting to call " + serviceName, e);
+            }
+        }
+    }
+
+    synchronized void onThrottle() {
+        throttles.incrementAndGet();
+        long now = System.nanoTime();
+        if (maxCallsPerSecond > 0 && now - lastThrottleNanos >= THROTTLE_COOL_DOWN_NANOS) {
+            refill();
+            callsPerSecond = Math.max(MIN_CALLS_PER_SECOND, callsPerSecond / 2);
+            tokens = Math.min(tokens, 0);
+            lastThrottleNanos = now;
+        }
+    }
+
+    synchronized void onSuccess() {
+        if (maxCallsPerSecond > 0 && callsPerSecond < maxCallsPerSecond) {
+            refill();
+            callsPerSecond = Math.min(maxCallsPerSecond, callsPerSecond + maxCallsPerSecond * RECOVERY_FRACTION);
+        }
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        double burst = Math.max(1, callsPerSecond);
+        tokens = Math.min(burst, tokens + (now - lastRefillNanos) * callsPerSecond / TimeUnit.SECONDS.toNanos(1));
+        lastRefillNanos = now;
+    }
+
+    public String getServiceName() {
+        return serviceName;
+    }
+
+    public Regions getRegion() {
+        return region;
+    }
+
+    public synchronized double getCallsPerSecond() {
+        return callsPerSecond;
+    }
+
+    public long getAttempts() {
+        return attempts.get();
+    }
+
+    public long getRetries() {
+        return retries.get();
+    }
+
+    public long getThrottles() {
+        return throttles.get();
+    }
+
+    /**
+     * @return the total time that calls were held back by the limiter
+     */
+    public long getDelayMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(delayNanos.get());
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s (%s): attempts: %d, retries: %d, throttles: %d, added latency: %d ms, rate: %.1f/s",
+                serviceName, region.getName(), getAttempts(), getRetries(), getThrottles(), getDelayMillis(),
+                getCallsPerSecond());
+    }
+}
@@ -20,13 +20,25 @@ import com.amazonaws.AmazonWebServiceClient;
 import com.amazonaws.ClientConfiguration;
 import com.amazonaws.auth.*;
 import com.amazonaws.auth.profile.ProfileCredentialsProvider;
+import com.amazonaws.handlers.RequestHandler2;
 import com.amazonaws.regions.Region;
 import com.amazonaws.regions.Regions;
-import com.google.common.collect.Maps;
+import com.amazonaws.retry.PredefinedRetryPolicies;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.reflect.TypeToken;
+import com.nike.cerberus.util.EnvUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.util.Collections;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Generic AWS Client factory that will create instances of AmazonWebServiceClients configured with the
@@ -39,19 +51,112 @@ abstract public class AwsClientFactory<T extends AmazonWebServiceClient> {
     public static final String CERBERUS_ASSUME_ROLE_ARN = "CERBERUS_ASSUME_ROLE_ARN";
     public static final String CERBERUS_ASSUME_ROLE_EXTERNAL_ID = "CERBERUS_ASSUME_ROLE_EXTERNAL_ID";
 
+    public static final String CERBERUS_AWS_MAX_CONNECTIONS = "CERBERUS_AWS_MAX_CONNECTIONS";
+    public static final String CERBERUS_AWS_MAX_ERROR_RETRY = "CERBERUS_AWS_MAX_ERROR_RETRY";
+    public static final String CERBERUS_AWS_CONNECTION_TIMEOUT_MILLIS = "CERBERUS_AWS_CONNECTION_TIMEOUT_MILLIS";
+    public static final String CERBERUS_AWS_SOCKET_TIMEOUT_MILLIS = "CERBERUS_AWS_SOCKET_TIMEOUT_MILLIS";
+    public static final String CERBERUS_AWS_TCP_KEEP_ALIVE = "CERBERUS_AWS_TCP_KEEP_ALIVE";
+    public static final String CERBERUS_AWS_MAX_CALLS_PER_SECOND = "CERBERUS_AWS_MAX_CALLS_PER_SECOND";
+
+    private static final int DEFAULT_MAX_CONNECTIONS = 50;
+    private static final int DEFAULT_MAX_ERROR_RETRY = 5;
+    private static final int DEFAULT_CONNECTION_TIMEOUT_MILLIS = (int) TimeUnit.SECONDS.toMillis(10);
+    private static final int DEFAULT_SOCKET_TIMEOUT_MILLIS = (int) TimeUnit.SECONDS.toMillis(50);
+    private static final int DEFAULT_MAX_CALLS_PER_SECOND = 10;
+
+    /**
+     * The credentials provider chain is shared by every client in the process so that we only assume the
+     * Cerberus role once, rather than once per client type and region
+     */
+    private static final Supplier<AWSCredentialsProviderChain> CREDENTIALS_PROVIDER_CHAIN =
+            Suppliers.memoize(AwsClientFactory::createAWSCredentialsProviderChain);
+
+    private static final Supplier<ClientConfiguration> CLIENT_CONFIGURATION =
+            Suppliers.memoize(AwsClientFactory::createClientConfiguration);
+
+    /**
+     * Control plane services have low API rate limits that are shared by the whole account, so their calls are paced
+     * by default. The calls to other services, such as S3 and KMS, are counted but not paced.
+     */
+    private static final Set<String> PACED_SERVICES = ImmutableSet.of(
+            "AmazonCloudFormation",
+            "AmazonRDS",
+            "AmazonEC2",
+            "AmazonAutoScaling",
+            "AmazonIdentityManagement",
+            "AmazonRoute53");
+
+    private static final Supplier<Integer> MAX_CALLS_PER_SECOND =
+            Suppliers.memoize(() -> EnvUtils.getIntEnv(CERBERUS_AWS_MAX_CALLS_PER_SECOND, DEFAULT_MAX_CALLS_PER_SECOND));
+
+    protected final Logger log = LoggerFactory.getLogger(getClass());
+
     /**
      * Cache of clients by region
      */
-    protected Map<Regions, T> clients = Maps.newHashMap();
+    protected Map<Regions, T> clients = new ConcurrentHashMap<>();
+
+    /**
+     * How long it took to create the client for each region
+     */
+    private final Map<Regions, Long> clientCreationTimeInMillis = new ConcurrentHashMap<>();
 
     /**
      * Factory that creates and caches Aws clients by region for re-use;
      */
     public T getClient(Regions region) {
-        if (!clients.containsKey(region)) {
-            clients.put(region, createAmazonClientInstance(getGenericTypeClass(), region));
-        }
-        return clients.get(region);
+        return clients.computeIfAbsent(region, r -> {
+            long start = System.nanoTime();
+            T client = createClient(r);
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            clientCreationTimeInMillis.put(r, elapsed);
+            log.debug("Created {} for region: {} in {} ms", client.getClass().getSimpleName(), r.getName(), elapsed);
+            return client;
+        });
+    }
+
+    /**
+     * @return How long it took to create the client for each region that a client has been created for
+     */
+    public Map<Regions, Long> getClientCreationTimeInMillis() {
+        return Collections.unmodifiableMap(clientCreationTimeInMillis);
+    }
+
+    /**
+     * Creates a new client for the region, override this if the client needs to be built differently, making sure to
+     * add the {@link #getRateLimitingRequestHandler rate limiting request handler}
+     */
+    @SuppressWarnings("deprecation")
+    protected T createClient(Regions region) {
+        T client = createAmazonClientInstance(getGenericTypeClass(), region);
+        client.addRequestHandler(getRateLimitingRequestHandler(region));
+        return client;
+    }
+
+    /**
+     * Every client for the same service and region shares one rate limiter
+     *
+     * @return A request handler that applies the rate limiter for this service in the region
+     */
+    protected RequestHandler2 getRateLimitingRequestHandler(Regions region) {
+        return AwsApiRateLimiter.forService(getServiceName(), region, getMaxCallsPerSecond()).createRequestHandler();
+    }
+
+    /**
+     * The rate of the control plane services can be set with the CERBERUS_AWS_MAX_CALLS_PER_SECOND env var
+     * (0 turns off the limiting but keeps the counters)
+     *
+     * @return The most calls per second to make to this service in a region, 0 or less if the calls are not paced
+     */
+    protected int getMaxCallsPerSecond() {
+        return PACED_SERVICES.contains(getServiceName()) ? MAX_CALLS_PER_SECOND.get() : 0;
+    }
+
+    /**
+     * @return the name of the service that the clients call, such as AmazonCloudFormation
+     */
+    protected String getServiceName() {
+        return StringUtils.removeEnd(getGenericTypeClass().getSimpleName(), "Client");
     }
 
     @SuppressWarnings("unchecked")
@@ -66,10 +171,29 @@ abstract public class AwsClientFactory<T extends AmazonWebServiceClient> {
     }
 
     protected ClientConfiguration getClientConfiguration() {
-        return new ClientConfiguration();
+        return CLIENT_CONFIGURATION.get();
     }
 
     protected AWSCredentialsProviderChain getAWSCredentialsProviderChain() {
+        return CREDENTIALS_PROVIDER_CHAIN.get();
+    }
+
+    /**
+     * The connection pool size, retries and timeouts can be tuned with the CERBERUS_AWS_* env vars
+     */
+    private static ClientConfiguration createClientConfiguration() {
+        int maxErrorRetry = EnvUtils.getIntEnv(CERBERUS_AWS_MAX_ERROR_RETRY, DEFAULT_MAX_ERROR_RETRY);
+
+        return new ClientConfiguration()
+                .withMaxConnections(EnvUtils.getIntEnv(CERBERUS_AWS_MAX_CONNECTIONS, DEFAULT_MAX_CONNECTIONS))
+                .withConnectionTimeout(EnvUtils.getIntEnv(CERBERUS_AWS_CONNECTION_TIMEOUT_MILLIS, DEFAULT_CONNECTION_TIMEOUT_MILLIS))
+                .withSocketTimeout(EnvUtils.getIntEnv(CERBERUS_AWS_SOCKET_TIMEOUT_MILLIS, DEFAULT_SOCKET_TIMEOUT_MILLIS))
+                .withTcpKeepAlive(!StringUtils.equalsIgnoreCase(System.getenv(CERBERUS_AWS_TCP_KEEP_ALIVE), "false"))
+                .withRetryPolicy(PredefinedRetryPolicies.getDefaultRetryPolicyWithCustomMaxRetries(maxErrorRetry))
+                .withMaxErrorRetry(maxErrorRetry);
+    }
+
+    private static AWSCredentialsProviderChain createAWSCredentialsProviderChain() {
         String cerberusRoleToAssume = System.getenv(CERBERUS_ASSUME_ROLE_ARN) != null ?
                 System.getenv(CERBERUS_ASSUME_ROLE_ARN) : "";
         String cerberusRoleToAssumeExternalId = System.getenv(CERBERUS_ASSUME_ROLE_EXTERNAL_ID) != null ?
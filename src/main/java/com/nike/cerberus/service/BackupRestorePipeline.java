@@ -0,0 +1,258 @@
+/*
+ * Copyright (c) 2019 Nike, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nike.cerberus.service;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Restores backup items in two stages that run at the same time: fetchThreads threads download and decrypt items,
+ * and restoreThreads threads send them to the api. At most restoreThreads * 2 fetched items are handed to the restore
+ * stage at once, so a slow api holds back the downloads instead of filling memory with decrypted backups, and no more
+ * than fetchThreads + restoreThreads * 2 decrypted items are held in memory.
+ * <p>
+ * Each stage is retried with exponential backoff. Items that are already in the checkpoint are skipped and items
+ * are added to it as they are restored. Items that still fail after maxAttempts are reported in the result and the
+ * rest of the restore carries on.
+ */
+public class BackupRestorePipeline {
+
+    private static final long MAX_BACKOFF_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    private static final long PROGRESS_INTERVAL_SECONDS = 10;
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final int fetchThreads;
+
+    private final int restoreThreads;
+
+    private final int maxAttempts;
+
+    private final long initialBackoffMillis;
+
+    public BackupRestorePipeline(int fetchThreads, int restoreThreads, int maxAttempts, long initialBackoffMillis) {
+        if (fetchThreads < 1 || restoreThreads < 1 || maxAttempts < 1) {
+            throw new IllegalArgumentException("The fetch threads, restore threads and max attempts must be at least 1");
+        }
+        this.fetchThreads = fetchThreads;
+        this.restoreThreads = restoreThreads;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMillis = initialBackoffMillis;
+    }
+
+    /**
+     * @param keys The items to restore
+     * @param fetch Downloads and decrypts an item
+     * @param restore Restores a fetched item
+     * @param checkpoint The items that have already been restored, items are added as they are restored
+     * @return How many items were restored and the items that failed
+     */
+    public Result run(Collection<String> keys,
+                      Function<String, String> fetch,
+                      Consumer<String> restore,
+                      RestoreCheckpoint checkpoint) {
+
+        List<String> toRestore = keys.stream()
+                .filter(key -> !checkpoint.isDone(key))
+                .sorted()
+                .collect(Collectors.toList());
+        if (toRestore.size() < keys.size()) {
+            log.info("Resuming from checkpoint {}, {} of {} items were already restored",
+                    checkpoint.getPath(), keys.size() - toRestore.size(), keys.size());
+        }
+
+        Progress progress = new Progress(toRestore.size());
+        Map<String, Throwable> failures = new ConcurrentHashMap<>();
+        Semaphore buffer = new Semaphore(restoreThreads * 2);
+
+        ExecutorService fetchExecutor = Executors.newFixedThreadPool(fetchThreads,
+                new ThreadFactoryBuilder().setNameFormat("backup-fetch-%d").setDaemon(true).build());
+        ExecutorService restoreExecutor = Executors.newFixedThreadPool(restoreThreads,
+                new ThreadFactoryBuilder().setNameFormat("backup-restore-%d").setDaemon(true).build());
+        ScheduledExecutorService progressReporter = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("backup-restore-progress-%d").setDaemon(true).build());
+        progressReporter.scheduleAtFixedRate(() -> log.info(progress.toString()),
+                PROGRESS_INTERVAL_SECONDS, PROGRESS_INTERVAL_SECONDS, TimeUnit.SECONDS);
+
+        try {
+            for (String key : toRestore) {
+                fetchExecutor.execute(() -> {
+                    String item;
+                    try {
+                        item = withRetries("fetch " + key, () -> fetch.apply(key));
+                        // only the hand off is bounded, the fetch pool bounds how many downloads run at once
+                        buffer.acquire();
+                    } catch (RuntimeException e) {
+                        onFailure(key, e, failures, progress);
+                        return;
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        onFailure(key, new RuntimeException("Interrupted while waiting to restore " + key, e),
+                                failures, progress);
+                        return;
+                    }
+                    restoreExecutor.execute(() -> {
+                        try {
+                            withRetries("restore " + key, () -> {
+                                restore.accept(item);
+                                return null;
+                            });
+                            checkpoint.markDone(key);
+                            progress.restored.incrementAndGet();
+                        } catch (RuntimeException e) {
+                            onFailure(key, e, failures, progress);
+                        } finally {
+                            buffer.release();
+                        }
+                    });
+                });
+            }
+
+            // the fetch threads hand items to the restore threads, so the restore threads have to outlive them
+            fetchExecutor.shutdown();
+            fetchExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            restoreExecutor.shutdown();
+            restoreExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while restoring, run the restore again to carry on from the checkpoint", e);
+        } finally {
+            fetchExecutor.shutdownNow();
+            restoreExecutor.shutdownNow();
+            progressReporter.shutdownNow();
+        }
+
+        log.info(progress.toString());
+        return new Result(progress.restored.get(), keys.size() - toRestore.size(), failures);
+    }
+
+    private void onFailure(String key, RuntimeException e, Map<String, Throwable> failures, Progress progress) {
+        log.error("Failed to restore {} after {} attempts", key, maxAttempts, e);
+        failures.put(key, e);
+        progress.failed.incrementAndGet();
+    }
+
+    private <T> T withRetries(String action, Supplier<T> attempt) {
+        long backoffMillis = initialBackoffMillis;
+        for (int attemptNumber = 1; ; attemptNumber++) {
+            try {
+                return attempt.get();
+            } catch (RuntimeException e) {
+                if (attemptNumber >= maxAttempts) {
+                    throw e;
+                }
+                long sleepMillis = backoffMillis / 2 + ThreadLocalRandom.current().nextLong(backoffMillis / 2 + 1);
+                log.warn("Attempt {} of {} to {} failed, retrying in {} ms: {}",
+                        attemptNumber, maxAttempts, action, sleepMillis, e.getMessage());
+                try {
+                    TimeUnit.MILLISECONDS.sleep(sleepMillis);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Interrupted while waiting to retry " + action, ie);
+                }
+                backoffMillis = Math.min(MAX_BACKOFF_MILLIS, backoffMillis * 2);
+            }
+        }
+    }
+
+    /**
+     * How a restore went
+     */
+    public static class Result {
+
+        private final int restored;
+
+        private final int skipped;
+
+        private final Map<String, Throwable> failures;
+
+        private Result(int restored, int skipped, Map<String, Throwable> failures) {
+            this.restored = restored;
+            this.skipped = skipped;
+            this.failures = Collections.unmodifiableMap(failures);
+        }
+
+        public int getRestored() {
+            return restored;
+        }
+
+        /**
+         * @return How many items were skipped because the checkpoint showed they were already restored
+         */
+        public int getSkipped() {
+            return skipped;
+        }
+
+        /**
+         * @return The error for each item that could not be restored
+         */
+        public Map<String, Throwable> getFailures() {
+            return failures;
+        }
+    }
+
+    private static class Progress {
+
+        private final int total;
+
+        private final long startNanos = System.nanoTime();
+
+        private final AtomicInteger restored = new AtomicInteger();
+
+        private final AtomicInteger failed = new AtomicInteger();
+
+        private Progress(int total) {
+            this.total = total;
+        }
+
+        @Override
+        public String toString() {
+            int finished = restored.get() + failed.get();
+            double elapsedSeconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startNanos));
+            double perSecond = finished / elapsedSeconds;
+            String eta = perSecond > 0 ?
+                    formatDuration(Duration.ofSeconds((long) ((total - finished) / perSecond))) : "unknown";
+
+            return String.format("Restored %d of %d (%.1f%%), %d failed, %.1f per second, ETA %s",
+                    restored.get(), total, total == 0 ? 100 : finished * 100.0 / total, failed.get(), perSecond, eta);
+        }
+
+        private static String formatDuration(Duration duration) {
+            return String.format("%d:%02d:%02d", duration.toHours(), duration.toMinutes() % 60, duration.getSeconds() % 60);
+        }
+    }
+}
@@ -35,6 +35,8 @@ import com.google.common.collect.ImmutableSet;
 import com.google.gson.Gson;
 import com.nike.cerberus.domain.environment.CertificateInformation;
 import com.nike.cerberus.store.ConfigStore;
+import com.nike.cerberus.store.ReplicationResult;
+import com.nike.cerberus.util.ReadinessProbe;
 import com.nike.cerberus.util.UuidSupplier;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import org.apache.commons.io.filefilter.RegexFileFilter;
@@ -619,12 +621,9 @@ public class CertificateService {
                 certContents, caContents, keyContents);
         log.info("Identity Management Cert Name: {}", certificateName);
 
-        log.info("Sleeping to let iam cert become eventually consistent");
-        try {
-            Thread.sleep(TimeUnit.MINUTES.toMillis(1));
-        } catch (InterruptedException e) {
-            throw new RuntimeException("Failed to wait for iam cert to  become eventually consistent");
-        }
+        ReadinessProbe.waitFor("iam cert to become eventually consistent: " + certificateName,
+                () -> identityManagementService.getServerCertificateArn(certificateName).isPresent())
+                .awaitOrThrow();
 
         log.info("Uploading certificate parts to the configuration bucket.");
         X509Certificate certificate;
@@ -652,7 +651,12 @@ public class CertificateService {
                 .withUploaded(DateTime.now(DateTimeZone.UTC))
                 .build();
 
-        configStore.storeCert(certificateInformation, caContents, certContents, keyContents, pkcs8KeyContents, pubKeyContents);
+        ReplicationResult replicationResult = configStore.storeCert(certificateInformation, caContents, certContents,
+                keyContents, pkcs8KeyContents, pubKeyContents);
+        if (!replicationResult.isFullyReplicated()) {
+            log.warn("Certificate parts could not be saved to the config buckets in regions: {}, run sync-config " +
+                    "once the regions are available", replicationResult.getFailedRegions());
+        }
         log.info("Successfully uploaded Certificate: {}", certificateInformation);
     }
 
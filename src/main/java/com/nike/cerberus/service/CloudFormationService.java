@@ -21,22 +21,32 @@ import com.amazonaws.AmazonWebServiceRequest;
 import com.amazonaws.regions.Regions;
 import com.amazonaws.services.cloudformation.AmazonCloudFormation;
 import com.amazonaws.services.cloudformation.AmazonCloudFormationClient;
+import com.amazonaws.services.cloudformation.model.ChangeSetStatus;
+import com.amazonaws.services.cloudformation.model.ChangeSetType;
+import com.amazonaws.services.cloudformation.model.CreateChangeSetRequest;
 import com.amazonaws.services.cloudformation.model.CreateStackRequest;
 import com.amazonaws.services.cloudformation.model.CreateStackResult;
+import com.amazonaws.services.cloudformation.model.DeleteChangeSetRequest;
 import com.amazonaws.services.cloudformation.model.DeleteStackRequest;
+import com.amazonaws.services.cloudformation.model.DescribeChangeSetRequest;
+import com.amazonaws.services.cloudformation.model.DescribeChangeSetResult;
 import com.amazonaws.services.cloudformation.model.DescribeStackEventsRequest;
 import com.amazonaws.services.cloudformation.model.DescribeStackEventsResult;
 import com.amazonaws.services.cloudformation.model.DescribeStacksRequest;
 import com.amazonaws.services.cloudformation.model.DescribeStacksResult;
+import com.amazonaws.services.cloudformation.model.ExecuteChangeSetRequest;
+import com.amazonaws.services.cloudformation.model.GetTemplateRequest;
 import com.amazonaws.services.cloudformation.model.ListStackResourcesRequest;
 import com.amazonaws.services.cloudformation.model.ListStackResourcesResult;
 import com.amazonaws.services.cloudformation.model.Output;
 import com.amazonaws.services.cloudformation.model.Parameter;
+import com.amazonaws.services.cloudformation.model.ResourceChange;
 import com.amazonaws.services.cloudformation.model.StackEvent;
 import com.amazonaws.services.cloudformation.model.StackResourceSummary;
 import com.amazonaws.services.cloudformation.model.StackStatus;
 import com.amazonaws.services.cloudformation.model.Tag;
 import com.amazonaws.services.cloudformation.model.TemplateParameter;
+import com.amazonaws.services.cloudformation.model.TemplateStage;
 import com.amazonaws.services.cloudformation.model.UpdateStackRequest;
 import com.amazonaws.services.cloudformation.model.ValidateTemplateRequest;
 import com.amazonaws.services.cloudformation.waiters.AmazonCloudFormationWaiters;
@@ -44,10 +54,10 @@ import com.amazonaws.waiters.Waiter;
 import com.amazonaws.waiters.WaiterHandler;
 import com.amazonaws.waiters.WaiterParameters;
 import com.beust.jcommander.internal.Maps;
-import com.github.tomaslanger.chalk.Chalk;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
-import com.google.common.collect.Sets;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import com.nike.cerberus.ConfigConstants;
 import com.nike.cerberus.domain.environment.Stack;
 import com.nike.cerberus.operation.UnexpectedCloudFormationStatusException;
@@ -60,23 +70,37 @@ import org.slf4j.LoggerFactory;
 import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.inject.Named;
+import javax.inject.Singleton;
+import java.nio.charset.StandardCharsets;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 import static com.nike.cerberus.module.CerberusModule.ENV_NAME;
 
 /**
  * Service wrapper for AWS CloudFormation.
+ * <p>
+ * Stack descriptions for the environment's stacks are cached per region for the life of the command, the first lookup
+ * in a region lists every stack in that region once and every lookup after that is served from the listing until a
+ * stack in the region is created, updated or deleted through this service.
  */
+@Singleton
 public class CloudFormationService {
 
     private final Logger log = LoggerFactory.getLogger(getClass());
@@ -87,18 +111,72 @@ public class CloudFormationService {
 
     private final AwsClientFactory<AmazonCloudFormationClient> cloudFormationClientFactory;
 
+    private final CloudFormationTemplateRegistry templateRegistry;
+
     private final String environmentName;
 
     private static final String WAITER_TIMEOUT_ERROR_MESSAGE = "Reached maximum attempts without transitioning to the desired state";
 
     private static final int EXTENDED_WAITER_RETRY_COUNT = 3;
 
+    /**
+     * The value that DescribeStacks returns for NoEcho parameters
+     */
+    private static final String NO_ECHO_PARAMETER_VALUE = "****";
+
+    private static final String CONFIG_BUCKET_NAME_OUTPUT_KEY = "configBucketName";
+
+    private static final String CHANGE_SET_NAME_PREFIX = "cerberus-cli-";
+
+    private static final long CHANGE_SET_POLL_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(5);
+
+    private static final long CHANGE_SET_MAX_WAIT_MILLIS = TimeUnit.MINUTES.toMillis(15);
+
+    /**
+     * Set this env var to true to also write every stack event as a line of JSON, see {@link JsonStackEventListener}
+     */
+    public static final String CERBERUS_CLOUDFORMATION_JSON_EVENTS = "CERBERUS_CLOUDFORMATION_JSON_EVENTS";
+
+    /**
+     * Events that happened this long before we started waiting on a stack are still printed
+     */
+    private static final int EVENT_LOOK_BACK_SECONDS = 10;
+
+    private final List<StackEventListener> stackEventListeners = new CopyOnWriteArrayList<>();
+
+    private final StackEventMetricsListener stackEventMetrics = new StackEventMetricsListener();
+
+    /**
+     * The environment's stacks in each region, keyed by both stack name and stack id
+     */
+    private final Map<Regions, Map<String, com.amazonaws.services.cloudformation.model.Stack>> stackDescriptions =
+            new ConcurrentHashMap<>();
+
+    private final AtomicLong stackDescriptionCacheHits = new AtomicLong();
+
+    private final AtomicLong stackDescriptionCacheMisses = new AtomicLong();
+
     @Inject
     public CloudFormationService(AwsClientFactory<AmazonCloudFormationClient> cloudFormationClientFactory,
+                                 CloudFormationTemplateRegistry templateRegistry,
                                  @Named(ENV_NAME) String environmentName) {
 
         this.cloudFormationClientFactory = cloudFormationClientFactory;
+        this.templateRegistry = templateRegistry;
         this.environmentName = environmentName;
+
+        stackEventListeners.add(new ConsoleStackEventListener());
+        stackEventListeners.add(stackEventMetrics);
+        if (Boolean.parseBoolean(System.getenv(CERBERUS_CLOUDFORMATION_JSON_EVENTS))) {
+            stackEventListeners.add(new JsonStackEventListener());
+        }
+    }
+
+    /**
+     * @return Counts of the stack events seen so far by this service
+     */
+    public StackEventMetricsListener getStackEventMetrics() {
+        return stackEventMetrics;
     }
 
     /**
@@ -124,22 +202,33 @@ public class CloudFormationService {
         CreateStackRequest request = new CreateStackRequest()
                 .withStackName(stack.getFullName(environmentName))
                 .withParameters(convertParameters(parameters))
-                .withTemplateBody(stack.getTemplateText())
                 .withTags(getTags(globalTags));
 
+        Optional<String> templateUrl = getTemplateUrl(region, stack);
+        if (templateUrl.isPresent()) {
+            request.withTemplateURL(templateUrl.get());
+        } else {
+            request.withTemplateBody(stack.getTemplateText());
+        }
+
         if (iamCapabilities) {
             request.getCapabilities().add("CAPABILITY_IAM");
         }
 
         AmazonCloudFormation cloudFormationClient = cloudFormationClientFactory.getClient(region);
-        CreateStackResult result = cloudFormationClient.createStack(request);
-        waitAndPrintCFEvents(region, stackName, new AmazonCloudFormationWaiters(cloudFormationClient).stackCreateComplete());
-
-        return result.getStackId();
+        invalidateStackDescriptions(region);
+        try {
+            CreateStackResult result = cloudFormationClient.createStack(request);
+            waitAndPrintCFEvents(region, stackName, new AmazonCloudFormationWaiters(cloudFormationClient).stackCreateComplete());
+            return result.getStackId();
+        } finally {
+            invalidateStackDescriptions(region);
+        }
     }
 
     /**
-     * Uses AWS CF Aync Waiters to wait for Cloud Formation actions to complete, while logging events and verifying success
+     * Uses AWS CF Aync Waiters to wait for Cloud Formation actions to complete, while publishing new stack events to
+     * the registered listeners and verifying success
      *
      * @param region The Region to use
      * @param stackName The stack that is having an action performed
@@ -152,39 +241,34 @@ public class CloudFormationService {
         Future future = waiter
                 .runAsync(new WaiterParameters<>(new DescribeStacksRequest().withStackName(stackName)), handler);
 
-        Set<String> recordedStackEvents = Sets.newHashSet();
-        do {
+        StackEventTailer tailer = new StackEventTailer(cloudFormationClientFactory.getClient(region), stackName,
+                DateTime.now(DateTimeZone.UTC).minusSeconds(EVENT_LOOK_BACK_SECONDS).toDate());
+
+        boolean done = false;
+        while (!done) {
             try {
-                DateTime now = DateTime.now(DateTimeZone.UTC).minusSeconds(10);
-
-                TimeUnit.SECONDS.sleep(5);
-
-                StackStatus stackStatus = getStackStatus(region, stackName);
-                if (stackStatus != null) {
-                    List<StackEvent> stackEvents = getStackEvents(region, stackName);
-                    stackEvents.sort(Comparator.comparing(StackEvent::getTimestamp));
-
-                    for (StackEvent stackEvent : stackEvents) {
-                        DateTime eventTime = new DateTime(stackEvent.getTimestamp());
-                        if (!recordedStackEvents.contains(stackEvent.getEventId()) && now.isBefore(eventTime)) {
-                            log.info(
-                                    String.format("TS: %s, Status: %s, Type: %s, Reason: %s",
-                                            Chalk.on(stackEvent.getTimestamp().toString()).yellow(),
-                                            getStatusColor(stackEvent.getResourceStatus()),
-                                            Chalk.on(stackEvent.getResourceType()).yellow(),
-                                            Chalk.on(stackEvent.getResourceStatusReason()).yellow()));
-
-                            recordedStackEvents.add(stackEvent.getEventId());
-                        }
-                    }
-                }
+                // wakes up early once the waiter completes, the final events are still printed below
+                future.get(tailer.getNextPollDelayMillis(), TimeUnit.MILLISECONDS);
+                done = true;
+            } catch (TimeoutException e) {
+                // still waiting on the stack
+            } catch (ExecutionException e) {
+                done = true;
             } catch (InterruptedException e) {
                 log.error("Polling interrupted", e);
                 Thread.currentThread().interrupt();
+                done = true;
+            }
+
+            try {
+                publishStackEvents(region, stackName, tailer.poll());
             } catch (Exception e) {
                 log.error("Failed to poll and print stack", e);
             }
-        } while (!future.isDone());
+        }
+
+        log.debug("Tailed {} events for stack: {} in {} polls and {} pages",
+                tailer.getEventCount(), stackName, tailer.getPollCount(), tailer.getPageCount());
 
         if (!handler.wasSuccess) {
             throw new UnexpectedCloudFormationStatusException(
@@ -192,6 +276,18 @@ public class CloudFormationService {
         }
     }
 
+    private void publishStackEvents(Regions region, String stackName, List<StackEvent> stackEvents) {
+        for (StackEvent stackEvent : stackEvents) {
+            for (StackEventListener listener : stackEventListeners) {
+                try {
+                    listener.onStackEvent(region, stackName, stackEvent);
+                } catch (Exception e) {
+                    log.error("Stack event listener: {} failed", listener.getClass().getSimpleName(), e);
+                }
+            }
+        }
+    }
+
     /**
      * Updates an existing stack in the provided region
      * @param region The region for the stack
@@ -218,10 +314,14 @@ public class CloudFormationService {
                 .withStackName(stackName);
 
         if (overwrite) {
-            String template = stack.getTemplateText();
-            request.withTemplateBody(template);
+            Optional<String> templateUrl = getTemplateUrl(region, stack);
+            if (templateUrl.isPresent()) {
+                request.withTemplateURL(templateUrl.get());
+            } else {
+                request.withTemplateBody(stack.getTemplateText());
+            }
             // filter out params that are no longer in the template
-            parameters.keySet().retainAll(validateTemplateAndRetrieveParameters(template, region));
+            parameters.keySet().retainAll(validateTemplateAndRetrieveParameters(stack, templateUrl, region));
         } else {
             request.withUsePreviousTemplate(true);
         }
@@ -238,7 +338,19 @@ public class CloudFormationService {
         }
 
         AmazonCloudFormation cloudFormationClient = cloudFormationClientFactory.getClient(region);
-        cloudFormationClient.updateStack(request);
+        invalidateStackDescriptions(region);
+        try {
+            cloudFormationClient.updateStack(request);
+            waitForStackUpdate(region, stackName, cloudFormationClient, extended);
+        } finally {
+            invalidateStackDescriptions(region);
+        }
+    }
+
+    private void waitForStackUpdate(Regions region,
+                                    String stackName,
+                                    AmazonCloudFormation cloudFormationClient,
+                                    boolean extended) {
 
         if (extended) {
             // horrible hack because Amazon has made it basically impossible to customize waiter
@@ -260,20 +372,278 @@ public class CloudFormationService {
         } else {
             waitAndPrintCFEvents(region, stackName, new AmazonCloudFormationWaiters(cloudFormationClient).stackUpdateComplete());
         }
+    }
+
+    /**
+     * Creates a change set for an existing stack and waits for CloudFormation to work out the resource changes,
+     * so that an update can be previewed before it is executed with {@link #executeChangeSetAndWait}.
+     *
+     * @param region The region for the stack
+     * @param stack the stack that is being updated
+     * @param parameters the parameters to send to the cloud formation
+     * @param iamCapabilities flag for iam capabilities
+     * @param overwrite overwrite the deployed template with the current template in the cli
+     * @param globalTags map of tags to apply to all resources created/updated
+     * @return The created change set, which will have no changes if the update would not change the stack
+     */
+    public StackChangeSet createChangeSetAndWait(Regions region,
+                                                 Stack stack,
+                                                 Map<String, String> parameters,
+                                                 boolean iamCapabilities,
+                                                 boolean overwrite,
+                                                 Map<String, String> globalTags) {
+
+        String stackName = stack.getFullName(environmentName);
+        String changeSetName = CHANGE_SET_NAME_PREFIX + DateTime.now(DateTimeZone.UTC).getMillis();
+
+        log.info("Creating change set: {}, Stack Name: {}, Region: {}", changeSetName, stackName, region.getName());
+
+        CreateChangeSetRequest request = new CreateChangeSetRequest()
+                .withStackName(stackName)
+                .withChangeSetName(changeSetName)
+                .withChangeSetType(ChangeSetType.UPDATE);
+
+        if (overwrite) {
+            Optional<String> templateUrl = getTemplateUrl(region, stack);
+            if (templateUrl.isPresent()) {
+                request.withTemplateURL(templateUrl.get());
+            } else {
+                request.withTemplateBody(stack.getTemplateText());
+            }
+            // filter out params that are no longer in the template
+            parameters.keySet().retainAll(validateTemplateAndRetrieveParameters(stack, templateUrl, region));
+        } else {
+            request.withUsePreviousTemplate(true);
+        }
+
+        request.withParameters(convertParameters(parameters));
+
+        if (iamCapabilities) {
+            request.getCapabilities().add("CAPABILITY_IAM");
+        }
+
+        // do not modify tags when null is provided
+        if (globalTags != null){
+            request.setTags(getTags(globalTags));
+        }
+
+        AmazonCloudFormation cloudFormationClient = cloudFormationClientFactory.getClient(region);
+        cloudFormationClient.createChangeSet(request);
+
+        return waitForChangeSet(region, stackName, changeSetName, cloudFormationClient);
+    }
+
+    private StackChangeSet waitForChangeSet(Regions region,
+                                            String stackName,
+                                            String changeSetName,
+                                            AmazonCloudFormation cloudFormationClient) {
+
+        long deadline = System.currentTimeMillis() + CHANGE_SET_MAX_WAIT_MILLIS;
+        while (true) {
+            DescribeChangeSetRequest request = new DescribeChangeSetRequest()
+                    .withStackName(stackName)
+                    .withChangeSetName(changeSetName);
+            DescribeChangeSetResult result = cloudFormationClient.describeChangeSet(request);
+
+            if (!ChangeSetStatus.CREATE_PENDING.toString().equals(result.getStatus()) &&
+                    !ChangeSetStatus.CREATE_IN_PROGRESS.toString().equals(result.getStatus())) {
+
+                List<ResourceChange> resourceChanges = new LinkedList<>();
+                result.getChanges().forEach(change -> resourceChanges.add(change.getResourceChange()));
+                while (result.getNextToken() != null) {
+                    result = cloudFormationClient.describeChangeSet(request.withNextToken(result.getNextToken()));
+                    result.getChanges().forEach(change -> resourceChanges.add(change.getResourceChange()));
+                }
+
+                StackChangeSet changeSet = new StackChangeSet(region, stackName, changeSetName,
+                        result.getStatus(), result.getStatusReason(), resourceChanges);
+                if (!changeSet.hasChanges() && !changeSet.isEmpty()) {
+                    throw new UnexpectedCloudFormationStatusException(String.format("Change set %s for %s is %s: %s",
+                            changeSetName, stackName, result.getStatus(), result.getStatusReason()));
+                }
+                return changeSet;
+            }
+
+            if (System.currentTimeMillis() > deadline) {
+                throw new UnexpectedCloudFormationStatusException(String.format(
+                        "Timed out waiting for change set %s for %s, last status: %s",
+                        changeSetName, stackName, result.getStatus()));
+            }
+
+            try {
+                Thread.sleep(getChangeSetPollIntervalMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for change set " + changeSetName, e);
+            }
+        }
+    }
+
+    /**
+     * @return how long to wait between polls while a change set is being created
+     */
+    protected long getChangeSetPollIntervalMillis() {
+        return CHANGE_SET_POLL_INTERVAL_MILLIS;
+    }
+
+    /**
+     * Executes a change set created by {@link #createChangeSetAndWait} and waits for the stack update to complete
+     *
+     * @param changeSet the change set to execute
+     */
+    public void executeChangeSetAndWait(StackChangeSet changeSet) {
+        Regions region = changeSet.getRegion();
+        String stackName = changeSet.getStackName();
+
+        log.info("Executing change set: {}, Stack Name: {}, Region: {}", changeSet.getChangeSetName(), stackName, region.getName());
+
+        AmazonCloudFormation cloudFormationClient = cloudFormationClientFactory.getClient(region);
+        invalidateStackDescriptions(region);
+        try {
+            cloudFormationClient.executeChangeSet(new ExecuteChangeSetRequest()
+                    .withStackName(stackName)
+                    .withChangeSetName(changeSet.getChangeSetName()));
+            waitForStackUpdate(region, stackName, cloudFormationClient, false);
+        } finally {
+            invalidateStackDescriptions(region);
+        }
+    }
+
+    /**
+     * Deletes a change set that is not going to be executed
+     *
+     * @param changeSet the change set to delete
+     */
+    public void deleteChangeSet(StackChangeSet changeSet) {
+        cloudFormationClientFactory.getClient(changeSet.getRegion()).deleteChangeSet(new DeleteChangeSetRequest()
+                .withStackName(changeSet.getStackName())
+                .withChangeSetName(changeSet.getChangeSetName()));
+    }
 
+    /**
+     * Works out what {@link #updateStackAndWait} would change, without calling UpdateStack, by comparing a fingerprint
+     * of the template, parameters and tags that would be sent with one of the deployed stack.
+     * <p>
+     * The deployed template is only downloaded when overwriting the template. Parameters that CloudFormation masks
+     * (NoEcho) can not be compared, so they are treated as unchanged.
+     *
+     * @param region The region for the stack
+     * @param stack the stack that is being updated
+     * @param parameters the parameters that would be sent
+     * @param overwrite whether the template in the cli would be sent
+     * @param globalTags the tags that would be sent, or null if the tags would not be modified
+     * @return The plan for the update
+     */
+    public StackUpdatePlan planStackUpdate(Regions region,
+                                           Stack stack,
+                                           Map<String, String> parameters,
+                                           boolean overwrite,
+                                           Map<String, String> globalTags) {
+
+        String stackName = stack.getFullName(environmentName);
+        com.amazonaws.services.cloudformation.model.Stack deployed = describeStack(region, stackName)
+                .orElseThrow(() -> new IllegalArgumentException("No stack found with name: " + stackName));
 
+        String deployedTemplate = "";
+        String desiredTemplate = "";
+        if (overwrite) {
+            deployedTemplate = StringUtils.trimToEmpty(cloudFormationClientFactory.getClient(region).getTemplate(
+                    new GetTemplateRequest().withStackName(stackName).withTemplateStage(TemplateStage.Original)
+            ).getTemplateBody());
+            desiredTemplate = StringUtils.trimToEmpty(stack.getTemplateText());
+        }
+
+        // only the parameters the deployed template knows about are sent, see updateStackAndWait
+        Map<String, String> deployedParameters = new TreeMap<>();
+        deployed.getParameters().forEach(parameter ->
+                deployedParameters.put(parameter.getParameterKey(), parameter.getParameterValue()));
+        Map<String, String> desiredParameters = new TreeMap<>(deployedParameters);
+        parameters.forEach((key, value) -> {
+            if (deployedParameters.containsKey(key) && !NO_ECHO_PARAMETER_VALUE.equals(deployedParameters.get(key))) {
+                desiredParameters.put(key, value);
+            }
+        });
+        Set<String> changedParameters = desiredParameters.keySet().stream()
+                .filter(key -> !StringUtils.equals(desiredParameters.get(key), deployedParameters.get(key)))
+                .collect(Collectors.toSet());
+
+        Map<String, String> deployedTags = new TreeMap<>();
+        deployed.getTags().forEach(tag -> deployedTags.put(tag.getKey(), tag.getValue()));
+        Map<String, String> desiredTags = new TreeMap<>(deployedTags);
+        if (globalTags != null) {
+            desiredTags.clear();
+            getTags(globalTags).forEach(tag -> desiredTags.put(tag.getKey(), tag.getValue()));
+        }
+
+        return new StackUpdatePlan(
+                stackName,
+                !deployedTemplate.equals(desiredTemplate),
+                changedParameters,
+                !deployedTags.equals(desiredTags),
+                fingerprint(deployedTemplate, deployedParameters, deployedTags),
+                fingerprint(desiredTemplate, desiredParameters, desiredTags));
+    }
+
+    private String fingerprint(String template, Map<String, String> sortedParameters, Map<String, String> sortedTags) {
+        Hasher hasher = Hashing.sha256().newHasher()
+                .putString(template, StandardCharsets.UTF_8)
+                .putChar('\0');
+        sortedParameters.forEach((key, value) -> hasher.putString(key + "=" + value, StandardCharsets.UTF_8).putChar('\0'));
+        hasher.putChar('\0');
+        sortedTags.forEach((key, value) -> hasher.putString(key + "=" + value, StandardCharsets.UTF_8).putChar('\0'));
+        return hasher.hash().toString();
     }
 
     /**
      * Validates and retrieves the set of parameter keys for a template.
-     * @param templateText The template to validate
+     * @param stack The stack whose template to validate
+     * @param templateUrl The URL the template was staged at, or empty to send the template body
      * @param region The region that is being used
      * @return The set of parameters that a template has.
      */
-    private Set<String> validateTemplateAndRetrieveParameters(String templateText, Regions region) {
-        return cloudFormationClientFactory.getClient(region).validateTemplate(
-                new ValidateTemplateRequest().withTemplateBody(templateText)
-        ).getParameters().stream().map(TemplateParameter::getParameterKey).collect(Collectors.toSet());
+    private Set<String> validateTemplateAndRetrieveParameters(Stack stack, Optional<String> templateUrl, Regions region) {
+        ValidateTemplateRequest request = templateUrl.isPresent() ?
+                new ValidateTemplateRequest().withTemplateURL(templateUrl.get()) :
+                new ValidateTemplateRequest().withTemplateBody(stack.getTemplateText());
+        return cloudFormationClientFactory.getClient(region).validateTemplate(request)
+                .getParameters().stream().map(TemplateParameter::getParameterKey).collect(Collectors.toSet());
+    }
+
+    /**
+     * Stages the template of the stack in the config bucket of the region, so that it can be sent as a TemplateURL.
+     * Templates are sent as a TemplateBody when there is no config bucket in the region yet, such as while creating
+     * the environment, or if staging fails and the template is small enough.
+     *
+     * @param region The region of the stack
+     * @param stack The stack whose template is being sent
+     * @return The TemplateURL to use, or empty to send the template body
+     */
+    private Optional<String> getTemplateUrl(Regions region, Stack stack) {
+        Optional<String> configBucket = describeStack(region, Stack.CONFIG.getFullName(environmentName))
+                .flatMap(configStack -> configStack.getOutputs().stream()
+                        .filter(output -> CONFIG_BUCKET_NAME_OUTPUT_KEY.equals(output.getOutputKey()))
+                        .map(Output::getOutputValue)
+                        .findFirst());
+
+        if (!configBucket.isPresent()) {
+            if (templateRegistry.isTooLargeForTemplateBody(stack)) {
+                throw new IllegalStateException(String.format("The template: %s is larger than %d bytes and there is " +
+                                "no config bucket in %s to stage it in", stack.getTemplatePath(),
+                        CloudFormationTemplateRegistry.MAX_TEMPLATE_BODY_BYTES, region.getName()));
+            }
+            return Optional.empty();
+        }
+
+        try {
+            return Optional.of(templateRegistry.stageTemplate(region, configBucket.get(), stack));
+        } catch (AmazonServiceException e) {
+            if (templateRegistry.isTooLargeForTemplateBody(stack)) {
+                throw e;
+            }
+            log.warn("Failed to stage template: {} in bucket: {}, sending the template body instead",
+                    stack.getTemplatePath(), configBucket.get(), e);
+            return Optional.empty();
+        }
     }
 
     /**
@@ -286,8 +656,13 @@ public class CloudFormationService {
         log.info("Deleting the Stack Name: {}, Region: {}", stackName, region.getName());
         DeleteStackRequest request = new DeleteStackRequest().withStackName(stackName);
         AmazonCloudFormation cloudFormationClient = cloudFormationClientFactory.getClient(region);
-        cloudFormationClient.deleteStack(request);
-        waitAndPrintCFEvents(region, stackName, new AmazonCloudFormationWaiters(cloudFormationClient).stackDeleteComplete());
+        invalidateStackDescriptions(region);
+        try {
+            cloudFormationClient.deleteStack(request);
+            waitAndPrintCFEvents(region, stackName, new AmazonCloudFormationWaiters(cloudFormationClient).stackDeleteComplete());
+        } finally {
+            invalidateStackDescriptions(region);
+        }
     }
 
     /**
@@ -299,27 +674,11 @@ public class CloudFormationService {
      */
     @Nullable
     public StackStatus getStackStatus(Regions region, String stackName) {
-        AmazonCloudFormation cloudFormationClient = cloudFormationClientFactory.getClient(region);
-        DescribeStacksRequest request = new DescribeStacksRequest().withStackName(stackName);
-
-        try {
-            DescribeStacksResult result = cloudFormationClient.describeStacks(request);
-
-            if (result.getStacks().size() > 0) {
-                String status = result.getStacks().get(0).getStackStatus();
-
-                if (StringUtils.isNotBlank(status)) {
-                    return StackStatus.fromValue(status);
-                }
-            }
-        } catch (AmazonServiceException ase) {
-            // Stack doesn't exist, just return with no status
-            if (ase.getStatusCode() != 400) {
-                throw ase;
-            }
-        }
-
-        return null;
+        return describeStack(region, stackName)
+                .map(com.amazonaws.services.cloudformation.model.Stack::getStackStatus)
+                .filter(StringUtils::isNotBlank)
+                .map(StackStatus::fromValue)
+                .orElse(null);
     }
 
     /**
@@ -330,31 +689,17 @@ public class CloudFormationService {
      * @return Stack outputs data.
      */
     public Map<String, String> getStackParameters(Regions region, String stackName) {
-        AmazonCloudFormation cloudFormationClient = cloudFormationClientFactory.getClient(region);
-        DescribeStacksRequest request = new DescribeStacksRequest().withStackName(stackName);
-        DescribeStacksResult result = cloudFormationClient.describeStacks(request);
         Map<String, String> parameters = Maps.newHashMap();
-
-        if (result.getStacks().size() > 0) {
-            parameters.putAll(result.getStacks().get(0).getParameters().stream().collect(
-                    Collectors.toMap(Parameter::getParameterKey, Parameter::getParameterValue)));
-
-        }
+        describeStack(region, stackName).ifPresent(stack -> parameters.putAll(stack.getParameters().stream()
+                .collect(Collectors.toMap(Parameter::getParameterKey, Parameter::getParameterValue))));
 
         return parameters;
     }
 
     public Map<String, String> getStackTags(Regions region, String stackName) {
-        AmazonCloudFormation cloudFormationClient = cloudFormationClientFactory.getClient(region);
-        DescribeStacksRequest request = new DescribeStacksRequest().withStackName(stackName);
-        DescribeStacksResult result = cloudFormationClient.describeStacks(request);
         Map<String, String> tags = Maps.newHashMap();
-
-        if (result.getStacks().size() > 0) {
-            tags.putAll(result.getStacks().get(0).getTags().stream().collect(
-                    Collectors.toMap(Tag::getKey, Tag::getValue)));
-
-        }
+        describeStack(region, stackName).ifPresent(stack -> tags.putAll(stack.getTags().stream()
+                .collect(Collectors.toMap(Tag::getKey, Tag::getValue))));
 
         return tags;
     }
@@ -367,18 +712,111 @@ public class CloudFormationService {
      * @return Stack outputs data.
      */
     public Map<String, String> getStackOutputs(Regions region, String stackName) {
-        AmazonCloudFormation cloudFormationClient = cloudFormationClientFactory.getClient(region);
-        DescribeStacksRequest request = new DescribeStacksRequest().withStackName(stackName);
-        DescribeStacksResult result = cloudFormationClient.describeStacks(request);
         Map<String, String> outputs = Maps.newHashMap();
+        describeStack(region, stackName).ifPresent(stack -> outputs.putAll(stack.getOutputs().stream()
+                .collect(Collectors.toMap(Output::getOutputKey, Output::getOutputValue))));
 
-        if (result.getStacks().size() > 0) {
-            outputs.putAll(result.getStacks().get(0).getOutputs().stream().collect(
-                    Collectors.toMap(Output::getOutputKey, Output::getOutputValue)));
+        return outputs;
+    }
 
+    /**
+     * Looks up the description of a stack, the environment's stacks are served from the cached listing of the region.
+     *
+     * @param region The region the stack is in
+     * @param stackName The stack name or id
+     * @return The stack, or empty if it does not exist
+     */
+    protected Optional<com.amazonaws.services.cloudformation.model.Stack> describeStack(Regions region, String stackName) {
+        if (!StringUtils.startsWith(getStackNameFromId(stackName), Stack.getFullNamePrefix(environmentName))) {
+            // not one of the environment's stacks, so it won't be in the cached listing
+            stackDescriptionCacheMisses.incrementAndGet();
+            return describeStackByName(region, stackName);
         }
 
-        return outputs;
+        Map<String, com.amazonaws.services.cloudformation.model.Stack> stacks = stackDescriptions.get(region);
+        if (stacks != null) {
+            stackDescriptionCacheHits.incrementAndGet();
+        } else {
+            stacks = stackDescriptions.computeIfAbsent(region, this::listEnvironmentStacks);
+        }
+
+        return Optional.ofNullable(stacks.get(stackName));
+    }
+
+    /**
+     * Lists all of the environment's stacks in the region with as few DescribeStacks calls as possible
+     */
+    private Map<String, com.amazonaws.services.cloudformation.model.Stack> listEnvironmentStacks(Regions region) {
+        stackDescriptionCacheMisses.incrementAndGet();
+        AmazonCloudFormation cloudFormationClient = cloudFormationClientFactory.getClient(region);
+        String prefix = Stack.getFullNamePrefix(environmentName);
+
+        Map<String, com.amazonaws.services.cloudformation.model.Stack> stacks = new HashMap<>();
+        DescribeStacksResult result;
+        String nextToken = null;
+        int pages = 0;
+        do {
+            result = cloudFormationClient.describeStacks(new DescribeStacksRequest().withNextToken(nextToken));
+            pages++;
+            result.getStacks().stream()
+                    .filter(stack -> stack.getStackName().startsWith(prefix))
+                    .forEach(stack -> {
+                        stacks.put(stack.getStackName(), stack);
+                        stacks.put(stack.getStackId(), stack);
+                    });
+            nextToken = result.getNextToken();
+        } while (nextToken != null);
+
+        log.debug("Cached {} stack descriptions for region: {} from {} DescribeStacks pages",
+                stacks.size() / 2, region.getName(), pages);
+        return stacks;
+    }
+
+    private Optional<com.amazonaws.services.cloudformation.model.Stack> describeStackByName(Regions region, String stackName) {
+        AmazonCloudFormation cloudFormationClient = cloudFormationClientFactory.getClient(region);
+        try {
+            DescribeStacksResult result = cloudFormationClient.describeStacks(
+                    new DescribeStacksRequest().withStackName(stackName));
+            return result.getStacks().stream().findFirst();
+        } catch (AmazonServiceException ase) {
+            // Stack doesn't exist
+            if (ase.getStatusCode() != 400) {
+                throw ase;
+            }
+        }
+
+        return Optional.empty();
+    }
+
+    /**
+     * Stack ids are ARNs of the form arn:aws:cloudformation:region:account:stack/stack-name/uuid
+     */
+    private String getStackNameFromId(String stackNameOrId) {
+        if (StringUtils.startsWith(stackNameOrId, "arn:")) {
+            return StringUtils.substringBetween(stackNameOrId, ":stack/", "/");
+        }
+        return stackNameOrId;
+    }
+
+    /**
+     * Drops the cached stack descriptions for the region, so that the next lookup lists the stacks again
+     */
+    public void invalidateStackDescriptions(Regions region) {
+        stackDescriptions.remove(region);
+    }
+
+    /**
+     * @return The number of stack lookups that were served from the cached stack descriptions
+     */
+    public long getStackDescriptionCacheHits() {
+        return stackDescriptionCacheHits.get();
+    }
+
+    /**
+     * @return The number of stack lookups that had to call DescribeStacks
+     */
+    public long getStackDescriptionCacheMisses() {
+        return stackDescriptionCacheMisses.get();
     }
 
     /**
@@ -392,16 +830,34 @@ public class CloudFormationService {
         AmazonCloudFormation cloudFormationClient = cloudFormationClientFactory.getClient(region);
         List<StackResourceSummary> stackResourceSummaries = new LinkedList<>();
         ListStackResourcesResult result;
+        String nextToken = null;
         do {
             result = cloudFormationClient.listStackResources(
-                    new ListStackResourcesRequest().withStackName(stackName)
+                    new ListStackResourcesRequest().withStackName(stackName).withNextToken(nextToken)
             );
             stackResourceSummaries.addAll(result.getStackResourceSummaries());
-        } while (result.getNextToken() != null);
+            nextToken = result.getNextToken();
+        } while (nextToken != null);
 
         return stackResourceSummaries;
     }
 
+    /**
+     * @param region The region of the stack
+     * @param stackName The stack that has the resource
+     * @param logicalResourceId The logical id of the resource in the template
+     * @return The physical id of the resource, or empty if the stack or resource does not exist
+     */
+    public Optional<String> getPhysicalResourceId(Regions region, String stackName, String logicalResourceId) {
+        if (!isStackPresent(region, stackName)) {
+            return Optional.empty();
+        }
+        return getStackResources(region, stackName).stream()
+                .filter(resource -> logicalResourceId.equals(resource.getLogicalResourceId()))
+                .map(StackResourceSummary::getPhysicalResourceId)
+                .findFirst();
+    }
+
     /**
      * Returns the events for a named stack.
      *
@@ -434,23 +890,11 @@ public class CloudFormationService {
      * @return The full ID of the stack
      */
     public String getStackId(Regions region, String stackName) {
-        AmazonCloudFormation cloudFormationClient = cloudFormationClientFactory.getClient(region);
         Preconditions.checkArgument(StringUtils.isNotBlank(stackName), "Stack name cannot be blank");
 
-        DescribeStacksResult result = cloudFormationClient.describeStacks(
-                new DescribeStacksRequest()
-                        .withStackName(stackName));
-
-        List<com.amazonaws.services.cloudformation.model.Stack> stacks = result.getStacks();
-        if (stacks.isEmpty()) {
-            throw new IllegalArgumentException("No stack found with name: " + stackName);
-        } else if (stacks.size() > 1) {
-            log.warn("Found more than stack with name: {}. Selecting the first one: stack id: {}",
-                    stackName,
-                    stacks.get(0).getStackId());
-        }
-
-        return stacks.get(0).getStackId();
+        return describeStack(region, stackName)
+                .map(com.amazonaws.services.cloudformation.model.Stack::getStackId)
+                .orElseThrow(() -> new IllegalArgumentException("No stack found with name: " + stackName));
     }
 
     /**
@@ -505,17 +949,6 @@ public class CloudFormationService {
         return tags;
     }
 
-    private String getStatusColor(String status) {
-        if (status.endsWith("PROGRESS")) {
-            return Chalk.on(status).yellow().toString();
-        } else if (status.endsWith("COMPLETE")) {
-            return Chalk.on(status).green().bold().toString();
-        } else if (status.endsWith("FAILED")) {
-            return Chalk.on(status).red().bold().toString();
-        }
-        return status;
-    }
-
     /**
      * Waiter Handler that keeps track of status
      */
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2019 Nike, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nike.cerberus.service;
+
+import com.amazonaws.regions.Regions;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.AmazonS3Client;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.google.common.hash.Hashing;
+import com.nike.cerberus.domain.environment.Stack;
+import org.apache.commons.io.FilenameUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps track of the CloudFormation templates by content hash and stages them in S3, so that stacks can be created
+ * and updated with a TemplateURL instead of sending the template body with every request.
+ * <p>
+ * Templates are stored under {@link #TEMPLATE_KEY_PREFIX} named by the SHA-256 of their contents, so a template is
+ * only uploaded once per bucket no matter how many times it is used, and changed templates never overwrite the
+ * template of a stack that is still being updated.
+ */
+@Singleton
+public class CloudFormationTemplateRegistry {
+
+    public static final String TEMPLATE_KEY_PREFIX = "cloudformation-templates/";
+
+    /**
+     * The largest template that CloudFormation accepts as a TemplateBody
+     */
+    public static final int MAX_TEMPLATE_BODY_BYTES = 51_200;
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final AwsClientFactory<AmazonS3Client> s3ClientFactory;
+
+    private final Map<String, String> templateHashes = new ConcurrentHashMap<>();
+
+    /**
+     * The URLs of the templates that have been staged, keyed by bucket and key
+     */
+    private final Map<String, String> stagedTemplateUrls = new ConcurrentHashMap<>();
+
+    private final AtomicLong templatesUploaded = new AtomicLong();
+
+    private final AtomicLong templatesAlreadyStaged = new AtomicLong();
+
+    @Inject
+    public CloudFormationTemplateRegistry(AwsClientFactory<AmazonS3Client> s3ClientFactory) {
+        this.s3ClientFactory = s3ClientFactory;
+    }
+
+    /**
+     * @return the SHA-256 of the template contents of the stack
+     */
+    public String getTemplateHash(Stack stack) {
+        return templateHashes.computeIfAbsent(stack.getTemplatePath(), path ->
+                Hashing.sha256().hashString(stack.getTemplateText(), StandardCharsets.UTF_8).toString());
+    }
+
+    /**
+     * @return the key that the template of the stack is staged under
+     */
+    public String getTemplateKey(Stack stack) {
+        return TEMPLATE_KEY_PREFIX + getTemplateHash(stack) + "." + FilenameUtils.getExtension(stack.getTemplatePath());
+    }
+
+    /**
+     * @return true if the template of the stack is too large to be sent as a TemplateBody
+     */
+    public boolean isTooLargeForTemplateBody(Stack stack) {
+        return stack.getTemplateText().getBytes(StandardCharsets.UTF_8).length > MAX_TEMPLATE_BODY_BYTES;
+    }
+
+    /**
+     * Uploads the template of the stack to the bucket, unless a template with the same hash is already there.
+     *
+     * @param region The region of the bucket, which must be the region of the stack
+     * @param bucket The bucket to stage the template in
+     * @param stack The stack whose template to stage
+     * @return The URL to use as the TemplateURL
+     */
+    public String stageTemplate(Regions region, String bucket, Stack stack) {
+        String key = getTemplateKey(stack);
+        String bucketAndKey = bucket + "/" + key;
+        String stagedUrl = stagedTemplateUrls.get(bucketAndKey);
+        if (stagedUrl != null) {
+            return stagedUrl;
+        }
+
+        // stage outside of the map so the S3 calls do not hold its lock, if two threads stage the same template the
+        // second upload just rewrites the same content under the same key
+        AmazonS3 s3Client = s3ClientFactory.getClient(region);
+        if (s3Client.doesObjectExist(bucket, key)) {
+            templatesAlreadyStaged.incrementAndGet();
+        } else {
+            byte[] content = stack.getTemplateText().getBytes(StandardCharsets.UTF_8);
+            ObjectMetadata metadata = new ObjectMetadata();
+            metadata.setContentLength(content.length);
+            log.info("Staging template: {} as s3://{}/{}", stack.getTemplatePath(), bucket, key);
+            s3Client.putObject(bucket, key, new ByteArrayInputStream(content), metadata);
+            templatesUploaded.incrementAndGet();
+        }
+
+        String url = s3Client.getUrl(bucket, key).toString();
+        stagedUrl = stagedTemplateUrls.putIfAbsent(bucketAndKey, url);
+        return stagedUrl != null ? stagedUrl : url;
+    }
+
+    public long getTemplatesUploaded() {
+        return templatesUploaded.get();
+    }
+
+    public long getTemplatesAlreadyStaged() {
+        return templatesAlreadyStaged.get();
+    }
+}
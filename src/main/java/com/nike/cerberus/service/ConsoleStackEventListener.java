@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2019 Nike, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nike.cerberus.service;
+
+import com.amazonaws.regions.Regions;
+import com.amazonaws.services.cloudformation.model.StackEvent;
+import com.github.tomaslanger.chalk.Chalk;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Prints stack events to the console with the resource status colored, the stack name is included because composite
+ * commands may be creating several stacks at once
+ */
+public class ConsoleStackEventListener implements StackEventListener {
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    @Override
+    public void onStackEvent(Regions region, String stackName, StackEvent stackEvent) {
+        log.info(
+                String.format("TS: %s, Stack: %s, Status: %s, Type: %s, Reason: %s",
+                        Chalk.on(stackEvent.getTimestamp().toString()).yellow(),
+                        stackName,
+                        getStatusColor(stackEvent.getResourceStatus()),
+                        Chalk.on(stackEvent.getResourceType()).yellow(),
+                        Chalk.on(stackEvent.getResourceStatusReason()).yellow()));
+    }
+
+    private String getStatusColor(String status) {
+        if (status.endsWith("PROGRESS")) {
+            return Chalk.on(status).yellow().toString();
+        } else if (status.endsWith("COMPLETE")) {
+            return Chalk.on(status).green().bold().toString();
+        } else if (status.endsWith("FAILED")) {
+            return Chalk.on(status).red().bold().toString();
+        }
+        return status;
+    }
+}
@@ -17,29 +17,67 @@
 package com.nike.cerberus.service;
 
 import com.amazonaws.encryptionsdk.AwsCrypto;
+import com.amazonaws.encryptionsdk.CryptoMaterialsManager;
 import com.amazonaws.encryptionsdk.MasterKeyProvider;
 import com.amazonaws.encryptionsdk.ParsedCiphertext;
+import com.amazonaws.encryptionsdk.caching.CachingCryptoMaterialsManager;
+import com.amazonaws.encryptionsdk.caching.CryptoMaterialsCache;
+import com.amazonaws.encryptionsdk.caching.LocalCryptoMaterialsCache;
 import com.amazonaws.encryptionsdk.kms.KmsMasterKey;
 import com.amazonaws.encryptionsdk.kms.KmsMasterKeyProvider;
 import com.amazonaws.encryptionsdk.multi.MultipleProviderFactory;
+import com.google.common.collect.ImmutableList;
 import com.nike.cerberus.util.CiphertextUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
+/**
+ * Encrypts and decrypts config using the AWS Encryption SDK.
+ * <p>
+ * Data keys are cached by a caching crypto materials manager, so a batch of objects encrypted or decrypted with the
+ * same CMKs only makes a single call to KMS instead of one GenerateDataKey or Decrypt call per object.
+ */
+@Singleton
 public class EncryptionService {
 
+    public static final String DATA_KEY_CACHE_MAX_AGE_SECONDS = "encryption.data.key.cache.max.age.seconds";
+    public static final String DATA_KEY_CACHE_MAX_MESSAGES = "encryption.data.key.cache.max.messages";
+    public static final String DATA_KEY_CACHE_MAX_ENTRIES = "encryption.data.key.cache.max.entries";
+
     private final Logger log = LoggerFactory.getLogger(getClass());
 
     private final AwsCrypto awsCrypto;
 
+    private final long maxAgeInSeconds;
+
+    private final long maxMessagesPerDataKey;
+
+    private final CryptoMaterialsCache dataKeyCache;
+
+    /**
+     * Caching materials managers by the list of CMK ARNs that back them
+     */
+    private final Map<List<String>, CryptoMaterialsManager> materialsManagers = new ConcurrentHashMap<>();
+
     @Inject
-    public EncryptionService(AwsCrypto awsCrypto) {
+    public EncryptionService(AwsCrypto awsCrypto,
+                             @Named(DATA_KEY_CACHE_MAX_AGE_SECONDS) long maxAgeInSeconds,
+                             @Named(DATA_KEY_CACHE_MAX_MESSAGES) long maxMessagesPerDataKey,
+                             @Named(DATA_KEY_CACHE_MAX_ENTRIES) int maxCacheEntries) {
         this.awsCrypto = awsCrypto;
+        this.maxAgeInSeconds = maxAgeInSeconds;
+        this.maxMessagesPerDataKey = maxMessagesPerDataKey;
+        this.dataKeyCache = new LocalCryptoMaterialsCache(maxCacheEntries);
     }
 
     /**
@@ -49,10 +87,11 @@ public class EncryptionService {
      * <p>
      * http://docs.aws.amazon.com/encryption-sdk/latest/developer-guide/message-format.html
      *
+     * @param cmkArns          the ARNs of the CMKs to encrypt the data key with, KMS in all regions must be available
      * @param plainTextPayload the secrets to encrypt
      */
-    public String encrypt(MasterKeyProvider<KmsMasterKey> encryptProvider, String plainTextPayload) {
-        return awsCrypto.encryptString(encryptProvider, plainTextPayload).getResult();
+    public String encrypt(List<String> cmkArns, String plainTextPayload) {
+        return awsCrypto.encryptString(getMaterialsManager(cmkArns), plainTextPayload).getResult();
     }
 
     /**
@@ -70,20 +109,33 @@ public class EncryptionService {
         // Whatever CMKs were used in the encrypt operation will be used to decrypt
         try {
             List<String> cmkArns = CiphertextUtils.getCustomerMasterKeyArns(parsedCiphertext);
-            MasterKeyProvider<KmsMasterKey> decryptProvider = initializeKeyProvider(cmkArns);
-            return new String(awsCrypto.decryptData(decryptProvider, parsedCiphertext).getResult(), StandardCharsets.UTF_8);
+            return new String(awsCrypto.decryptData(getMaterialsManager(cmkArns), parsedCiphertext).getResult(), StandardCharsets.UTF_8);
         } catch (RuntimeException e) {
             log.error("Decrypt operation failed " + CiphertextUtils.toJson(parsedCiphertext), e);
             throw e;
         }
     }
 
+    /**
+     * Gets the caching materials manager for the CMKs, creating the key providers the first time a set of CMKs is used
+     */
+    protected CryptoMaterialsManager getMaterialsManager(List<String> cmkArns) {
+        return materialsManagers.computeIfAbsent(ImmutableList.copyOf(cmkArns), arns ->
+                CachingCryptoMaterialsManager.newBuilder()
+                        .withMasterKeyProvider(initializeKeyProvider(arns))
+                        .withCache(dataKeyCache)
+                        .withMaxAge(maxAgeInSeconds, TimeUnit.SECONDS)
+                        .withMessageUseLimit(maxMessagesPerDataKey)
+                        .build());
+    }
+
     /**
      * Initialize a Multi-KMS-MasterKeyProvider.
      * <p>
      * For encrypt, KMS in all regions must be available.
      * For decrypt, KMS in at least one region must be available.
      */
+    @SuppressWarnings("unchecked")
     protected MasterKeyProvider<KmsMasterKey> initializeKeyProvider(List<String> cmkArns) {
         List<MasterKeyProvider<KmsMasterKey>> providers = cmkArns.stream()
                 .map(KmsMasterKeyProvider::new)
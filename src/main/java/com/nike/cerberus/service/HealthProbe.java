@@ -0,0 +1,309 @@
+/*
+ * Copyright (c) 2019 Nike, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nike.cerberus.service;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+
+/**
+ * Health checks many urls at once. Every interval each url that does not already have a check in flight is sent an
+ * asynchronous GET, and the result is recorded in the url's {@link Target}: how many checks in a row have passed or
+ * failed, the last status code and error, and the latency of recent checks.
+ * <p>
+ * Callers wait for a condition over the targets with {@link #await}, which is re-evaluated as each check finishes.
+ */
+public class HealthProbe implements Closeable {
+
+    /**
+     * The status code recorded when a check could not get a response
+     */
+    public static final int FAILED_STATUS_CODE = -1;
+
+    private static final int MAX_LATENCY_SAMPLES = 100;
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final OkHttpClient httpClient;
+
+    private final int expectedStatusCode;
+
+    private final Map<String, Target> targets = new LinkedHashMap<>();
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("health-probe-%d").setDaemon(true).build());
+
+    /**
+     * Notified every time a check finishes
+     */
+    private final Object resultLock = new Object();
+
+    HealthProbe(OkHttpClient httpClient, Collection<String> urls, int expectedStatusCode, Duration interval) {
+        this.httpClient = httpClient;
+        this.expectedStatusCode = expectedStatusCode;
+        urls.forEach(url -> targets.put(url, new Target(url)));
+        scheduler.scheduleWithFixedDelay(this::checkAll, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return The state of a url, which keeps updating as checks finish
+     */
+    public Target getTarget(String url) {
+        Target target = targets.get(url);
+        if (target == null) {
+            throw new IllegalArgumentException("Not probing url: " + url);
+        }
+        return target;
+    }
+
+    public Collection<Target> getTargets() {
+        return Collections.unmodifiableCollection(targets.values());
+    }
+
+    /**
+     * @return How many of the urls passed their last check
+     */
+    public int countHealthy(Collection<String> urls) {
+        return (int) urls.stream().map(this::getTarget).filter(Target::isHealthy).count();
+    }
+
+    /**
+     * Blocks until the condition is true, checking it again every time a health check finishes. Exceptions thrown by
+     * the condition are thrown to the caller.
+     *
+     * @param condition The condition to wait for, such as {@link #allHealthy}
+     * @param timeout How long to wait
+     * @return True if the condition became true, false if the timeout passed first
+     */
+    public boolean await(Predicate<HealthProbe> condition, Duration timeout) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        synchronized (resultLock) {
+            while (!condition.test(this)) {
+                long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remainingMillis <= 0) {
+                    return false;
+                }
+                try {
+                    resultLock.wait(remainingMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Interrupted while waiting for health checks", e);
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * @return A condition that every url has been checked at least once
+     */
+    public static Predicate<HealthProbe> allChecked() {
+        return probe -> probe.getTargets().stream().allMatch(target -> target.getChecks() > 0);
+    }
+
+    /**
+     * @return A condition that every url has passed this many checks in a row
+     */
+    public static Predicate<HealthProbe> allHealthy(int consecutiveSuccesses) {
+        return probe -> probe.getTargets().stream()
+                .allMatch(target -> target.getConsecutiveSuccesses() >= consecutiveSuccesses);
+    }
+
+    /**
+     * @return A condition that the url has passed this many checks in a row
+     */
+    public static Predicate<HealthProbe> healthy(String url, int consecutiveSuccesses) {
+        return probe -> probe.getTarget(url).getConsecutiveSuccesses() >= consecutiveSuccesses;
+    }
+
+    /**
+     * @return A condition that the url has failed this many checks in a row
+     */
+    public static Predicate<HealthProbe> unhealthy(String url, int consecutiveFailures) {
+        return probe -> probe.getTarget(url).getConsecutiveFailures() >= consecutiveFailures;
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    private void checkAll() {
+        targets.values().forEach(target -> {
+            if (target.inFlight.compareAndSet(false, true)) {
+                check(target);
+            }
+        });
+    }
+
+    private void check(Target target) {
+        long start = System.nanoTime();
+        try {
+            Request request = new Request.Builder().url(target.url).get().build();
+            httpClient.newCall(request).enqueue(new Callback() {
+                @Override
+                public void onFailure(Call call, IOException e) {
+                    record(target, FAILED_STATUS_CODE, start, e.getMessage());
+                }
+
+                @Override
+                public void onResponse(Call call, Response response) {
+                    try (Response closeable = response) {
+                        record(target, closeable.code(), start, null);
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            // an exception here would cancel every later check, and the target would stay in flight forever
+            record(target, FAILED_STATUS_CODE, start, e.getMessage() != null ? e.getMessage() : e.toString());
+        }
+    }
+
+    private void record(Target target, int statusCode, long startNanos, String error) {
+        long latencyMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        log.debug("Health check returned status: {}, URL: {}, in {} ms{}", statusCode, target.url, latencyMillis,
+                error == null ? "" : ", error: " + error);
+        target.record(statusCode == expectedStatusCode, statusCode, latencyMillis, error);
+        target.inFlight.set(false);
+        synchronized (resultLock) {
+            resultLock.notifyAll();
+        }
+    }
+
+    /**
+     * The health of one url
+     */
+    public static class Target {
+
+        private final String url;
+
+        private final AtomicBoolean inFlight = new AtomicBoolean();
+
+        private final Deque<Long> latencies = new ArrayDeque<>();
+
+        private long checks = 0;
+
+        private boolean healthy = false;
+
+        private int consecutiveSuccesses = 0;
+
+        private int consecutiveFailures = 0;
+
+        private int lastStatusCode = FAILED_STATUS_CODE;
+
+        private String lastError;
+
+        private Target(String url) {
+            this.url = url;
+        }
+
+        private synchronized void record(boolean success, int statusCode, long latencyMillis, String error) {
+            checks++;
+            healthy = success;
+            consecutiveSuccesses = success ? consecutiveSuccesses + 1 : 0;
+            consecutiveFailures = success ? 0 : consecutiveFailures + 1;
+            lastStatusCode = statusCode;
+            lastError = error;
+            latencies.addLast(latencyMillis);
+            if (latencies.size() > MAX_LATENCY_SAMPLES) {
+                latencies.removeFirst();
+            }
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public synchronized long getChecks() {
+            return checks;
+        }
+
+        /**
+         * @return True if the last check passed
+         */
+        public synchronized boolean isHealthy() {
+            return healthy;
+        }
+
+        public synchronized int getConsecutiveSuccesses() {
+            return consecutiveSuccesses;
+        }
+
+        public synchronized int getConsecutiveFailures() {
+            return consecutiveFailures;
+        }
+
+        /**
+         * @return The status code of the last check, or {@link #FAILED_STATUS_CODE} if it got no response
+         */
+        public synchronized int getLastStatusCode() {
+            return lastStatusCode;
+        }
+
+        /**
+         * @return Why the last check got no response, or null if it did
+         */
+        public synchronized String getLastError() {
+            return lastError;
+        }
+
+        /**
+         * @param percentile Between 0 and 100
+         * @return The latency of the recent checks at the percentile, or -1 if there have not been any
+         */
+        public synchronized long getLatencyPercentileMillis(double percentile) {
+            if (latencies.isEmpty()) {
+                return -1;
+            }
+            List<Long> sorted = new ArrayList<>(latencies);
+            Collections.sort(sorted);
+            int index = (int) Math.ceil(percentile / 100.0 * sorted.size()) - 1;
+            return sorted.get(Math.max(0, Math.min(sorted.size() - 1, index)));
+        }
+
+        @Override
+        public synchronized String toString() {
+            return String.format("%s: %s, %d in a row, last status: %d, p50: %d ms, p99: %d ms%s", url,
+                    healthy ? "healthy" : "unhealthy",
+                    healthy ? consecutiveSuccesses : consecutiveFailures,
+                    lastStatusCode, getLatencyPercentileMillis(50), getLatencyPercentileMillis(99),
+                    lastError == null ? "" : ", last error: " + lastError);
+        }
+    }
+}
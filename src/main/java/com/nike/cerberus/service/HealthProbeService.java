@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2019 Nike, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nike.cerberus.service;
+
+import com.nike.cerberus.client.HttpClientFactory;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.time.Duration;
+import java.util.Collection;
+
+/**
+ * Starts {@link HealthProbe}s that watch many urls at once, such as the health checks of every instance in a
+ * cluster during a reboot or a deploy
+ */
+@Singleton
+public class HealthProbeService {
+
+    private final HttpClientFactory httpClientFactory;
+
+    @Inject
+    public HealthProbeService(HttpClientFactory httpClientFactory) {
+        this.httpClientFactory = httpClientFactory;
+    }
+
+    /**
+     * Starts checking the urls, with a client that trusts the CA chains of the Cerberus certificates so that
+     * instances can be checked directly. Close the probe to stop checking.
+     *
+     * @param urls The urls to check
+     * @param expectedStatusCode The status code of a passing check
+     * @param interval How long to wait between checks of a url
+     */
+    public HealthProbe watch(Collection<String> urls, int expectedStatusCode, Duration interval) {
+        return new HealthProbe(httpClientFactory.getGenericClientWithCustomTruststore(), urls, expectedStatusCode, interval);
+    }
+}
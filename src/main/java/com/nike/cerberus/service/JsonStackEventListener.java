@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2019 Nike, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nike.cerberus.service;
+
+import com.amazonaws.regions.Regions;
+import com.amazonaws.services.cloudformation.model.StackEvent;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Writes each stack event as a single line of JSON to the {@value #LOGGER_NAME} logger, so that the events can be
+ * shipped to a log aggregator or parsed by a CI pipeline
+ */
+public class JsonStackEventListener implements StackEventListener {
+
+    public static final String LOGGER_NAME = "cerberus.cloudformation.events";
+
+    private final Logger log;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public JsonStackEventListener() {
+        this(LoggerFactory.getLogger(LOGGER_NAME));
+    }
+
+    protected JsonStackEventListener(Logger log) {
+        this.log = log;
+    }
+
+    @Override
+    public void onStackEvent(Regions region, String stackName, StackEvent stackEvent) {
+        log.info(toJson(region, stackName, stackEvent));
+    }
+
+    protected String toJson(Regions region, String stackName, StackEvent stackEvent) {
+        Map<String, String> event = new LinkedHashMap<>();
+        event.put("timestamp", new DateTime(stackEvent.getTimestamp(), DateTimeZone.UTC).toString());
+        event.put("region", region.getName());
+        event.put("stackName", stackName);
+        event.put("eventId", stackEvent.getEventId());
+        event.put("logicalResourceId", stackEvent.getLogicalResourceId());
+        event.put("resourceType", stackEvent.getResourceType());
+        event.put("resourceStatus", stackEvent.getResourceStatus());
+        event.put("resourceStatusReason", stackEvent.getResourceStatusReason());
+
+        try {
+            return objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize stack event: " + stackEvent.getEventId(), e);
+        }
+    }
+}
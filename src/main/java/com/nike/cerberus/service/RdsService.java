@@ -23,39 +23,77 @@ import com.amazonaws.services.rds.model.CopyDBClusterSnapshotRequest;
 import com.amazonaws.services.rds.model.CreateDBClusterSnapshotRequest;
 import com.amazonaws.services.rds.model.DBClusterSnapshot;
 import com.amazonaws.services.rds.model.DeleteDBClusterSnapshotRequest;
-import com.amazonaws.services.rds.model.DescribeDBClusterSnapshotsRequest;
 import com.amazonaws.services.rds.model.DescribeDBClusterSnapshotsResult;
 import com.amazonaws.services.rds.model.Tag;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.nike.cerberus.operation.UnexpectedRdsSnapshotStatusException;
 import com.nike.cerberus.store.ConfigStore;
-import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
 import javax.inject.Named;
+import javax.inject.Singleton;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import static com.nike.cerberus.module.CerberusModule.ENV_NAME;
 
+@Singleton
 public class RdsService {
 
+    /**
+     * The logical id of the cms database cluster in the database stack
+     */
+    public static final String CMS_DB_CLUSTER_LOGICAL_ID = "CmsDatabaseCluster";
+
     private final Logger log = LoggerFactory.getLogger(getClass());
 
     private final AwsClientFactory<AmazonRDSClient> amazonRDSClientFactory;
     private final ConfigStore configStore;
     private final String environmentName;
-    private static final String DESIRED_STATE = "available";
-    private static final String COPYING_STATE = "copying";
-    private static final String CREATING_STATE = "creating";
+    private final RdsSnapshotPoller snapshotPoller;
+
+    /**
+     * The snapshots listed by each query during this command
+     */
+    private final Map<RdsSnapshotQuery, List<DBClusterSnapshot>> snapshotIndex = new ConcurrentHashMap<>();
+
+    /**
+     * The name of the limiter that paces snapshot deletes in each region, on top of the limit on all RDS calls
+     */
+    private static final String SNAPSHOT_DELETES_RATE_LIMITER_NAME = "RdsSnapshotDeletes";
+
+    private static final long SNAPSHOT_POLL_MIN_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(2);
+    private static final long SNAPSHOT_POLL_MAX_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(30);
 
     @Inject
     public RdsService(AwsClientFactory<AmazonRDSClient> amazonRDSClientFactory,
@@ -65,6 +103,8 @@ public class RdsService {
         this.amazonRDSClientFactory = amazonRDSClientFactory;
         this.configStore = configStore;
         this.environmentName = environmentName;
+        this.snapshotPoller = new RdsSnapshotPoller(amazonRDSClientFactory,
+                SNAPSHOT_POLL_MIN_INTERVAL_MILLIS, SNAPSHOT_POLL_MAX_INTERVAL_MILLIS);
     }
 
     /**
@@ -75,6 +115,7 @@ public class RdsService {
      */
     public DBClusterSnapshot copySnapshot(DBClusterSnapshot fromSnapshot, Regions fromRegion, Regions toRegion) {
         AmazonRDS rds = amazonRDSClientFactory.getClient(toRegion);
+        invalidateSnapshotIndex(toRegion);
         DBClusterSnapshot dbClusterSnapshot = rds.copyDBClusterSnapshot(new CopyDBClusterSnapshotRequest()
                 .withCopyTags(true)
                 .withSourceDBClusterSnapshotIdentifier(fromSnapshot.getDBClusterSnapshotArn())
@@ -119,23 +160,71 @@ public class RdsService {
      * @return All the RDS Cluster Snapshots for a region
      */
     public List<DBClusterSnapshot> getDbSnapshots(Regions region) {
-        AmazonRDS rds = amazonRDSClientFactory.getClient(region);
-        List<DBClusterSnapshot> cmsDatabaseClusterSnapshots = new LinkedList<>();
-        String next = null;
-        do {
-            DescribeDBClusterSnapshotsRequest req = new DescribeDBClusterSnapshotsRequest();
+        return getDbSnapshots(RdsSnapshotQuery.forRegion(region));
+    }
 
-            if (next != null) {
-                req.withMarker(next);
+    /**
+     * Lists the snapshots that match the query. The results are kept for the rest of the command, until a snapshot is
+     * created, copied to or deleted in the region, so repeated queries do not list the snapshots again.
+     *
+     * @param query The snapshots to list
+     * @return The matching RDS Cluster Snapshots
+     */
+    public List<DBClusterSnapshot> getDbSnapshots(RdsSnapshotQuery query) {
+        return snapshotIndex.computeIfAbsent(query, q ->
+                Collections.unmodifiableList(streamDbSnapshots(q).collect(Collectors.toList())));
+    }
+
+    /**
+     * Lazily lists the snapshots that match the query, the next page is only requested once the stream gets to it.
+     *
+     * @param query The snapshots to list
+     * @return A stream of the matching RDS Cluster Snapshots
+     */
+    public Stream<DBClusterSnapshot> streamDbSnapshots(RdsSnapshotQuery query) {
+        AmazonRDS rds = amazonRDSClientFactory.getClient(query.getRegion());
+
+        Iterator<List<DBClusterSnapshot>> pages = new Iterator<List<DBClusterSnapshot>>() {
+            private String marker = null;
+            private boolean hasNextPage = true;
+
+            @Override
+            public boolean hasNext() {
+                return hasNextPage;
             }
 
-            DescribeDBClusterSnapshotsResult res = rds.describeDBClusterSnapshots(req);
+            @Override
+            public List<DBClusterSnapshot> next() {
+                if (!hasNextPage) {
+                    throw new NoSuchElementException();
+                }
+                DescribeDBClusterSnapshotsResult result = rds.describeDBClusterSnapshots(query.toRequest().withMarker(marker));
+                marker = result.getMarker();
+                hasNextPage = marker != null;
+                return result.getDBClusterSnapshots();
+            }
+        };
 
-            cmsDatabaseClusterSnapshots.addAll(res.getDBClusterSnapshots());
-            next = res.getMarker();
-        } while (next != null);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(pages, Spliterator.ORDERED), false)
+                .flatMap(List::stream);
+    }
 
-        return cmsDatabaseClusterSnapshots;
+    /**
+     * @param query The snapshots to choose from
+     * @param maxAge How old the snapshot can be
+     * @return The newest available snapshot that matches the query and is no older than maxAge
+     */
+    public Optional<DBClusterSnapshot> getLatestAvailableSnapshot(RdsSnapshotQuery query, Duration maxAge) {
+        Instant oldestAcceptableCreateTime = Instant.now().minus(maxAge);
+        return getDbSnapshots(query).stream()
+                .filter(snapshot -> RdsSnapshotPoller.AVAILABLE_STATUS.equals(snapshot.getStatus()))
+                .filter(snapshot -> snapshot.getSnapshotCreateTime() != null &&
+                        snapshot.getSnapshotCreateTime().toInstant().isAfter(oldestAcceptableCreateTime))
+                .max(Comparator.comparing(DBClusterSnapshot::getSnapshotCreateTime));
+    }
+
+    private void invalidateSnapshotIndex(Regions region) {
+        snapshotIndex.keySet().removeIf(query -> query.getRegion() == region);
     }
 
     /**
@@ -148,10 +237,61 @@ public class RdsService {
         log.info("preparing to delete snapshot: {} with creation date: {} in region: {}",
                 snapshot.getDBClusterSnapshotIdentifier(), snapshot.getSnapshotCreateTime(), region);
 
+        invalidateSnapshotIndex(region);
         amazonRDSClientFactory.getClient(region).deleteDBClusterSnapshot(new DeleteDBClusterSnapshotRequest()
                 .withDBClusterSnapshotIdentifier(snapshot.getDBClusterSnapshotIdentifier()));
     }
 
+    /**
+     * Deletes RDS DB Cluster Snapshots in many regions at once. Each region is worked through by its own thread, no
+     * faster than maxDeletesPerSecond. If a delete fails no more snapshots are deleted in that region, the other
+     * regions carry on and the first failure is thrown once they are done.
+     *
+     * @param snapshotsByRegion The snapshots to delete in each region
+     * @param maxDeletesPerSecond The most snapshots to delete per second in each region
+     */
+    public void deleteSnapshots(Map<Regions, List<DBClusterSnapshot>> snapshotsByRegion, double maxDeletesPerSecond) {
+        if (snapshotsByRegion.isEmpty()) {
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(snapshotsByRegion.size(),
+                new ThreadFactoryBuilder().setNameFormat("rds-snapshot-delete-%d").setDaemon(true).build());
+        try {
+            Map<Regions, Future<?>> deletes = new LinkedHashMap<>();
+            snapshotsByRegion.forEach((region, snapshots) -> deletes.put(region, executor.submit(() -> {
+                // not shared through forService, the deletes are already counted by the RDS client limiter
+                AwsApiRateLimiter rateLimiter = new AwsApiRateLimiter(SNAPSHOT_DELETES_RATE_LIMITER_NAME,
+                        region, maxDeletesPerSecond);
+                snapshots.forEach(snapshot -> {
+                    rateLimiter.acquire();
+                    deleteSnapshot(snapshot, region);
+                });
+            })));
+
+            RuntimeException failure = null;
+            for (Map.Entry<Regions, Future<?>> delete : deletes.entrySet()) {
+                try {
+                    delete.getValue().get();
+                } catch (ExecutionException e) {
+                    log.error("Failed to delete snapshots in region: {}", delete.getKey(), e.getCause());
+                    if (failure == null) {
+                        failure = e.getCause() instanceof RuntimeException ?
+                                (RuntimeException) e.getCause() : new RuntimeException(e.getCause());
+                    }
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while deleting snapshots", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
     /**
      * Wait for a single RDS cluster snapshots to become available.
      *
@@ -167,39 +307,40 @@ public class RdsService {
     }
 
     /**
-     * Wait for a Deque of RDS cluster snapshots to become available in a round robin fashion.
+     * Wait for a Deque of RDS cluster snapshots to become available, all the pending snapshots in a region are
+     * checked together, see {@link RdsSnapshotPoller}.
      *
      * @param snapshots The snapshots to query status
      * @param regions The regions that the snapshots are in. The order of regions should match the snapshots'
      */
     public void waitForSnapshotsToBecomeAvailable(Deque<DBClusterSnapshot> snapshots, Deque<Regions> regions) {
-        while (!snapshots.isEmpty()) {
-            try {
-                Thread.sleep(10000);
-            } catch (InterruptedException e) {
-                throw new RuntimeException(e);
-            }
-            DBClusterSnapshot snapshot = snapshots.poll();
-            Regions region = regions.poll();
-            String snapshotIdentifier = snapshot.getDBClusterSnapshotIdentifier();
-            String status = getSnapshotStatus(snapshotIdentifier, region);
-
-            if (DESIRED_STATE.equals(status)) {
-                log.info("RDS cluster snapshot {} in region {} is available.", snapshotIdentifier, region.getName());
-            } else if (COPYING_STATE.equals(status) || CREATING_STATE.equals(status)){
-                log.info("Waiting for RDS cluster snapshot {} in region {} to become available.",
-                        snapshotIdentifier, region.getName());
-                snapshots.offer(snapshot);
-                regions.offer(region);
-            } else {
-                throw new UnexpectedRdsSnapshotStatusException(
-                        String.format("RDS cluster snapshot %s in region: %s is in undesired status: %s",
-                                snapshotIdentifier, region.getName(), status));
+        List<CompletableFuture<DBClusterSnapshot>> futures = new LinkedList<>();
+        Iterator<Regions> snapshotRegions = regions.iterator();
+        snapshots.forEach(snapshot -> futures.add(whenSnapshotAvailable(snapshot, snapshotRegions.next())));
+
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
             }
+            throw e;
         }
         log.info("All RDS snapshots are available.");
     }
 
+    /**
+     * Starts waiting for a RDS cluster snapshot to become available, without blocking.
+     *
+     * @param snapshot The snapshot to query status
+     * @param region The region that the snapshot is in
+     * @return A future that completes with the snapshot once it is available, or exceptionally with an
+     * {@link UnexpectedRdsSnapshotStatusException} if it is in any other status
+     */
+    public CompletableFuture<DBClusterSnapshot> whenSnapshotAvailable(DBClusterSnapshot snapshot, Regions region) {
+        return snapshotPoller.whenAvailable(snapshot, region);
+    }
+
     /**
      * Creates a RDS DB Cluster Snapshot in a given region.
      *
@@ -212,28 +353,11 @@ public class RdsService {
         CreateDBClusterSnapshotRequest request = new CreateDBClusterSnapshotRequest()
                 .withDBClusterIdentifier(clusterIdentifer)
                 .withDBClusterSnapshotIdentifier(snapshotIdentifier);
+        invalidateSnapshotIndex(region);
         DBClusterSnapshot dbClusterSnapshot = rds.createDBClusterSnapshot(request);
         return dbClusterSnapshot;
     }
 
-    private String getSnapshotStatus(String snapshotIdentifier, Regions region) {
-        AmazonRDS rds = amazonRDSClientFactory.getClient(region);
-        DescribeDBClusterSnapshotsRequest request = new DescribeDBClusterSnapshotsRequest()
-                .withDBClusterSnapshotIdentifier(snapshotIdentifier);
-
-        DescribeDBClusterSnapshotsResult result = rds.describeDBClusterSnapshots(request);
-
-        if (result.getDBClusterSnapshots().size() > 0) {
-            String status = result.getDBClusterSnapshots().get(0).getStatus();
-
-            if (StringUtils.isNotBlank(status)) {
-                return status;
-            }
-        }
-
-        return null;
-    }
-
     protected String generateSnapshotIdentifier(String clusterIdentifer, LocalDateTime localDateTime) {
         DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd-HH-mm");
         String formatDateTime = localDateTime.format(formatter);
@@ -0,0 +1,276 @@
+/*
+ * Copyright (c) 2019 Nike, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nike.cerberus.service;
+
+import com.amazonaws.regions.Regions;
+import com.amazonaws.services.rds.model.DBClusterSnapshot;
+import com.amazonaws.services.rds.model.DBClusterSnapshotAlreadyExistsException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.stream.Collectors;
+
+import static com.nike.cerberus.service.RdsSnapshotPoller.COPYING_STATUS;
+import static com.nike.cerberus.service.RdsSnapshotPoller.CREATING_STATUS;
+
+/**
+ * Copies RDS cluster snapshots from one region to many others. The snapshots already in each destination region are
+ * indexed by identifier, so working out what to copy is a lookup per snapshot. RDS limits how many copies can be in
+ * progress to a destination region at once, so each region gets its own queue that starts at most
+ * maxConcurrentCopiesPerRegion copies and starts the next one as soon as one finishes.
+ * <p>
+ * Copies keep the identifier of the snapshot they were made from, so running again after an interruption finds the
+ * copies that were already started, counts the ones still in progress against the limit and only copies the rest.
+ */
+public class RdsSnapshotCopyPlanner {
+
+    /**
+     * The number of cross region cluster snapshot copies RDS allows in progress to one destination region
+     */
+    public static final int DEFAULT_MAX_CONCURRENT_COPIES_PER_REGION = 5;
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final RdsService rdsService;
+
+    private final int maxConcurrentCopiesPerRegion;
+
+    public RdsSnapshotCopyPlanner(RdsService rdsService, int maxConcurrentCopiesPerRegion) {
+        if (maxConcurrentCopiesPerRegion < 1) {
+            throw new IllegalArgumentException("maxConcurrentCopiesPerRegion must be at least 1");
+        }
+        this.rdsService = rdsService;
+        this.maxConcurrentCopiesPerRegion = maxConcurrentCopiesPerRegion;
+    }
+
+    /**
+     * Works out which snapshots each destination region is missing.
+     *
+     * @param sourceSnapshots The snapshots that should be in every destination region
+     * @param destinationSnapshots The snapshots already in each destination region
+     * @return The plan for each destination region, in the order the regions were given
+     */
+    public Map<Regions, RegionPlan> plan(List<DBClusterSnapshot> sourceSnapshots,
+                                         Map<Regions, List<DBClusterSnapshot>> destinationSnapshots) {
+
+        Set<String> sourceIdentifiers = sourceSnapshots.stream()
+                .map(rdsService::getIdentifier)
+                .collect(Collectors.toSet());
+
+        Map<Regions, RegionPlan> plans = new LinkedHashMap<>();
+        destinationSnapshots.forEach((region, snapshots) -> {
+            Set<String> copiedIdentifiers = snapshots.stream()
+                    .map(rdsService::getIdentifier)
+                    .collect(Collectors.toSet());
+
+            List<DBClusterSnapshot> toCopy = sourceSnapshots.stream()
+                    .filter(snapshot -> !copiedIdentifiers.contains(rdsService.getIdentifier(snapshot)))
+                    .collect(Collectors.toList());
+
+            List<DBClusterSnapshot> inProgress = snapshots.stream()
+                    .filter(snapshot -> sourceIdentifiers.contains(rdsService.getIdentifier(snapshot)))
+                    .filter(snapshot -> COPYING_STATUS.equals(snapshot.getStatus())
+                            || CREATING_STATUS.equals(snapshot.getStatus()))
+                    .collect(Collectors.toList());
+
+            plans.put(region, new RegionPlan(region, toCopy, inProgress));
+        });
+        return plans;
+    }
+
+    /**
+     * Starts the copies in the plans, never having more than maxConcurrentCopiesPerRegion copies in progress to a
+     * region. If a copy fails in a region no more copies are started in that region, the other regions carry on and
+     * the first failure is thrown once they are done.
+     *
+     * @param sourceRegion The region the snapshots are copied from
+     * @param plans The plan for each destination region
+     * @param waitForCopies True to return once every copy is available, false to return once every copy has been
+     *                      started
+     * @return The copies that were started
+     */
+    public List<DBClusterSnapshot> execute(Regions sourceRegion,
+                                           Map<Regions, RegionPlan> plans,
+                                           boolean waitForCopies) {
+
+        BlockingQueue<CopyResult> results = new LinkedBlockingQueue<>();
+        List<RegionCopyQueue> queues = plans.values().stream()
+                .map(plan -> new RegionCopyQueue(sourceRegion, plan, results))
+                .collect(Collectors.toList());
+
+        queues.forEach(RegionCopyQueue::startCopies);
+
+        try {
+            while (queues.stream().anyMatch(queue -> !queue.isDone(waitForCopies))) {
+                CopyResult result = results.take();
+                result.queue.onCopyFinished(result.snapshot, result.failure);
+                result.queue.startCopies();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while copying RDS snapshots, run the command again to resume", e);
+        }
+
+        List<RuntimeException> failures = queues.stream()
+                .map(queue -> queue.failure)
+                .filter(failure -> failure != null)
+                .collect(Collectors.toList());
+        if (!failures.isEmpty()) {
+            throw failures.get(0);
+        }
+
+        return queues.stream()
+                .flatMap(queue -> queue.started.stream())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * The snapshots to copy to a destination region and the copies to it that are already in progress
+     */
+    public static class RegionPlan {
+
+        private final Regions region;
+
+        private final List<DBClusterSnapshot> toCopy;
+
+        private final List<DBClusterSnapshot> inProgress;
+
+        public RegionPlan(Regions region, List<DBClusterSnapshot> toCopy, List<DBClusterSnapshot> inProgress) {
+            this.region = region;
+            this.toCopy = Collections.unmodifiableList(new ArrayList<>(toCopy));
+            this.inProgress = Collections.unmodifiableList(new ArrayList<>(inProgress));
+        }
+
+        public Regions getRegion() {
+            return region;
+        }
+
+        public List<DBClusterSnapshot> getToCopy() {
+            return toCopy;
+        }
+
+        public List<DBClusterSnapshot> getInProgress() {
+            return inProgress;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d to copy, %d already in progress", region.getName(), toCopy.size(), inProgress.size());
+        }
+    }
+
+    private static class CopyResult {
+
+        private final RegionCopyQueue queue;
+
+        private final DBClusterSnapshot snapshot;
+
+        private final Throwable failure;
+
+        private CopyResult(RegionCopyQueue queue, DBClusterSnapshot snapshot, Throwable failure) {
+            this.queue = queue;
+            this.snapshot = snapshot;
+            this.failure = failure;
+        }
+    }
+
+    /**
+     * Only used from the thread that called execute, the futures hand their results back through the results queue
+     */
+    private class RegionCopyQueue {
+
+        private final Regions sourceRegion;
+
+        private final Regions region;
+
+        private final Queue<DBClusterSnapshot> pending;
+
+        private final BlockingQueue<CopyResult> results;
+
+        private final List<DBClusterSnapshot> started = new LinkedList<>();
+
+        private int inFlight = 0;
+
+        private RuntimeException failure;
+
+        private RegionCopyQueue(Regions sourceRegion, RegionPlan plan, BlockingQueue<CopyResult> results) {
+            this.sourceRegion = sourceRegion;
+            this.region = plan.getRegion();
+            this.pending = new LinkedList<>(plan.getToCopy());
+            this.results = results;
+            plan.getInProgress().forEach(snapshot -> {
+                log.info("Copy of snapshot: {} to region: {} is already in progress", rdsService.getIdentifier(snapshot), region);
+                watch(snapshot);
+            });
+        }
+
+        private void startCopies() {
+            while (failure == null && inFlight < maxConcurrentCopiesPerRegion && !pending.isEmpty()) {
+                DBClusterSnapshot fromSnapshot = pending.poll();
+                log.info("Initiating copy of RDS DB Snapshot: {} located in region: {} to region: {}",
+                        fromSnapshot.getDBClusterSnapshotIdentifier(), sourceRegion, region);
+                try {
+                    DBClusterSnapshot copy = rdsService.copySnapshot(fromSnapshot, sourceRegion, region);
+                    started.add(copy);
+                    watch(copy);
+                } catch (DBClusterSnapshotAlreadyExistsException e) {
+                    log.info("Snapshot: {} already copied to region: {}, skipping...", rdsService.getIdentifier(fromSnapshot), region);
+                } catch (RuntimeException e) {
+                    log.error("Failed to copy snapshot: {} to region: {}, no more copies will be started in this region",
+                            rdsService.getIdentifier(fromSnapshot), region, e);
+                    failure = e;
+                }
+            }
+        }
+
+        private void watch(DBClusterSnapshot snapshot) {
+            inFlight++;
+            rdsService.whenSnapshotAvailable(snapshot, region).whenComplete((available, throwable) ->
+                    results.add(new CopyResult(this, snapshot, throwable)));
+        }
+
+        private void onCopyFinished(DBClusterSnapshot snapshot, Throwable throwable) {
+            inFlight--;
+            if (throwable == null) {
+                log.info("Snapshot: {} is available in region: {}", rdsService.getIdentifier(snapshot), region);
+                return;
+            }
+            Throwable cause = throwable instanceof CompletionException ? throwable.getCause() : throwable;
+            log.error("Copy of snapshot: {} to region: {} did not become available, no more copies will be started in this region",
+                    rdsService.getIdentifier(snapshot), region, cause);
+            if (failure == null) {
+                failure = cause instanceof RuntimeException ? (RuntimeException) cause : new RuntimeException(cause);
+            }
+        }
+
+        private boolean isDone(boolean waitForCopies) {
+            boolean allStarted = failure != null || pending.isEmpty();
+            return allStarted && (!waitForCopies || inFlight == 0);
+        }
+    }
+}
@@ -0,0 +1,264 @@
+/*
+ * Copyright (c) 2019 Nike, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nike.cerberus.service;
+
+import com.amazonaws.regions.Regions;
+import com.amazonaws.services.rds.AmazonRDS;
+import com.amazonaws.services.rds.AmazonRDSClient;
+import com.amazonaws.services.rds.model.DBClusterSnapshot;
+import com.amazonaws.services.rds.model.DescribeDBClusterSnapshotsRequest;
+import com.amazonaws.services.rds.model.DescribeDBClusterSnapshotsResult;
+import com.amazonaws.services.rds.model.Filter;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.nike.cerberus.operation.UnexpectedRdsSnapshotStatusException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Waits for RDS cluster snapshots to become available. All the snapshots that are pending in a region are checked
+ * with a single filtered DescribeDBClusterSnapshots call, and how long to wait before the next check is worked out
+ * from how fast the PercentProgress of the snapshots is moving.
+ * <p>
+ * Callers get a future for each snapshot, which completes when the snapshot is available, or completes exceptionally
+ * with an {@link UnexpectedRdsSnapshotStatusException} if the snapshot ends up in any other status.
+ */
+public class RdsSnapshotPoller {
+
+    public static final String AVAILABLE_STATUS = "available";
+
+    public static final String COPYING_STATUS = "copying";
+
+    public static final String CREATING_STATUS = "creating";
+
+    /**
+     * The most snapshot identifiers to put in one db-cluster-snapshot-id filter
+     */
+    private static final int MAX_FILTER_VALUES = 50;
+
+    /**
+     * A snapshot that was just created or copied can take a moment to show up in describe calls
+     */
+    private static final int MAX_POLLS_NOT_FOUND = 3;
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final AwsClientFactory<AmazonRDSClient> amazonRDSClientFactory;
+
+    private final long minIntervalMillis;
+
+    private final long maxIntervalMillis;
+
+    private final Map<String, PendingSnapshot> pending = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("rds-snapshot-poller-%d").setDaemon(true).build());
+
+    private final AtomicLong describeCalls = new AtomicLong();
+
+    private boolean pollScheduled = false;
+
+    private long lastIntervalMillis;
+
+    public RdsSnapshotPoller(AwsClientFactory<AmazonRDSClient> amazonRDSClientFactory,
+                             long minIntervalMillis,
+                             long maxIntervalMillis) {
+
+        this.amazonRDSClientFactory = amazonRDSClientFactory;
+        this.minIntervalMillis = minIntervalMillis;
+        this.maxIntervalMillis = maxIntervalMillis;
+        this.lastIntervalMillis = minIntervalMillis;
+    }
+
+    /**
+     * Starts watching a snapshot, the first check happens straight away.
+     *
+     * @param snapshot The snapshot to wait for
+     * @param region The region that the snapshot is in
+     * @return A future that completes with the available snapshot
+     */
+    public CompletableFuture<DBClusterSnapshot> whenAvailable(DBClusterSnapshot snapshot, Regions region) {
+        String key = region.getName() + "/" + snapshot.getDBClusterSnapshotIdentifier();
+        synchronized (this) {
+            PendingSnapshot pendingSnapshot = pending.computeIfAbsent(key, k -> new PendingSnapshot(snapshot, region));
+            if (!pollScheduled) {
+                pollScheduled = true;
+                lastIntervalMillis = minIntervalMillis;
+                scheduler.execute(this::poll);
+            }
+            return pendingSnapshot.future;
+        }
+    }
+
+    /**
+     * @return How many describe calls have been made, one per region per check when fewer than 50 snapshots are pending
+     */
+    public long getDescribeCalls() {
+        return describeCalls.get();
+    }
+
+    private void poll() {
+        Map<Regions, List<PendingSnapshot>> pendingByRegion = pending.values().stream()
+                .collect(Collectors.groupingBy(pendingSnapshot -> pendingSnapshot.region));
+
+        pendingByRegion.forEach((region, snapshots) -> {
+            try {
+                pollRegion(region, snapshots);
+            } catch (RuntimeException e) {
+                // transient errors are already retried by the client, give up on the region's snapshots
+                snapshots.forEach(snapshot -> complete(snapshot, null, e));
+            }
+        });
+
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                pollScheduled = false;
+            } else {
+                lastIntervalMillis = getNextIntervalMillis();
+                scheduler.schedule(this::poll, lastIntervalMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private void pollRegion(Regions region, List<PendingSnapshot> snapshots) {
+        AmazonRDS rds = amazonRDSClientFactory.getClient(region);
+        Map<String, DBClusterSnapshot> found = new HashMap<>();
+
+        for (List<PendingSnapshot> batch : Lists.partition(snapshots, MAX_FILTER_VALUES)) {
+            DescribeDBClusterSnapshotsRequest request = new DescribeDBClusterSnapshotsRequest()
+                    .withFilters(new Filter()
+                            .withName("db-cluster-snapshot-id")
+                            .withValues(batch.stream().map(PendingSnapshot::getIdentifier).collect(Collectors.toList())));
+            String marker = null;
+            do {
+                describeCalls.incrementAndGet();
+                DescribeDBClusterSnapshotsResult result = rds.describeDBClusterSnapshots(request.withMarker(marker));
+                result.getDBClusterSnapshots().forEach(snapshot ->
+                        found.put(snapshot.getDBClusterSnapshotIdentifier(), snapshot));
+                marker = result.getMarker();
+            } while (marker != null);
+        }
+
+        long now = System.currentTimeMillis();
+        for (PendingSnapshot pendingSnapshot : snapshots) {
+            DBClusterSnapshot snapshot = found.get(pendingSnapshot.getIdentifier());
+            String status = snapshot == null ? null : snapshot.getStatus();
+
+            if (AVAILABLE_STATUS.equals(status)) {
+                log.info("RDS cluster snapshot {} in region {} is available.", pendingSnapshot.getIdentifier(), region.getName());
+                complete(pendingSnapshot, snapshot, null);
+            } else if (COPYING_STATUS.equals(status) || CREATING_STATUS.equals(status) ||
+                    (snapshot == null && ++pendingSnapshot.pollsNotFound < MAX_POLLS_NOT_FOUND)) {
+                pendingSnapshot.recordProgress(snapshot == null ? null : snapshot.getPercentProgress(), now);
+                log.info("Waiting for RDS cluster snapshot {} in region {} to become available, progress: {}%",
+                        pendingSnapshot.getIdentifier(), region.getName(),
+                        pendingSnapshot.lastPercentProgress == null ? 0 : pendingSnapshot.lastPercentProgress);
+            } else {
+                complete(pendingSnapshot, null, new UnexpectedRdsSnapshotStatusException(
+                        String.format("RDS cluster snapshot %s in region: %s is in undesired status: %s",
+                                pendingSnapshot.getIdentifier(), region.getName(), status)));
+            }
+        }
+    }
+
+    private void complete(PendingSnapshot pendingSnapshot, DBClusterSnapshot snapshot, Throwable failure) {
+        pending.remove(pendingSnapshot.region.getName() + "/" + pendingSnapshot.getIdentifier());
+        if (failure == null) {
+            pendingSnapshot.future.complete(snapshot);
+        } else {
+            pendingSnapshot.future.completeExceptionally(failure);
+        }
+    }
+
+    /**
+     * Waits about half as long as the snapshot closest to finishing is expected to take, going by its progress
+     * so far. Without any progress to go by, the interval doubles on each check.
+     */
+    private long getNextIntervalMillis() {
+        long soonestMillis = pending.values().stream()
+                .mapToLong(PendingSnapshot::getEstimatedMillisRemaining)
+                .filter(estimate -> estimate >= 0)
+                .min()
+                .orElse(-1);
+
+        long interval = soonestMillis >= 0 ? soonestMillis / 2 : lastIntervalMillis * 2;
+        return Math.max(minIntervalMillis, Math.min(maxIntervalMillis, interval));
+    }
+
+    private static class PendingSnapshot {
+
+        private final DBClusterSnapshot snapshot;
+
+        private final Regions region;
+
+        private final CompletableFuture<DBClusterSnapshot> future = new CompletableFuture<>();
+
+        private int pollsNotFound = 0;
+
+        private Integer firstPercentProgress;
+
+        private long firstProgressMillis;
+
+        private Integer lastPercentProgress;
+
+        private long lastProgressMillis;
+
+        private PendingSnapshot(DBClusterSnapshot snapshot, Regions region) {
+            this.snapshot = snapshot;
+            this.region = region;
+        }
+
+        private String getIdentifier() {
+            return snapshot.getDBClusterSnapshotIdentifier();
+        }
+
+        private void recordProgress(Integer percentProgress, long nowMillis) {
+            if (percentProgress == null) {
+                return;
+            }
+            if (firstPercentProgress == null) {
+                firstPercentProgress = percentProgress;
+                firstProgressMillis = nowMillis;
+            }
+            lastPercentProgress = percentProgress;
+            lastProgressMillis = nowMillis;
+        }
+
+        /**
+         * @return how long until the snapshot reaches 100%, at the rate it has progressed so far, or -1 if unknown
+         */
+        private long getEstimatedMillisRemaining() {
+            if (lastPercentProgress == null || lastPercentProgress <= firstPercentProgress) {
+                return -1;
+            }
+            double percentPerMilli = (double) (lastPercentProgress - firstPercentProgress) /
+                    (lastProgressMillis - firstProgressMillis);
+            return (long) ((100 - lastPercentProgress) / percentPerMilli);
+        }
+    }
+}
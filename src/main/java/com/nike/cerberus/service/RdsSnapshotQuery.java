@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2019 Nike, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nike.cerberus.service;
+
+import com.amazonaws.regions.Regions;
+import com.amazonaws.services.rds.model.DescribeDBClusterSnapshotsRequest;
+
+import java.util.Objects;
+
+/**
+ * The RDS cluster snapshots to list in a region. The cluster and snapshot type are filtered by RDS, so listing
+ * the snapshots of one cluster does not page through every snapshot in the account.
+ */
+public class RdsSnapshotQuery {
+
+    public static final String SNAPSHOT_TYPE_AUTOMATED = "automated";
+
+    public static final String SNAPSHOT_TYPE_MANUAL = "manual";
+
+    private final Regions region;
+
+    private final String dbClusterIdentifier;
+
+    private final String snapshotType;
+
+    private RdsSnapshotQuery(Regions region, String dbClusterIdentifier, String snapshotType) {
+        this.region = region;
+        this.dbClusterIdentifier = dbClusterIdentifier;
+        this.snapshotType = snapshotType;
+    }
+
+    /**
+     * @return A query for all the cluster snapshots in the region
+     */
+    public static RdsSnapshotQuery forRegion(Regions region) {
+        return new RdsSnapshotQuery(region, null, null);
+    }
+
+    /**
+     * @param dbClusterIdentifier Only list snapshots of this cluster, or of any cluster if null. Copies of a snapshot
+     *                            keep the identifier of the cluster the snapshot was taken of
+     */
+    public RdsSnapshotQuery withDbClusterIdentifier(String dbClusterIdentifier) {
+        return new RdsSnapshotQuery(region, dbClusterIdentifier, snapshotType);
+    }
+
+    /**
+     * @param snapshotType Only list snapshots of this type, such as {@link #SNAPSHOT_TYPE_MANUAL}
+     */
+    public RdsSnapshotQuery withSnapshotType(String snapshotType) {
+        return new RdsSnapshotQuery(region, dbClusterIdentifier, snapshotType);
+    }
+
+    public Regions getRegion() {
+        return region;
+    }
+
+    public String getDbClusterIdentifier() {
+        return dbClusterIdentifier;
+    }
+
+    public String getSnapshotType() {
+        return snapshotType;
+    }
+
+    /**
+     * @return A request for the first page of the snapshots
+     */
+    public DescribeDBClusterSnapshotsRequest toRequest() {
+        return new DescribeDBClusterSnapshotsRequest()
+                .withDBClusterIdentifier(dbClusterIdentifier)
+                .withSnapshotType(snapshotType);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        RdsSnapshotQuery that = (RdsSnapshotQuery) o;
+        return region == that.region &&
+                Objects.equals(dbClusterIdentifier, that.dbClusterIdentifier) &&
+                Objects.equals(snapshotType, that.snapshotType);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(region, dbClusterIdentifier, snapshotType);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("region: %s, cluster: %s, type: %s", region.getName(),
+                dbClusterIdentifier == null ? "any" : dbClusterIdentifier,
+                snapshotType == null ? "any" : snapshotType);
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2019 Nike, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nike.cerberus.service;
+
+import com.amazonaws.services.rds.model.DBClusterSnapshot;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.IsoFields;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Decides which RDS cluster snapshots in a region to keep. A snapshot is kept if any rule keeps it:
+ * <ul>
+ *     <li>it is newer than keepNewerThanDays</li>
+ *     <li>it is one of the keepLast newest snapshots</li>
+ *     <li>it is the newest snapshot of one of the keepDaily, keepWeekly or keepMonthly most recent days, ISO weeks
+ *     or months (in UTC) that have snapshots</li>
+ *     <li>it is needed to keep minimumToKeep snapshots in the region, the newest are kept first</li>
+ * </ul>
+ * Every other snapshot is deleted. With only keepNewerThanDays set this is the same as deleting the snapshots
+ * older than that many days.
+ */
+public class RdsSnapshotRetentionPolicy {
+
+    private final int keepNewerThanDays;
+
+    private final int keepLast;
+
+    private final int keepDaily;
+
+    private final int keepWeekly;
+
+    private final int keepMonthly;
+
+    private final int minimumToKeep;
+
+    private RdsSnapshotRetentionPolicy(int keepNewerThanDays, int keepLast, int keepDaily, int keepWeekly,
+                                       int keepMonthly, int minimumToKeep) {
+        this.keepNewerThanDays = keepNewerThanDays;
+        this.keepLast = keepLast;
+        this.keepDaily = keepDaily;
+        this.keepWeekly = keepWeekly;
+        this.keepMonthly = keepMonthly;
+        this.minimumToKeep = minimumToKeep;
+    }
+
+    /**
+     * @return A policy that keeps the snapshots newer than the given number of days
+     */
+    public static RdsSnapshotRetentionPolicy keepNewerThanDays(int days) {
+        return new RdsSnapshotRetentionPolicy(days, 0, 0, 0, 0, 0);
+    }
+
+    public RdsSnapshotRetentionPolicy withKeepLast(int keepLast) {
+        return new RdsSnapshotRetentionPolicy(keepNewerThanDays, keepLast, keepDaily, keepWeekly, keepMonthly, minimumToKeep);
+    }
+
+    public RdsSnapshotRetentionPolicy withKeepDaily(int keepDaily) {
+        return new RdsSnapshotRetentionPolicy(keepNewerThanDays, keepLast, keepDaily, keepWeekly, keepMonthly, minimumToKeep);
+    }
+
+    public RdsSnapshotRetentionPolicy withKeepWeekly(int keepWeekly) {
+        return new RdsSnapshotRetentionPolicy(keepNewerThanDays, keepLast, keepDaily, keepWeekly, keepMonthly, minimumToKeep);
+    }
+
+    public RdsSnapshotRetentionPolicy withKeepMonthly(int keepMonthly) {
+        return new RdsSnapshotRetentionPolicy(keepNewerThanDays, keepLast, keepDaily, keepWeekly, keepMonthly, minimumToKeep);
+    }
+
+    public RdsSnapshotRetentionPolicy withMinimumToKeep(int minimumToKeep) {
+        return new RdsSnapshotRetentionPolicy(keepNewerThanDays, keepLast, keepDaily, keepWeekly, keepMonthly, minimumToKeep);
+    }
+
+    /**
+     * @param snapshots The snapshots in a region
+     * @param now The time to measure the age of the snapshots from
+     * @return Which snapshots to keep, and why, and which to delete
+     */
+    public Decision apply(List<DBClusterSnapshot> snapshots, Instant now) {
+        List<DBClusterSnapshot> newestFirst = snapshots.stream()
+                .sorted(Comparator.comparing(DBClusterSnapshot::getSnapshotCreateTime).reversed())
+                .collect(Collectors.toList());
+
+        Map<DBClusterSnapshot, String> kept = new LinkedHashMap<>();
+        Instant oldestAcceptableCreateTime = now.minus(keepNewerThanDays, ChronoUnit.DAYS);
+        newestFirst.stream()
+                .filter(snapshot -> snapshot.getSnapshotCreateTime().toInstant().isAfter(oldestAcceptableCreateTime))
+                .forEach(snapshot -> kept.putIfAbsent(snapshot, "newer than " + keepNewerThanDays + " days"));
+        newestFirst.stream()
+                .limit(keepLast)
+                .forEach(snapshot -> kept.putIfAbsent(snapshot, "last " + keepLast));
+        keepNewestPerPeriod(newestFirst, keepDaily, "daily",
+                time -> time.toLocalDate().toString(), kept);
+        keepNewestPerPeriod(newestFirst, keepWeekly, "weekly",
+                time -> time.get(IsoFields.WEEK_BASED_YEAR) + "-W" + time.get(IsoFields.WEEK_OF_WEEK_BASED_YEAR), kept);
+        keepNewestPerPeriod(newestFirst, keepMonthly, "monthly",
+                time -> time.getYear() + "-" + time.getMonthValue(), kept);
+        for (DBClusterSnapshot snapshot : newestFirst) {
+            if (kept.size() >= minimumToKeep) {
+                break;
+            }
+            kept.putIfAbsent(snapshot, "minimum of " + minimumToKeep);
+        }
+
+        Map<DBClusterSnapshot, String> keptNewestFirst = new LinkedHashMap<>();
+        List<DBClusterSnapshot> toDelete = new ArrayList<>();
+        newestFirst.forEach(snapshot -> {
+            if (kept.containsKey(snapshot)) {
+                keptNewestFirst.put(snapshot, kept.get(snapshot));
+            } else {
+                toDelete.add(snapshot);
+            }
+        });
+
+        return new Decision(keptNewestFirst, toDelete);
+    }
+
+    private void keepNewestPerPeriod(List<DBClusterSnapshot> newestFirst,
+                                     int periodsToKeep,
+                                     String reason,
+                                     Function<ZonedDateTime, String> period,
+                                     Map<DBClusterSnapshot, String> kept) {
+
+        Set<String> periodsSeen = new HashSet<>();
+        for (DBClusterSnapshot snapshot : newestFirst) {
+            if (periodsSeen.size() >= periodsToKeep) {
+                return;
+            }
+            if (periodsSeen.add(period.apply(snapshot.getSnapshotCreateTime().toInstant().atZone(ZoneOffset.UTC)))) {
+                kept.putIfAbsent(snapshot, reason);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("keep newer than %d days, last %d, daily %d, weekly %d, monthly %d, minimum %d",
+                keepNewerThanDays, keepLast, keepDaily, keepWeekly, keepMonthly, minimumToKeep);
+    }
+
+    /**
+     * The snapshots a policy keeps and deletes in a region, newest first
+     */
+    public static class Decision {
+
+        private final Map<DBClusterSnapshot, String> kept;
+
+        private final List<DBClusterSnapshot> toDelete;
+
+        private Decision(Map<DBClusterSnapshot, String> kept, List<DBClusterSnapshot> toDelete) {
+            this.kept = Collections.unmodifiableMap(kept);
+            this.toDelete = Collections.unmodifiableList(toDelete);
+        }
+
+        /**
+         * @return The snapshots to keep, with the first rule that keeps each of them
+         */
+        public Map<DBClusterSnapshot, String> getKept() {
+            return kept;
+        }
+
+        public List<DBClusterSnapshot> getToDelete() {
+            return toDelete;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2019 Nike, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nike.cerberus.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A file that records which backup keys have been restored, one key per line. Each key is flushed as soon as it is
+ * restored, so a restore that is stopped part way through can be run again and carry on from where it stopped.
+ */
+public class RestoreCheckpoint implements Closeable {
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final Path path;
+
+    private final Set<String> done = ConcurrentHashMap.newKeySet();
+
+    private final Writer writer;
+
+    private RestoreCheckpoint(Path path) throws IOException {
+        this.path = path;
+        if (Files.exists(path)) {
+            Files.readAllLines(path, StandardCharsets.UTF_8).stream()
+                    .map(String::trim)
+                    .filter(line -> !line.isEmpty())
+                    .forEach(done::add);
+        }
+        this.writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * @param path The checkpoint file, it is created if it does not exist
+     * @return The checkpoint, with the keys that earlier runs restored
+     */
+    public static RestoreCheckpoint open(Path path) {
+        try {
+            return new RestoreCheckpoint(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open restore checkpoint file: " + path, e);
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * @return True if the key was restored by this or an earlier run
+     */
+    public boolean isDone(String key) {
+        return done.contains(key);
+    }
+
+    public int getDoneCount() {
+        return done.size();
+    }
+
+    /**
+     * Records that a key has been restored
+     */
+    public synchronized void markDone(String key) {
+        if (!done.add(key)) {
+            return;
+        }
+        try {
+            writer.write(key);
+            writer.write('\n');
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write restore checkpoint file: " + path, e);
+        }
+    }
+
+    /**
+     * Closes and removes the checkpoint file, for once everything has been restored
+     */
+    public synchronized void delete() {
+        close();
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Failed to delete restore checkpoint file: {}", path, e);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            writer.close();
+        } catch (IOException e) {
+            log.warn("Failed to close restore checkpoint file: {}", path, e);
+        }
+    }
+}
@@ -20,9 +20,13 @@ import com.amazonaws.AmazonServiceException;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.model.DeleteObjectsRequest;
 import com.amazonaws.services.s3.model.GetObjectRequest;
-import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.ListObjectsV2Request;
+import com.amazonaws.services.s3.model.ListObjectsV2Result;
 import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Iterators;
 import com.nike.cerberus.ConfigConstants;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -33,17 +37,24 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
-import java.util.List;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Service wrapper for AWS S3.
  */
 public class S3StoreService implements StoreService {
 
+    private static final int MAX_KEYS_PER_DELETE_REQUEST = 1000;
+
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
     private final AmazonS3 s3Client;
@@ -73,14 +84,20 @@ public class S3StoreService implements StoreService {
 
 
     public Optional<String> get(String path) {
+        return getVersioned(path).map(VersionedValue::getValue);
+    }
+
+    @Override
+    public Optional<VersionedValue> getVersioned(String path) {
         Optional<S3Object> s3ObjectOptional = getS3Object(path);
         if (!s3ObjectOptional.isPresent()) {
             return Optional.empty();
         }
 
-        try {
-            InputStream object = s3ObjectOptional.get().getObjectContent();
-            return Optional.of(IOUtils.toString(object, ConfigConstants.DEFAULT_ENCODING));
+        S3Object s3Object = s3ObjectOptional.get();
+        try (InputStream object = s3Object.getObjectContent()) {
+            String value = IOUtils.toString(object, ConfigConstants.DEFAULT_ENCODING);
+            return Optional.of(new VersionedValue(value, s3Object.getObjectMetadata().getETag()));
         } catch (IOException e) {
             String errorMessage =
                     String.format("Unable to read contents of S3 object. Bucket: %s, Key: %s, Expected Encoding: %s",
@@ -115,45 +132,102 @@ public class S3StoreService implements StoreService {
     }
 
     public Set<String> getKeysInPartialPath(String path) {
-        ObjectListing objectListing = s3Client.listObjects(s3Bucket, getFullPath(path));
+        return streamKeysInPartialPath(path).collect(Collectors.toSet());
+    }
 
-        return objectListing
-                .getObjectSummaries()
-                .stream()
-                .map(objectSummary -> StringUtils.stripStart(objectSummary.getKey(), s3Prefix + "/"))
-                .collect(Collectors.toSet());
+    @Override
+    public Stream<String> streamKeysInPartialPath(String path) {
+        return streamObjectSummaries(path).map(objectSummary -> removePrefix(objectSummary.getKey()));
+    }
+
+    @Override
+    public Map<String, String> getKeysWithHashInPartialPath(String path) {
+        return streamObjectSummaries(path).collect(Collectors.toMap(
+                objectSummary -> removePrefix(objectSummary.getKey()), S3ObjectSummary::getETag));
+    }
+
+    /**
+     * Lazily lists every object under the path, the next page is only requested from S3 once the
+     * objects in the current page have been consumed
+     */
+    public Stream<S3ObjectSummary> streamObjectSummaries(String path) {
+        return streamListings(getFullPath(path), null)
+                .flatMap(listing -> listing.getObjectSummaries().stream());
+    }
+
+    /**
+     * Lazily lists the pages under a prefix
+     *
+     * @param prefix    The full prefix to list under, including the store prefix
+     * @param delimiter Optional delimiter used to group keys into common prefixes
+     */
+    protected Stream<ListObjectsV2Result> streamListings(String prefix, String delimiter) {
+        Iterator<ListObjectsV2Result> pages = new AbstractIterator<ListObjectsV2Result>() {
+            private String continuationToken;
+            private boolean isLastPage;
+
+            @Override
+            protected ListObjectsV2Result computeNext() {
+                if (isLastPage) {
+                    return endOfData();
+                }
+
+                ListObjectsV2Request request = new ListObjectsV2Request()
+                        .withBucketName(s3Bucket)
+                        .withPrefix(prefix)
+                        .withDelimiter(delimiter)
+                        .withContinuationToken(continuationToken);
+
+                ListObjectsV2Result result = s3Client.listObjectsV2(request);
+                continuationToken = result.getNextContinuationToken();
+                isLastPage = !result.isTruncated();
+                return result;
+            }
+        };
+
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(pages, Spliterator.ORDERED), false);
     }
 
     /**
      * List under a path as-if it were a folder
      */
     public Set<String> listUnderPartialPath(String path) {
-
-        return getKeysInPartialPath(path)
-                .stream()
-                .map(str -> StringUtils.removeStart(str, path)) // remove the path from the beginning of the output
-                .map(str -> StringUtils.removeStart(str, "/")) // remove any leading slash
-                .map(str -> StringUtils.substringBefore(str, "/")) // remove everything after the next slash so the listing is not recursive
-                .distinct()
+        String folder = StringUtils.isBlank(path) || path.endsWith("/") ? path : path + "/";
+        String fullFolderPath = getFullPath(folder);
+
+        // S3 groups everything below the next slash into a common prefix so the listing is not recursive
+        return streamListings(fullFolderPath, "/")
+                .flatMap(listing -> Stream.concat(
+                        listing.getCommonPrefixes().stream(),
+                        listing.getObjectSummaries().stream().map(S3ObjectSummary::getKey)))
+                .map(key -> StringUtils.removeStart(key, fullFolderPath))
+                .map(key -> StringUtils.removeEnd(key, "/"))
+                .filter(StringUtils::isNotBlank)
                 .collect(Collectors.toSet());
     }
 
     public void deleteAllKeysOnPartialPath(String path) {
-        ObjectListing objectListing = s3Client.listObjects(s3Bucket, getFullPath(path));
+        deleteFullKeys(streamObjectSummaries(path).map(S3ObjectSummary::getKey));
+    }
 
-        if (objectListing.getObjectSummaries().isEmpty()) {
-            return;
-        }
+    @Override
+    public void deleteKeys(Collection<String> paths) {
+        deleteFullKeys(paths.stream().map(this::getFullPath));
+    }
 
-        List<DeleteObjectsRequest.KeyVersion> keys = objectListing
-                .getObjectSummaries()
-                .stream()
-                .map(objectSummary -> new DeleteObjectsRequest.KeyVersion(objectSummary.getKey()))
-                .collect(Collectors.toList());
+    /**
+     * Deletes the keys in batches of the max number of keys that S3 allows in a single DeleteObjects request
+     */
+    private void deleteFullKeys(Stream<String> fullKeys) {
+        Iterators.partition(fullKeys.iterator(), MAX_KEYS_PER_DELETE_REQUEST).forEachRemaining(batch -> {
+            DeleteObjectsRequest request = new DeleteObjectsRequest(s3Bucket);
+            request.setKeys(batch.stream().map(DeleteObjectsRequest.KeyVersion::new).collect(Collectors.toList()));
+            s3Client.deleteObjects(request);
+        });
+    }
 
-        DeleteObjectsRequest request = new DeleteObjectsRequest(s3Bucket);
-        request.setKeys(keys);
-        s3Client.deleteObjects(request);
+    private String removePrefix(String fullPath) {
+        return StringUtils.removeStart(fullPath, getFullPath(""));
     }
 
     private String getFullPath(final String path) {
@@ -166,8 +240,8 @@ public class S3StoreService implements StoreService {
 
     @Override
     public Optional<String> getHash(String path) {
-        ObjectMetadata objectMetadata = s3Client.getObjectMetadata(s3Bucket, path);
-        logger.debug("The hash for {} is {}", path, objectMetadata.getETag().toString());
+        ObjectMetadata objectMetadata = s3Client.getObjectMetadata(s3Bucket, getFullPath(path));
+        logger.debug("The hash for {} is {}", path, objectMetadata.getETag());
         return Optional.ofNullable(objectMetadata.getETag());
     }
 
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2019 Nike, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nike.cerberus.service;
+
+import com.amazonaws.regions.Regions;
+import com.amazonaws.services.cloudformation.model.ChangeSetStatus;
+import com.amazonaws.services.cloudformation.model.Replacement;
+import com.amazonaws.services.cloudformation.model.ResourceChange;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * A CloudFormation change set that has finished being created, along with the resource changes it would make.
+ */
+public class StackChangeSet {
+
+    /**
+     * CloudFormation fails change sets that would not change anything with one of these reasons
+     */
+    private static final String[] NO_CHANGES_STATUS_REASONS = {
+            "didn't contain changes",
+            "No updates are to be performed"
+    };
+
+    private final Regions region;
+
+    private final String stackName;
+
+    private final String changeSetName;
+
+    private final String status;
+
+    private final String statusReason;
+
+    private final List<ResourceChange> resourceChanges;
+
+    public StackChangeSet(Regions region,
+                          String stackName,
+                          String changeSetName,
+                          String status,
+                          String statusReason,
+                          List<ResourceChange> resourceChanges) {
+
+        this.region = region;
+        this.stackName = stackName;
+        this.changeSetName = changeSetName;
+        this.status = status;
+        this.statusReason = statusReason;
+        this.resourceChanges = Collections.unmodifiableList(resourceChanges);
+    }
+
+    public Regions getRegion() {
+        return region;
+    }
+
+    public String getStackName() {
+        return stackName;
+    }
+
+    public String getChangeSetName() {
+        return changeSetName;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public String getStatusReason() {
+        return statusReason;
+    }
+
+    public List<ResourceChange> getResourceChanges() {
+        return resourceChanges;
+    }
+
+    /**
+     * @return true if the change set was created and can be executed
+     */
+    public boolean hasChanges() {
+        return ChangeSetStatus.CREATE_COMPLETE.toString().equals(status) && !resourceChanges.isEmpty();
+    }
+
+    /**
+     * @return true if CloudFormation failed the change set because it would not change the stack
+     */
+    public boolean isEmpty() {
+        return resourceChanges.isEmpty() && (ChangeSetStatus.CREATE_COMPLETE.toString().equals(status) ||
+                isNoChangesStatusReason(statusReason));
+    }
+
+    /**
+     * @return the resource changes that replace (or may replace) the existing resource
+     */
+    public List<ResourceChange> getReplacements() {
+        return resourceChanges.stream()
+                .filter(change -> Replacement.True.toString().equals(change.getReplacement()) ||
+                        Replacement.Conditional.toString().equals(change.getReplacement()))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public String toString() {
+        if (isEmpty()) {
+            return String.format("%s (%s): no changes", stackName, region.getName());
+        }
+        if (!hasChanges()) {
+            return String.format("%s (%s): %s %s", stackName, region.getName(), status, StringUtils.trimToEmpty(statusReason));
+        }
+
+        StringBuilder summary = new StringBuilder(String.format("%s (%s): %d resource change(s), %d replacement(s)",
+                stackName, region.getName(), resourceChanges.size(), getReplacements().size()));
+        for (ResourceChange change : resourceChanges) {
+            summary.append(String.format("%n    %-8s %s (%s)", change.getAction(), change.getLogicalResourceId(),
+                    change.getResourceType()));
+            if (StringUtils.isNotBlank(change.getReplacement()) && !Replacement.False.toString().equals(change.getReplacement())) {
+                summary.append(" replacement: ").append(change.getReplacement());
+            }
+        }
+        return summary.toString();
+    }
+
+    private static boolean isNoChangesStatusReason(String statusReason) {
+        for (String reason : NO_CHANGES_STATUS_REASONS) {
+            if (StringUtils.containsIgnoreCase(statusReason, reason)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
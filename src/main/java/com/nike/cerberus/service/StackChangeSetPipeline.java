@@ -0,0 +1,266 @@
+/*
+ * Copyright (c) 2019 Nike, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nike.cerberus.service;
+
+import com.amazonaws.regions.Regions;
+import com.amazonaws.services.cloudformation.model.ResourceChange;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.nike.cerberus.domain.environment.Stack;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Updates many stacks through change sets: the change sets are all created concurrently so that the updates can be
+ * previewed together, and the approved ones are then executed concurrently. At most maxParallelPerRegion change sets
+ * are created or executed at the same time in any one region.
+ */
+public class StackChangeSetPipeline {
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final CloudFormationService cloudFormationService;
+
+    private final int maxParallelPerRegion;
+
+    public StackChangeSetPipeline(CloudFormationService cloudFormationService, int maxParallelPerRegion) {
+        if (maxParallelPerRegion < 1) {
+            throw new IllegalArgumentException("maxParallelPerRegion must be at least 1");
+        }
+        this.cloudFormationService = cloudFormationService;
+        this.maxParallelPerRegion = maxParallelPerRegion;
+    }
+
+    /**
+     * Creates a change set for each request. If any of them fail, the change sets that were created are deleted
+     * and the first failure is thrown.
+     *
+     * @param requests the stacks to update
+     * @return the change sets, in the same order as the requests
+     */
+    public List<StackChangeSet> createChangeSets(List<Request> requests) {
+        List<Outcome<StackChangeSet>> outcomes = runPerRegion(requests, Request::getRegion, request ->
+                cloudFormationService.createChangeSetAndWait(
+                        request.getRegion(),
+                        request.getStack(),
+                        request.getParameters(),
+                        request.isIamCapabilities(),
+                        request.isOverwrite(),
+                        request.getGlobalTags()));
+
+        List<StackChangeSet> changeSets = outcomes.stream()
+                .filter(outcome -> outcome.failure == null)
+                .map(outcome -> outcome.value)
+                .collect(Collectors.toList());
+        RuntimeException failure = getFailure(outcomes, "Failed to create change set");
+        if (failure != null) {
+            deleteChangeSets(changeSets);
+            throw failure;
+        }
+        return changeSets;
+    }
+
+    /**
+     * Executes the change sets that have changes and waits for the stack updates to complete
+     *
+     * @param changeSets the approved change sets
+     */
+    public void executeChangeSets(List<StackChangeSet> changeSets) {
+        List<StackChangeSet> toExecute = changeSets.stream()
+                .filter(StackChangeSet::hasChanges)
+                .collect(Collectors.toList());
+
+        List<Outcome<StackChangeSet>> outcomes = runPerRegion(toExecute, StackChangeSet::getRegion, changeSet -> {
+            cloudFormationService.executeChangeSetAndWait(changeSet);
+            return changeSet;
+        });
+
+        RuntimeException failure = getFailure(outcomes, "Failed to execute change set");
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Deletes change sets that are not going to be executed, failures are logged and ignored
+     *
+     * @param changeSets the change sets to delete
+     */
+    public void deleteChangeSets(List<StackChangeSet> changeSets) {
+        for (StackChangeSet changeSet : changeSets) {
+            try {
+                cloudFormationService.deleteChangeSet(changeSet);
+            } catch (RuntimeException e) {
+                log.warn("Failed to delete change set: {} for stack: {}",
+                        changeSet.getChangeSetName(), changeSet.getStackName(), e);
+            }
+        }
+    }
+
+    /**
+     * @return the resource changes across all the change sets that replace (or may replace) an existing resource
+     */
+    public static Map<StackChangeSet, List<ResourceChange>> getReplacements(List<StackChangeSet> changeSets) {
+        Map<StackChangeSet, List<ResourceChange>> replacements = new LinkedHashMap<>();
+        changeSets.stream()
+                .filter(changeSet -> !changeSet.getReplacements().isEmpty())
+                .forEach(changeSet -> replacements.put(changeSet, changeSet.getReplacements()));
+        return replacements;
+    }
+
+    /**
+     * @return a preview of the changes across all the change sets, one stack per paragraph
+     */
+    public static String summarize(List<StackChangeSet> changeSets) {
+        long stacksWithChanges = changeSets.stream().filter(StackChangeSet::hasChanges).count();
+        int resourceChanges = changeSets.stream().mapToInt(changeSet -> changeSet.getResourceChanges().size()).sum();
+        int replacements = changeSets.stream().mapToInt(changeSet -> changeSet.getReplacements().size()).sum();
+
+        StringBuilder summary = new StringBuilder(String.format(
+                "Change sets: %d of %d stack(s) have changes, %d resource change(s), %d replacement(s)",
+                stacksWithChanges, changeSets.size(), resourceChanges, replacements));
+        changeSets.forEach(changeSet -> summary.append(String.format("%n  %s", changeSet)));
+        return summary.toString();
+    }
+
+    private <T, R> List<Outcome<R>> runPerRegion(List<T> items, Function<T, Regions> regionOf, Function<T, R> task) {
+        Map<Regions, ExecutorService> executors = new LinkedHashMap<>();
+        List<Future<R>> futures = new ArrayList<>();
+        try {
+            for (T item : items) {
+                Regions region = regionOf.apply(item);
+                ExecutorService executor = executors.computeIfAbsent(region, r ->
+                        Executors.newFixedThreadPool(maxParallelPerRegion, new ThreadFactoryBuilder()
+                                .setNameFormat("change-set-" + r.getName() + "-%d")
+                                .setDaemon(true)
+                                .build()));
+                futures.add(executor.submit(() -> task.apply(item)));
+            }
+
+            List<Outcome<R>> outcomes = new ArrayList<>();
+            for (Future<R> future : futures) {
+                try {
+                    outcomes.add(new Outcome<>(future.get(), null));
+                } catch (ExecutionException e) {
+                    outcomes.add(new Outcome<>(null, e.getCause()));
+                }
+            }
+            return outcomes;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for change sets", e);
+        } finally {
+            executors.values().forEach(ExecutorService::shutdownNow);
+        }
+    }
+
+    private static RuntimeException getFailure(List<? extends Outcome<?>> outcomes, String message) {
+        RuntimeException failure = null;
+        for (Outcome<?> outcome : outcomes) {
+            if (outcome.failure == null) {
+                continue;
+            }
+            RuntimeException outcomeFailure = outcome.failure instanceof RuntimeException ?
+                    (RuntimeException) outcome.failure : new RuntimeException(message, outcome.failure);
+            if (failure == null) {
+                failure = outcomeFailure;
+            } else {
+                failure.addSuppressed(outcomeFailure);
+            }
+        }
+        return failure;
+    }
+
+    private static class Outcome<R> {
+
+        private final R value;
+
+        private final Throwable failure;
+
+        private Outcome(R value, Throwable failure) {
+            this.value = value;
+            this.failure = failure;
+        }
+    }
+
+    /**
+     * The update to make to a stack through a change set, see {@link CloudFormationService#createChangeSetAndWait}
+     */
+    public static class Request {
+
+        private final Regions region;
+
+        private final Stack stack;
+
+        private final Map<String, String> parameters;
+
+        private final boolean iamCapabilities;
+
+        private final boolean overwrite;
+
+        private final Map<String, String> globalTags;
+
+        public Request(Regions region,
+                       Stack stack,
+                       Map<String, String> parameters,
+                       boolean iamCapabilities,
+                       boolean overwrite,
+                       Map<String, String> globalTags) {
+
+            this.region = region;
+            this.stack = stack;
+            this.parameters = parameters;
+            this.iamCapabilities = iamCapabilities;
+            this.overwrite = overwrite;
+            this.globalTags = globalTags;
+        }
+
+        public Regions getRegion() {
+            return region;
+        }
+
+        public Stack getStack() {
+            return stack;
+        }
+
+        public Map<String, String> getParameters() {
+            return parameters;
+        }
+
+        public boolean isIamCapabilities() {
+            return iamCapabilities;
+        }
+
+        public boolean isOverwrite() {
+            return overwrite;
+        }
+
+        public Map<String, String> getGlobalTags() {
+            return globalTags;
+        }
+    }
+}
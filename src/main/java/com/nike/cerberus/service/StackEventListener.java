@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2019 Nike, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nike.cerberus.service;
+
+import com.amazonaws.regions.Regions;
+import com.amazonaws.services.cloudformation.model.StackEvent;
+
+/**
+ * Receives the CloudFormation events for a stack as they are tailed by the {@link CloudFormationService}
+ */
+public interface StackEventListener {
+
+    /**
+     * Called once per new event, in the order that the events occurred
+     *
+     * @param region The region the stack is in
+     * @param stackName The name of the stack
+     * @param stackEvent The new event
+     */
+    void onStackEvent(Regions region, String stackName, StackEvent stackEvent);
+
+}
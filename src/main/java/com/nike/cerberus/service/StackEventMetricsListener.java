@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2019 Nike, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nike.cerberus.service;
+
+import com.amazonaws.regions.Regions;
+import com.amazonaws.services.cloudformation.model.StackEvent;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts stack events by resource status, so that a summary can be reported once the command is done
+ */
+public class StackEventMetricsListener implements StackEventListener {
+
+    private final Map<String, AtomicLong> eventCountsByStatus = new ConcurrentHashMap<>();
+
+    @Override
+    public void onStackEvent(Regions region, String stackName, StackEvent stackEvent) {
+        eventCountsByStatus.computeIfAbsent(stackEvent.getResourceStatus(), status -> new AtomicLong())
+                .incrementAndGet();
+    }
+
+    /**
+     * @return The number of events seen for each resource status, sorted by status
+     */
+    public Map<String, Long> getEventCountsByStatus() {
+        Map<String, Long> counts = new TreeMap<>();
+        eventCountsByStatus.forEach((status, count) -> counts.put(status, count.get()));
+        return Collections.unmodifiableMap(counts);
+    }
+
+    /**
+     * @return The number of events that reported a failed resource
+     */
+    public long getFailedEventCount() {
+        return eventCountsByStatus.entrySet().stream()
+                .filter(entry -> entry.getKey().endsWith("FAILED"))
+                .mapToLong(entry -> entry.getValue().get())
+                .sum();
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2019 Nike, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nike.cerberus.service;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.cloudformation.AmazonCloudFormation;
+import com.amazonaws.services.cloudformation.model.DescribeStackEventsRequest;
+import com.amazonaws.services.cloudformation.model.DescribeStackEventsResult;
+import com.amazonaws.services.cloudformation.model.StackEvent;
+import com.google.common.collect.Lists;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Incrementally tails the events of a single stack.
+ * <p>
+ * DescribeStackEvents returns the newest events first, so each poll only pages back until it reaches the newest
+ * event seen by the previous poll, rather than downloading the whole history of the stack. The poll interval backs
+ * off while the stack is quiet and drops back to the minimum as soon as new events show up.
+ */
+public class StackEventTailer {
+
+    public static final long DEFAULT_MIN_POLL_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(2);
+
+    public static final long DEFAULT_MAX_POLL_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(20);
+
+    private static final double BACKOFF_MULTIPLIER = 2.0;
+
+    private static final double JITTER = 0.25;
+
+    private final AmazonCloudFormation cloudFormationClient;
+
+    private final String stackName;
+
+    private final Date since;
+
+    private final long minPollIntervalMillis;
+
+    private final long maxPollIntervalMillis;
+
+    private String lastSeenEventId;
+
+    private long pollIntervalMillis;
+
+    private long pollCount = 0;
+
+    private long pageCount = 0;
+
+    private long eventCount = 0;
+
+    /**
+     * @param cloudFormationClient The client for the region the stack is in
+     * @param stackName The name or ID of the stack
+     * @param since Events that happened before this are ignored
+     */
+    public StackEventTailer(AmazonCloudFormation cloudFormationClient, String stackName, Date since) {
+        this(cloudFormationClient, stackName, since, DEFAULT_MIN_POLL_INTERVAL_MILLIS, DEFAULT_MAX_POLL_INTERVAL_MILLIS);
+    }
+
+    public StackEventTailer(AmazonCloudFormation cloudFormationClient,
+                            String stackName,
+                            Date since,
+                            long minPollIntervalMillis,
+                            long maxPollIntervalMillis) {
+
+        this.cloudFormationClient = cloudFormationClient;
+        this.stackName = stackName;
+        this.since = since;
+        this.minPollIntervalMillis = minPollIntervalMillis;
+        this.maxPollIntervalMillis = maxPollIntervalMillis;
+        this.pollIntervalMillis = minPollIntervalMillis;
+    }
+
+    /**
+     * Fetches the events that have happened since the last poll and adjusts the poll interval
+     *
+     * @return The new events, oldest first
+     */
+    public List<StackEvent> poll() {
+        pollCount++;
+        List<StackEvent> newEvents = Lists.newArrayList();
+
+        String nextToken = null;
+        boolean caughtUp = false;
+        try {
+            do {
+                DescribeStackEventsResult result = cloudFormationClient.describeStackEvents(
+                        new DescribeStackEventsRequest().withStackName(stackName).withNextToken(nextToken));
+                pageCount++;
+
+                for (StackEvent stackEvent : result.getStackEvents()) {
+                    if (stackEvent.getEventId().equals(lastSeenEventId) || stackEvent.getTimestamp().before(since)) {
+                        caughtUp = true;
+                        break;
+                    }
+                    newEvents.add(stackEvent);
+                }
+                nextToken = result.getNextToken();
+            } while (!caughtUp && nextToken != null);
+        } catch (AmazonServiceException ase) {
+            // Stack doesn't exist (yet or anymore), there is nothing to tail
+            if (ase.getStatusCode() != 400) {
+                throw ase;
+            }
+        }
+
+        if (newEvents.isEmpty()) {
+            pollIntervalMillis = Math.min((long) (pollIntervalMillis * BACKOFF_MULTIPLIER), maxPollIntervalMillis);
+            return Collections.emptyList();
+        }
+
+        lastSeenEventId = newEvents.get(0).getEventId();
+        eventCount += newEvents.size();
+        pollIntervalMillis = minPollIntervalMillis;
+        return Lists.reverse(newEvents);
+    }
+
+    /**
+     * @return How long to wait before the next poll, with jitter so that concurrent tailers don't poll in lock step
+     */
+    public long getNextPollDelayMillis() {
+        double jitter = ThreadLocalRandom.current().nextDouble(1 - JITTER, 1 + JITTER);
+        return Math.max(1, (long) (pollIntervalMillis * jitter));
+    }
+
+    protected long getPollIntervalMillis() {
+        return pollIntervalMillis;
+    }
+
+    public long getPollCount() {
+        return pollCount;
+    }
+
+    public long getPageCount() {
+        return pageCount;
+    }
+
+    public long getEventCount() {
+        return eventCount;
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2019 Nike, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nike.cerberus.service;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * What an update to a stack would change, worked out by comparing fingerprints of the template, parameters and tags
+ * that the CLI would send with the ones that are deployed.
+ */
+public class StackUpdatePlan {
+
+    private final String stackName;
+
+    private final boolean templateChanged;
+
+    private final SortedSet<String> changedParameters;
+
+    private final boolean tagsChanged;
+
+    private final String deployedFingerprint;
+
+    private final String desiredFingerprint;
+
+    public StackUpdatePlan(String stackName,
+                           boolean templateChanged,
+                           Set<String> changedParameters,
+                           boolean tagsChanged,
+                           String deployedFingerprint,
+                           String desiredFingerprint) {
+
+        this.stackName = stackName;
+        this.templateChanged = templateChanged;
+        this.changedParameters = new TreeSet<>(changedParameters);
+        this.tagsChanged = tagsChanged;
+        this.deployedFingerprint = deployedFingerprint;
+        this.desiredFingerprint = desiredFingerprint;
+    }
+
+    public String getStackName() {
+        return stackName;
+    }
+
+    public boolean isTemplateChanged() {
+        return templateChanged;
+    }
+
+    public SortedSet<String> getChangedParameters() {
+        return Collections.unmodifiableSortedSet(changedParameters);
+    }
+
+    public boolean isTagsChanged() {
+        return tagsChanged;
+    }
+
+    public String getDeployedFingerprint() {
+        return deployedFingerprint;
+    }
+
+    public String getDesiredFingerprint() {
+        return desiredFingerprint;
+    }
+
+    /**
+     * @return true if sending the update to CloudFormation would change the stack
+     */
+    public boolean hasChanges() {
+        return !deployedFingerprint.equals(desiredFingerprint);
+    }
+
+    @Override
+    public String toString() {
+        if (!hasChanges()) {
+            return String.format("%s: no changes", stackName);
+        }
+
+        StringBuilder changes = new StringBuilder();
+        if (templateChanged) {
+            changes.append("template");
+        }
+        if (!changedParameters.isEmpty()) {
+            changes.append(changes.length() > 0 ? ", " : "").append("parameters ").append(changedParameters);
+        }
+        if (tagsChanged) {
+            changes.append(changes.length() > 0 ? ", " : "").append("tags");
+        }
+        return String.format("%s: will update %s", stackName, changes);
+    }
+}
@@ -16,8 +16,11 @@
 
 package com.nike.cerberus.service;
 
+import java.util.Collection;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.stream.Stream;
 
 /**
  * Interface for common operations on storage services.
@@ -28,8 +31,23 @@ public interface StoreService {
 
     Optional<String> get(String path);
 
+    /**
+     * Get the value at the path along with the hash of the object that was read
+     */
+    Optional<VersionedValue> getVersioned(String path);
+
     Set<String> getKeysInPartialPath(String path);
 
+    /**
+     * Lazily list every key under the path without loading the whole listing into memory
+     */
+    Stream<String> streamKeysInPartialPath(String path);
+
+    /**
+     * Get every key under the path along with the hash of the object stored at that key
+     */
+    Map<String, String> getKeysWithHashInPartialPath(String path);
+
     /**
      * List under a path as-if it were a folder
      */
@@ -37,6 +55,8 @@ public interface StoreService {
 
     void deleteAllKeysOnPartialPath(String path);
 
+    void deleteKeys(Collection<String> paths);
+
     Optional<String> getHash(String path);
 
     void copyFrom(String sourceIdentifier, String path);
@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2019 Nike, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nike.cerberus.service;
+
+/**
+ * A value read from a store along with the hash (e.g. S3 ETag) of the object it was read from.
+ */
+public class VersionedValue {
+
+    private final String value;
+
+    private final String hash;
+
+    public VersionedValue(String value, String hash) {
+        this.value = value;
+        this.hash = hash;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public String getHash() {
+        return hash;
+    }
+}
@@ -16,10 +16,6 @@
 
 package com.nike.cerberus.store;
 
-import com.amazonaws.encryptionsdk.MasterKeyProvider;
-import com.amazonaws.encryptionsdk.kms.KmsMasterKey;
-import com.amazonaws.encryptionsdk.kms.KmsMasterKeyProvider;
-import com.amazonaws.encryptionsdk.multi.MultipleProviderFactory;
 import com.amazonaws.regions.Regions;
 import com.amazonaws.services.s3.AmazonS3Client;
 import com.amazonaws.services.s3.model.AmazonS3Exception;
@@ -31,7 +27,10 @@ import com.amazonaws.services.securitytoken.model.GetCallerIdentityResult;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.tomaslanger.chalk.Chalk;
-import com.google.common.collect.Maps;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.nike.cerberus.ConfigConstants;
 import com.nike.cerberus.domain.cloudformation.*;
 import com.nike.cerberus.domain.environment.EnvironmentData;
@@ -42,11 +41,13 @@ import com.nike.cerberus.domain.environment.RegionData;
 import com.nike.cerberus.domain.environment.Stack;
 import com.nike.cerberus.service.AwsClientFactory;
 import com.nike.cerberus.service.CloudFormationService;
+import com.nike.cerberus.service.CloudFormationTemplateRegistry;
 import com.nike.cerberus.service.EncryptionService;
 import com.nike.cerberus.service.KeyGenerator;
 import com.nike.cerberus.service.S3StoreService;
 import com.nike.cerberus.service.SaltGenerator;
 import com.nike.cerberus.service.StoreService;
+import com.nike.cerberus.service.VersionedValue;
 import com.nike.cerberus.util.CloudFormationObjectMapper;
 import com.nike.cerberus.util.UuidSupplier;
 import org.apache.commons.lang3.StringUtils;
@@ -61,17 +62,27 @@ import javax.inject.Singleton;
 import java.io.IOException;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
 import java.security.KeyPair;
 import java.time.Instant;
 import java.util.Base64;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Properties;
 import java.util.Set;
 import java.util.LinkedList;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 import static com.nike.cerberus.ConfigConstants.*;
@@ -86,6 +97,11 @@ import static com.nike.cerberus.service.KeyGenerator.HMACSHA512;
 @Singleton
 public class ConfigStore {
 
+    /**
+     * Max number of regions that will be written to concurrently when saving objects to the config buckets
+     */
+    private static final int MAX_REPLICATION_THREADS = 8;
+
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
     private final AwsClientFactory<AmazonS3Client> amazonS3ClientFactory;
@@ -110,7 +126,20 @@ public class ConfigStore {
     private UuidSupplier uuidSupplier;
 
 
-    private Map<Regions, StoreService> storeServiceMap = new HashMap<>();
+    private Map<Regions, StoreService> storeServiceMap = new ConcurrentHashMap<>();
+
+    /**
+     * Decrypted snapshot of the environment data and the ETag of the S3 object it was read from, the snapshot
+     * is reused for the lifetime of the command and invalidated whenever the environment data is saved
+     */
+    private VersionedValue environmentDataSnapshot;
+
+    private final AtomicLong environmentDataCacheHits = new AtomicLong();
+
+    private final AtomicLong environmentDataCacheMisses = new AtomicLong();
+
+    private final ExecutorService replicationExecutor = Executors.newFixedThreadPool(MAX_REPLICATION_THREADS,
+            new ThreadFactoryBuilder().setNameFormat("config-replication-%d").setDaemon(true).build());
 
     @Inject
     public ConfigStore(AwsClientFactory<AmazonS3Client> amazonS3ClientFactory,
@@ -153,7 +182,7 @@ public class ConfigStore {
      *
      * @param databasePassword Database password
      */
-    public void storeCmsDatabasePassword(String databasePassword) {
+    public synchronized void storeCmsDatabasePassword(String databasePassword) {
         EnvironmentData environmentData = getDecryptedEnvironmentData();
         environmentData.setDatabasePassword(databasePassword);
         saveEnvironmentData(environmentData);
@@ -167,26 +196,30 @@ public class ConfigStore {
      * @param certContents           Certificate body
      * @param keyContents            Certificate key
      * @param pubKeyContents         Certificate public key
+     * @return The regions that the certificate parts were saved to
      */
-    public void storeCert(CertificateInformation certificateInformation,
-                          String caContents,
-                          String certContents,
-                          String keyContents,
-                          String pkcs8KeyContents,
-                          String pubKeyContents) {
+    public synchronized ReplicationResult storeCert(CertificateInformation certificateInformation,
+                                       String caContents,
+                                       String certContents,
+                                       String keyContents,
+                                       String pkcs8KeyContents,
+                                       String pubKeyContents) {
 
         EnvironmentData environmentData = getDecryptedEnvironmentData();
 
         String name = certificateInformation.getCertificateName();
-        encryptAndSaveObject(buildCertFilePath(name, CERT_PART_CA), caContents, environmentData);
-        encryptAndSaveObject(buildCertFilePath(name, CERT_PART_CERT), certContents, environmentData);
-        encryptAndSaveObject(buildCertFilePath(name, CERT_PART_KEY), keyContents, environmentData);
-        encryptAndSaveObject(buildCertFilePath(name, CERT_PART_PKCS8_KEY), pkcs8KeyContents, environmentData);
-        encryptAndSaveObject(buildCertFilePath(name, CERT_PART_PUBKEY), pubKeyContents, environmentData);
+        ReplicationResult result = encryptAndSaveObjects(ImmutableMap.of(
+                buildCertFilePath(name, CERT_PART_CA), caContents,
+                buildCertFilePath(name, CERT_PART_CERT), certContents,
+                buildCertFilePath(name, CERT_PART_KEY), keyContents,
+                buildCertFilePath(name, CERT_PART_PKCS8_KEY), pkcs8KeyContents,
+                buildCertFilePath(name, CERT_PART_PUBKEY), pubKeyContents
+        ), environmentData);
 
         environmentData.addNewCertificateData(certificateInformation);
 
         saveEnvironmentData(environmentData);
+        return result;
     }
 
     public Optional<KeyPair> getAcmeAccountKeyPair() {
@@ -209,7 +242,7 @@ public class ConfigStore {
      * @param activationDelayInSecond Delay in second before the secret can be used to sign JWT
      */
     public void addJwtKey(long activationDelayInSecond) {
-        Optional<String> jwtKeysFile = storeServiceMap.get(configRegion).get(CMS_JWT_SECRETS_PATH);
+        Optional<String> jwtKeysFile = getConfigRegionStoreService().get(CMS_JWT_SECRETS_PATH);
         JwtSecretData jwtSecretData;
         if (jwtKeysFile.isPresent()) {
             try {
@@ -262,11 +295,12 @@ public class ConfigStore {
      * Deletes a set of cert and key files by certificate name
      * @param certificateName the name of the cert file bundle to delete
      */
-    public void deleteCertificate(String certificateName) {
+    public synchronized void deleteCertificate(String certificateName) {
         String path = "certificates/" + certificateName;
-        getDecryptedEnvironmentData().getConfigRegions().forEach(region -> {
+        EnvironmentData environmentData = getDecryptedEnvironmentData();
+        environmentData.getConfigRegions().forEach(region -> {
             try {
-                getStoreServiceForRegion(region, getDecryptedEnvironmentData()).deleteAllKeysOnPartialPath(path);
+                getStoreServiceForRegion(region, environmentData).deleteAllKeysOnPartialPath(path);
             } catch (Exception e) {
                 logger.error(Chalk.on(
                         String.format("Failed to delete object at path: %s for region: %s, cross region data may be " +
@@ -608,34 +642,84 @@ public class ConfigStore {
         return cloudFormationObjectMapper.convertValue(stackOutputs, parameterClass);
     }
 
-    protected EnvironmentData getDecryptedEnvironmentData() {
-        if (! storeServiceMap.containsKey(configRegion)) {
-            String bucket = findConfigBucketInSuppliedConfigRegion();
-            storeServiceMap.put(configRegion, new S3StoreService(amazonS3ClientFactory.getClient(configRegion), bucket, ""));
+    /**
+     * Returns a fresh copy of the environment data, the encrypted environment data is only downloaded and decrypted
+     * the first time it is needed and after it has been saved, all other calls are served from the decrypted snapshot.
+     */
+    protected synchronized EnvironmentData getDecryptedEnvironmentData() {
+        if (environmentDataSnapshot == null) {
+            environmentDataCacheMisses.incrementAndGet();
+            VersionedValue encryptedEnvironmentData = getConfigRegionStoreService()
+                    .getVersioned(ConfigConstants.ENVIRONMENT_DATA_FILE)
+                    .orElseThrow(() -> new IllegalStateException("No environment data available!"));
+
+            environmentDataSnapshot = new VersionedValue(
+                    encryptionService.decrypt(encryptedEnvironmentData.getValue()),
+                    encryptedEnvironmentData.getHash());
+            logger.debug("Loaded environment data with ETag: {}", environmentDataSnapshot.getHash());
+        } else {
+            environmentDataCacheHits.incrementAndGet();
         }
 
-        Optional<String> environmentData = storeServiceMap.get(configRegion).get(ConfigConstants.ENVIRONMENT_DATA_FILE);
-
-        if (environmentData.isPresent()) {
-            try {
-                return configObjectMapper.readValue(encryptionService.decrypt(environmentData.get()), EnvironmentData.class);
-            } catch (IOException e) {
-                throw new IllegalStateException("Unable to read the environment data!", e);
-            }
-        } else {
-            throw new IllegalStateException("No environment data available!");
+        // always hand out a new instance so callers can not modify the snapshot
+        try {
+            return configObjectMapper.readValue(environmentDataSnapshot.getValue(), EnvironmentData.class);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to read the environment data!", e);
         }
     }
 
-    private void saveEnvironmentData(EnvironmentData environmentData) {
+    private synchronized void saveEnvironmentData(EnvironmentData environmentData) {
+        verifyEnvironmentDataNotModified();
         try {
             String serializedPlainTextEnvironmentData = configObjectMapper.writeValueAsString(environmentData);
             encryptAndSaveObject(ConfigConstants.ENVIRONMENT_DATA_FILE, serializedPlainTextEnvironmentData, environmentData);
         } catch (JsonProcessingException e) {
             throw new RuntimeException("Unable to convert the environment data to JSON.  Aborting save...", e);
+        } finally {
+            environmentDataSnapshot = null;
         }
     }
 
+    /**
+     * Makes sure that the environment data in S3 is still the version that the snapshot was read from, so that we do
+     * not overwrite changes made by someone else while this command was running.
+     */
+    private void verifyEnvironmentDataNotModified() {
+        if (environmentDataSnapshot == null) {
+            return;
+        }
+
+        Optional<String> currentHash = getConfigRegionStoreService().getHash(ConfigConstants.ENVIRONMENT_DATA_FILE);
+        if (currentHash.isPresent() && !StringUtils.equals(currentHash.get(), environmentDataSnapshot.getHash())) {
+            environmentDataSnapshot = null;
+            throw new IllegalStateException("The environment data was modified by another process while this command " +
+                    "was running, aborting save so those changes are not overwritten. Please re-run the command.");
+        }
+    }
+
+    /**
+     * @return The number of times the environment data was served from the decrypted snapshot
+     */
+    public long getEnvironmentDataCacheHits() {
+        return environmentDataCacheHits.get();
+    }
+
+    /**
+     * @return The number of times the environment data had to be downloaded and decrypted
+     */
+    public long getEnvironmentDataCacheMisses() {
+        return environmentDataCacheMisses.get();
+    }
+
+    protected StoreService getConfigRegionStoreService() {
+        if (! storeServiceMap.containsKey(configRegion)) {
+            String bucket = findConfigBucketInSuppliedConfigRegion();
+            storeServiceMap.put(configRegion, new S3StoreService(amazonS3ClientFactory.getClient(configRegion), bucket, ""));
+        }
+        return storeServiceMap.get(configRegion);
+    }
+
     private void saveJwtSecretData(JwtSecretData jwtSecretData) {
         EnvironmentData environmentData = getDecryptedEnvironmentData();
         try {
@@ -653,27 +737,68 @@ public class ConfigStore {
         return getStoreServiceForRegion(configRegion, getDecryptedEnvironmentData()).listUnderPartialPath(path);
     }
 
-    private void encryptAndSaveObject(String path,
-                                      String plaintextSerializedObject,
-                                      EnvironmentData environmentData) {
+    private ReplicationResult encryptAndSaveObject(String path,
+                                                   String plaintextSerializedObject,
+                                                   EnvironmentData environmentData) {
+
+        return encryptAndSaveObjects(ImmutableMap.of(path, plaintextSerializedObject), environmentData);
+    }
+
+    /**
+     * Encrypts each object once and writes the whole batch to the config bucket of every config region,
+     * the regions are written to concurrently and the objects in the batch are written in order within a region.
+     *
+     * @param plaintextSerializedObjects Map of path to plaintext object
+     * @param environmentData            The environment data that has the config regions and CMKs
+     * @return The regions that the batch was committed to and the time each region took
+     */
+    protected ReplicationResult encryptAndSaveObjects(Map<String, String> plaintextSerializedObjects,
+                                                      EnvironmentData environmentData) {
 
         List<String> environmentDataKmsCmkArns = new LinkedList<>();
         environmentData.getRegionData().forEach((region, regionData) ->
                 regionData.getConfigCmkArn().ifPresent(environmentDataKmsCmkArns::add));
-        MasterKeyProvider<KmsMasterKey> encryptProvider = initializeKeyProvider(environmentDataKmsCmkArns);
 
-        String encryptedObject = encryptionService.encrypt(encryptProvider, plaintextSerializedObject);
+        Map<String, String> encryptedObjects = new LinkedHashMap<>();
+        plaintextSerializedObjects.forEach((path, plaintext) ->
+                encryptedObjects.put(path, encryptionService.encrypt(environmentDataKmsCmkArns, plaintext)));
 
-        environmentData.getConfigRegions().forEach(region -> {
+        // resolve the store services up front, so a missing config bucket fails before anything is written
+        Map<Regions, StoreService> regionStoreServices = new LinkedHashMap<>();
+        environmentData.getConfigRegions().forEach(region ->
+                regionStoreServices.put(region, getStoreServiceForRegion(region, environmentData)));
+
+        Map<Regions, Long> regionLatencies = new ConcurrentHashMap<>();
+        Map<Regions, Future<?>> pendingWrites = new LinkedHashMap<>();
+        regionStoreServices.forEach((region, storeService) -> pendingWrites.put(region, replicationExecutor.submit(() -> {
+            long start = System.nanoTime();
             try {
-                getStoreServiceForRegion(region, environmentData).put(path, encryptedObject);
-            } catch (Exception e) {
+                encryptedObjects.forEach(storeService::put);
+            } finally {
+                regionLatencies.put(region, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            }
+        })));
+
+        ReplicationResult result = new ReplicationResult(new LinkedList<>(encryptedObjects.keySet()));
+        pendingWrites.forEach((region, pendingWrite) -> {
+            try {
+                pendingWrite.get();
+                logger.debug("Saved {} to region: {} in {} ms", encryptedObjects.keySet(), region, regionLatencies.get(region));
+                result.addCommittedRegion(region, regionLatencies.get(region));
+            } catch (InterruptedException | ExecutionException e) {
+                if (e instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                }
+                Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+                result.addFailedRegion(region, regionLatencies.getOrDefault(region, 0L), cause);
                 logger.error(Chalk.on(
-                        String.format("Failed to save object at path: %s for region: %s, cross region data may be " +
-                                "out of sync and require manual fixing", path, region)
-                ).bold().red().toString());
+                        String.format("Failed to save objects at paths: %s for region: %s, cross region data may be " +
+                                "out of sync and require manual fixing", encryptedObjects.keySet(), region)
+                ).bold().red().toString(), cause);
             }
         });
+
+        return result;
     }
 
     protected StoreService getStoreServiceForRegion(Regions region, EnvironmentData environmentData) {
@@ -740,14 +865,6 @@ public class ConfigStore {
         return envBucket;
     }
 
-    @SuppressWarnings("unchecked")
-    private MasterKeyProvider<KmsMasterKey> initializeKeyProvider(List<String> cmkArns) {
-        List<MasterKeyProvider<KmsMasterKey>> providers = cmkArns.stream()
-                .map(KmsMasterKeyProvider::new)
-                .collect(Collectors.toList());
-        return (MasterKeyProvider<KmsMasterKey>) MultipleProviderFactory.buildMultiProvider(providers);
-    }
-
     public Regions getPrimaryRegion() {
         return getDecryptedEnvironmentData().getPrimaryRegion();
     }
@@ -774,7 +891,7 @@ public class ConfigStore {
      * @param primaryRegion The primary region that will serve traffic and have the data store and cms asg
      * @param regionConfigOutputsMap The outputs that have the config buckets and KMS CMKs for encrypting sensitive config
      */
-    public void initializeEnvironment(String adminRoleArn,
+    public synchronized void initializeEnvironment(String adminRoleArn,
                                       String cmsIamRoleArn,
                                       Regions primaryRegion,
                                       Map<Regions, ConfigOutputs> regionConfigOutputsMap) {
@@ -838,7 +955,7 @@ public class ConfigStore {
         return getDecryptedEnvironmentData();
     }
 
-    public void setAuditLoggingEnabled(boolean auditLoggingEnabled) {
+    public synchronized void setAuditLoggingEnabled(boolean auditLoggingEnabled) {
         EnvironmentData environmentData = getDecryptedEnvironmentData();
         environmentData.setAuditLoggingEnabled(auditLoggingEnabled);
         saveEnvironmentData(environmentData);
@@ -850,26 +967,51 @@ public class ConfigStore {
 
     /***
      * Returns whether the config buckets are in sync in the regions as defined in environment.json
+     *
+     * Each bucket is listed once, concurrently, and reduced to a digest of its keys and ETags. The per key
+     * differences are only computed when the digests disagree.
      * @return False if the config buckets are out of sync and true if the configs are in sync
      */
     public boolean isConfigSynchronized(){
         EnvironmentData environmentData = getDecryptedEnvironmentData();
-        Map<Regions, RegionData> map = environmentData.getRegionData();
+
+        Map<Regions, Future<Map<String, String>>> pendingListings = new LinkedHashMap<>();
+        environmentData.getRegionData().keySet().forEach(region -> {
+            StoreService storeService = getStoreServiceForRegion(region, environmentData);
+            pendingListings.put(region, replicationExecutor.submit(() -> getConfigKeysWithHash(storeService)));
+        });
+
+        Map<Regions, Map<String, String>> regionKeysWithHash = new LinkedHashMap<>();
+        pendingListings.forEach((region, pendingListing) -> {
+            try {
+                regionKeysWithHash.put(region, pendingListing.get());
+            } catch (InterruptedException | ExecutionException e) {
+                if (e instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                }
+                throw new RuntimeException("Failed to list the config bucket in region: " + region, e);
+            }
+        });
 
         Map<String, String> firstS3KeyToHashValueMap = null;
+        String firstDigest = null;
         Regions firstRegion = null;
         boolean result = true;
-        for (Map.Entry<Regions, RegionData> entry: map.entrySet()){
+        for (Map.Entry<Regions, Map<String, String>> entry: regionKeysWithHash.entrySet()){
             Regions currentRegion = entry.getKey();
-            StoreService storeService = getStoreServiceForRegion(currentRegion, environmentData);
+            String digest = computeConfigDigest(entry.getValue());
+            logger.debug("Config digest for region: {} is {}", currentRegion, digest);
 
-            // null hash values are treated as if they're equal
-            Map<String, String> s3KeyToHashValueMap = Maps.asMap(storeService.getKeysInPartialPath(""), key -> storeService.getHash(key).toString());
             if (firstRegion == null){
-                firstS3KeyToHashValueMap = s3KeyToHashValueMap;
+                firstS3KeyToHashValueMap = entry.getValue();
+                firstDigest = digest;
                 firstRegion = currentRegion;
-            } else if (!firstS3KeyToHashValueMap.equals(s3KeyToHashValueMap)){
+            } else if (!firstDigest.equals(digest)){
                 logger.info("Discrepancies found between configs of {} and {}", firstRegion, currentRegion);
+                ConfigSyncPlan differences = new ConfigSyncPlan(currentRegion, firstS3KeyToHashValueMap, entry.getValue());
+                differences.getMissingKeys().forEach(key -> logger.info("  {} is missing in {}", key, currentRegion));
+                differences.getChangedKeys().forEach(key -> logger.info("  {} differs in {}", key, currentRegion));
+                differences.getOrphanedKeys().forEach(key -> logger.info("  {} only exists in {}", key, currentRegion));
                 result = false;
             }
         }
@@ -877,24 +1019,108 @@ public class ConfigStore {
         return result;
     }
 
+    /**
+     * Computes a digest of a bucket listing that does not depend on the order the keys were listed in
+     *
+     * @param s3KeyToHashValueMap Map of key to ETag
+     * @return Hex encoded SHA-256 of the sorted keys and ETags
+     */
+    private String computeConfigDigest(Map<String, String> s3KeyToHashValueMap) {
+        Hasher hasher = Hashing.sha256().newHasher();
+        new TreeMap<>(s3KeyToHashValueMap).forEach((key, hash) ->
+                // null hash values are treated as if they're equal
+                hasher.putString(key, StandardCharsets.UTF_8)
+                        .putChar('\0')
+                        .putString(String.valueOf(hash), StandardCharsets.UTF_8)
+                        .putChar('\n'));
+        return hasher.hash().toString();
+    }
+
     /***
-     * Copy all files from config region's config bucket to destination region's config bucket
+     * Compares the config region's config bucket with the destination region's config bucket, listing each bucket once
+     * @param destinationRegion Region that would be synced
+     * @return The keys that are missing, changed or orphaned in the destination bucket
+     */
+    public ConfigSyncPlan planSync(Regions destinationRegion) {
+        EnvironmentData environmentData = getDecryptedEnvironmentData();
+        Map<String, String> sourceKeysWithHash =
+                getConfigKeysWithHash(getStoreServiceForRegion(configRegion, environmentData));
+        Map<String, String> destKeysWithHash =
+                getConfigKeysWithHash(getStoreServiceForRegion(destinationRegion, environmentData));
+
+        return new ConfigSyncPlan(destinationRegion, sourceKeysWithHash, destKeysWithHash);
+    }
+
+    /***
+     * Copy the files that are missing or changed from config region's config bucket to destination region's config bucket
      * @param destinationRegion Region to copy files to
      */
     public void sync(Regions destinationRegion) {
-        EnvironmentData decryptedEnvironmentData = getDecryptedEnvironmentData();
-        StoreService destinationStoreService = getStoreServiceForRegion(destinationRegion, decryptedEnvironmentData);
-        String sourceBucket = findConfigBucketInSuppliedConfigRegion();
-        listKeys().forEach(k -> destinationStoreService.copyFrom(sourceBucket, k));
+        sync(planSync(destinationRegion), false);
+    }
+
+    /***
+     * Copy the files that are missing or changed from config region's config bucket to destination region's config
+     * bucket, the copies are done concurrently
+     * @param plan The plan from {@link #planSync(Regions)}
+     * @param deleteOrphanedKeys Whether to delete keys that only exist in the destination bucket
+     */
+    public void sync(ConfigSyncPlan plan, boolean deleteOrphanedKeys) {
+        EnvironmentData environmentData = getDecryptedEnvironmentData();
+        StoreService destinationStoreService = getStoreServiceForRegion(plan.getDestinationRegion(), environmentData);
+        String sourceBucket = getConfigBucketForRegion(configRegion);
+
+        Map<String, Future<?>> pendingCopies = new LinkedHashMap<>();
+        plan.getKeysToCopy().forEach(key ->
+                pendingCopies.put(key, replicationExecutor.submit(() -> destinationStoreService.copyFrom(sourceBucket, key))));
+
+        List<String> failedKeys = new LinkedList<>();
+        pendingCopies.forEach((key, pendingCopy) -> {
+            try {
+                pendingCopy.get();
+            } catch (InterruptedException | ExecutionException e) {
+                if (e instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                }
+                logger.error("Failed to copy {} to region: {}", key, plan.getDestinationRegion(), e);
+                failedKeys.add(key);
+            }
+        });
+
+        if (!failedKeys.isEmpty()) {
+            throw new RuntimeException(String.format("Failed to copy %s to region: %s",
+                    failedKeys, plan.getDestinationRegion()));
+        }
+
+        if (deleteOrphanedKeys && !plan.getOrphanedKeys().isEmpty()) {
+            logger.info("Deleting orphaned keys: {}", plan.getOrphanedKeys());
+            destinationStoreService.deleteKeys(plan.getOrphanedKeys());
+        }
     }
 
     /***
-     * List every key in the config bucket in the config region
+     * List every config key in the config bucket in the config region, leaving out the CloudFormation templates
      * @return Set of keys
      */
     public Set<String> listKeys() {
         StoreService storeService = getStoreServiceForRegion(configRegion, getDecryptedEnvironmentData());
         Set<String> keys = storeService.getKeysInPartialPath("");
-        return keys;
+        return keys.stream().filter(ConfigStore::isConfigKey).collect(Collectors.toSet());
+    }
+
+    /**
+     * Lists the config bucket, leaving out the CloudFormation templates. Templates are only staged in the regions
+     * whose stacks use them and stacks may still reference them, so they are not synced between regions.
+     *
+     * @return Map of key to ETag
+     */
+    private Map<String, String> getConfigKeysWithHash(StoreService storeService) {
+        Map<String, String> keysWithHash = new HashMap<>(storeService.getKeysWithHashInPartialPath(""));
+        keysWithHash.keySet().removeIf(key -> !isConfigKey(key));
+        return keysWithHash;
+    }
+
+    private static boolean isConfigKey(String key) {
+        return !key.startsWith(CloudFormationTemplateRegistry.TEMPLATE_KEY_PREFIX);
     }
 }
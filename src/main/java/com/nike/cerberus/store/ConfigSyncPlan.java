@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2019 Nike, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nike.cerberus.store;
+
+import com.amazonaws.regions.Regions;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * The set of changes needed to make the config bucket in a destination region match the config bucket in the config region.
+ */
+public class ConfigSyncPlan {
+
+    private final Regions destinationRegion;
+
+    private final Set<String> missingKeys = new TreeSet<>();
+
+    private final Set<String> changedKeys = new TreeSet<>();
+
+    private final Set<String> orphanedKeys = new TreeSet<>();
+
+    private int unchangedKeyCount;
+
+    /**
+     * Builds a plan by comparing the hashes of the objects in the source and destination buckets
+     *
+     * @param destinationRegion  The region that will be synced
+     * @param sourceKeysWithHash Map of key to hash for the source bucket
+     * @param destKeysWithHash   Map of key to hash for the destination bucket
+     */
+    public ConfigSyncPlan(Regions destinationRegion,
+                          Map<String, String> sourceKeysWithHash,
+                          Map<String, String> destKeysWithHash) {
+
+        this.destinationRegion = destinationRegion;
+
+        sourceKeysWithHash.forEach((key, hash) -> {
+            if (!destKeysWithHash.containsKey(key)) {
+                missingKeys.add(key);
+            } else if (!Objects.equals(hash, destKeysWithHash.get(key))) {
+                changedKeys.add(key);
+            } else {
+                unchangedKeyCount++;
+            }
+        });
+
+        destKeysWithHash.keySet().stream()
+                .filter(key -> !sourceKeysWithHash.containsKey(key))
+                .forEach(orphanedKeys::add);
+    }
+
+    public Regions getDestinationRegion() {
+        return destinationRegion;
+    }
+
+    /**
+     * @return Keys that are in the source bucket but not in the destination bucket
+     */
+    public Set<String> getMissingKeys() {
+        return Collections.unmodifiableSet(missingKeys);
+    }
+
+    /**
+     * @return Keys that are in both buckets but have different content
+     */
+    public Set<String> getChangedKeys() {
+        return Collections.unmodifiableSet(changedKeys);
+    }
+
+    /**
+     * @return Keys that are only in the destination bucket
+     */
+    public Set<String> getOrphanedKeys() {
+        return Collections.unmodifiableSet(orphanedKeys);
+    }
+
+    /**
+     * @return Keys that need to be copied from the source bucket, the missing and changed keys
+     */
+    public Set<String> getKeysToCopy() {
+        Set<String> keysToCopy = new TreeSet<>(missingKeys);
+        keysToCopy.addAll(changedKeys);
+        return keysToCopy;
+    }
+
+    public int getUnchangedKeyCount() {
+        return unchangedKeyCount;
+    }
+
+    /**
+     * @return True if there is nothing to copy and nothing to delete
+     */
+    public boolean isInSync() {
+        return missingKeys.isEmpty() && changedKeys.isEmpty() && orphanedKeys.isEmpty();
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2019 Nike, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nike.cerberus.store;
+
+import com.amazonaws.regions.Regions;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * The outcome of writing a batch of objects to the config buckets in every config region.
+ */
+public class ReplicationResult {
+
+    private final List<String> paths;
+
+    private final Map<Regions, Long> regionLatencyInMillis = new LinkedHashMap<>();
+
+    private final Map<Regions, Throwable> regionFailures = new LinkedHashMap<>();
+
+    public ReplicationResult(List<String> paths) {
+        this.paths = paths;
+    }
+
+    void addCommittedRegion(Regions region, long latencyInMillis) {
+        regionLatencyInMillis.put(region, latencyInMillis);
+    }
+
+    void addFailedRegion(Regions region, long latencyInMillis, Throwable cause) {
+        regionLatencyInMillis.put(region, latencyInMillis);
+        regionFailures.put(region, cause);
+    }
+
+    /**
+     * @return The paths that were written as part of this batch
+     */
+    public List<String> getPaths() {
+        return Collections.unmodifiableList(paths);
+    }
+
+    /**
+     * @return The regions where every object in the batch was written
+     */
+    public List<Regions> getCommittedRegions() {
+        List<Regions> committedRegions = new LinkedList<>(regionLatencyInMillis.keySet());
+        committedRegions.removeAll(regionFailures.keySet());
+        return committedRegions;
+    }
+
+    /**
+     * @return The regions where at least one object in the batch failed to be written
+     */
+    public List<Regions> getFailedRegions() {
+        return new LinkedList<>(regionFailures.keySet());
+    }
+
+    public Optional<Throwable> getFailure(Regions region) {
+        return Optional.ofNullable(regionFailures.get(region));
+    }
+
+    public Optional<Long> getLatencyInMillis(Regions region) {
+        return Optional.ofNullable(regionLatencyInMillis.get(region));
+    }
+
+    public boolean isFullyReplicated() {
+        return regionFailures.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "ReplicationResult{" +
+                "paths=" + paths +
+                ", regionLatencyInMillis=" + regionLatencyInMillis +
+                ", failedRegions=" + regionFailures.keySet() +
+                '}';
+    }
+}
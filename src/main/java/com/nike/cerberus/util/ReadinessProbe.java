@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2019 Nike, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nike.cerberus.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Waits for an eventually consistent change to take effect by polling a condition that shows it has, such as a port
+ * accepting connections, rather than sleeping for a fixed time. The interval between polls starts short and doubles
+ * up to a maximum, and polling stops at a deadline.
+ */
+public class ReadinessProbe {
+
+    public static final Duration DEFAULT_INITIAL_INTERVAL = Duration.ofMillis(500);
+
+    public static final Duration DEFAULT_MAX_INTERVAL = Duration.ofSeconds(5);
+
+    public static final Duration DEFAULT_TIMEOUT = Duration.ofMinutes(2);
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final String description;
+
+    private final BooleanSupplier condition;
+
+    private Duration initialInterval = DEFAULT_INITIAL_INTERVAL;
+
+    private Duration maxInterval = DEFAULT_MAX_INTERVAL;
+
+    private Duration timeout = DEFAULT_TIMEOUT;
+
+    private ReadinessProbe(String description, BooleanSupplier condition) {
+        this.description = description;
+        this.condition = condition;
+    }
+
+    /**
+     * @param description What is being waited for, used in log messages
+     * @param condition True once the change has taken effect, exceptions are treated as not ready yet
+     */
+    public static ReadinessProbe waitFor(String description, BooleanSupplier condition) {
+        return new ReadinessProbe(description, condition);
+    }
+
+    public ReadinessProbe withInitialInterval(Duration initialInterval) {
+        this.initialInterval = initialInterval;
+        return this;
+    }
+
+    public ReadinessProbe withMaxInterval(Duration maxInterval) {
+        this.maxInterval = maxInterval;
+        return this;
+    }
+
+    public ReadinessProbe withTimeout(Duration timeout) {
+        this.timeout = timeout;
+        return this;
+    }
+
+    /**
+     * Polls the condition until it is true or the timeout passes
+     *
+     * @return True if the condition became true, false if the timeout passed first
+     */
+    public boolean await() {
+        log.info("Waiting for {}", description);
+        long start = System.nanoTime();
+        long deadline = start + timeout.toNanos();
+        long intervalMillis = Math.max(1, initialInterval.toMillis());
+        int attempts = 0;
+
+        while (true) {
+            attempts++;
+            if (isReady()) {
+                log.info("Done waiting for {} after {} ms and {} checks", description,
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), attempts);
+                return true;
+            }
+
+            long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remainingMillis <= 0) {
+                log.warn("Timed out after {} ms and {} checks waiting for {}", timeout.toMillis(), attempts, description);
+                return false;
+            }
+
+            try {
+                TimeUnit.MILLISECONDS.sleep(Math.min(intervalMillis, remainingMillis));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for " + description, e);
+            }
+            intervalMillis = Math.min(intervalMillis * 2, Math.max(1, maxInterval.toMillis()));
+        }
+    }
+
+    /**
+     * Polls the condition until it is true, throwing if the timeout passes first
+     */
+    public void awaitOrThrow() {
+        if (!await()) {
+            throw new RuntimeException(String.format("Timed out after %d seconds waiting for %s",
+                    timeout.getSeconds(), description));
+        }
+    }
+
+    private boolean isReady() {
+        try {
+            return condition.getAsBoolean();
+        } catch (RuntimeException e) {
+            log.debug("Not ready yet: {}, cause: {}", description, e.getMessage());
+            return false;
+        }
+    }
+}
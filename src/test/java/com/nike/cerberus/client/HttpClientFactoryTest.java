@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2019 Nike, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nike.cerberus.client;
+
+import com.nike.cerberus.ConfigConstants;
+import com.nike.cerberus.domain.environment.CertificateInformation;
+import com.nike.cerberus.store.ConfigStore;
+import okhttp3.OkHttpClient;
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+import java.net.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedList;
+import java.util.Optional;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class HttpClientFactoryTest {
+
+    @Mock
+    private ConfigStore configStore;
+
+    private HttpClientFactory httpClientFactory;
+
+    private String caChain;
+
+    @Before
+    public void before() throws Exception {
+        initMocks(this);
+        httpClientFactory = new HttpClientFactory(configStore, Proxy.NO_PROXY);
+        caChain = IOUtils.toString(getClass().getResourceAsStream("test-ca.pem"), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void test_that_the_generic_client_is_reused() {
+        assertSame(httpClientFactory.getGenericClient(), httpClientFactory.getGenericClient());
+    }
+
+    @Test
+    public void test_that_the_custom_truststore_client_is_reused_and_shares_the_connection_pool() {
+        givenCertificates("cert-1");
+
+        OkHttpClient first = httpClientFactory.getGenericClientWithCustomTruststore();
+        OkHttpClient second = httpClientFactory.getGenericClientWithCustomTruststore();
+
+        assertSame(first, second);
+        assertSame(httpClientFactory.getGenericClient().connectionPool(), first.connectionPool());
+        assertSame(httpClientFactory.getGenericClient().dispatcher(), first.dispatcher());
+        verify(configStore, times(1)).getCertPart("cert-1", ConfigConstants.CERT_PART_CA);
+    }
+
+    @Test
+    public void test_that_a_new_certificate_gets_a_new_client_without_downloading_the_old_chain_again() {
+        givenCertificates("cert-1");
+        OkHttpClient first = httpClientFactory.getGenericClientWithCustomTruststore();
+
+        givenCertificates("cert-1", "cert-2");
+        OkHttpClient second = httpClientFactory.getGenericClientWithCustomTruststore();
+
+        assertNotSame(first, second);
+        verify(configStore, times(1)).getCertPart("cert-1", ConfigConstants.CERT_PART_CA);
+        verify(configStore, times(1)).getCertPart("cert-2", ConfigConstants.CERT_PART_CA);
+    }
+
+    private void givenCertificates(String... certificateNames) {
+        LinkedList<CertificateInformation> certificates = new LinkedList<>();
+        for (String certificateName : certificateNames) {
+            certificates.add(CertificateInformation.Builder.create().withCertificateName(certificateName).build());
+            when(configStore.getCertPart(certificateName, ConfigConstants.CERT_PART_CA)).thenReturn(Optional.of(caChain));
+        }
+        when(configStore.getCertificationInformationList()).thenReturn(certificates);
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2019 Nike, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nike.cerberus.operation.composite;
+
+import com.nike.cerberus.command.Command;
+import com.nike.cerberus.logging.LoggingConfigurer;
+import com.nike.cerberus.operation.composite.ChainableCommandScheduler.Status;
+import com.nike.cerberus.operation.composite.ChainableCommandScheduler.StepResult;
+import org.junit.Test;
+import org.slf4j.MDC;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ChainableCommandSchedulerTest {
+
+    @Test
+    public void test_commands_without_dependencies_run_in_chain_order() {
+        List<String> ran = new CopyOnWriteArrayList<>();
+
+        List<StepResult> results = new ChainableCommandScheduler(4).run(
+                Arrays.asList(command("a"), command("b"), command("c")),
+                chainableCommand -> {
+                    ran.add(chainableCommand.getId());
+                    return Status.SUCCEEDED;
+                });
+
+        assertEquals(Arrays.asList("a", "b", "c"), ran);
+        assertEquals("a,b,c", ids(results));
+    }
+
+    @Test
+    public void test_independent_commands_run_concurrently() throws InterruptedException {
+        CountDownLatch bothStarted = new CountDownLatch(2);
+
+        List<StepResult> results = new ChainableCommandScheduler(2).run(
+                Arrays.asList(command("a", new String[0]), command("b", new String[0]), command("c", "a", "b")),
+                chainableCommand -> {
+                    if (!chainableCommand.getId().equals("c")) {
+                        bothStarted.countDown();
+                        try {
+                            // a and b can only both finish if they are running at the same time
+                            assertTrue(bothStarted.await(5, TimeUnit.SECONDS));
+                        } catch (InterruptedException e) {
+                            throw new RuntimeException(e);
+                        }
+                    }
+                    return Status.SUCCEEDED;
+                });
+
+        assertTrue(results.stream().allMatch(result -> result.getStatus() == Status.SUCCEEDED));
+    }
+
+    @Test
+    public void test_parallelism_limit_is_respected() {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+
+        new ChainableCommandScheduler(2).run(
+                Arrays.asList(command("a", new String[0]), command("b", new String[0]),
+                        command("c", new String[0]), command("d", new String[0])),
+                chainableCommand -> {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    try {
+                        TimeUnit.MILLISECONDS.sleep(50);
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                    running.decrementAndGet();
+                    return Status.SUCCEEDED;
+                });
+
+        assertTrue(maxRunning.get() <= 2);
+    }
+
+    @Test
+    public void test_failure_blocks_dependents_but_not_independent_commands() {
+        RuntimeException failure = new RuntimeException("boom");
+        Map<String, Boolean> ran = new ConcurrentHashMap<>();
+
+        List<StepResult> results = new ChainableCommandScheduler(2).run(
+                Arrays.asList(
+                        command("a", new String[0]),
+                        command("b", "a"),
+                        command("c", "b"),
+                        command("d", new String[0])),
+                chainableCommand -> {
+                    ran.put(chainableCommand.getId(), true);
+                    if (chainableCommand.getId().equals("a")) {
+                        throw failure;
+                    }
+                    return Status.SUCCEEDED;
+                });
+
+        Map<String, Status> statuses = results.stream().collect(Collectors.toMap(StepResult::getId, StepResult::getStatus));
+        assertEquals(Status.FAILED, statuses.get("a"));
+        assertEquals(Status.BLOCKED, statuses.get("b"));
+        assertEquals(Status.BLOCKED, statuses.get("c"));
+        assertEquals(Status.SUCCEEDED, statuses.get("d"));
+        assertEquals(failure, results.get(0).getFailure());
+        assertEquals(2, ran.size());
+    }
+
+    @Test
+    public void test_skipped_commands_do_not_block_dependents() {
+        List<StepResult> results = new ChainableCommandScheduler(1).run(
+                Arrays.asList(command("a"), command("b")),
+                chainableCommand -> chainableCommand.getId().equals("a") ? Status.SKIPPED : Status.SUCCEEDED);
+
+        assertEquals(Status.SKIPPED, results.get(0).getStatus());
+        assertEquals(Status.SUCCEEDED, results.get(1).getStatus());
+    }
+
+    @Test
+    public void test_regional_commands_log_with_a_region_prefix() {
+        Map<String, String> prefixes = new ConcurrentHashMap<>();
+        List<ChainableCommand> chain = Arrays.asList(
+                regional("us-west-2"),
+                regional("us-east-1"),
+                command("global", new String[0]));
+
+        List<StepResult> results = new ChainableCommandScheduler(3).run(chain, chainableCommand -> {
+            String prefix = MDC.get(LoggingConfigurer.LOG_PREFIX_MDC_KEY);
+            prefixes.put(chainableCommand.getId(), prefix == null ? "" : prefix);
+            return Status.SUCCEEDED;
+        });
+
+        assertEquals("[us-west-2] ", prefixes.get("us-west-2/a"));
+        assertEquals("[us-east-1] ", prefixes.get("us-east-1/a"));
+        assertEquals("", prefixes.get("global"));
+        assertEquals("us-west-2", results.get(0).getRegion().get());
+        assertFalse(results.get(2).getRegion().isPresent());
+    }
+
+    @Test
+    public void test_id_defaults_to_command_name() {
+        Command command = mock(Command.class);
+        when(command.getCommandName()).thenReturn("create-vpc");
+
+        assertEquals("create-vpc", new ChainableCommand(command).getId());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void test_unknown_dependency_is_rejected() {
+        new ChainableCommandScheduler(1).run(Arrays.asList(command("a", "missing")), chainableCommand -> Status.SUCCEEDED);
+    }
+
+    @Test
+    public void test_repeated_ids_are_numbered() {
+        List<StepResult> results = new ChainableCommandScheduler(1).run(
+                Arrays.asList(command("a"), command("a"), command("a")), chainableCommand -> Status.SUCCEEDED);
+
+        assertEquals("a,a#2,a#3", ids(results));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void test_depending_on_a_repeated_id_is_rejected() {
+        new ChainableCommandScheduler(1).run(Arrays.asList(command("a"), command("a"), command("b", "a")),
+                chainableCommand -> Status.SUCCEEDED);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void test_cycles_are_rejected() {
+        new ChainableCommandScheduler(1).run(Arrays.asList(command("a", "b"), command("b", "a")),
+                chainableCommand -> Status.SUCCEEDED);
+    }
+
+    private ChainableCommand command(String id) {
+        return ChainableCommand.Builder.create().withCommand(mock(Command.class)).withId(id).build();
+    }
+
+    private ChainableCommand command(String id, String... dependencies) {
+        return ChainableCommand.Builder.create()
+                .withCommand(mock(Command.class))
+                .withId(id)
+                .withDependencies(dependencies)
+                .build();
+    }
+
+    private ChainableCommand regional(String region) {
+        return ChainableCommand.Builder.create()
+                .withCommand(mock(Command.class))
+                .withId(ChainableCommand.regionalId(region, "a"))
+                .withStackRegion(region)
+                .withDependencies()
+                .build();
+    }
+
+    private String ids(List<StepResult> results) {
+        return results.stream().map(StepResult::getId).collect(Collectors.joining(","));
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2019 Nike, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nike.cerberus.operation.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class RebootCmsOperationTest {
+
+    @Test
+    public void test_that_max_unavailable_can_be_a_count() {
+        assertEquals(2, RebootCmsOperation.getWaveSize("2", 6, 6, 50));
+    }
+
+    @Test
+    public void test_that_max_unavailable_can_be_a_percentage_of_min_instances() {
+        assertEquals(2, RebootCmsOperation.getWaveSize("34%", 6, 6, 50));
+        assertEquals(1, RebootCmsOperation.getWaveSize("10%", 6, 6, 50));
+    }
+
+    @Test
+    public void test_that_the_wave_size_leaves_the_healthy_floor() {
+        assertEquals(3, RebootCmsOperation.getWaveSize("100%", 6, 6, 50));
+        assertEquals(1, RebootCmsOperation.getWaveSize("5", 6, 6, 100));
+    }
+
+    @Test
+    public void test_that_a_single_instance_is_still_rebooted() {
+        assertEquals(1, RebootCmsOperation.getWaveSize("1", 1, 1, 50));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void test_that_an_invalid_max_unavailable_is_rejected() {
+        RebootCmsOperation.getWaveSize("a few", 6, 6, 50);
+    }
+}
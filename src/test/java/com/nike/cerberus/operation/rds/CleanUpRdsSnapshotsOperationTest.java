@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2019 Nike, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nike.cerberus.operation.rds;
+
+import com.amazonaws.regions.Regions;
+import com.amazonaws.services.rds.AmazonRDSClient;
+import com.amazonaws.services.rds.model.DBClusterSnapshot;
+import com.amazonaws.services.rds.model.DeleteDBClusterSnapshotRequest;
+import com.amazonaws.services.rds.model.DescribeDBClusterSnapshotsRequest;
+import com.amazonaws.services.rds.model.DescribeDBClusterSnapshotsResult;
+import com.nike.cerberus.command.rds.CleanUpRdsSnapshotsCommand;
+import com.nike.cerberus.service.AwsClientFactory;
+import com.nike.cerberus.service.CloudFormationService;
+import com.nike.cerberus.service.RdsService;
+import com.nike.cerberus.store.ConfigStore;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class CleanUpRdsSnapshotsOperationTest {
+
+    private static final String ENV_NAME = "test";
+
+    @Mock
+    private ConfigStore configStore;
+
+    @Mock
+    private CloudFormationService cloudFormationService;
+
+    @Mock
+    private AwsClientFactory<AmazonRDSClient> rdsClientFactory;
+
+    @Mock
+    private AmazonRDSClient westClient;
+
+    @Mock
+    private CleanUpRdsSnapshotsCommand command;
+
+    private CleanUpRdsSnapshotsOperation operation;
+
+    @Before
+    public void before() {
+        initMocks(this);
+        when(configStore.getPrimaryRegion()).thenReturn(Regions.US_EAST_1);
+        when(configStore.getConfigEnabledRegions()).thenReturn(Arrays.asList(Regions.US_EAST_1, Regions.US_WEST_2));
+        when(rdsClientFactory.getClient(Regions.US_WEST_2)).thenReturn(westClient);
+        when(cloudFormationService.getPhysicalResourceId(eq(Regions.US_EAST_1), anyString(),
+                eq(RdsService.CMS_DB_CLUSTER_LOGICAL_ID))).thenReturn(Optional.of("test-cmsdatabasecluster-new"));
+        when(command.getDays()).thenReturn(1);
+        when(command.getMaxDeletesPerSecond()).thenReturn(100.0);
+
+        RdsService rdsService = new RdsService(rdsClientFactory, configStore, ENV_NAME);
+        operation = new CleanUpRdsSnapshotsOperation(configStore, ENV_NAME, rdsService, cloudFormationService);
+    }
+
+    @Test
+    public void test_that_copies_of_an_earlier_cluster_are_cleaned_up() {
+        Date old = Date.from(Instant.now().minus(10, ChronoUnit.DAYS));
+        when(westClient.describeDBClusterSnapshots(any())).thenReturn(new DescribeDBClusterSnapshotsResult()
+                .withDBClusterSnapshots(
+                        new DBClusterSnapshot().withDBClusterSnapshotIdentifier("test-cmsdatabasecluster-new-copy")
+                                .withDBClusterIdentifier("test-cmsdatabasecluster-new").withSnapshotCreateTime(old),
+                        new DBClusterSnapshot().withDBClusterSnapshotIdentifier("test-cmsdatabasecluster-old-copy")
+                                .withDBClusterIdentifier("test-cmsdatabasecluster-old").withSnapshotCreateTime(old),
+                        new DBClusterSnapshot().withDBClusterSnapshotIdentifier("other-env-cmsdatabasecluster-copy")
+                                .withDBClusterIdentifier("other-env-cmsdatabasecluster").withSnapshotCreateTime(old)));
+
+        operation.run(command);
+
+        ArgumentCaptor<DescribeDBClusterSnapshotsRequest> describe =
+                ArgumentCaptor.forClass(DescribeDBClusterSnapshotsRequest.class);
+        verify(westClient).describeDBClusterSnapshots(describe.capture());
+        assertNull(describe.getValue().getDBClusterIdentifier());
+
+        ArgumentCaptor<DeleteDBClusterSnapshotRequest> delete = ArgumentCaptor.forClass(DeleteDBClusterSnapshotRequest.class);
+        verify(westClient, times(2)).deleteDBClusterSnapshot(delete.capture());
+        Set<String> deleted = delete.getAllValues().stream()
+                .map(DeleteDBClusterSnapshotRequest::getDBClusterSnapshotIdentifier)
+                .collect(Collectors.toSet());
+        assertEquals(2, deleted.size());
+        assertTrue(deleted.contains("test-cmsdatabasecluster-old-copy"));
+        assertTrue(deleted.contains("test-cmsdatabasecluster-new-copy"));
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2019 Nike, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nike.cerberus.service;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.DefaultRequest;
+import com.amazonaws.handlers.HandlerAfterAttemptContext;
+import com.amazonaws.handlers.HandlerBeforeAttemptContext;
+import com.amazonaws.handlers.RequestHandler2;
+import com.amazonaws.regions.Regions;
+import com.amazonaws.services.cloudformation.AmazonCloudFormationClient;
+import com.amazonaws.services.s3.AmazonS3Client;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class AwsApiRateLimiterTest {
+
+    @Test
+    public void test_calls_beyond_the_burst_are_held_back() {
+        AwsApiRateLimiter limiter = new AwsApiRateLimiter("AmazonCloudFormation", Regions.US_WEST_2, 50);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 60; i++) {
+            limiter.acquire();
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        // the first 50 calls are the burst, the other 10 take 1/50th of a second each
+        assertTrue("elapsed: " + elapsedMillis, elapsedMillis >= 150);
+        assertTrue(limiter.getDelayMillis() > 0);
+        assertEquals(60, limiter.getAttempts());
+    }
+
+    @Test
+    public void test_throttling_halves_the_rate_once_and_successes_recover_it() {
+        AwsApiRateLimiter limiter = new AwsApiRateLimiter("AmazonRDS", Regions.US_WEST_2, 10);
+
+        limiter.onThrottle();
+        // in flight calls that were throttled at the same time do not lower it again
+        limiter.onThrottle();
+        assertEquals(5, limiter.getCallsPerSecond(), 0.001);
+        assertEquals(2, limiter.getThrottles());
+
+        for (int i = 0; i < 100; i++) {
+            limiter.onSuccess();
+        }
+        assertEquals(10, limiter.getCallsPerSecond(), 0.001);
+    }
+
+    @Test
+    public void test_request_handler_counts_retries_and_throttles() {
+        AwsApiRateLimiter limiter = new AwsApiRateLimiter("AmazonEC2", Regions.US_EAST_1, 0);
+        RequestHandler2 handler = limiter.createRequestHandler();
+        DefaultRequest<Void> request = new DefaultRequest<>("AmazonEC2");
+        AmazonServiceException throttled = new AmazonServiceException("Rate exceeded");
+        throttled.setErrorCode("Throttling");
+        throttled.setStatusCode(400);
+
+        handler.beforeAttempt(HandlerBeforeAttemptContext.builder().withRequest(request).build());
+        handler.afterAttempt(HandlerAfterAttemptContext.builder().withRequest(request).withException(throttled).build());
+        handler.beforeAttempt(HandlerBeforeAttemptContext.builder().withRequest(request).build());
+        handler.afterAttempt(HandlerAfterAttemptContext.builder().withRequest(request).build());
+
+        assertEquals(2, limiter.getAttempts());
+        assertEquals(1, limiter.getRetries());
+        assertEquals(1, limiter.getThrottles());
+        assertEquals(0, limiter.getDelayMillis());
+    }
+
+    @Test
+    public void test_limiters_are_shared_by_service_and_region() {
+        assertSame(AwsApiRateLimiter.forService("AWSKMS", Regions.US_WEST_2, 10),
+                AwsApiRateLimiter.forService("AWSKMS", Regions.US_WEST_2, 10));
+        assertTrue(AwsApiRateLimiter.forService("AWSKMS", Regions.US_WEST_2, 10) !=
+                AwsApiRateLimiter.forService("AWSKMS", Regions.US_EAST_1, 10));
+    }
+
+    @Test
+    public void test_s3_clients_are_counted_but_not_paced_by_default() {
+        AwsClientFactory<AmazonS3Client> s3ClientFactory = new AwsClientFactory<AmazonS3Client>() {};
+        AwsClientFactory<AmazonCloudFormationClient> cloudFormationClientFactory =
+                new AwsClientFactory<AmazonCloudFormationClient>() {};
+        assertEquals(0, s3ClientFactory.getMaxCallsPerSecond());
+        assertTrue(cloudFormationClientFactory.getMaxCallsPerSecond() > 0);
+
+        RequestHandler2 handler = s3ClientFactory.getRateLimitingRequestHandler(Regions.AP_SOUTHEAST_2);
+        for (int i = 0; i < 100; i++) {
+            handler.beforeAttempt(HandlerBeforeAttemptContext.builder()
+                    .withRequest(new DefaultRequest<Void>("AmazonS3")).build());
+        }
+
+        AwsApiRateLimiter limiter = AwsApiRateLimiter.getAll().stream()
+                .filter(l -> l.getServiceName().equals("AmazonS3") && l.getRegion() == Regions.AP_SOUTHEAST_2)
+                .findFirst()
+                .orElseThrow(AssertionError::new);
+        assertEquals(100, limiter.getAttempts());
+        assertEquals(0, limiter.getDelayMillis());
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2019 Nike, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nike.cerberus.service;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BackupRestorePipelineTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void test_that_every_key_is_fetched_and_restored_and_checkpointed() throws Exception {
+        Path checkpointPath = temporaryFolder.getRoot().toPath().resolve("restore.checkpoint");
+        List<String> restored = new CopyOnWriteArrayList<>();
+        List<String> keys = keys(20);
+
+        BackupRestorePipeline.Result result;
+        try (RestoreCheckpoint checkpoint = RestoreCheckpoint.open(checkpointPath)) {
+            result = new BackupRestorePipeline(3, 2, 1, 1).run(keys, key -> "json-" + key, restored::add, checkpoint);
+        }
+
+        assertEquals(20, result.getRestored());
+        assertTrue(result.getFailures().isEmpty());
+        assertEquals(keys.stream().map(key -> "json-" + key).sorted().collect(Collectors.toList()),
+                restored.stream().sorted().collect(Collectors.toList()));
+        assertEquals(20, Files.readAllLines(checkpointPath).size());
+    }
+
+    @Test
+    public void test_that_keys_in_the_checkpoint_are_skipped() throws Exception {
+        Path checkpointPath = temporaryFolder.getRoot().toPath().resolve("restore.checkpoint");
+        Files.write(checkpointPath, ImmutableList.of("sdb-0", "sdb-1", "sdb-2"));
+        List<String> fetched = new CopyOnWriteArrayList<>();
+
+        BackupRestorePipeline.Result result;
+        try (RestoreCheckpoint checkpoint = RestoreCheckpoint.open(checkpointPath)) {
+            result = new BackupRestorePipeline(2, 2, 1, 1).run(keys(5), key -> {
+                fetched.add(key);
+                return key;
+            }, json -> { }, checkpoint);
+        }
+
+        assertEquals(2, result.getRestored());
+        assertEquals(3, result.getSkipped());
+        assertEquals(ImmutableList.of("sdb-3", "sdb-4"), fetched.stream().sorted().collect(Collectors.toList()));
+        assertEquals(5, Files.readAllLines(checkpointPath).size());
+    }
+
+    @Test
+    public void test_that_failures_are_retried_and_reported_without_stopping_the_restore() throws Exception {
+        Map<String, AtomicInteger> attempts = new ConcurrentHashMap<>();
+
+        BackupRestorePipeline.Result result;
+        try (RestoreCheckpoint checkpoint = RestoreCheckpoint.open(temporaryFolder.newFile().toPath())) {
+            result = new BackupRestorePipeline(2, 2, 3, 1).run(keys(4), key -> key, json -> {
+                int attempt = attempts.computeIfAbsent(json, k -> new AtomicInteger()).incrementAndGet();
+                // sdb-1 works on its second attempt, sdb-2 never works
+                if ((json.equals("sdb-1") && attempt < 2) || json.equals("sdb-2")) {
+                    throw new RuntimeException("boom");
+                }
+            }, checkpoint);
+
+            assertTrue(checkpoint.isDone("sdb-1"));
+            assertFalse(checkpoint.isDone("sdb-2"));
+        }
+
+        assertEquals(3, result.getRestored());
+        assertEquals(ImmutableList.of("sdb-2"), ImmutableList.copyOf(result.getFailures().keySet()));
+        assertEquals(2, attempts.get("sdb-1").get());
+        assertEquals(3, attempts.get("sdb-2").get());
+    }
+
+    @Test
+    public void test_that_fetching_is_held_back_by_slow_restores() throws Exception {
+        CountDownLatch releaseRestores = new CountDownLatch(1);
+        AtomicInteger fetched = new AtomicInteger();
+
+        try (RestoreCheckpoint checkpoint = RestoreCheckpoint.open(temporaryFolder.newFile().toPath())) {
+            Thread restore = new Thread(() -> new BackupRestorePipeline(4, 1, 1, 1).run(keys(20), key -> {
+                fetched.incrementAndGet();
+                return key;
+            }, json -> {
+                try {
+                    releaseRestores.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, checkpoint));
+            restore.start();
+
+            TimeUnit.MILLISECONDS.sleep(300);
+            // one restore thread allows two items to be handed off, and each of the four fetch threads holds one more
+            assertEquals(6, fetched.get());
+
+            releaseRestores.countDown();
+            restore.join(TimeUnit.SECONDS.toMillis(5));
+            assertEquals(20, fetched.get());
+        }
+    }
+
+    @Test
+    public void test_that_every_fetch_thread_downloads_while_the_restore_threads_are_busy() throws Exception {
+        CountDownLatch restoreStarted = new CountDownLatch(1);
+        CountDownLatch fetchesStarted = new CountDownLatch(4);
+        CountDownLatch release = new CountDownLatch(1);
+
+        try (RestoreCheckpoint checkpoint = RestoreCheckpoint.open(temporaryFolder.newFile().toPath())) {
+            Thread restore = new Thread(() -> new BackupRestorePipeline(4, 1, 1, 1).run(keys(6), key -> {
+                if (!key.equals("sdb-0")) {
+                    fetchesStarted.countDown();
+                    await(release);
+                }
+                return key;
+            }, json -> {
+                restoreStarted.countDown();
+                await(release);
+            }, checkpoint));
+            restore.start();
+
+            assertTrue(restoreStarted.await(5, TimeUnit.SECONDS));
+            // the one restore thread is busy with the first item, while all four fetch threads download
+            assertTrue(fetchesStarted.await(5, TimeUnit.SECONDS));
+
+            release.countDown();
+            restore.join(TimeUnit.SECONDS.toMillis(5));
+            assertFalse(restore.isAlive());
+        }
+    }
+
+    private void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private List<String> keys(int count) {
+        return IntStream.range(0, count).mapToObj(i -> "sdb-" + i).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,297 @@
+/*
+ * Copyright (c) 2019 Nike, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nike.cerberus.service;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.regions.Regions;
+import com.amazonaws.services.cloudformation.AmazonCloudFormationClient;
+import com.amazonaws.services.cloudformation.model.Change;
+import com.amazonaws.services.cloudformation.model.ChangeSetStatus;
+import com.amazonaws.services.cloudformation.model.DescribeChangeSetResult;
+import com.amazonaws.services.cloudformation.model.DescribeStacksRequest;
+import com.amazonaws.services.cloudformation.model.DescribeStacksResult;
+import com.amazonaws.services.cloudformation.model.GetTemplateResult;
+import com.amazonaws.services.cloudformation.model.Output;
+import com.amazonaws.services.cloudformation.model.Parameter;
+import com.amazonaws.services.cloudformation.model.Replacement;
+import com.amazonaws.services.cloudformation.model.ResourceChange;
+import com.amazonaws.services.cloudformation.model.Stack;
+import com.amazonaws.services.cloudformation.model.StackStatus;
+import com.amazonaws.services.cloudformation.model.Tag;
+import com.amazonaws.services.cloudformation.model.TemplateParameter;
+import com.amazonaws.services.cloudformation.model.ValidateTemplateResult;
+import com.amazonaws.services.s3.AmazonS3Client;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.nike.cerberus.operation.UnexpectedCloudFormationStatusException;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class CloudFormationServiceTest {
+
+    private static final Regions REGION = Regions.US_WEST_2;
+
+    private static final String VPC_STACK_NAME = "demo-cerberus-vpc";
+
+    private static final String VPC_STACK_ID =
+            "arn:aws:cloudformation:us-west-2:111111111111:stack/demo-cerberus-vpc/11111111-2222-3333-4444-555555555555";
+
+    @Mock
+    private AwsClientFactory<AmazonCloudFormationClient> cloudFormationClientFactory;
+
+    @Mock
+    private AmazonCloudFormationClient cloudFormationClient;
+
+    @Mock
+    private AwsClientFactory<AmazonS3Client> s3ClientFactory;
+
+    @Mock
+    private AmazonS3Client s3Client;
+
+    private CloudFormationTemplateRegistry templateRegistry;
+
+    private CloudFormationService cloudFormationService;
+
+    @Before
+    public void before() {
+        initMocks(this);
+        when(cloudFormationClientFactory.getClient(any())).thenReturn(cloudFormationClient);
+        when(s3ClientFactory.getClient(any())).thenReturn(s3Client);
+        templateRegistry = new CloudFormationTemplateRegistry(s3ClientFactory);
+        cloudFormationService = new CloudFormationService(cloudFormationClientFactory, templateRegistry, "demo");
+
+        when(cloudFormationClient.describeStacks(argThat(request -> request != null && request.getNextToken() == null && request.getStackName() == null)))
+                .thenReturn(new DescribeStacksResult()
+                        .withStacks(new Stack().withStackName("other-app-stack").withStackId("other-id"))
+                        .withNextToken("page-2"));
+        when(cloudFormationClient.describeStacks(argThat(request -> request != null && "page-2".equals(request.getNextToken()))))
+                .thenReturn(new DescribeStacksResult().withStacks(new Stack()
+                        .withStackName(VPC_STACK_NAME)
+                        .withStackId(VPC_STACK_ID)
+                        .withStackStatus(StackStatus.CREATE_COMPLETE)
+                        .withParameters(new Parameter().withParameterKey("azCount").withParameterValue("3"),
+                                new Parameter().withParameterKey("secret").withParameterValue("****"))
+                        .withTags(new Tag().withKey("Name").withValue("cerberus-demo"))
+                        .withOutputs(new Output().withOutputKey("vpcId").withOutputValue("vpc-123")),
+                        new Stack()
+                        .withStackName("demo-cerberus-config")
+                        .withStackId("config-id")
+                        .withOutputs(new Output().withOutputKey("configBucketName").withOutputValue("config-bucket"))));
+        when(s3Client.getUrl(any(), any())).thenAnswer(invocation ->
+                new URL("https://config-bucket.s3.us-west-2.amazonaws.com/" + invocation.getArgument(1)));
+    }
+
+    @Test
+    public void test_environment_stacks_are_served_from_one_listing_per_region() {
+        assertTrue(cloudFormationService.isStackPresent(REGION, VPC_STACK_NAME));
+        assertEquals("vpc-123", cloudFormationService.getStackOutputs(REGION, VPC_STACK_NAME).get("vpcId"));
+        assertEquals("3", cloudFormationService.getStackParameters(REGION, VPC_STACK_NAME).get("azCount"));
+        assertEquals(VPC_STACK_ID, cloudFormationService.getStackId(REGION, VPC_STACK_NAME));
+        assertEquals(StackStatus.CREATE_COMPLETE, cloudFormationService.getStackStatus(REGION, VPC_STACK_ID));
+
+        // one call per page of the listing
+        verify(cloudFormationClient, times(2)).describeStacks(any(DescribeStacksRequest.class));
+        assertEquals(1, cloudFormationService.getStackDescriptionCacheMisses());
+        assertEquals(4, cloudFormationService.getStackDescriptionCacheHits());
+    }
+
+    @Test
+    public void test_missing_environment_stack_is_not_present_without_another_call() {
+        assertTrue(cloudFormationService.isStackPresent(REGION, VPC_STACK_NAME));
+        assertFalse(cloudFormationService.isStackPresent(REGION, "demo-cerberus-cms"));
+        assertTrue(cloudFormationService.getStackOutputs(REGION, "demo-cerberus-cms").isEmpty());
+
+        verify(cloudFormationClient, times(2)).describeStacks(any(DescribeStacksRequest.class));
+    }
+
+    @Test
+    public void test_invalidate_causes_the_region_to_be_listed_again() {
+        cloudFormationService.isStackPresent(REGION, VPC_STACK_NAME);
+        cloudFormationService.invalidateStackDescriptions(REGION);
+        cloudFormationService.isStackPresent(REGION, VPC_STACK_NAME);
+
+        verify(cloudFormationClient, times(4)).describeStacks(any(DescribeStacksRequest.class));
+        assertEquals(2, cloudFormationService.getStackDescriptionCacheMisses());
+    }
+
+    @Test
+    public void test_stacks_outside_the_environment_are_described_directly() {
+        AmazonServiceException doesNotExist = new AmazonServiceException("Stack with id other does not exist");
+        doesNotExist.setStatusCode(400);
+        when(cloudFormationClient.describeStacks(argThat(request -> request != null && "other".equals(request.getStackName()))))
+                .thenThrow(doesNotExist);
+
+        assertFalse(cloudFormationService.isStackPresent(REGION, "other"));
+
+        verify(cloudFormationClient, times(1)).describeStacks(any(DescribeStacksRequest.class));
+    }
+
+    @Test
+    public void test_plan_has_no_changes_when_parameters_and_tags_match() {
+        Map<String, String> parameters = new HashMap<>();
+        parameters.put("azCount", "3");
+        parameters.put("secret", "a-new-secret");
+        parameters.put("unknown", "not in the deployed template");
+
+        StackUpdatePlan plan = cloudFormationService.planStackUpdate(REGION,
+                com.nike.cerberus.domain.environment.Stack.VPC, parameters, false, new HashMap<>());
+
+        assertFalse(plan.hasChanges());
+        assertEquals(plan.getDeployedFingerprint(), plan.getDesiredFingerprint());
+        verify(cloudFormationClient, never()).getTemplate(any());
+    }
+
+    @Test
+    public void test_plan_reports_changed_parameters_and_tags() {
+        Map<String, String> parameters = new HashMap<>();
+        parameters.put("azCount", "2");
+        Map<String, String> tags = new HashMap<>();
+        tags.put("team", "cerberus");
+
+        StackUpdatePlan plan = cloudFormationService.planStackUpdate(REGION,
+                com.nike.cerberus.domain.environment.Stack.VPC, parameters, false, tags);
+
+        assertTrue(plan.hasChanges());
+        assertFalse(plan.isTemplateChanged());
+        assertEquals(Collections.singleton("azCount"), plan.getChangedParameters());
+        assertTrue(plan.isTagsChanged());
+    }
+
+    @Test
+    public void test_plan_compares_the_deployed_template_when_overwriting() {
+        com.nike.cerberus.domain.environment.Stack stack = mock(com.nike.cerberus.domain.environment.Stack.class);
+        when(stack.getFullName("demo")).thenReturn(VPC_STACK_NAME);
+        when(stack.getTemplateText()).thenReturn("Resources: {}\n");
+        when(cloudFormationClient.getTemplate(any())).thenReturn(new GetTemplateResult().withTemplateBody("Resources: {}"));
+
+        assertFalse(cloudFormationService.planStackUpdate(REGION, stack, new HashMap<>(), true, null).hasChanges());
+
+        when(stack.getTemplateText()).thenReturn("Resources: {Bucket: {}}");
+        StackUpdatePlan plan = cloudFormationService.planStackUpdate(REGION, stack, new HashMap<>(), true, null);
+        assertTrue(plan.hasChanges());
+        assertTrue(plan.isTemplateChanged());
+        assertTrue(plan.getChangedParameters().isEmpty());
+        assertFalse(plan.isTagsChanged());
+    }
+
+    @Test
+    public void test_change_set_is_polled_until_created_and_all_pages_of_changes_are_collected() {
+        cloudFormationService = new CloudFormationService(cloudFormationClientFactory, templateRegistry, "demo") {
+            @Override
+            protected long getChangeSetPollIntervalMillis() {
+                return 0;
+            }
+        };
+        when(cloudFormationClient.describeChangeSet(argThat(request -> request != null && request.getNextToken() == null)))
+                .thenReturn(new DescribeChangeSetResult().withStatus(ChangeSetStatus.CREATE_IN_PROGRESS))
+                .thenReturn(new DescribeChangeSetResult()
+                        .withStatus(ChangeSetStatus.CREATE_COMPLETE)
+                        .withChanges(new Change().withResourceChange(new ResourceChange()
+                                .withLogicalResourceId("CmsAutoScalingGroup").withReplacement(Replacement.True)))
+                        .withNextToken("page-2"));
+        when(cloudFormationClient.describeChangeSet(argThat(request -> request != null && "page-2".equals(request.getNextToken()))))
+                .thenReturn(new DescribeChangeSetResult()
+                        .withStatus(ChangeSetStatus.CREATE_COMPLETE)
+                        .withChanges(new Change().withResourceChange(new ResourceChange()
+                                .withLogicalResourceId("CmsSecurityGroup").withReplacement(Replacement.False))));
+
+        StackChangeSet changeSet = cloudFormationService.createChangeSetAndWait(REGION,
+                com.nike.cerberus.domain.environment.Stack.VPC, new HashMap<>(), true, false, new HashMap<>());
+
+        assertTrue(changeSet.hasChanges());
+        assertEquals(2, changeSet.getResourceChanges().size());
+        assertEquals("CmsAutoScalingGroup", changeSet.getReplacements().get(0).getLogicalResourceId());
+        verify(cloudFormationClient, times(3)).describeChangeSet(any());
+    }
+
+    @Test
+    public void test_change_set_without_changes_is_empty() {
+        when(cloudFormationClient.describeChangeSet(any())).thenReturn(new DescribeChangeSetResult()
+                .withStatus(ChangeSetStatus.FAILED)
+                .withStatusReason("The submitted information didn't contain changes. Submit different information to create a change set."));
+
+        StackChangeSet changeSet = cloudFormationService.createChangeSetAndWait(REGION,
+                com.nike.cerberus.domain.environment.Stack.VPC, new HashMap<>(), true, false, null);
+
+        assertFalse(changeSet.hasChanges());
+        assertTrue(changeSet.isEmpty());
+    }
+
+    @Test(expected = UnexpectedCloudFormationStatusException.class)
+    public void test_failed_change_set_throws() {
+        when(cloudFormationClient.describeChangeSet(any())).thenReturn(new DescribeChangeSetResult()
+                .withStatus(ChangeSetStatus.FAILED)
+                .withStatusReason("Parameters: [vpcId] must have values"));
+
+        cloudFormationService.createChangeSetAndWait(REGION,
+                com.nike.cerberus.domain.environment.Stack.VPC, new HashMap<>(), true, false, null);
+    }
+
+    @Test
+    public void test_templates_are_sent_as_a_url_once_staged_in_the_config_bucket() {
+        when(cloudFormationClient.validateTemplate(any())).thenReturn(new ValidateTemplateResult()
+                .withParameters(new TemplateParameter().withParameterKey("azCount")));
+        when(cloudFormationClient.describeChangeSet(any())).thenReturn(new DescribeChangeSetResult()
+                .withStatus(ChangeSetStatus.CREATE_COMPLETE));
+        com.nike.cerberus.domain.environment.Stack vpc = com.nike.cerberus.domain.environment.Stack.VPC;
+        String templateKey = templateRegistry.getTemplateKey(vpc);
+
+        cloudFormationService.createChangeSetAndWait(REGION, vpc, new HashMap<>(), true, true, null);
+        cloudFormationService.createChangeSetAndWait(REGION, vpc, new HashMap<>(), true, true, null);
+
+        String templateUrl = "https://config-bucket.s3.us-west-2.amazonaws.com/" + templateKey;
+        verify(cloudFormationClient, times(2)).createChangeSet(argThat(request ->
+                request != null && templateUrl.equals(request.getTemplateURL()) && request.getTemplateBody() == null));
+        verify(cloudFormationClient, times(2)).validateTemplate(argThat(request ->
+                request != null && templateUrl.equals(request.getTemplateURL())));
+        // staged once, by hash
+        verify(s3Client, times(1)).doesObjectExist("config-bucket", templateKey);
+        verify(s3Client, times(1)).putObject(eq("config-bucket"), eq(templateKey), any(InputStream.class), any(ObjectMetadata.class));
+        assertEquals(1, templateRegistry.getTemplatesUploaded());
+    }
+
+    @Test
+    public void test_already_staged_templates_are_not_uploaded_again() {
+        com.nike.cerberus.domain.environment.Stack vpc = com.nike.cerberus.domain.environment.Stack.VPC;
+        when(s3Client.doesObjectExist("config-bucket", templateRegistry.getTemplateKey(vpc))).thenReturn(true);
+
+        templateRegistry.stageTemplate(REGION, "config-bucket", vpc);
+
+        verify(s3Client, never()).putObject(any(), any(), any(InputStream.class), any(ObjectMetadata.class));
+        assertEquals(1, templateRegistry.getTemplatesAlreadyStaged());
+        assertTrue(templateRegistry.getTemplateKey(vpc).matches("cloudformation-templates/[0-9a-f]{64}\\.yaml"));
+    }
+}
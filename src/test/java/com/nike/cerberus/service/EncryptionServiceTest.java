@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2019 Nike, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nike.cerberus.service;
+
+import com.amazonaws.encryptionsdk.AwsCrypto;
+import com.amazonaws.encryptionsdk.MasterKeyProvider;
+import com.amazonaws.encryptionsdk.jce.JceMasterKey;
+import com.amazonaws.encryptionsdk.kms.KmsMasterKey;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.crypto.spec.SecretKeySpec;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class EncryptionServiceTest {
+
+    private static final List<String> CMK_ARNS = Arrays.asList("arn:aws:kms:us-west-2:111111111111:key/a",
+            "arn:aws:kms:us-east-1:111111111111:key/b");
+
+    private JceMasterKey masterKey;
+
+    private EncryptionService encryptionService;
+
+    @Before
+    public void setUp() {
+        byte[] rawKey = new byte[32];
+        new SecureRandom().nextBytes(rawKey);
+        masterKey = spy(JceMasterKey.getInstance(new SecretKeySpec(rawKey, "AES"), "test", "test-key", "AES/GCM/NoPadding"));
+
+        encryptionService = new EncryptionService(new AwsCrypto(), 300, 1000, 10) {
+            @Override
+            @SuppressWarnings("unchecked")
+            protected MasterKeyProvider<KmsMasterKey> initializeKeyProvider(List<String> cmkArns) {
+                return (MasterKeyProvider) masterKey;
+            }
+        };
+    }
+
+    @Test
+    public void testMaterialsManagerIsMemoizedPerCmkArnList() {
+        assertSame(encryptionService.getMaterialsManager(CMK_ARNS), encryptionService.getMaterialsManager(CMK_ARNS));
+    }
+
+    @Test
+    public void testDataKeyIsReusedAcrossEncrypts() {
+        String first = encryptionService.encrypt(CMK_ARNS, "first secret");
+        String second = encryptionService.encrypt(CMK_ARNS, "second secret");
+
+        assertNotEquals(first, second);
+        verify(masterKey, times(1)).generateDataKey(any(), any());
+    }
+
+    @Test
+    public void testEncryptDecryptRoundTrip() {
+        String ciphertext = encryptionService.encrypt(CMK_ARNS, "secret");
+
+        assertEquals("secret", encryptionService.decrypt(ciphertext));
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2019 Nike, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nike.cerberus.service;
+
+import com.sun.net.httpserver.HttpServer;
+import okhttp3.OkHttpClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class HealthProbeTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    private HttpServer server;
+
+    private AtomicInteger flakyStatus;
+
+    private String okUrl;
+
+    private String failingUrl;
+
+    private String flakyUrl;
+
+    @Before
+    public void setup() throws Exception {
+        flakyStatus = new AtomicInteger(200);
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/ok", exchange -> {
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        server.createContext("/failing", exchange -> {
+            exchange.sendResponseHeaders(503, -1);
+            exchange.close();
+        });
+        server.createContext("/flaky", exchange -> {
+            exchange.sendResponseHeaders(flakyStatus.get(), -1);
+            exchange.close();
+        });
+        server.start();
+
+        String base = "http://localhost:" + server.getAddress().getPort();
+        okUrl = base + "/ok";
+        failingUrl = base + "/failing";
+        flakyUrl = base + "/flaky";
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void test_await_all_healthy() {
+        try (HealthProbe probe = watch(okUrl, flakyUrl)) {
+            assertTrue(probe.await(HealthProbe.allHealthy(3), TIMEOUT));
+
+            HealthProbe.Target target = probe.getTarget(okUrl);
+            assertTrue(target.isHealthy());
+            assertEquals(200, target.getLastStatusCode());
+            assertEquals(0, target.getConsecutiveFailures());
+            assertTrue(target.getLatencyPercentileMillis(99) >= target.getLatencyPercentileMillis(50));
+            assertEquals(2, probe.countHealthy(Arrays.asList(okUrl, flakyUrl)));
+        }
+    }
+
+    @Test
+    public void test_await_times_out_when_condition_is_not_met() {
+        try (HealthProbe probe = watch(okUrl, failingUrl)) {
+            assertFalse(probe.await(HealthProbe.allHealthy(1), Duration.ofMillis(200)));
+
+            assertTrue(probe.await(HealthProbe.unhealthy(failingUrl, 2), TIMEOUT));
+            assertEquals(503, probe.getTarget(failingUrl).getLastStatusCode());
+            assertEquals(1, probe.countHealthy(Arrays.asList(okUrl, failingUrl)));
+        }
+    }
+
+    @Test
+    public void test_consecutive_counts_reset_when_target_changes_state() {
+        try (HealthProbe probe = watch(flakyUrl)) {
+            assertTrue(probe.await(HealthProbe.healthy(flakyUrl, 2), TIMEOUT));
+
+            flakyStatus.set(500);
+            assertTrue(probe.await(HealthProbe.unhealthy(flakyUrl, 2), TIMEOUT));
+            assertEquals(0, probe.getTarget(flakyUrl).getConsecutiveSuccesses());
+
+            flakyStatus.set(200);
+            assertTrue(probe.await(HealthProbe.healthy(flakyUrl, 2), TIMEOUT));
+            assertEquals(0, probe.getTarget(flakyUrl).getConsecutiveFailures());
+        }
+    }
+
+    @Test
+    public void test_unreachable_target_records_error() {
+        String unreachableUrl = "http://localhost:" + server.getAddress().getPort() + "/ok";
+        server.stop(0);
+
+        try (HealthProbe probe = watch(unreachableUrl)) {
+            assertTrue(probe.await(HealthProbe.unhealthy(unreachableUrl, 1), TIMEOUT));
+
+            HealthProbe.Target target = probe.getTarget(unreachableUrl);
+            assertEquals(HealthProbe.FAILED_STATUS_CODE, target.getLastStatusCode());
+            assertNotNull(target.getLastError());
+        }
+    }
+
+    @Test
+    public void test_checks_carry_on_when_the_client_throws() {
+        OkHttpClient throwingClient = mock(OkHttpClient.class);
+        when(throwingClient.newCall(any())).thenThrow(new IllegalStateException("client is shut down"));
+
+        try (HealthProbe probe = new HealthProbe(throwingClient, Arrays.asList(okUrl), 200, Duration.ofMillis(20))) {
+            assertTrue(probe.await(HealthProbe.unhealthy(okUrl, 3), TIMEOUT));
+
+            HealthProbe.Target target = probe.getTarget(okUrl);
+            assertEquals(HealthProbe.FAILED_STATUS_CODE, target.getLastStatusCode());
+            assertEquals("client is shut down", target.getLastError());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void test_get_target_that_is_not_probed() {
+        try (HealthProbe probe = watch(okUrl)) {
+            probe.getTarget(failingUrl);
+        }
+    }
+
+    private HealthProbe watch(String... urls) {
+        return new HealthProbe(new OkHttpClient(), Arrays.asList(urls), 200, Duration.ofMillis(20));
+    }
+}
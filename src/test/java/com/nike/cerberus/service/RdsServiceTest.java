@@ -18,7 +18,10 @@ package com.nike.cerberus.service;
 
 import com.amazonaws.regions.Regions;
 import com.amazonaws.services.rds.AmazonRDSClient;
+import com.amazonaws.services.rds.model.AmazonRDSException;
 import com.amazonaws.services.rds.model.DBClusterSnapshot;
+import com.amazonaws.services.rds.model.DeleteDBClusterSnapshotRequest;
+import com.amazonaws.services.rds.model.DescribeDBClusterSnapshotsRequest;
 import com.amazonaws.services.rds.model.DescribeDBClusterSnapshotsResult;
 import com.nike.cerberus.operation.UnexpectedRdsSnapshotStatusException;
 import com.nike.cerberus.service.AwsClientFactory;
@@ -28,19 +31,31 @@ import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.ZoneOffset;
 import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.Deque;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
 
@@ -154,4 +169,114 @@ public class RdsServiceTest {
         String snapshotId = rdsService.generateSnapshotIdentifier("test-cluster", localDateTime);
         assertEquals("test-cluster-2019-04-19-22-03", snapshotId);
     }
+
+    @Test
+    public void test_that_snapshot_query_pushes_filters_to_rds() {
+        DescribeDBClusterSnapshotsRequest request = RdsSnapshotQuery.forRegion(Regions.US_EAST_1)
+                .withDbClusterIdentifier("test-cerberus-database-cmsdatabasecluster-jns1lasdf9d")
+                .withSnapshotType(RdsSnapshotQuery.SNAPSHOT_TYPE_MANUAL)
+                .toRequest();
+
+        assertEquals("test-cerberus-database-cmsdatabasecluster-jns1lasdf9d", request.getDBClusterIdentifier());
+        assertEquals("manual", request.getSnapshotType());
+    }
+
+    @Test
+    public void test_that_stream_db_snapshots_only_requests_the_pages_it_needs() {
+        when(rdsClientFactory.getClient(Regions.US_EAST_1)).thenReturn(amazonRDSClient);
+        when(amazonRDSClient.describeDBClusterSnapshots(argThat(request -> request != null && request.getMarker() == null)))
+                .thenReturn(new DescribeDBClusterSnapshotsResult()
+                        .withDBClusterSnapshots(new DBClusterSnapshot().withDBClusterSnapshotIdentifier("first"))
+                        .withMarker("page-2"));
+        when(amazonRDSClient.describeDBClusterSnapshots(argThat(request -> request != null && "page-2".equals(request.getMarker()))))
+                .thenReturn(new DescribeDBClusterSnapshotsResult()
+                        .withDBClusterSnapshots(new DBClusterSnapshot().withDBClusterSnapshotIdentifier("second")));
+
+        Optional<DBClusterSnapshot> first = rdsService.streamDbSnapshots(RdsSnapshotQuery.forRegion(Regions.US_EAST_1)).findFirst();
+
+        assertEquals("first", first.get().getDBClusterSnapshotIdentifier());
+        verify(amazonRDSClient, times(1)).describeDBClusterSnapshots(any());
+
+        List<DBClusterSnapshot> all = rdsService.getDbSnapshots(Regions.US_EAST_1);
+
+        assertEquals(2, all.size());
+        assertEquals("second", all.get(1).getDBClusterSnapshotIdentifier());
+    }
+
+    @Test
+    public void test_that_get_db_snapshots_is_cached_until_a_snapshot_is_deleted_in_the_region() {
+        DBClusterSnapshot snapshot = new DBClusterSnapshot().withDBClusterSnapshotIdentifier("ssid");
+        when(rdsClientFactory.getClient(Regions.US_EAST_1)).thenReturn(amazonRDSClient);
+        when(amazonRDSClient.describeDBClusterSnapshots(any()))
+                .thenReturn(new DescribeDBClusterSnapshotsResult().withDBClusterSnapshots(snapshot));
+
+        rdsService.getDbSnapshots(Regions.US_EAST_1);
+        rdsService.getDbSnapshots(Regions.US_EAST_1);
+        verify(amazonRDSClient, times(1)).describeDBClusterSnapshots(any());
+
+        rdsService.deleteSnapshot(snapshot, Regions.US_EAST_1);
+        rdsService.getDbSnapshots(Regions.US_EAST_1);
+        verify(amazonRDSClient).deleteDBClusterSnapshot(any(DeleteDBClusterSnapshotRequest.class));
+        verify(amazonRDSClient, times(2)).describeDBClusterSnapshots(any());
+    }
+
+    @Test
+    public void test_that_delete_snapshots_carries_on_in_other_regions_when_a_region_fails() {
+        AmazonRDSClient westClient = mock(AmazonRDSClient.class);
+        when(rdsClientFactory.getClient(Regions.US_EAST_1)).thenReturn(amazonRDSClient);
+        when(rdsClientFactory.getClient(Regions.US_WEST_2)).thenReturn(westClient);
+        when(amazonRDSClient.deleteDBClusterSnapshot(any())).thenThrow(new AmazonRDSException("boom"));
+
+        Map<Regions, List<DBClusterSnapshot>> snapshots = new LinkedHashMap<>();
+        snapshots.put(Regions.US_EAST_1, Arrays.asList(
+                new DBClusterSnapshot().withDBClusterSnapshotIdentifier("east-1"),
+                new DBClusterSnapshot().withDBClusterSnapshotIdentifier("east-2")));
+        snapshots.put(Regions.US_WEST_2, Arrays.asList(
+                new DBClusterSnapshot().withDBClusterSnapshotIdentifier("west-1"),
+                new DBClusterSnapshot().withDBClusterSnapshotIdentifier("west-2")));
+
+        try {
+            rdsService.deleteSnapshots(snapshots, 100);
+            fail("expected the failed delete to be thrown");
+        } catch (AmazonRDSException e) {
+            verify(amazonRDSClient, times(1)).deleteDBClusterSnapshot(any());
+            verify(westClient, times(2)).deleteDBClusterSnapshot(any());
+        }
+    }
+
+    @Test
+    public void test_that_delete_snapshots_does_not_register_its_pacing_limiter() {
+        when(rdsClientFactory.getClient(Regions.US_EAST_1)).thenReturn(amazonRDSClient);
+
+        rdsService.deleteSnapshots(Collections.singletonMap(Regions.US_EAST_1, Collections.singletonList(
+                new DBClusterSnapshot().withDBClusterSnapshotIdentifier("east-1"))), 100);
+
+        verify(amazonRDSClient).deleteDBClusterSnapshot(any());
+        assertTrue(AwsApiRateLimiter.getAll().stream()
+                .noneMatch(limiter -> limiter.getServiceName().equals("RdsSnapshotDeletes")));
+    }
+
+    @Test
+    public void test_that_get_latest_available_snapshot_returns_the_newest_available_snapshot_within_the_max_age() {
+        Instant now = Instant.now();
+        when(rdsClientFactory.getClient(Regions.US_EAST_1)).thenReturn(amazonRDSClient);
+        when(amazonRDSClient.describeDBClusterSnapshots(any())).thenReturn(new DescribeDBClusterSnapshotsResult()
+                .withDBClusterSnapshots(
+                        new DBClusterSnapshot().withDBClusterSnapshotIdentifier("older").withStatus("available")
+                                .withSnapshotCreateTime(Date.from(now.minus(5, ChronoUnit.HOURS))),
+                        new DBClusterSnapshot().withDBClusterSnapshotIdentifier("newer").withStatus("available")
+                                .withSnapshotCreateTime(Date.from(now.minus(1, ChronoUnit.HOURS))),
+                        new DBClusterSnapshot().withDBClusterSnapshotIdentifier("copying").withStatus("copying")
+                                .withSnapshotCreateTime(Date.from(now.minus(10, ChronoUnit.MINUTES))),
+                        new DBClusterSnapshot().withDBClusterSnapshotIdentifier("too-old").withStatus("available")
+                                .withSnapshotCreateTime(Date.from(now.minus(2, ChronoUnit.DAYS)))));
+
+        Optional<DBClusterSnapshot> latest = rdsService.getLatestAvailableSnapshot(
+                RdsSnapshotQuery.forRegion(Regions.US_EAST_1), Duration.ofHours(24));
+        assertEquals("newer", latest.get().getDBClusterSnapshotIdentifier());
+
+        Optional<DBClusterSnapshot> none = rdsService.getLatestAvailableSnapshot(
+                RdsSnapshotQuery.forRegion(Regions.US_EAST_1), Duration.ofMinutes(30));
+        assertFalse(none.isPresent());
+    }
 }
@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2019 Nike, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nike.cerberus.service;
+
+import com.amazonaws.regions.Regions;
+import com.amazonaws.services.rds.model.DBClusterSnapshot;
+import com.amazonaws.services.rds.model.DBClusterSnapshotAlreadyExistsException;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.nike.cerberus.operation.UnexpectedRdsSnapshotStatusException;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class RdsSnapshotCopyPlannerTest {
+
+    @Mock
+    private RdsService rdsService;
+
+    private final List<CompletableFuture<DBClusterSnapshot>> copyFutures = new CopyOnWriteArrayList<>();
+
+    @Before
+    public void before() {
+        initMocks(this);
+        when(rdsService.getIdentifier(any())).thenAnswer(invocation ->
+                invocation.<DBClusterSnapshot>getArgument(0).getDBClusterSnapshotIdentifier().replace("rds:", ""));
+        when(rdsService.copySnapshot(any(), any(), any())).thenAnswer(invocation ->
+                snapshot(invocation.<DBClusterSnapshot>getArgument(0).getDBClusterSnapshotIdentifier().replace("rds:", ""), "copying"));
+        when(rdsService.whenSnapshotAvailable(any(), any())).thenAnswer(invocation -> {
+            CompletableFuture<DBClusterSnapshot> future = new CompletableFuture<>();
+            copyFutures.add(future);
+            return future;
+        });
+    }
+
+    @Test
+    public void test_that_plan_only_copies_snapshots_missing_from_each_region() {
+        List<DBClusterSnapshot> source = ImmutableList.of(
+                snapshot("rds:test-snapshot-1", "available"),
+                snapshot("rds:test-snapshot-2", "available"),
+                snapshot("rds:test-snapshot-3", "available"));
+
+        Map<Regions, RdsSnapshotCopyPlanner.RegionPlan> plans = new RdsSnapshotCopyPlanner(rdsService, 5).plan(source,
+                ImmutableMap.of(
+                        Regions.US_EAST_1, ImmutableList.of(
+                                snapshot("test-snapshot-1", "available"),
+                                snapshot("test-snapshot-2", "copying"),
+                                snapshot("test-snapshot-old", "available")),
+                        Regions.EU_WEST_1, ImmutableList.of()));
+
+        RdsSnapshotCopyPlanner.RegionPlan east = plans.get(Regions.US_EAST_1);
+        assertEquals(ImmutableList.of("rds:test-snapshot-3"), identifiers(east.getToCopy()));
+        assertEquals(ImmutableList.of("test-snapshot-2"), identifiers(east.getInProgress()));
+
+        RdsSnapshotCopyPlanner.RegionPlan west = plans.get(Regions.EU_WEST_1);
+        assertEquals(3, west.getToCopy().size());
+        assertTrue(west.getInProgress().isEmpty());
+    }
+
+    @Test
+    public void test_that_execute_never_has_more_than_the_max_copies_in_progress_per_region() throws Exception {
+        RdsSnapshotCopyPlanner planner = new RdsSnapshotCopyPlanner(rdsService, 2);
+        Map<Regions, RdsSnapshotCopyPlanner.RegionPlan> plans = ImmutableMap.of(Regions.US_EAST_1,
+                new RdsSnapshotCopyPlanner.RegionPlan(Regions.US_EAST_1, snapshots(5), ImmutableList.of()));
+
+        CompletableFuture<List<DBClusterSnapshot>> copied = CompletableFuture.supplyAsync(() ->
+                planner.execute(Regions.US_WEST_2, plans, true));
+
+        verify(rdsService, timeout(1000).times(2)).copySnapshot(any(), eq(Regions.US_WEST_2), eq(Regions.US_EAST_1));
+        verify(rdsService, after(200).times(2)).copySnapshot(any(), any(), any());
+
+        copyFutures.get(0).complete(new DBClusterSnapshot());
+        verify(rdsService, timeout(1000).times(3)).copySnapshot(any(), any(), any());
+
+        for (int i = 1; i < 5; i++) {
+            copyFutures.get(i).complete(new DBClusterSnapshot());
+            verify(rdsService, timeout(1000).times(Math.min(i + 3, 5))).copySnapshot(any(), any(), any());
+        }
+
+        assertEquals(5, copied.get(1, TimeUnit.SECONDS).size());
+    }
+
+    @Test
+    public void test_that_copies_already_in_progress_count_against_the_max() throws Exception {
+        RdsSnapshotCopyPlanner planner = new RdsSnapshotCopyPlanner(rdsService, 2);
+        Map<Regions, RdsSnapshotCopyPlanner.RegionPlan> plans = ImmutableMap.of(Regions.US_EAST_1,
+                new RdsSnapshotCopyPlanner.RegionPlan(Regions.US_EAST_1, snapshots(1),
+                        ImmutableList.of(snapshot("in-progress-1", "copying"), snapshot("in-progress-2", "copying"))));
+
+        CompletableFuture<List<DBClusterSnapshot>> copied = CompletableFuture.supplyAsync(() ->
+                planner.execute(Regions.US_WEST_2, plans, false));
+
+        verify(rdsService, after(200).never()).copySnapshot(any(), any(), any());
+
+        copyFutures.get(0).complete(new DBClusterSnapshot());
+
+        assertEquals(1, copied.get(1, TimeUnit.SECONDS).size());
+        verify(rdsService, times(1)).copySnapshot(any(), any(), any());
+    }
+
+    @Test
+    public void test_that_a_copy_that_already_exists_is_skipped() {
+        doThrow(new DBClusterSnapshotAlreadyExistsException("exists")).when(rdsService).copySnapshot(any(), any(), any());
+        RdsSnapshotCopyPlanner planner = new RdsSnapshotCopyPlanner(rdsService, 2);
+
+        List<DBClusterSnapshot> copied = planner.execute(Regions.US_WEST_2, ImmutableMap.of(Regions.US_EAST_1,
+                new RdsSnapshotCopyPlanner.RegionPlan(Regions.US_EAST_1, snapshots(3), ImmutableList.of())), true);
+
+        assertTrue(copied.isEmpty());
+        verify(rdsService, times(3)).copySnapshot(any(), any(), any());
+    }
+
+    @Test
+    public void test_that_a_failed_copy_stops_the_region_but_not_the_others() {
+        doAnswer(invocation -> {
+            CompletableFuture<DBClusterSnapshot> future = new CompletableFuture<>();
+            future.completeExceptionally(new UnexpectedRdsSnapshotStatusException("failed"));
+            return future;
+        }).when(rdsService).whenSnapshotAvailable(any(), eq(Regions.US_EAST_1));
+        doAnswer(invocation -> CompletableFuture.completedFuture(invocation.getArgument(0)))
+                .when(rdsService).whenSnapshotAvailable(any(), eq(Regions.EU_WEST_1));
+        RdsSnapshotCopyPlanner planner = new RdsSnapshotCopyPlanner(rdsService, 1);
+
+        try {
+            planner.execute(Regions.US_WEST_2, ImmutableMap.of(
+                    Regions.US_EAST_1, new RdsSnapshotCopyPlanner.RegionPlan(Regions.US_EAST_1, snapshots(3), ImmutableList.of()),
+                    Regions.EU_WEST_1, new RdsSnapshotCopyPlanner.RegionPlan(Regions.EU_WEST_1, snapshots(3), ImmutableList.of())),
+                    true);
+            fail("expected the failed copy to be thrown");
+        } catch (UnexpectedRdsSnapshotStatusException e) {
+            verify(rdsService, times(1)).copySnapshot(any(), any(), eq(Regions.US_EAST_1));
+            verify(rdsService, times(3)).copySnapshot(any(), any(), eq(Regions.EU_WEST_1));
+        }
+    }
+
+    private DBClusterSnapshot snapshot(String identifier, String status) {
+        return new DBClusterSnapshot().withDBClusterSnapshotIdentifier(identifier).withStatus(status);
+    }
+
+    private List<DBClusterSnapshot> snapshots(int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> snapshot("rds:test-snapshot-" + i, "available"))
+                .collect(Collectors.toList());
+    }
+
+    private List<String> identifiers(List<DBClusterSnapshot> snapshots) {
+        return snapshots.stream().map(DBClusterSnapshot::getDBClusterSnapshotIdentifier).collect(Collectors.toList());
+    }
+}
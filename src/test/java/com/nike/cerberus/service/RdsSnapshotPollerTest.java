@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2019 Nike, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nike.cerberus.service;
+
+import com.amazonaws.regions.Regions;
+import com.amazonaws.services.rds.AmazonRDSClient;
+import com.amazonaws.services.rds.model.DBClusterSnapshot;
+import com.amazonaws.services.rds.model.DescribeDBClusterSnapshotsRequest;
+import com.amazonaws.services.rds.model.DescribeDBClusterSnapshotsResult;
+import com.nike.cerberus.operation.UnexpectedRdsSnapshotStatusException;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class RdsSnapshotPollerTest {
+
+    @Mock
+    private AwsClientFactory<AmazonRDSClient> rdsClientFactory;
+
+    @Mock
+    private AmazonRDSClient westRdsClient;
+
+    @Mock
+    private AmazonRDSClient eastRdsClient;
+
+    private RdsSnapshotPoller poller;
+
+    @Before
+    public void before() {
+        initMocks(this);
+        when(rdsClientFactory.getClient(Regions.US_WEST_2)).thenReturn(westRdsClient);
+        when(rdsClientFactory.getClient(Regions.US_EAST_1)).thenReturn(eastRdsClient);
+        poller = new RdsSnapshotPoller(rdsClientFactory, 10, 100);
+    }
+
+    @Test
+    public void test_pending_snapshots_in_a_region_are_checked_with_one_call() throws Exception {
+        when(westRdsClient.describeDBClusterSnapshots(argThat(request -> filterValueCount(request) == 2)))
+                .thenReturn(result(snapshot("a", "copying", 10), snapshot("b", "copying", 50)))
+                .thenReturn(result(snapshot("a", "copying", 40), snapshot("b", "available", 100)))
+                .thenReturn(result(snapshot("a", "available", 100)));
+        // the first check can run before b is added, so a check for a single snapshot finds it available
+        when(westRdsClient.describeDBClusterSnapshots(argThat(request -> filterValueCount(request) == 1)))
+                .thenAnswer(invocation -> result(snapshot(invocation.<DescribeDBClusterSnapshotsRequest>getArgument(0)
+                        .getFilters().get(0).getValues().get(0), "available", 100)));
+        when(eastRdsClient.describeDBClusterSnapshots(any()))
+                .thenReturn(result(snapshot("c", "available", 100)));
+
+        CompletableFuture<DBClusterSnapshot> a = poller.whenAvailable(snapshot("a", "creating", 0), Regions.US_WEST_2);
+        CompletableFuture<DBClusterSnapshot> b = poller.whenAvailable(snapshot("b", "creating", 0), Regions.US_WEST_2);
+        CompletableFuture<DBClusterSnapshot> c = poller.whenAvailable(snapshot("c", "creating", 0), Regions.US_EAST_1);
+
+        assertEquals("available", a.get(5, TimeUnit.SECONDS).getStatus());
+        assertEquals("available", b.get(5, TimeUnit.SECONDS).getStatus());
+        assertEquals("available", c.get(5, TimeUnit.SECONDS).getStatus());
+        verify(eastRdsClient, times(1)).describeDBClusterSnapshots(any());
+        assertTrue(poller.getDescribeCalls() <= 4);
+    }
+
+    @Test
+    public void test_snapshot_in_an_undesired_status_fails_its_future() throws Exception {
+        when(westRdsClient.describeDBClusterSnapshots(any()))
+                .thenReturn(result(snapshot("a", "failed", 0)));
+
+        try {
+            poller.whenAvailable(snapshot("a", "creating", 0), Regions.US_WEST_2).get(5, TimeUnit.SECONDS);
+            fail("expected the snapshot to fail");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof UnexpectedRdsSnapshotStatusException);
+        }
+    }
+
+    @Test
+    public void test_snapshot_that_never_shows_up_fails_after_a_few_checks() throws Exception {
+        when(westRdsClient.describeDBClusterSnapshots(any())).thenReturn(result());
+
+        try {
+            poller.whenAvailable(snapshot("a", "creating", 0), Regions.US_WEST_2).get(5, TimeUnit.SECONDS);
+            fail("expected the snapshot to fail");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof UnexpectedRdsSnapshotStatusException);
+        }
+        verify(westRdsClient, times(3)).describeDBClusterSnapshots(any());
+    }
+
+    private static int filterValueCount(DescribeDBClusterSnapshotsRequest request) {
+        return request == null || request.getFilters().isEmpty() ? -1 : request.getFilters().get(0).getValues().size();
+    }
+
+    private static DescribeDBClusterSnapshotsResult result(DBClusterSnapshot... snapshots) {
+        return new DescribeDBClusterSnapshotsResult().withDBClusterSnapshots(snapshots);
+    }
+
+    private static DBClusterSnapshot snapshot(String id, String status, int percentProgress) {
+        return new DBClusterSnapshot()
+                .withDBClusterSnapshotIdentifier(id)
+                .withStatus(status)
+                .withPercentProgress(percentProgress);
+    }
+}
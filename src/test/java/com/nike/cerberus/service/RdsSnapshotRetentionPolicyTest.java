@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2019 Nike, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nike.cerberus.service;
+
+import com.amazonaws.services.rds.model.DBClusterSnapshot;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RdsSnapshotRetentionPolicyTest {
+
+    // a Wednesday
+    private final Instant now = Instant.parse("2019-05-15T12:00:00Z");
+
+    @Test
+    public void test_that_only_snapshots_older_than_the_days_are_deleted_by_default() {
+        RdsSnapshotRetentionPolicy.Decision decision = RdsSnapshotRetentionPolicy.keepNewerThanDays(14)
+                .apply(dailySnapshots(30), now);
+
+        assertEquals(14, decision.getKept().size());
+        assertEquals(16, decision.getToDelete().size());
+        assertTrue(decision.getToDelete().stream()
+                .allMatch(snapshot -> snapshot.getSnapshotCreateTime().toInstant().isBefore(now.minus(14, ChronoUnit.DAYS))));
+    }
+
+    @Test
+    public void test_that_keep_last_keeps_the_newest_snapshots() {
+        RdsSnapshotRetentionPolicy.Decision decision = RdsSnapshotRetentionPolicy.keepNewerThanDays(0)
+                .withKeepLast(3)
+                .apply(dailySnapshots(10), now);
+
+        assertEquals(ids(0, 1, 2), ids(decision.getKept().keySet().stream().collect(Collectors.toList())));
+        assertEquals(7, decision.getToDelete().size());
+    }
+
+    @Test
+    public void test_that_tiers_keep_the_newest_snapshot_per_period() {
+        RdsSnapshotRetentionPolicy.Decision decision = RdsSnapshotRetentionPolicy.keepNewerThanDays(0)
+                .withKeepDaily(2)
+                .withKeepWeekly(2)
+                .withKeepMonthly(2)
+                .apply(dailySnapshots(60), now);
+
+        // daily: today and yesterday, weekly: the sunday that ends last week, monthly: the last day of april
+        assertEquals(ids(0, 1, 3, 15), ids(decision.getKept().keySet().stream().collect(Collectors.toList())));
+        assertEquals("daily", decision.getKept().values().iterator().next());
+        assertEquals(56, decision.getToDelete().size());
+    }
+
+    @Test
+    public void test_that_the_minimum_keeps_the_newest_snapshots_when_nothing_else_does() {
+        RdsSnapshotRetentionPolicy.Decision decision = RdsSnapshotRetentionPolicy.keepNewerThanDays(14)
+                .withMinimumToKeep(2)
+                .apply(dailySnapshots(30).subList(20, 30), now);
+
+        assertEquals(ids(20, 21), ids(decision.getKept().keySet().stream().collect(Collectors.toList())));
+        assertEquals(8, decision.getToDelete().size());
+    }
+
+    @Test
+    public void test_that_to_delete_is_newest_first() {
+        List<DBClusterSnapshot> snapshots = dailySnapshots(5);
+        Collections.reverse(snapshots);
+
+        RdsSnapshotRetentionPolicy.Decision decision = RdsSnapshotRetentionPolicy.keepNewerThanDays(0).apply(snapshots, now);
+
+        assertEquals(ids(0, 1, 2, 3, 4), ids(decision.getToDelete()));
+    }
+
+    /**
+     * @return A snapshot for each of the days before now, snapshot-0 is from 1 hour ago
+     */
+    private List<DBClusterSnapshot> dailySnapshots(int days) {
+        return IntStream.range(0, days)
+                .mapToObj(day -> new DBClusterSnapshot()
+                        .withDBClusterSnapshotIdentifier("snapshot-" + day)
+                        .withSnapshotCreateTime(Date.from(now.minus(1, ChronoUnit.HOURS).minus(day, ChronoUnit.DAYS))))
+                .collect(Collectors.toList());
+    }
+
+    private List<String> ids(int... days) {
+        return IntStream.of(days).mapToObj(day -> "snapshot-" + day).collect(Collectors.toList());
+    }
+
+    private List<String> ids(List<DBClusterSnapshot> snapshots) {
+        return snapshots.stream().map(DBClusterSnapshot::getDBClusterSnapshotIdentifier).collect(Collectors.toList());
+    }
+}
@@ -20,12 +20,13 @@ import com.amazonaws.AmazonServiceException;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.model.DeleteObjectsRequest;
 import com.amazonaws.services.s3.model.GetObjectRequest;
-import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.ListObjectsV2Request;
+import com.amazonaws.services.s3.model.ListObjectsV2Result;
 import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.amazonaws.services.s3.model.S3Object;
 import com.amazonaws.services.s3.model.S3ObjectInputStream;
 import com.amazonaws.services.s3.model.S3ObjectSummary;
-import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import org.apache.commons.io.IOUtils;
 import org.apache.http.client.methods.HttpRequestBase;
 import org.junit.Test;
@@ -33,13 +34,17 @@ import org.mockito.ArgumentCaptor;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
@@ -103,6 +108,29 @@ public class S3StoreServiceTest {
         assertEquals(S3_PREFIX + "/" + path, request.getValue().getKey());
     }
 
+    @Test
+    public void testGetVersioned() {
+        AmazonS3 client = mock(AmazonS3.class);
+        S3StoreService service = new S3StoreService(client, S3_BUCKET, S3_PREFIX);
+
+        String path = "path";
+        String value = "value";
+        String eTag = "etag";
+
+        S3Object s3Object = new S3Object();
+        s3Object.setObjectContent(new S3ObjectInputStream(IOUtils.toInputStream(value), mock(HttpRequestBase.class)));
+        s3Object.getObjectMetadata().setHeader("ETag", eTag);
+
+        when(client.getObject(any(GetObjectRequest.class))).thenReturn(s3Object);
+
+        // invoke method under test
+        Optional<VersionedValue> result = service.getVersioned(path);
+
+        assertTrue(result.isPresent());
+        assertEquals(value, result.get().getValue());
+        assertEquals(eTag, result.get().getHash());
+    }
+
     @Test
     public void testGetNoSuchKey() {
         AmazonS3 client = mock(AmazonS3.class);
@@ -181,18 +209,88 @@ public class S3StoreServiceTest {
         String key = "my-key";
 
         S3ObjectSummary summary = new S3ObjectSummary();
-        summary.setKey(S3_PREFIX + key);
+        summary.setKey(S3_PREFIX + "/" + key);
 
-        ObjectListing listing = mock(ObjectListing.class);
+        ListObjectsV2Result listing = new ListObjectsV2Result();
+        listing.getObjectSummaries().add(summary);
 
-        when(listing.getObjectSummaries()).thenReturn(Lists.newArrayList(summary));
-        when(client.listObjects(S3_BUCKET, S3_PREFIX + "/" + path)).thenReturn(listing);
+        ArgumentCaptor<ListObjectsV2Request> request = ArgumentCaptor.forClass(ListObjectsV2Request.class);
+        when(client.listObjectsV2(request.capture())).thenReturn(listing);
 
         // invoke method under test
         Set<String> results = service.getKeysInPartialPath(path);
 
         assertEquals(1, results.size());
         assertEquals(key, results.iterator().next());
+        assertEquals(S3_BUCKET, request.getValue().getBucketName());
+        assertEquals(S3_PREFIX + "/" + path, request.getValue().getPrefix());
+    }
+
+    @Test
+    public void testGetKeysWithHashInPartialPathFollowsPages() {
+        AmazonS3 client = mock(AmazonS3.class);
+        S3StoreService service = new S3StoreService(client, S3_BUCKET, S3_PREFIX);
+
+        String path = "path";
+
+        ListObjectsV2Result firstPage = new ListObjectsV2Result();
+        firstPage.getObjectSummaries().add(summary(S3_PREFIX + "/path/a", "a-hash"));
+        firstPage.setTruncated(true);
+        firstPage.setNextContinuationToken("token");
+        ListObjectsV2Result secondPage = new ListObjectsV2Result();
+        secondPage.getObjectSummaries().add(summary(S3_PREFIX + "/path/b", "b-hash"));
+
+        when(client.listObjectsV2(argThat((ListObjectsV2Request r) -> r != null && r.getContinuationToken() == null)))
+                .thenReturn(firstPage);
+        when(client.listObjectsV2(argThat((ListObjectsV2Request r) -> r != null && "token".equals(r.getContinuationToken()))))
+                .thenReturn(secondPage);
+
+        // invoke method under test
+        Map<String, String> results = service.getKeysWithHashInPartialPath(path);
+
+        assertEquals(2, results.size());
+        assertEquals("a-hash", results.get("path/a"));
+        assertEquals("b-hash", results.get("path/b"));
+    }
+
+    @Test
+    public void testStreamKeysInPartialPathIsLazy() {
+        AmazonS3 client = mock(AmazonS3.class);
+        S3StoreService service = new S3StoreService(client, S3_BUCKET, "");
+
+        ListObjectsV2Result firstPage = new ListObjectsV2Result();
+        firstPage.getObjectSummaries().add(summary("a", "a-hash"));
+        firstPage.setTruncated(true);
+        firstPage.setNextContinuationToken("token");
+
+        when(client.listObjectsV2(any(ListObjectsV2Request.class))).thenReturn(firstPage);
+
+        // invoke method under test
+        Optional<String> first = service.streamKeysInPartialPath("").findFirst();
+
+        assertEquals(Optional.of("a"), first);
+        verify(client, times(1)).listObjectsV2(any(ListObjectsV2Request.class));
+    }
+
+    @Test
+    public void testListUnderPartialPathUsesDelimiter() {
+        AmazonS3 client = mock(AmazonS3.class);
+        S3StoreService service = new S3StoreService(client, S3_BUCKET, "");
+
+        ListObjectsV2Result listing = new ListObjectsV2Result();
+        listing.getCommonPrefixes().add("certificates/cert-a/");
+        listing.getCommonPrefixes().add("certificates/cert-b/");
+        listing.getObjectSummaries().add(summary("certificates/readme.txt", "hash"));
+
+        ArgumentCaptor<ListObjectsV2Request> request = ArgumentCaptor.forClass(ListObjectsV2Request.class);
+        when(client.listObjectsV2(request.capture())).thenReturn(listing);
+
+        // invoke method under test
+        Set<String> results = service.listUnderPartialPath("certificates");
+
+        assertEquals(Sets.newHashSet("cert-a", "cert-b", "readme.txt"), results);
+        assertEquals("certificates/", request.getValue().getPrefix());
+        assertEquals("/", request.getValue().getDelimiter());
     }
 
     @Test
@@ -204,13 +302,10 @@ public class S3StoreServiceTest {
 
         String key = "my-key";
 
-        S3ObjectSummary summary = new S3ObjectSummary();
-        summary.setKey(key);
+        ListObjectsV2Result listing = new ListObjectsV2Result();
+        listing.getObjectSummaries().add(summary(key, "hash"));
 
-        ObjectListing listing = mock(ObjectListing.class);
-
-        when(listing.getObjectSummaries()).thenReturn(Lists.newArrayList(summary));
-        when(client.listObjects(S3_BUCKET, path)).thenReturn(listing);
+        when(client.listObjectsV2(any(ListObjectsV2Request.class))).thenReturn(listing);
 
         // invoke method under test
         service.deleteAllKeysOnPartialPath(path);
@@ -228,12 +323,37 @@ public class S3StoreServiceTest {
 
         String path = "path";
 
-        when(client.listObjects(S3_BUCKET, path)).thenReturn(mock(ObjectListing.class));
+        when(client.listObjectsV2(any(ListObjectsV2Request.class))).thenReturn(new ListObjectsV2Result());
 
         // invoke method under test
         service.deleteAllKeysOnPartialPath(path);
 
-        verify(client).listObjects(S3_BUCKET, path);
+        verify(client).listObjectsV2(any(ListObjectsV2Request.class));
         verifyNoMoreInteractions(client);
     }
+
+    @Test
+    public void testDeleteKeysIsBatched() {
+        AmazonS3 client = mock(AmazonS3.class);
+        S3StoreService service = new S3StoreService(client, S3_BUCKET, "");
+
+        Set<String> keys = IntStream.range(0, 2500).mapToObj(i -> "key-" + i).collect(Collectors.toSet());
+
+        // invoke method under test
+        service.deleteKeys(keys);
+
+        ArgumentCaptor<DeleteObjectsRequest> request = ArgumentCaptor.forClass(DeleteObjectsRequest.class);
+        verify(client, times(3)).deleteObjects(request.capture());
+
+        assertEquals(1000, request.getAllValues().get(0).getKeys().size());
+        assertEquals(1000, request.getAllValues().get(1).getKeys().size());
+        assertEquals(500, request.getAllValues().get(2).getKeys().size());
+    }
+
+    private S3ObjectSummary summary(String key, String eTag) {
+        S3ObjectSummary summary = new S3ObjectSummary();
+        summary.setKey(key);
+        summary.setETag(eTag);
+        return summary;
+    }
 }
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2019 Nike, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nike.cerberus.service;
+
+import com.amazonaws.regions.Regions;
+import com.amazonaws.services.cloudformation.model.ChangeSetStatus;
+import com.amazonaws.services.cloudformation.model.Replacement;
+import com.amazonaws.services.cloudformation.model.ResourceChange;
+import com.nike.cerberus.domain.environment.Stack;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class StackChangeSetPipelineTest {
+
+    private CloudFormationService cloudFormationService;
+
+    @Before
+    public void before() {
+        cloudFormationService = mock(CloudFormationService.class);
+    }
+
+    @Test
+    public void test_change_sets_are_created_concurrently_up_to_the_region_cap() {
+        Map<Regions, AtomicInteger> running = new ConcurrentHashMap<>();
+        Map<Regions, AtomicInteger> maxRunning = new ConcurrentHashMap<>();
+        when(cloudFormationService.createChangeSetAndWait(any(), any(), anyMap(), anyBoolean(), anyBoolean(), anyMap()))
+                .thenAnswer(invocation -> {
+                    Regions region = invocation.getArgument(0);
+                    int now = running.computeIfAbsent(region, r -> new AtomicInteger()).incrementAndGet();
+                    maxRunning.computeIfAbsent(region, r -> new AtomicInteger()).accumulateAndGet(now, Math::max);
+                    Thread.sleep(50);
+                    running.get(region).decrementAndGet();
+                    return changeSet(region, ((Stack) invocation.getArgument(1)).getName(), Replacement.False);
+                });
+
+        List<StackChangeSet> changeSets = new StackChangeSetPipeline(cloudFormationService, 2).createChangeSets(Arrays.asList(
+                request(Regions.US_WEST_2, Stack.VPC),
+                request(Regions.US_WEST_2, Stack.DATABASE),
+                request(Regions.US_WEST_2, Stack.CMS),
+                request(Regions.US_WEST_2, Stack.IAM_ROLES),
+                request(Regions.US_EAST_1, Stack.VPC),
+                request(Regions.US_EAST_1, Stack.CMS)));
+
+        assertEquals(6, changeSets.size());
+        assertEquals("vpc", changeSets.get(0).getStackName());
+        assertEquals("cms", changeSets.get(5).getStackName());
+        assertTrue(maxRunning.get(Regions.US_WEST_2).get() <= 2);
+        assertTrue(maxRunning.get(Regions.US_EAST_1).get() <= 2);
+    }
+
+    @Test
+    public void test_created_change_sets_are_deleted_when_one_fails() {
+        StackChangeSet vpcChangeSet = changeSet(Regions.US_WEST_2, "vpc", Replacement.False);
+        when(cloudFormationService.createChangeSetAndWait(any(), eq(Stack.VPC), anyMap(), anyBoolean(), anyBoolean(), anyMap()))
+                .thenReturn(vpcChangeSet);
+        when(cloudFormationService.createChangeSetAndWait(any(), eq(Stack.CMS), anyMap(), anyBoolean(), anyBoolean(), anyMap()))
+                .thenThrow(new IllegalStateException("boom"));
+
+        try {
+            new StackChangeSetPipeline(cloudFormationService, 2).createChangeSets(Arrays.asList(
+                    request(Regions.US_WEST_2, Stack.VPC),
+                    request(Regions.US_WEST_2, Stack.CMS)));
+            fail("expected the change set failure to be thrown");
+        } catch (IllegalStateException e) {
+            assertEquals("boom", e.getMessage());
+        }
+
+        verify(cloudFormationService, times(1)).deleteChangeSet(vpcChangeSet);
+    }
+
+    @Test
+    public void test_only_change_sets_with_changes_are_executed_and_replacements_are_summarized() {
+        StackChangeSet replacing = changeSet(Regions.US_WEST_2, "cms", Replacement.True);
+        StackChangeSet empty = new StackChangeSet(Regions.US_WEST_2, "vpc", "cerberus-cli-1",
+                ChangeSetStatus.FAILED.toString(), "The submitted information didn't contain changes.",
+                Collections.emptyList());
+
+        new StackChangeSetPipeline(cloudFormationService, 1).executeChangeSets(Arrays.asList(replacing, empty));
+
+        verify(cloudFormationService, times(1)).executeChangeSetAndWait(replacing);
+        verify(cloudFormationService, never()).executeChangeSetAndWait(empty);
+        assertEquals(Collections.singleton(replacing),
+                StackChangeSetPipeline.getReplacements(Arrays.asList(replacing, empty)).keySet());
+        assertTrue(StackChangeSetPipeline.summarize(Arrays.asList(replacing, empty))
+                .startsWith("Change sets: 1 of 2 stack(s) have changes, 1 resource change(s), 1 replacement(s)"));
+    }
+
+    private StackChangeSetPipeline.Request request(Regions region, Stack stack) {
+        return new StackChangeSetPipeline.Request(region, stack, new HashMap<>(), true, false, new HashMap<>());
+    }
+
+    private StackChangeSet changeSet(Regions region, String stackName, Replacement replacement) {
+        return new StackChangeSet(region, stackName, "cerberus-cli-1", ChangeSetStatus.CREATE_COMPLETE.toString(), null,
+                Collections.singletonList(new ResourceChange()
+                        .withAction("Modify")
+                        .withLogicalResourceId("Resource")
+                        .withResourceType("AWS::EC2::Instance")
+                        .withReplacement(replacement)));
+    }
+}
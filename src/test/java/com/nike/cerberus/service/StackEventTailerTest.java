@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2019 Nike, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nike.cerberus.service;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.cloudformation.AmazonCloudFormation;
+import com.amazonaws.services.cloudformation.model.DescribeStackEventsRequest;
+import com.amazonaws.services.cloudformation.model.DescribeStackEventsResult;
+import com.amazonaws.services.cloudformation.model.StackEvent;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class StackEventTailerTest {
+
+    private static final String STACK_NAME = "stack";
+
+    @Mock
+    private AmazonCloudFormation cloudFormationClient;
+
+    private StackEventTailer tailer;
+
+    @Before
+    public void before() {
+        initMocks(this);
+        tailer = new StackEventTailer(cloudFormationClient, STACK_NAME, new Date(1000), 100, 400);
+    }
+
+    @Test
+    public void test_poll_returns_events_oldest_first_across_pages() {
+        when(cloudFormationClient.describeStackEvents(any())).thenAnswer(invocation -> {
+            DescribeStackEventsRequest request = invocation.getArgument(0);
+            if (request.getNextToken() == null) {
+                return new DescribeStackEventsResult().withStackEvents(event("4", 4000), event("3", 3000)).withNextToken("page-2");
+            }
+            return new DescribeStackEventsResult().withStackEvents(event("2", 2000), event("1", 1500));
+        });
+
+        List<StackEvent> events = tailer.poll();
+
+        assertEquals("1,2,3,4", ids(events));
+        assertEquals(2, tailer.getPageCount());
+    }
+
+    @Test
+    public void test_poll_stops_paging_at_the_last_seen_event() {
+        when(cloudFormationClient.describeStackEvents(any()))
+                .thenReturn(new DescribeStackEventsResult().withStackEvents(event("2", 2000), event("1", 1500)))
+                .thenReturn(new DescribeStackEventsResult().withStackEvents(event("3", 3000), event("2", 2000), event("1", 1500)).withNextToken("page-2"));
+
+        assertEquals("1,2", ids(tailer.poll()));
+        assertEquals("3", ids(tailer.poll()));
+
+        // the second page is never requested because the second poll caught up on the first page
+        verify(cloudFormationClient, times(0)).describeStackEvents(argThat(request -> request.getNextToken() != null));
+        assertEquals(3, tailer.getEventCount());
+    }
+
+    @Test
+    public void test_poll_ignores_events_before_since() {
+        when(cloudFormationClient.describeStackEvents(any()))
+                .thenReturn(new DescribeStackEventsResult().withStackEvents(event("2", 2000), event("old", 500)).withNextToken("page-2"));
+
+        assertEquals("2", ids(tailer.poll()));
+        assertEquals(1, tailer.getPageCount());
+    }
+
+    @Test
+    public void test_poll_interval_backs_off_when_quiet_and_resets_on_activity() {
+        when(cloudFormationClient.describeStackEvents(any()))
+                .thenReturn(new DescribeStackEventsResult().withStackEvents(event("1", 2000)))
+                .thenReturn(new DescribeStackEventsResult().withStackEvents(event("1", 2000)))
+                .thenReturn(new DescribeStackEventsResult().withStackEvents(event("1", 2000)))
+                .thenReturn(new DescribeStackEventsResult().withStackEvents(event("1", 2000)))
+                .thenReturn(new DescribeStackEventsResult().withStackEvents(event("2", 3000), event("1", 2000)));
+
+        tailer.poll();
+        assertEquals(100, tailer.getPollIntervalMillis());
+        tailer.poll();
+        assertEquals(200, tailer.getPollIntervalMillis());
+        tailer.poll();
+        assertEquals(400, tailer.getPollIntervalMillis());
+        tailer.poll();
+        assertEquals(400, tailer.getPollIntervalMillis());
+        tailer.poll();
+        assertEquals(100, tailer.getPollIntervalMillis());
+
+        long delay = tailer.getNextPollDelayMillis();
+        assertTrue(delay >= 75 && delay <= 125);
+    }
+
+    @Test
+    public void test_poll_returns_nothing_when_the_stack_does_not_exist() {
+        AmazonServiceException ase = new AmazonServiceException("Stack does not exist");
+        ase.setStatusCode(400);
+        when(cloudFormationClient.describeStackEvents(any())).thenThrow(ase);
+
+        assertTrue(tailer.poll().isEmpty());
+    }
+
+    private StackEvent event(String id, long timestamp) {
+        return new StackEvent()
+                .withEventId(id)
+                .withTimestamp(new Date(timestamp))
+                .withResourceStatus("CREATE_IN_PROGRESS");
+    }
+
+    private String ids(List<StackEvent> events) {
+        return events.stream().map(StackEvent::getEventId).collect(Collectors.joining(","));
+    }
+}
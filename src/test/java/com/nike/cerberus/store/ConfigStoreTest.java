@@ -17,30 +17,51 @@
 package com.nike.cerberus.store;
 
 import com.amazonaws.regions.Regions;
+import com.amazonaws.services.s3.AmazonS3Client;
+import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.nike.cerberus.domain.environment.EnvironmentData;
 import com.nike.cerberus.domain.environment.RegionData;
+import com.nike.cerberus.domain.environment.Stack;
 import com.nike.cerberus.module.CerberusModule;
+import com.nike.cerberus.service.AwsClientFactory;
+import com.nike.cerberus.service.CloudFormationTemplateRegistry;
 import com.nike.cerberus.service.EncryptionService;
 import com.nike.cerberus.service.KeyGenerator;
 import com.nike.cerberus.service.StoreService;
+import com.nike.cerberus.service.VersionedValue;
 import com.nike.cerberus.util.UuidSupplier;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.Spy;
 
+import java.io.InputStream;
+import java.net.URL;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.Matchers.argThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
 
 public class ConfigStoreTest {
@@ -88,33 +109,176 @@ public class ConfigStoreTest {
 
     @Test
     public void testIdenticalConfig() {
-        storeServices.forEach(s -> doReturn(ImmutableSet.of("a.txt", "cms/b.txt")).when(s).getKeysInPartialPath(any()));
-        storeServices.forEach(s -> doReturn(Optional.of("a.txt hash")).when(s).getHash(argThat(h -> h.equals("a.txt"))));
-        storeServices.forEach(s -> doReturn(Optional.of("b.txt hash")).when(s).getHash(argThat(h -> h.equals("cms/b.txt"))));
+        storeServices.forEach(s -> doReturn(ImmutableMap.of("a.txt", "a.txt hash", "cms/b.txt", "b.txt hash"))
+                .when(s).getKeysWithHashInPartialPath(""));
 
         assertTrue(configStore.isConfigSynchronized());
     }
 
     @Test
-    public void testMissingFile() {
-        doReturn(ImmutableSet.of("a.txt", "cms/b.txt")).when(storeServiceUswest2).getKeysInPartialPath(any());
-        doReturn(ImmutableSet.of("a.txt", "cms/b.txt")).when(storeServiceUseast1).getKeysInPartialPath(any());
-        doReturn(ImmutableSet.of("a.txt")).when(storeServiceUseast2).getKeysInPartialPath(any());
+    public void testIdenticalConfigListedInDifferentOrder() {
+        doReturn(ImmutableMap.of("a.txt", "a.txt hash", "cms/b.txt", "b.txt hash"))
+                .when(storeServiceUswest2).getKeysWithHashInPartialPath("");
+        doReturn(ImmutableMap.of("cms/b.txt", "b.txt hash", "a.txt", "a.txt hash"))
+                .when(storeServiceUseast1).getKeysWithHashInPartialPath("");
+        doReturn(ImmutableMap.of("a.txt", "a.txt hash", "cms/b.txt", "b.txt hash"))
+                .when(storeServiceUseast2).getKeysWithHashInPartialPath("");
+
+        assertTrue(configStore.isConfigSynchronized());
+    }
 
-        storeServices.forEach(s -> doReturn(Optional.of("a.txt hash")).when(s).getHash(argThat(h -> h.equals("a.txt"))));
-        storeServices.forEach(s -> doReturn(Optional.of("b.txt hash")).when(s).getHash(argThat(h -> h.equals("cms/b.txt"))));
+    @Test
+    public void testMissingFile() {
+        doReturn(ImmutableMap.of("a.txt", "a.txt hash", "cms/b.txt", "b.txt hash"))
+                .when(storeServiceUswest2).getKeysWithHashInPartialPath("");
+        doReturn(ImmutableMap.of("a.txt", "a.txt hash", "cms/b.txt", "b.txt hash"))
+                .when(storeServiceUseast1).getKeysWithHashInPartialPath("");
+        doReturn(ImmutableMap.of("a.txt", "a.txt hash"))
+                .when(storeServiceUseast2).getKeysWithHashInPartialPath("");
 
         assertFalse(configStore.isConfigSynchronized());
     }
 
     @Test
     public void testMismatchedHash() {
-        storeServices.forEach(s -> doReturn(ImmutableSet.of("a.txt", "cms/b.txt")).when(s).getKeysInPartialPath(any()));
-        storeServices.forEach(s -> doReturn(Optional.of("a.txt hash")).when(s).getHash(argThat(h -> h.equals("a.txt"))));
-        doReturn(Optional.of("b.txt hash")).when(storeServiceUswest2).getHash(argThat(h -> h.equals("cms/b.txt")));
-        doReturn(Optional.of("b.txt hash v2")).when(storeServiceUseast1).getHash(argThat(h -> h.equals("cms/b.txt")));
-        doReturn(Optional.of("b.txt hash v2")).when(storeServiceUseast2).getHash(argThat(h -> h.equals("cms/b.txt")));
+        doReturn(ImmutableMap.of("a.txt", "a.txt hash", "cms/b.txt", "b.txt hash"))
+                .when(storeServiceUswest2).getKeysWithHashInPartialPath("");
+        doReturn(ImmutableMap.of("a.txt", "a.txt hash", "cms/b.txt", "b.txt hash v2"))
+                .when(storeServiceUseast1).getKeysWithHashInPartialPath("");
+        doReturn(ImmutableMap.of("a.txt", "a.txt hash", "cms/b.txt", "b.txt hash v2"))
+                .when(storeServiceUseast2).getKeysWithHashInPartialPath("");
 
         assertFalse(configStore.isConfigSynchronized());
     }
+
+    @Test
+    public void testConfigSyncCheckDoesNotIssuePerKeyRequests() {
+        storeServices.forEach(s -> doReturn(ImmutableMap.of("a.txt", "a.txt hash", "cms/b.txt", "b.txt hash"))
+                .when(s).getKeysWithHashInPartialPath(""));
+
+        configStore.isConfigSynchronized();
+
+        storeServices.forEach(s -> verify(s, times(0)).getHash(anyString()));
+    }
+
+    @Test
+    public void testEnvironmentDataIsDecryptedOnceAndServedFromSnapshot() throws Exception {
+        StoreService configRegionStoreService = mock(StoreService.class);
+        ConfigStore cachingConfigStore = spy(new ConfigStore(null, null, null,
+                null, objectMapper, null, "env1",
+                "us-west-2", encryptionService, keyGenerator, uuidSupplier));
+        doReturn(configRegionStoreService).when(cachingConfigStore).getConfigRegionStoreService();
+
+        EnvironmentData environmentData = new EnvironmentData();
+        environmentData.setEnvironmentName("env1");
+        when(configRegionStoreService.getVersioned("environment.json"))
+                .thenReturn(Optional.of(new VersionedValue("ciphertext", "etag-1")));
+        when(encryptionService.decrypt("ciphertext")).thenReturn(objectMapper.writeValueAsString(environmentData));
+
+        EnvironmentData first = cachingConfigStore.getEnvironmentData();
+        EnvironmentData second = cachingConfigStore.getEnvironmentData();
+
+        assertEquals("env1", first.getEnvironmentName());
+        assertEquals("env1", second.getEnvironmentName());
+        assertNotSame(first, second);
+        assertEquals(1, cachingConfigStore.getEnvironmentDataCacheMisses());
+        assertEquals(1, cachingConfigStore.getEnvironmentDataCacheHits());
+        verify(configRegionStoreService, times(1)).getVersioned(anyString());
+        verify(encryptionService, times(1)).decrypt(anyString());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testSaveFailsWhenEnvironmentDataWasModifiedConcurrently() throws Exception {
+        StoreService configRegionStoreService = mock(StoreService.class);
+        ConfigStore cachingConfigStore = spy(new ConfigStore(null, null, null,
+                null, objectMapper, null, "env1",
+                "us-west-2", encryptionService, keyGenerator, uuidSupplier));
+        doReturn(configRegionStoreService).when(cachingConfigStore).getConfigRegionStoreService();
+
+        when(configRegionStoreService.getVersioned("environment.json"))
+                .thenReturn(Optional.of(new VersionedValue("ciphertext", "etag-1")));
+        when(configRegionStoreService.getHash("environment.json")).thenReturn(Optional.of("etag-2"));
+        when(encryptionService.decrypt("ciphertext")).thenReturn(objectMapper.writeValueAsString(new EnvironmentData()));
+
+        cachingConfigStore.setAuditLoggingEnabled(true);
+    }
+
+    @Test
+    public void testEncryptAndSaveObjectsWritesBatchToEveryRegion() {
+        EnvironmentData environmentData = new EnvironmentData();
+        Arrays.asList(Regions.US_WEST_2, Regions.US_EAST_1, Regions.US_EAST_2).forEach(region -> {
+            RegionData regionData = new RegionData();
+            regionData.setConfigBucket("bucket-" + region.getName());
+            regionData.setConfigCmkArn("cmk-" + region.getName());
+            environmentData.addRegionData(region, regionData);
+        });
+        doReturn(storeServiceUswest2).when(configStore).getStoreServiceForRegion(Regions.US_WEST_2, environmentData);
+        doReturn(storeServiceUseast1).when(configStore).getStoreServiceForRegion(Regions.US_EAST_1, environmentData);
+        doReturn(storeServiceUseast2).when(configStore).getStoreServiceForRegion(Regions.US_EAST_2, environmentData);
+        when(encryptionService.encrypt(anyList(), anyString())).thenAnswer(invocation -> "encrypted " + invocation.getArgument(1));
+        doThrow(new RuntimeException("region down")).when(storeServiceUseast2).put(anyString(), anyString());
+
+        Map<String, String> objects = new LinkedHashMap<>();
+        objects.put("a.txt", "a");
+        objects.put("b.txt", "b");
+        ReplicationResult result = configStore.encryptAndSaveObjects(objects, environmentData);
+
+        assertFalse(result.isFullyReplicated());
+        assertEquals(Arrays.asList("a.txt", "b.txt"), result.getPaths());
+        assertEquals(ImmutableSet.of(Regions.US_WEST_2, Regions.US_EAST_1), ImmutableSet.copyOf(result.getCommittedRegions()));
+        assertEquals(Arrays.asList(Regions.US_EAST_2), result.getFailedRegions());
+        assertTrue(result.getLatencyInMillis(Regions.US_WEST_2).isPresent());
+        verify(encryptionService, times(2)).encrypt(anyList(), anyString());
+        verify(storeServiceUswest2).put("a.txt", "encrypted a");
+        verify(storeServiceUswest2).put("b.txt", "encrypted b");
+        verify(storeServiceUseast1).put("a.txt", "encrypted a");
+        verify(storeServiceUseast1).put("b.txt", "encrypted b");
+    }
+
+    @Test
+    public void testPlanSync() {
+        doReturn(ImmutableMap.of("a.txt", "a hash", "b.txt", "b hash", "c.txt", "c hash"))
+                .when(storeServiceUswest2).getKeysWithHashInPartialPath("");
+        doReturn(ImmutableMap.of("a.txt", "a hash", "b.txt", "old b hash", "d.txt", "d hash"))
+                .when(storeServiceUseast1).getKeysWithHashInPartialPath("");
+
+        ConfigSyncPlan plan = configStore.planSync(Regions.US_EAST_1);
+
+        assertEquals(Regions.US_EAST_1, plan.getDestinationRegion());
+        assertEquals(ImmutableSet.of("c.txt"), plan.getMissingKeys());
+        assertEquals(ImmutableSet.of("b.txt"), plan.getChangedKeys());
+        assertEquals(ImmutableSet.of("b.txt", "c.txt"), plan.getKeysToCopy());
+        assertEquals(ImmutableSet.of("d.txt"), plan.getOrphanedKeys());
+        assertEquals(1, plan.getUnchangedKeyCount());
+        assertFalse(plan.isInSync());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testStagedTemplatesAreNotTreatedAsConfig() throws Exception {
+        AmazonS3Client s3Client = mock(AmazonS3Client.class);
+        AwsClientFactory<AmazonS3Client> s3ClientFactory = mock(AwsClientFactory.class);
+        when(s3ClientFactory.getClient(Regions.US_WEST_2)).thenReturn(s3Client);
+        when(s3Client.getUrl(anyString(), anyString())).thenReturn(new URL("https://bucket.s3.amazonaws.com/template"));
+
+        CloudFormationTemplateRegistry templateRegistry = new CloudFormationTemplateRegistry(s3ClientFactory);
+        templateRegistry.stageTemplate(Regions.US_WEST_2, "bucket", Stack.CMS);
+        ArgumentCaptor<String> stagedKey = ArgumentCaptor.forClass(String.class);
+        verify(s3Client).putObject(eq("bucket"), stagedKey.capture(), any(InputStream.class), any(ObjectMetadata.class));
+
+        // the template is only staged in the region where the stack was updated
+        doReturn(ImmutableMap.of("a.txt", "a hash", stagedKey.getValue(), "template hash"))
+                .when(storeServiceUswest2).getKeysWithHashInPartialPath("");
+        doReturn(ImmutableMap.of("a.txt", "a hash", "cloudformation-templates/older.yaml", "older template hash"))
+                .when(storeServiceUseast1).getKeysWithHashInPartialPath("");
+        doReturn(ImmutableMap.of("a.txt", "a hash"))
+                .when(storeServiceUseast2).getKeysWithHashInPartialPath("");
+
+        assertTrue(configStore.isConfigSynchronized());
+
+        ConfigSyncPlan plan = configStore.planSync(Regions.US_EAST_1);
+        assertTrue(plan.getKeysToCopy().isEmpty());
+        assertTrue(plan.getOrphanedKeys().isEmpty());
+        assertTrue(plan.isInSync());
+    }
 }
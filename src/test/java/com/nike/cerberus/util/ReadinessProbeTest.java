@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2019 Nike, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nike.cerberus.util;
+
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ReadinessProbeTest {
+
+    @Test
+    public void test_await_returns_as_soon_as_condition_is_true() {
+        AtomicInteger checks = new AtomicInteger();
+
+        boolean ready = ReadinessProbe.waitFor("third check", () -> checks.incrementAndGet() >= 3)
+                .withInitialInterval(Duration.ofMillis(1))
+                .withTimeout(Duration.ofSeconds(10))
+                .await();
+
+        assertTrue(ready);
+        assertEquals(3, checks.get());
+    }
+
+    @Test
+    public void test_await_treats_exceptions_as_not_ready() {
+        AtomicInteger checks = new AtomicInteger();
+
+        boolean ready = ReadinessProbe.waitFor("check after failure", () -> {
+            if (checks.incrementAndGet() == 1) {
+                throw new IllegalStateException("not yet");
+            }
+            return true;
+        }).withInitialInterval(Duration.ofMillis(1)).await();
+
+        assertTrue(ready);
+        assertEquals(2, checks.get());
+    }
+
+    @Test
+    public void test_await_returns_false_at_deadline() {
+        AtomicInteger checks = new AtomicInteger();
+
+        boolean ready = ReadinessProbe.waitFor("never", () -> {
+            checks.incrementAndGet();
+            return false;
+        })
+                .withInitialInterval(Duration.ofMillis(1))
+                .withMaxInterval(Duration.ofMillis(4))
+                .withTimeout(Duration.ofMillis(100))
+                .await();
+
+        assertFalse(ready);
+        assertTrue(checks.get() > 1);
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void test_await_or_throw_throws_at_deadline() {
+        ReadinessProbe.waitFor("never", () -> false)
+                .withInitialInterval(Duration.ofMillis(1))
+                .withTimeout(Duration.ofMillis(20))
+                .awaitOrThrow();
+    }
+}